@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.core.util.MercatorProjection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the average costs of the {@link MercatorProjection} conversions and of the {@link LRUCache}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class CoreBenchmark {
+	private static final int CACHE_CAPACITY = 256;
+	private static final int NUMBER_OF_KEYS = 1024;
+	private static final long RANDOM_SEED = 42;
+	private static final byte ZOOM_LEVEL = 14;
+
+	private int index;
+	private Integer[] keys;
+	private double[] latitudes;
+	private LRUCache<Integer, Integer> lruCache;
+	private double[] longitudes;
+
+	/**
+	 * Converts a latitude to a tile Y number and back.
+	 * 
+	 * @return the latitude of the tile.
+	 */
+	@Benchmark
+	public double latitudeToTileY() {
+		long tileY = MercatorProjection.latitudeToTileY(this.latitudes[nextIndex()], ZOOM_LEVEL);
+		return MercatorProjection.tileYToLatitude(tileY, ZOOM_LEVEL);
+	}
+
+	/**
+	 * Converts a longitude to a tile X number and back.
+	 * 
+	 * @return the longitude of the tile.
+	 */
+	@Benchmark
+	public double longitudeToTileX() {
+		long tileX = MercatorProjection.longitudeToTileX(this.longitudes[nextIndex()], ZOOM_LEVEL);
+		return MercatorProjection.tileXToLongitude(tileX, ZOOM_LEVEL);
+	}
+
+	/**
+	 * Looks up a key in the cache and inserts it if it is missing. The number of keys is larger than the capacity of
+	 * the cache, so that hits and evictions are mixed.
+	 * 
+	 * @return the cached value.
+	 */
+	@Benchmark
+	public Integer lruCache() {
+		Integer key = this.keys[nextIndex()];
+		Integer value = this.lruCache.get(key);
+		if (value == null) {
+			value = key;
+			this.lruCache.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Creates the input values of all benchmarks.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(RANDOM_SEED);
+		this.keys = new Integer[NUMBER_OF_KEYS];
+		this.latitudes = new double[NUMBER_OF_KEYS];
+		this.longitudes = new double[NUMBER_OF_KEYS];
+		for (int i = 0; i < NUMBER_OF_KEYS; ++i) {
+			// skewed keys so that some of them are accessed more often than others
+			this.keys[i] = Integer.valueOf((int) (Math.abs(random.nextGaussian()) * CACHE_CAPACITY));
+			this.latitudes[i] = (random.nextDouble() * 2 - 1) * MercatorProjection.LATITUDE_MAX;
+			this.longitudes[i] = random.nextDouble() * 360 - 180;
+		}
+		this.lruCache = new LRUCache<Integer, Integer>(CACHE_CAPACITY);
+		this.index = 0;
+	}
+
+	private int nextIndex() {
+		this.index = (this.index + 1) % NUMBER_OF_KEYS;
+		return this.index;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.TileStatus;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link MapDatabase} queries on the {@link SyntheticMapFile} for different zoom levels.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class ReadMapDataBenchmark {
+	private static final int BATCH_SIZE = 3;
+	private static final int NUMBER_OF_RANDOM_TILES = 1024;
+	private static final long RANDOM_SEED = 42;
+
+	/**
+	 * True if the map file should be memory-mapped, false otherwise.
+	 */
+	@Param({ "false", "true" })
+	public boolean memoryMapped;
+
+	/**
+	 * The zoom level of all queried tiles.
+	 */
+	@Param({ "8", "12", "14", "16" })
+	public byte zoomLevel;
+
+	private List<Tile> batchTiles;
+	private Tile centerTile;
+	private MapDatabase mapDatabase;
+	private int randomTileIndex;
+	private Tile[] randomTiles;
+
+	/**
+	 * Reads a square of neighbouring tiles with a single batch query.
+	 * 
+	 * @return the results of the query.
+	 */
+	@Benchmark
+	public Map<Tile, MapReadResult> batch() {
+		return this.mapDatabase.readMapData(this.batchTiles);
+	}
+
+	/**
+	 * Reads a different tile of the map file on each invocation.
+	 * 
+	 * @return the result of the query.
+	 */
+	@Benchmark
+	public MapReadResult randomTile() {
+		return this.mapDatabase.readMapData(nextRandomTile());
+	}
+
+	/**
+	 * Opens the map file and calculates the tiles of all queries.
+	 * 
+	 * @throws IOException
+	 *             if the map file cannot be created.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		this.mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = this.mapDatabase.openFile(SyntheticMapFile.getFile(), this.memoryMapped);
+		if (!fileOpenResult.isSuccess()) {
+			throw new IllegalStateException(fileOpenResult.getErrorMessage());
+		}
+
+		long left = MercatorProjection.longitudeToTileX(SyntheticMapFile.BOUNDING_BOX.minLongitudeE6 / 1000000d,
+				this.zoomLevel);
+		long top = MercatorProjection.latitudeToTileY(SyntheticMapFile.BOUNDING_BOX.maxLatitudeE6 / 1000000d,
+				this.zoomLevel);
+		long right = MercatorProjection.longitudeToTileX(SyntheticMapFile.BOUNDING_BOX.maxLongitudeE6 / 1000000d,
+				this.zoomLevel);
+		long bottom = MercatorProjection.latitudeToTileY(SyntheticMapFile.BOUNDING_BOX.minLatitudeE6 / 1000000d,
+				this.zoomLevel);
+
+		this.centerTile = new Tile((left + right) / 2, (top + bottom) / 2, this.zoomLevel);
+
+		this.batchTiles = new ArrayList<Tile>();
+		for (int y = 0; y < BATCH_SIZE; ++y) {
+			for (int x = 0; x < BATCH_SIZE; ++x) {
+				this.batchTiles.add(new Tile(this.centerTile.tileX + x, this.centerTile.tileY + y, this.zoomLevel));
+			}
+		}
+
+		Random random = new Random(RANDOM_SEED);
+		this.randomTiles = new Tile[NUMBER_OF_RANDOM_TILES];
+		for (int i = 0; i < NUMBER_OF_RANDOM_TILES; ++i) {
+			long tileX = left + (long) (random.nextDouble() * (right - left + 1));
+			long tileY = top + (long) (random.nextDouble() * (bottom - top + 1));
+			this.randomTiles[i] = new Tile(tileX, tileY, this.zoomLevel);
+		}
+		this.randomTileIndex = 0;
+	}
+
+	/**
+	 * Reads the same tile of the map file on each invocation.
+	 * 
+	 * @return the result of the query.
+	 */
+	@Benchmark
+	public MapReadResult singleTile() {
+		return this.mapDatabase.readMapData(this.centerTile);
+	}
+
+	/**
+	 * Closes the map file.
+	 */
+	@TearDown
+	public void tearDown() {
+		this.mapDatabase.closeFile();
+	}
+
+	/**
+	 * Queries the status of a different tile of the map file on each invocation, only the index is read.
+	 * 
+	 * @return the status of the tile.
+	 */
+	@Benchmark
+	public TileStatus tileStatus() {
+		return this.mapDatabase.queryTileStatus(nextRandomTile());
+	}
+
+	private Tile nextRandomTile() {
+		Tile tile = this.randomTiles[this.randomTileIndex];
+		this.randomTileIndex = (this.randomTileIndex + 1) % NUMBER_OF_RANDOM_TILES;
+		return tile;
+	}
+}
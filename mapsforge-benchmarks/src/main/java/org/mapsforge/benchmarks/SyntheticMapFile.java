@@ -0,0 +1,344 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * Creates a map file with synthetic POIs and ways for the benchmarks.
+ * <p>
+ * The content of the file only depends on the constants of this class and the fixed seed of the random number
+ * generator. Every run therefore reads exactly the same data, so that the results of different versions of the
+ * reader are comparable without any external map data.
+ */
+public final class SyntheticMapFile {
+	/**
+	 * The area which is covered by the map file.
+	 */
+	public static final BoundingBox BOUNDING_BOX = new BoundingBox(52300000, 13000000, 52700000, 13800000);
+
+	/**
+	 * Base zoom level, minimum and maximum zoom level of each sub-file.
+	 */
+	static final byte[][] SUB_FILES = { { 7, 0, 7 }, { 11, 8, 11 }, { 14, 12, 21 } };
+
+	private static final String CHARSET_UTF8 = "UTF-8";
+	private static final int FILE_VERSION = 3;
+	private static final int HEADER_SIZE_OFFSET = 24;
+	private static final String MAGIC_BYTE = "mapsforge binary OSM";
+	private static final long MAP_DATE = 1325376000000L;
+	private static final int MAXIMUM_WAY_NODES = 32;
+	private static final int MINIMUM_WAY_NODES = 4;
+	private static final int NO_LAYER = 5;
+	private static final String[] POI_TAGS = { "amenity=restaurant", "amenity=cafe", "shop=bakery",
+			"tourism=hotel", "highway=bus_stop" };
+	private static final int POIS_PER_ZOOM_LEVEL = 1;
+	private static final String PROJECTION_NAME = "Mercator";
+	private static final long RANDOM_SEED = 4711;
+	private static final int SUB_FILE_ENTRY_SIZE = 19;
+	private static final int TILE_SIZE = 256;
+	private static final String[] WAY_TAGS = { "highway=primary", "highway=residential", "building=yes",
+			"landuse=forest", "waterway=river" };
+	private static final int WAYS_PER_ZOOM_LEVEL = 2;
+
+	private static File file;
+
+	/**
+	 * Returns the synthetic map file, it is created in the temporary directory on the first call and deleted when
+	 * the virtual machine terminates.
+	 * 
+	 * @return the synthetic map file.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static synchronized File getFile() throws IOException {
+		if (file == null) {
+			File newFile = File.createTempFile("mapsforge-benchmark", ".map");
+			newFile.deleteOnExit();
+			OutputStream outputStream = new FileOutputStream(newFile);
+			try {
+				outputStream.write(create());
+			} finally {
+				outputStream.close();
+			}
+			file = newFile;
+		}
+		return file;
+	}
+
+	/**
+	 * Writes the given value as variable amount of bytes, the inverse of {@code ReadBuffer#readSignedInt()}.
+	 * 
+	 * @param outputStream
+	 *            the stream to which the bytes should be written.
+	 * @param value
+	 *            the value to be written.
+	 */
+	public static void writeSignedInt(ByteArrayOutputStream outputStream, int value) {
+		int absoluteValue = Math.abs(value);
+		while (absoluteValue > 0x3f) {
+			outputStream.write((absoluteValue & 0x7f) | 0x80);
+			absoluteValue >>>= 7;
+		}
+		outputStream.write(value < 0 ? absoluteValue | 0x40 : absoluteValue);
+	}
+
+	/**
+	 * Writes the given value as variable amount of bytes, the inverse of {@code ReadBuffer#readUnsignedInt()}.
+	 * 
+	 * @param outputStream
+	 *            the stream to which the bytes should be written.
+	 * @param value
+	 *            the value to be written, must not be negative.
+	 */
+	public static void writeUnsignedInt(ByteArrayOutputStream outputStream, int value) {
+		int remainingValue = value;
+		while ((remainingValue & ~0x7f) != 0) {
+			outputStream.write((remainingValue & 0x7f) | 0x80);
+			remainingValue >>>= 7;
+		}
+		outputStream.write(remainingValue);
+	}
+
+	/**
+	 * @return the content of the synthetic map file.
+	 */
+	static byte[] create() {
+		Random random = new Random(RANDOM_SEED);
+		byte[][] subFiles = new byte[SUB_FILES.length][];
+		for (int i = 0; i < SUB_FILES.length; ++i) {
+			subFiles[i] = createSubFile(SUB_FILES[i], random);
+		}
+
+		byte[] header = createHeader(subFiles);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		outputStream.write(header, 0, header.length);
+		for (byte[] subFile : subFiles) {
+			outputStream.write(subFile, 0, subFile.length);
+		}
+		return outputStream.toByteArray();
+	}
+
+	private static int clamp(int value, int minimum, int maximum) {
+		return Math.max(minimum, Math.min(maximum, value));
+	}
+
+	private static byte[] createBlock(byte[] subFile, long tileX, long tileY, Random random) {
+		byte baseZoomLevel = subFile[0];
+		int blockTop = (int) (MercatorProjection.tileYToLatitude(tileY, baseZoomLevel) * 1000000);
+		int blockLeft = (int) (MercatorProjection.tileXToLongitude(tileX, baseZoomLevel) * 1000000);
+		int blockBottom = (int) (MercatorProjection.tileYToLatitude(tileY + 1, baseZoomLevel) * 1000000);
+		int blockRight = (int) (MercatorProjection.tileXToLongitude(tileX + 1, baseZoomLevel) * 1000000);
+
+		// all elements are placed inside the intersection of the block and the bounding box
+		int minLatitude = Math.max(blockBottom, BOUNDING_BOX.minLatitudeE6) - blockTop;
+		int maxLatitude = Math.min(blockTop, BOUNDING_BOX.maxLatitudeE6) - blockTop;
+		int minLongitude = Math.max(blockLeft, BOUNDING_BOX.minLongitudeE6) - blockLeft;
+		int maxLongitude = Math.min(blockRight, BOUNDING_BOX.maxLongitudeE6) - blockLeft;
+
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		ByteArrayOutputStream pois = new ByteArrayOutputStream();
+		ByteArrayOutputStream ways = new ByteArrayOutputStream();
+		for (int zoomLevel = subFile[1]; zoomLevel <= subFile[2]; ++zoomLevel) {
+			writeUnsignedInt(block, POIS_PER_ZOOM_LEVEL);
+			writeUnsignedInt(block, WAYS_PER_ZOOM_LEVEL);
+
+			for (int i = 0; i < POIS_PER_ZOOM_LEVEL; ++i) {
+				writeSignedInt(pois, randomInt(random, minLatitude, maxLatitude));
+				writeSignedInt(pois, randomInt(random, minLongitude, maxLongitude));
+				writePoi(pois, random);
+			}
+
+			for (int i = 0; i < WAYS_PER_ZOOM_LEVEL; ++i) {
+				byte[] way = createWay(random, minLatitude, maxLatitude, minLongitude, maxLongitude);
+				writeUnsignedInt(ways, way.length);
+				ways.write(way, 0, way.length);
+			}
+		}
+
+		writeUnsignedInt(block, pois.size());
+		write(block, pois.toByteArray());
+		write(block, ways.toByteArray());
+		return block.toByteArray();
+	}
+
+	private static byte[] createHeader(byte[][] subFiles) {
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream dataOutputStream = new DataOutputStream(header);
+			dataOutputStream.write(MAGIC_BYTE.getBytes(CHARSET_UTF8));
+			// placeholder for the remaining header size
+			dataOutputStream.writeInt(0);
+			dataOutputStream.writeInt(FILE_VERSION);
+			// placeholder for the file size
+			dataOutputStream.writeLong(0);
+			dataOutputStream.writeLong(MAP_DATE);
+			dataOutputStream.writeInt(BOUNDING_BOX.minLatitudeE6);
+			dataOutputStream.writeInt(BOUNDING_BOX.minLongitudeE6);
+			dataOutputStream.writeInt(BOUNDING_BOX.maxLatitudeE6);
+			dataOutputStream.writeInt(BOUNDING_BOX.maxLongitudeE6);
+			dataOutputStream.writeShort(TILE_SIZE);
+			writeString(header, PROJECTION_NAME);
+			// no optional fields
+			dataOutputStream.writeByte(0);
+
+			dataOutputStream.writeShort(POI_TAGS.length);
+			for (String tag : POI_TAGS) {
+				writeString(header, tag);
+			}
+			dataOutputStream.writeShort(WAY_TAGS.length);
+			for (String tag : WAY_TAGS) {
+				writeString(header, tag);
+			}
+
+			dataOutputStream.writeByte(subFiles.length);
+			long startAddress = header.size() + subFiles.length * SUB_FILE_ENTRY_SIZE;
+			for (int i = 0; i < subFiles.length; ++i) {
+				dataOutputStream.write(SUB_FILES[i]);
+				dataOutputStream.writeLong(startAddress);
+				dataOutputStream.writeLong(subFiles[i].length);
+				startAddress += subFiles[i].length;
+			}
+			dataOutputStream.flush();
+
+			byte[] headerData = header.toByteArray();
+			putInt(headerData, MAGIC_BYTE.length(), headerData.length - HEADER_SIZE_OFFSET);
+			putLong(headerData, HEADER_SIZE_OFFSET + 4, startAddress);
+			return headerData;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] createSubFile(byte[] subFile, Random random) {
+		byte baseZoomLevel = subFile[0];
+		long left = MercatorProjection.longitudeToTileX(BOUNDING_BOX.minLongitudeE6 / 1000000d, baseZoomLevel);
+		long top = MercatorProjection.latitudeToTileY(BOUNDING_BOX.maxLatitudeE6 / 1000000d, baseZoomLevel);
+		long right = MercatorProjection.longitudeToTileX(BOUNDING_BOX.maxLongitudeE6 / 1000000d, baseZoomLevel);
+		long bottom = MercatorProjection.latitudeToTileY(BOUNDING_BOX.minLatitudeE6 / 1000000d, baseZoomLevel);
+		int numberOfBlocks = (int) ((right - left + 1) * (bottom - top + 1));
+
+		// the index consists of one 5-byte entry per block with the offset relative to the start of the sub-file
+		byte[] index = new byte[numberOfBlocks * 5];
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		int blockNumber = 0;
+		for (long tileY = top; tileY <= bottom; ++tileY) {
+			for (long tileX = left; tileX <= right; ++tileX) {
+				long offset = index.length + blocks.size();
+				for (int i = 0; i < 5; ++i) {
+					index[blockNumber * 5 + i] = (byte) (offset >>> (32 - i * 8));
+				}
+				write(blocks, createBlock(subFile, tileX, tileY, random));
+				++blockNumber;
+			}
+		}
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		write(outputStream, index);
+		write(outputStream, blocks.toByteArray());
+		return outputStream.toByteArray();
+	}
+
+	private static byte[] createWay(Random random, int minLatitude, int maxLatitude, int minLongitude,
+			int maxLongitude) {
+		ByteArrayOutputStream way = new ByteArrayOutputStream();
+		// the way is not restricted to any sub-tile
+		way.write(0xff);
+		way.write(0xff);
+		way.write(NO_LAYER << 4 | 1);
+		writeUnsignedInt(way, random.nextInt(WAY_TAGS.length));
+		boolean hasName = random.nextBoolean();
+		way.write(hasName ? 0x80 : 0);
+		if (hasName) {
+			writeString(way, "Way " + random.nextInt(100000));
+		}
+
+		// one way data block with one coordinate block of single-delta encoded way nodes
+		writeUnsignedInt(way, 1);
+		int numberOfWayNodes = randomInt(random, MINIMUM_WAY_NODES, MAXIMUM_WAY_NODES);
+		writeUnsignedInt(way, numberOfWayNodes);
+		int stepLatitude = Math.max(1, (maxLatitude - minLatitude) / MAXIMUM_WAY_NODES);
+		int stepLongitude = Math.max(1, (maxLongitude - minLongitude) / MAXIMUM_WAY_NODES);
+		int latitude = randomInt(random, minLatitude, maxLatitude);
+		int longitude = randomInt(random, minLongitude, maxLongitude);
+		writeSignedInt(way, latitude);
+		writeSignedInt(way, longitude);
+		for (int i = 1; i < numberOfWayNodes; ++i) {
+			int newLatitude = clamp(latitude + randomInt(random, -stepLatitude, stepLatitude), minLatitude,
+					maxLatitude);
+			int newLongitude = clamp(longitude + randomInt(random, -stepLongitude, stepLongitude), minLongitude,
+					maxLongitude);
+			writeSignedInt(way, newLatitude - latitude);
+			writeSignedInt(way, newLongitude - longitude);
+			latitude = newLatitude;
+			longitude = newLongitude;
+		}
+		return way.toByteArray();
+	}
+
+	private static void putInt(byte[] data, int offset, int value) {
+		for (int i = 0; i < 4; ++i) {
+			data[offset + i] = (byte) (value >>> (24 - i * 8));
+		}
+	}
+
+	private static void putLong(byte[] data, int offset, long value) {
+		for (int i = 0; i < 8; ++i) {
+			data[offset + i] = (byte) (value >>> (56 - i * 8));
+		}
+	}
+
+	private static int randomInt(Random random, int minimum, int maximum) {
+		return minimum + random.nextInt(maximum - minimum + 1);
+	}
+
+	private static void write(ByteArrayOutputStream outputStream, byte[] data) {
+		outputStream.write(data, 0, data.length);
+	}
+
+	private static void writePoi(ByteArrayOutputStream outputStream, Random random) {
+		outputStream.write(NO_LAYER << 4 | 1);
+		writeUnsignedInt(outputStream, random.nextInt(POI_TAGS.length));
+		boolean hasName = random.nextBoolean();
+		outputStream.write(hasName ? 0x80 : 0);
+		if (hasName) {
+			writeString(outputStream, "POI " + random.nextInt(100000));
+		}
+	}
+
+	private static void writeString(ByteArrayOutputStream outputStream, String string) {
+		try {
+			byte[] data = string.getBytes(CHARSET_UTF8);
+			writeUnsignedInt(outputStream, data.length);
+			write(outputStream, data);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private SyntheticMapFile() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * JMH microbenchmarks for the map reader and the core utilities.
+ * <p>
+ * All benchmarks read a {@link org.mapsforge.benchmarks.SyntheticMapFile} which is created deterministically in the
+ * temporary directory, so that neither network access nor external map data is needed and the results of different
+ * versions are comparable. The module is only built with the {@code benchmarks} profile:
+ * 
+ * <pre>
+ * mvn -P benchmarks package
+ * java -jar mapsforge-benchmarks/target/mapsforge-benchmarks-*-jar-with-dependencies.jar
+ * </pre>
+ * 
+ * Benchmarks which need package-private classes of the reader, such as the {@code ReadBuffer} and the
+ * {@code IndexCache}, are located in the package {@code org.mapsforge.map.reader} of this module.
+ */
+package org.mapsforge.benchmarks;
+
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mapsforge.benchmarks.SyntheticMapFile;
+import org.mapsforge.map.reader.header.SubFileParameter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookup of random index entries in the largest sub-file of the {@link SyntheticMapFile} by the
+ * {@link IndexCache}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class IndexCacheBenchmark {
+	private static final int NUMBER_OF_BLOCK_NUMBERS = 1024;
+	private static final long RANDOM_SEED = 42;
+
+	/**
+	 * How the index is accessed: "mapped" decodes the entries from the memory-mapped file, "pinned" keeps the whole
+	 * index in memory, "striped" uses the default cache and "uncached" reads each index block from the file.
+	 */
+	@Param({ "mapped", "pinned", "striped", "uncached" })
+	public String cacheMode;
+
+	private long[] blockNumbers;
+	private FileDataSource dataSource;
+	private int index;
+	private IndexCache indexCache;
+	private SubFileParameter subFileParameter;
+
+	/**
+	 * Reads the index entry of a different block on each invocation.
+	 * 
+	 * @return the index entry.
+	 */
+	@Benchmark
+	public long getIndexEntry() {
+		this.index = (this.index + 1) % NUMBER_OF_BLOCK_NUMBERS;
+		return this.indexCache.getIndexEntry(this.subFileParameter, this.blockNumbers[this.index], null);
+	}
+
+	/**
+	 * Opens the map file and creates the index cache.
+	 * 
+	 * @throws IOException
+	 *             if the map file cannot be read.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		File file = SyntheticMapFile.getFile();
+		MapFile mapFile = MapFile.open(file);
+		try {
+			for (SubFileParameter currentSubFileParameter : mapFile.getSubFileParameters()) {
+				if (this.subFileParameter == null
+						|| currentSubFileParameter.numberOfBlocks > this.subFileParameter.numberOfBlocks) {
+					this.subFileParameter = currentSubFileParameter;
+				}
+			}
+		} finally {
+			mapFile.close();
+		}
+
+		boolean memoryMapped = "mapped".equals(this.cacheMode);
+		this.dataSource = new FileDataSource(file, memoryMapped);
+		if (memoryMapped) {
+			this.indexCache = new IndexCache(this.dataSource.getByteBuffer());
+		} else if ("pinned".equals(this.cacheMode)) {
+			this.indexCache = new IndexCache(this.dataSource, MapFileOptions.DEFAULT_INDEX_CACHE_SIZE,
+					Integer.MAX_VALUE, this.subFileParameter.hilbertBlockOrder);
+		} else if ("striped".equals(this.cacheMode)) {
+			this.indexCache = new IndexCache(this.dataSource, MapFileOptions.DEFAULT_INDEX_CACHE_SIZE, 0,
+					this.subFileParameter.hilbertBlockOrder);
+		} else {
+			this.indexCache = new IndexCache(this.dataSource, 0, 0, this.subFileParameter.hilbertBlockOrder);
+		}
+
+		Random random = new Random(RANDOM_SEED);
+		this.blockNumbers = new long[NUMBER_OF_BLOCK_NUMBERS];
+		for (int i = 0; i < NUMBER_OF_BLOCK_NUMBERS; ++i) {
+			this.blockNumbers[i] = (long) (random.nextDouble() * this.subFileParameter.numberOfBlocks);
+		}
+		this.index = 0;
+	}
+
+	/**
+	 * Destroys the index cache and closes the map file.
+	 * 
+	 * @throws IOException
+	 *             if the map file cannot be closed.
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		this.indexCache.destroy();
+		this.dataSource.close();
+	}
+}
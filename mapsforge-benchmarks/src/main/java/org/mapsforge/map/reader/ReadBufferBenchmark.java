@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mapsforge.benchmarks.SyntheticMapFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the decoding speed of the {@link ReadBuffer}. Each invocation decodes a complete buffer of values whose
+ * magnitudes are similar to the way node offsets in real map files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class ReadBufferBenchmark {
+	private static final String CHARSET_UTF8 = "UTF-8";
+	private static final int NUMBER_OF_VALUES = 4096;
+	private static final long RANDOM_SEED = 42;
+
+	private static ReadBuffer createReadBuffer(ByteArrayOutputStream outputStream) throws IOException {
+		ReadBuffer readBuffer = new ReadBuffer(new ByteBufferDataSource(ByteBuffer.wrap(outputStream.toByteArray())));
+		if (!readBuffer.readFromFile(0, outputStream.size())) {
+			throw new IllegalStateException("reading the buffer has failed");
+		}
+		return readBuffer;
+	}
+
+	private ReadBuffer signedIntBuffer;
+	private ReadBuffer stringBuffer;
+	private ReadBuffer unsignedIntBuffer;
+
+	/**
+	 * Decodes variable-byte encoded signed integers.
+	 * 
+	 * @return the sum of all values.
+	 */
+	@Benchmark
+	public int readSignedInt() {
+		ReadBuffer readBuffer = this.signedIntBuffer;
+		readBuffer.setBufferPosition(0);
+		int sum = 0;
+		for (int i = 0; i < NUMBER_OF_VALUES; ++i) {
+			sum += readBuffer.readSignedInt();
+		}
+		return sum;
+	}
+
+	/**
+	 * Decodes length-prefixed UTF-8 strings.
+	 * 
+	 * @return the sum of all string lengths.
+	 */
+	@Benchmark
+	public int readUTF8EncodedString() {
+		ReadBuffer readBuffer = this.stringBuffer;
+		readBuffer.setBufferPosition(0);
+		int sum = 0;
+		for (int i = 0; i < NUMBER_OF_VALUES; ++i) {
+			sum += readBuffer.readUTF8EncodedString().length();
+		}
+		return sum;
+	}
+
+	/**
+	 * Decodes variable-byte encoded unsigned integers.
+	 * 
+	 * @return the sum of all values.
+	 */
+	@Benchmark
+	public int readUnsignedInt() {
+		ReadBuffer readBuffer = this.unsignedIntBuffer;
+		readBuffer.setBufferPosition(0);
+		int sum = 0;
+		for (int i = 0; i < NUMBER_OF_VALUES; ++i) {
+			sum += readBuffer.readUnsignedInt();
+		}
+		return sum;
+	}
+
+	/**
+	 * Creates and fills the buffers of all benchmarks.
+	 * 
+	 * @throws IOException
+	 *             if a buffer cannot be read.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(RANDOM_SEED);
+		ByteArrayOutputStream signedInts = new ByteArrayOutputStream();
+		ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		ByteArrayOutputStream unsignedInts = new ByteArrayOutputStream();
+		for (int i = 0; i < NUMBER_OF_VALUES; ++i) {
+			// mostly small deltas with some larger jumps
+			int magnitude = random.nextInt(10) == 0 ? 1000000 : 2000;
+			SyntheticMapFile.writeSignedInt(signedInts, random.nextInt(2 * magnitude + 1) - magnitude);
+			SyntheticMapFile.writeUnsignedInt(unsignedInts, random.nextInt(magnitude));
+
+			byte[] string = ("Street " + random.nextInt(100000)).getBytes(CHARSET_UTF8);
+			SyntheticMapFile.writeUnsignedInt(strings, string.length);
+			strings.write(string, 0, string.length);
+		}
+
+		this.signedIntBuffer = createReadBuffer(signedInts);
+		this.stringBuffer = createReadBuffer(strings);
+		this.unsignedIntBuffer = createReadBuffer(unsignedInts);
+	}
+}
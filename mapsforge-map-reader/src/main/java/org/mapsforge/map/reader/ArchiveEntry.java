@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Locates the content of an uncompressed entry in a zip or tar archive.
+ */
+final class ArchiveEntry {
+	private static final String CHARSET_UTF8 = "UTF-8";
+	private static final int TAR_BLOCK_SIZE = 512;
+	private static final int TAR_NAME_LENGTH = 100;
+	private static final int TAR_NAME_OFFSET = 0;
+	private static final int TAR_PREFIX_LENGTH = 155;
+	private static final int TAR_PREFIX_OFFSET = 345;
+	private static final int TAR_SIZE_LENGTH = 12;
+	private static final int TAR_SIZE_OFFSET = 124;
+	private static final int TAR_TYPE_OFFSET = 156;
+	private static final int ZIP_CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int ZIP_CENTRAL_HEADER_SIZE = 46;
+	private static final int ZIP_END_RECORD_SIGNATURE = 0x06054b50;
+	private static final int ZIP_END_RECORD_SIZE = 22;
+	private static final int ZIP_LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int ZIP_LOCAL_HEADER_SIZE = 30;
+	private static final int ZIP_MAXIMUM_COMMENT_LENGTH = 0xffff;
+	private static final int ZIP_METHOD_STORED = 0;
+
+	/**
+	 * Finds the entry with the given name in a tar archive.
+	 * 
+	 * @throws IOException
+	 *             if the archive cannot be read or does not contain a regular file with the given name.
+	 */
+	static ArchiveEntry findTarEntry(RandomAccessFile randomAccessFile, String entryName) throws IOException {
+		byte[] header = new byte[TAR_BLOCK_SIZE];
+		long headerPosition = 0;
+		while (headerPosition + TAR_BLOCK_SIZE <= randomAccessFile.length()) {
+			randomAccessFile.seek(headerPosition);
+			randomAccessFile.readFully(header);
+			if (header[TAR_NAME_OFFSET] == 0) {
+				// an empty block marks the end of the archive
+				break;
+			}
+
+			String name = readTarString(header, TAR_NAME_OFFSET, TAR_NAME_LENGTH);
+			String prefix = readTarString(header, TAR_PREFIX_OFFSET, TAR_PREFIX_LENGTH);
+			if (prefix.length() > 0) {
+				name = prefix + '/' + name;
+			}
+			long size = parseOctal(header, TAR_SIZE_OFFSET, TAR_SIZE_LENGTH);
+			byte type = header[TAR_TYPE_OFFSET];
+
+			long contentPosition = headerPosition + TAR_BLOCK_SIZE;
+			if (name.equals(entryName) && (type == '0' || type == 0)) {
+				if (contentPosition + size > randomAccessFile.length()) {
+					throw new IOException("truncated tar entry: " + entryName);
+				}
+				return new ArchiveEntry(contentPosition, size);
+			}
+
+			// the content is padded to a multiple of the block size
+			headerPosition = contentPosition + (size + TAR_BLOCK_SIZE - 1) / TAR_BLOCK_SIZE * TAR_BLOCK_SIZE;
+		}
+		throw new IOException("tar entry not found: " + entryName);
+	}
+
+	/**
+	 * Finds the entry with the given name in a zip archive via its central directory.
+	 * 
+	 * @throws IOException
+	 *             if the archive cannot be read, does not contain the entry or the entry is compressed.
+	 */
+	static ArchiveEntry findZipEntry(RandomAccessFile randomAccessFile, String entryName) throws IOException {
+		long endRecordPosition = findZipEndRecord(randomAccessFile);
+		randomAccessFile.seek(endRecordPosition + 10);
+		int numberOfEntries = readUnsignedShortLE(randomAccessFile);
+		randomAccessFile.seek(endRecordPosition + 16);
+		long centralHeaderPosition = readUnsignedIntLE(randomAccessFile);
+
+		byte[] centralHeader = new byte[ZIP_CENTRAL_HEADER_SIZE];
+		for (int i = 0; i < numberOfEntries; ++i) {
+			randomAccessFile.seek(centralHeaderPosition);
+			randomAccessFile.readFully(centralHeader);
+			if (getIntLE(centralHeader, 0) != ZIP_CENTRAL_HEADER_SIGNATURE) {
+				throw new IOException("invalid zip central directory");
+			}
+
+			int nameLength = getShortLE(centralHeader, 28);
+			int extraLength = getShortLE(centralHeader, 30);
+			int commentLength = getShortLE(centralHeader, 32);
+			byte[] name = new byte[nameLength];
+			randomAccessFile.readFully(name);
+
+			if (entryName.equals(new String(name, CHARSET_UTF8))) {
+				if (getShortLE(centralHeader, 10) != ZIP_METHOD_STORED) {
+					throw new IOException("zip entry is compressed: " + entryName);
+				}
+				long size = getIntLE(centralHeader, 24) & 0xffffffffL;
+				long localHeaderPosition = getIntLE(centralHeader, 42) & 0xffffffffL;
+				return createZipEntry(randomAccessFile, entryName, localHeaderPosition, size);
+			}
+			centralHeaderPosition += ZIP_CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		throw new IOException("zip entry not found: " + entryName);
+	}
+
+	private static ArchiveEntry createZipEntry(RandomAccessFile randomAccessFile, String entryName,
+			long localHeaderPosition, long size) throws IOException {
+		byte[] localHeader = new byte[ZIP_LOCAL_HEADER_SIZE];
+		randomAccessFile.seek(localHeaderPosition);
+		randomAccessFile.readFully(localHeader);
+		if (getIntLE(localHeader, 0) != ZIP_LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("invalid zip local header: " + entryName);
+		}
+
+		// the lengths of the variable fields may differ from those in the central directory
+		long contentPosition = localHeaderPosition + ZIP_LOCAL_HEADER_SIZE + getShortLE(localHeader, 26)
+				+ getShortLE(localHeader, 28);
+		if (contentPosition + size > randomAccessFile.length()) {
+			throw new IOException("truncated zip entry: " + entryName);
+		}
+		return new ArchiveEntry(contentPosition, size);
+	}
+
+	/**
+	 * Searches the end of central directory record backwards from the end of the file, it may be followed by a
+	 * comment.
+	 */
+	private static long findZipEndRecord(RandomAccessFile randomAccessFile) throws IOException {
+		long fileLength = randomAccessFile.length();
+		long minimumPosition = Math.max(0, fileLength - ZIP_END_RECORD_SIZE - ZIP_MAXIMUM_COMMENT_LENGTH);
+		byte[] tail = new byte[(int) (fileLength - minimumPosition)];
+		randomAccessFile.seek(minimumPosition);
+		randomAccessFile.readFully(tail);
+
+		for (int i = tail.length - ZIP_END_RECORD_SIZE; i >= 0; --i) {
+			if (getIntLE(tail, i) == ZIP_END_RECORD_SIGNATURE) {
+				return minimumPosition + i;
+			}
+		}
+		throw new IOException("not a zip archive");
+	}
+
+	private static int getIntLE(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 | (buffer[offset + 2] & 0xff) << 16
+				| (buffer[offset + 3] & 0xff) << 24;
+	}
+
+	private static int getShortLE(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8;
+	}
+
+	private static long parseOctal(byte[] buffer, int offset, int length) throws IOException {
+		int start = offset;
+		while (start < offset + length && buffer[start] == ' ') {
+			++start;
+		}
+
+		long value = 0;
+		for (int i = start; i < offset + length && buffer[i] != 0 && buffer[i] != ' '; ++i) {
+			if (buffer[i] < '0' || buffer[i] > '7') {
+				throw new IOException("invalid tar header");
+			}
+			value = value * 8 + buffer[i] - '0';
+		}
+		return value;
+	}
+
+	private static String readTarString(byte[] buffer, int offset, int length) throws IOException {
+		int end = offset;
+		while (end < offset + length && buffer[end] != 0) {
+			++end;
+		}
+		return new String(buffer, offset, end - offset, CHARSET_UTF8);
+	}
+
+	private static long readUnsignedIntLE(RandomAccessFile randomAccessFile) throws IOException {
+		byte[] buffer = new byte[4];
+		randomAccessFile.readFully(buffer);
+		return getIntLE(buffer, 0) & 0xffffffffL;
+	}
+
+	private static int readUnsignedShortLE(RandomAccessFile randomAccessFile) throws IOException {
+		byte[] buffer = new byte[2];
+		randomAccessFile.readFully(buffer);
+		return getShortLE(buffer, 0);
+	}
+
+	/**
+	 * Size of the entry content in bytes.
+	 */
+	final long length;
+
+	/**
+	 * Position of the entry content in the archive.
+	 */
+	final long offset;
+
+	private ArchiveEntry(long offset, long length) {
+		this.offset = offset;
+		this.length = length;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Executes queries on a shared {@link MapFile} asynchronously.
+ * <p>
+ * The queries are queued and executed by a fixed number of daemon threads, each of which uses its own
+ * {@link MapDatabase}. The caller either waits for the returned {@link Future} or is notified via a
+ * {@link MapReadCallback}, so any number of queries can be in flight without blocking a thread for each of them.
+ * <p>
+ * This class is thread-safe.
+ */
+public class AsyncMapDatabase {
+	private class QueryTask implements Callable<MapReadResult> {
+		private final MapReadCallback mapReadCallback;
+		private final Tile tile;
+
+		QueryTask(Tile tile, MapReadCallback mapReadCallback) {
+			this.tile = tile;
+			this.mapReadCallback = mapReadCallback;
+		}
+
+		@Override
+		public MapReadResult call() throws InterruptedException {
+			MapReadResult mapReadResult = null;
+			try {
+				MapDatabase mapDatabase = AsyncMapDatabase.this.mapDatabases.take();
+				try {
+					mapReadResult = mapDatabase.readMapData(this.tile);
+				} finally {
+					AsyncMapDatabase.this.mapDatabases.add(mapDatabase);
+				}
+			} finally {
+				// the callback is also notified if the query has thrown an exception
+				if (this.mapReadCallback != null) {
+					this.mapReadCallback.mapDataRead(this.tile, mapReadResult);
+				}
+			}
+			return mapReadResult;
+		}
+	}
+
+	private static class QueryThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber;
+
+		QueryThreadFactory() {
+			this.threadNumber = new AtomicInteger();
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, THREAD_NAME + this.threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static final String THREAD_NAME = "AsyncMapDatabase-";
+
+	private final ExecutorService executorService;
+	final BlockingQueue<MapDatabase> mapDatabases;
+
+	/**
+	 * Creates a new instance and starts its query threads.
+	 * 
+	 * @param mapFile
+	 *            the map file from which the map data should be read.
+	 * @param numberOfThreads
+	 *            the number of queries which are executed in parallel.
+	 * @throws IllegalArgumentException
+	 *             if the map file is null or closed, or if the number of threads is less than one.
+	 */
+	public AsyncMapDatabase(MapFile mapFile, int numberOfThreads) {
+		if (mapFile == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		} else if (mapFile.isClosed()) {
+			throw new IllegalArgumentException("mapFile has been closed");
+		} else if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be positive: " + numberOfThreads);
+		}
+
+		this.mapDatabases = new ArrayBlockingQueue<MapDatabase>(numberOfThreads);
+		for (int i = 0; i < numberOfThreads; ++i) {
+			MapDatabase mapDatabase = new MapDatabase();
+			FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+			if (!fileOpenResult.isSuccess()) {
+				throw new IllegalArgumentException(fileOpenResult.getErrorMessage());
+			}
+			this.mapDatabases.add(mapDatabase);
+		}
+		this.executorService = Executors.newFixedThreadPool(numberOfThreads, new QueryThreadFactory());
+	}
+
+	/**
+	 * Stops accepting new queries and waits until all queued queries have been executed. This method must be called
+	 * before the map file is closed.
+	 */
+	public void close() {
+		this.executorService.shutdown();
+		try {
+			this.executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			// restore the interrupted status
+			Thread.currentThread().interrupt();
+			this.executorService.shutdownNow();
+		}
+
+		for (MapDatabase mapDatabase : this.mapDatabases) {
+			mapDatabase.closeFile();
+		}
+	}
+
+	/**
+	 * @return true if this instance has been closed, false otherwise.
+	 */
+	public boolean isClosed() {
+		return this.executorService.isShutdown();
+	}
+
+	/**
+	 * Queues a query for the map data of the given tile, see {@link MapDatabase#readMapData(Tile)}.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @return a future which returns the read map data or null if the query has failed.
+	 * @throws IllegalStateException
+	 *             if this instance has been closed.
+	 */
+	public Future<MapReadResult> readMapData(Tile tile) {
+		return readMapData(tile, null);
+	}
+
+	/**
+	 * Queues a query for the map data of the given tile, see {@link MapDatabase#readMapData(Tile)}. The given callback
+	 * is notified by the query thread as soon as the map data have been read. If the query throws an exception, the
+	 * callback receives null and the exception is thrown by the returned future.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapReadCallback
+	 *            the callback which receives the read map data, may be null.
+	 * @return a future which returns the read map data or null if the query has failed.
+	 * @throws IllegalStateException
+	 *             if this instance has been closed.
+	 */
+	public Future<MapReadResult> readMapData(Tile tile, MapReadCallback mapReadCallback) {
+		try {
+			return this.executorService.submit(new QueryTask(tile, mapReadCallback));
+		} catch (RejectedExecutionException e) {
+			throw new IllegalStateException("AsyncMapDatabase has been closed", e);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Map;
+
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * A cache for decoded blocks with a fixed size and LRU policy.
+ * <p>
+ * Each cached block contains all elements up to the highest zoom level of its sub-file, so that queries for any zoom
+ * level and any tile inside the block can be answered from the cache. The cache is split into stripes which are locked
+ * independently, small caches use fewer stripes.
+ * <p>
+ * This class is thread-safe, the cache is shared by all {@link MapDatabase} instances which read the same
+ * {@link MapFile}.
+ */
+class BlockCache {
+	private static int checkCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+		return capacity;
+	}
+
+	private final Map<BlockCacheKey, DecodedBlock>[] stripes;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of decoded blocks in the cache.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	BlockCache(int capacity) {
+		this.stripes = CacheStripes.createStripes(checkCapacity(capacity));
+	}
+
+	/**
+	 * Destroy the cache at the end of its lifetime.
+	 */
+	void destroy() {
+		for (Map<BlockCacheKey, DecodedBlock> stripe : this.stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	/**
+	 * @param subFileParameter
+	 *            the parameters of the sub-file which contains the block.
+	 * @param blockNumber
+	 *            the number of the block in the sub-file.
+	 * @return the cached block or null if the block is not cached.
+	 */
+	DecodedBlock get(SubFileParameter subFileParameter, long blockNumber) {
+		BlockCacheKey blockCacheKey = new BlockCacheKey(subFileParameter, blockNumber);
+		Map<BlockCacheKey, DecodedBlock> stripe = CacheStripes.getStripe(this.stripes, blockCacheKey);
+		synchronized (stripe) {
+			return stripe.get(blockCacheKey);
+		}
+	}
+
+	/**
+	 * @param subFileParameter
+	 *            the parameters of the sub-file which contains the block.
+	 * @param blockNumber
+	 *            the number of the block in the sub-file.
+	 * @param decodedBlock
+	 *            the decoded block which should be cached.
+	 */
+	void put(SubFileParameter subFileParameter, long blockNumber, DecodedBlock decodedBlock) {
+		BlockCacheKey blockCacheKey = new BlockCacheKey(subFileParameter, blockNumber);
+		Map<BlockCacheKey, DecodedBlock> stripe = CacheStripes.getStripe(this.stripes, blockCacheKey);
+		synchronized (stripe) {
+			stripe.put(blockCacheKey, decodedBlock);
+		}
+	}
+}
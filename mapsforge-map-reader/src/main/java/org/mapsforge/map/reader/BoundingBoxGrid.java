@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.mapsforge.core.model.BoundingBox;
+
+/**
+ * A coarse grid over the world which finds all registered bounding boxes that intersect a given area.
+ * <p>
+ * Each bounding box is registered in all grid cells which it overlaps, so a query only needs to check the bounding
+ * boxes in the cells of the queried area. The bounding boxes are identified by the order in which they have been
+ * added. This class is not thread-safe.
+ */
+class BoundingBoxGrid {
+	/**
+	 * Width and height of a grid cell in microdegrees.
+	 */
+	private static final int CELL_SIZE = 5000000;
+
+	private static final int COLUMNS = 360000000 / CELL_SIZE;
+	private static final int ROWS = 180000000 / CELL_SIZE;
+
+	private static int getColumn(int longitudeE6) {
+		return Math.max(0, Math.min(COLUMNS - 1, (longitudeE6 + 180000000) / CELL_SIZE));
+	}
+
+	private static int getRow(int latitudeE6) {
+		return Math.max(0, Math.min(ROWS - 1, (latitudeE6 + 90000000) / CELL_SIZE));
+	}
+
+	private static boolean intersects(BoundingBox boundingBox1, BoundingBox boundingBox2) {
+		return boundingBox1.minLatitudeE6 <= boundingBox2.maxLatitudeE6
+				&& boundingBox1.maxLatitudeE6 >= boundingBox2.minLatitudeE6
+				&& boundingBox1.minLongitudeE6 <= boundingBox2.maxLongitudeE6
+				&& boundingBox1.maxLongitudeE6 >= boundingBox2.minLongitudeE6;
+	}
+
+	private final List<BoundingBox> boundingBoxes;
+	private final List<Integer>[] cells;
+
+	@SuppressWarnings("unchecked")
+	BoundingBoxGrid() {
+		this.boundingBoxes = new ArrayList<BoundingBox>();
+		this.cells = (List<Integer>[]) new List<?>[COLUMNS * ROWS];
+	}
+
+	/**
+	 * Registers the given bounding box in all grid cells which it overlaps.
+	 * 
+	 * @param boundingBox
+	 *            the bounding box which should be added.
+	 * @return the identifier of the added bounding box.
+	 */
+	int add(BoundingBox boundingBox) {
+		int id = this.boundingBoxes.size();
+		this.boundingBoxes.add(boundingBox);
+
+		int toRow = getRow(boundingBox.maxLatitudeE6);
+		int toColumn = getColumn(boundingBox.maxLongitudeE6);
+		for (int row = getRow(boundingBox.minLatitudeE6); row <= toRow; ++row) {
+			for (int column = getColumn(boundingBox.minLongitudeE6); column <= toColumn; ++column) {
+				int cell = row * COLUMNS + column;
+				if (this.cells[cell] == null) {
+					this.cells[cell] = new ArrayList<Integer>();
+				}
+				this.cells[cell].add(Integer.valueOf(id));
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * @param boundingBox
+	 *            the area which should be checked.
+	 * @return the identifiers of all bounding boxes which intersect the given area in ascending order.
+	 */
+	List<Integer> getIntersecting(BoundingBox boundingBox) {
+		BitSet ids = new BitSet(this.boundingBoxes.size());
+		int toRow = getRow(boundingBox.maxLatitudeE6);
+		int toColumn = getColumn(boundingBox.maxLongitudeE6);
+		for (int row = getRow(boundingBox.minLatitudeE6); row <= toRow; ++row) {
+			for (int column = getColumn(boundingBox.minLongitudeE6); column <= toColumn; ++column) {
+				List<Integer> cell = this.cells[row * COLUMNS + column];
+				if (cell == null) {
+					continue;
+				}
+				for (Integer id : cell) {
+					if (!ids.get(id.intValue()) && intersects(this.boundingBoxes.get(id.intValue()), boundingBox)) {
+						ids.set(id.intValue());
+					}
+				}
+			}
+		}
+
+		List<Integer> intersecting = new ArrayList<Integer>(ids.cardinality());
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			intersecting.add(Integer.valueOf(id));
+		}
+		return intersecting;
+	}
+}
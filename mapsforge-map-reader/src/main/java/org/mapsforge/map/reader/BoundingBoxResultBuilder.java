@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.mapsforge.core.model.BoundingBox;
+
+/**
+ * Collects the elements of a bounding box query.
+ * <p>
+ * POIs are only accepted if they lie inside the bounding box, ways only if their bounding box intersects it. A way
+ * which is stored in multiple blocks is only added once.
+ */
+class BoundingBoxResultBuilder extends MapReadResultBuilder {
+	private final BoundingBox boundingBox;
+	private final Set<WayKey> wayKeys;
+
+	/**
+	 * @param boundingBox
+	 *            the area of the query.
+	 */
+	BoundingBoxResultBuilder(BoundingBox boundingBox) {
+		this.boundingBox = boundingBox;
+		this.wayKeys = new HashSet<WayKey>();
+	}
+
+	@Override
+	public void pointOfInterest(PoiRecord poiRecord) {
+		if (contains(poiRecord.getLatitude(), poiRecord.getLongitude())) {
+			super.pointOfInterest(poiRecord);
+		}
+	}
+
+	@Override
+	public void way(WayRecord wayRecord) {
+		if (wayRecord.getNumberOfCoordinateBlocks() == 0 || !intersects(wayRecord)) {
+			return;
+		}
+
+		Way way = wayRecord.toWay();
+		if (way != null && this.wayKeys.add(new WayKey(way))) {
+			this.ways.add(way);
+		}
+	}
+
+	private boolean contains(int latitude, int longitude) {
+		return latitude >= this.boundingBox.minLatitudeE6 && latitude <= this.boundingBox.maxLatitudeE6
+				&& longitude >= this.boundingBox.minLongitudeE6 && longitude <= this.boundingBox.maxLongitudeE6;
+	}
+
+	/**
+	 * Checks if the bounding box of the outer way intersects the bounding box of the query.
+	 */
+	private boolean intersects(WayRecord wayRecord) {
+		int[] coordinates = wayRecord.getCoordinates();
+		int offset = wayRecord.getCoordinateBlockOffset(0);
+		int end = offset + wayRecord.getNumberOfWayNodes(0) * 2;
+
+		int minLongitude = Integer.MAX_VALUE;
+		int minLatitude = Integer.MAX_VALUE;
+		int maxLongitude = Integer.MIN_VALUE;
+		int maxLatitude = Integer.MIN_VALUE;
+		for (int i = offset; i < end; i += 2) {
+			minLongitude = Math.min(minLongitude, coordinates[i]);
+			maxLongitude = Math.max(maxLongitude, coordinates[i]);
+			minLatitude = Math.min(minLatitude, coordinates[i + 1]);
+			maxLatitude = Math.max(maxLatitude, coordinates[i + 1]);
+		}
+
+		return minLatitude <= this.boundingBox.maxLatitudeE6 && maxLatitude >= this.boundingBox.minLatitudeE6
+				&& minLongitude <= this.boundingBox.maxLongitudeE6 && maxLongitude >= this.boundingBox.minLongitudeE6;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MapDataSource} which reads a map file from memory, for example from a direct buffer on a RAM disk or from
+ * a resource which has been loaded completely. The map file is decoded directly from the buffer without any I/O.
+ */
+public class ByteBufferDataSource implements MapDataSource {
+	private final ByteBuffer byteBuffer;
+
+	/**
+	 * The content of the data source are the remaining bytes of the given buffer. The buffer itself is not modified,
+	 * but its content must not change while the data source is used.
+	 * 
+	 * @param byteBuffer
+	 *            the buffer which contains the map file.
+	 * @throws IllegalArgumentException
+	 *             if the buffer is null.
+	 */
+	public ByteBufferDataSource(ByteBuffer byteBuffer) {
+		if (byteBuffer == null) {
+			throw new IllegalArgumentException("byteBuffer must not be null");
+		}
+		// the slice starts at index 0 and uses the big-endian byte order of the map file format
+		this.byteBuffer = byteBuffer.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * The data source has no resources which need to be released.
+	 */
+	@Override
+	public void close() {
+		// do nothing
+	}
+
+	@Override
+	public ByteBuffer getByteBuffer() {
+		return this.byteBuffer;
+	}
+
+	@Override
+	public long length() {
+		return this.byteBuffer.capacity();
+	}
+
+	@Override
+	public int read(long position, byte[] buffer, int offset, int length) {
+		int bytesToRead = (int) Math.max(0, Math.min(length, this.byteBuffer.capacity() - position));
+		if (bytesToRead > 0) {
+			// a duplicate has its own position, so that concurrent reads do not interfere
+			ByteBuffer duplicate = this.byteBuffer.duplicate();
+			duplicate.position((int) position);
+			duplicate.get(buffer, offset, bytesToRead);
+		}
+		return bytesToRead;
+	}
+}
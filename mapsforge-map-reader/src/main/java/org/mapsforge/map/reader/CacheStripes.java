@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Map;
+
+import org.mapsforge.core.util.LRUCache;
+
+/**
+ * An utility class to split an LRU cache into stripes which are locked independently.
+ * <p>
+ * Small caches use fewer stripes, so that each stripe keeps a useful LRU depth. The capacities of all stripes add up
+ * exactly to the capacity of the cache.
+ */
+final class CacheStripes {
+	/**
+	 * Maximum number of independently locked parts of a cache, must be a power of two.
+	 */
+	static final int MAXIMUM_NUMBER_OF_STRIPES = 16;
+
+	/**
+	 * Minimum number of entries per stripe before a cache is split further.
+	 */
+	static final int MINIMUM_STRIPE_CAPACITY = 8;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in the cache, must not be negative.
+	 * @return the stripes of the cache.
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> Map<K, V>[] createStripes(int capacity) {
+		int numberOfStripes = getNumberOfStripes(capacity);
+		Map<K, V>[] stripes = (Map<K, V>[]) new Map<?, ?>[numberOfStripes];
+		for (int i = 0; i < numberOfStripes; ++i) {
+			// distribute the remainder so that the total capacity matches the budget
+			int stripeCapacity = capacity / numberOfStripes + (i < capacity % numberOfStripes ? 1 : 0);
+			stripes[i] = new LRUCache<K, V>(stripeCapacity);
+		}
+		return stripes;
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in the cache, must not be negative.
+	 * @return the largest power of two which is neither greater than {@link #MAXIMUM_NUMBER_OF_STRIPES} nor leaves
+	 *         fewer than {@link #MINIMUM_STRIPE_CAPACITY} entries per stripe, at least one.
+	 */
+	static int getNumberOfStripes(int capacity) {
+		int numberOfStripes = Math.min(MAXIMUM_NUMBER_OF_STRIPES, capacity / MINIMUM_STRIPE_CAPACITY);
+		if (numberOfStripes <= 1) {
+			return 1;
+		}
+		return Integer.highestOneBit(numberOfStripes);
+	}
+
+	/**
+	 * @param stripes
+	 *            the stripes of the cache.
+	 * @param key
+	 *            the key of the cache entry.
+	 * @return the stripe which is responsible for the given key.
+	 */
+	static <K, V> Map<K, V> getStripe(Map<K, V>[] stripes, Object key) {
+		int hashCode = key.hashCode();
+		return stripes[(hashCode ^ (hashCode >>> 16)) & (stripes.length - 1)];
+	}
+
+	private CacheStripes() {
+		throw new IllegalStateException();
+	}
+}
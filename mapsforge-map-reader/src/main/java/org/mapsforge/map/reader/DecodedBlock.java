@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * A container for the decoded content of a single block with all elements up to the highest zoom level of its
+ * sub-file. The content must not be modified after the block has been put in the {@link BlockCache}.
+ */
+class DecodedBlock implements MapDataSink {
+	private int numberOfWayEntries;
+	private final List<PointOfInterest> pois;
+	private final int[] wayOffsets;
+	private final List<Way> ways;
+	private final int[] wayTileBitmasks;
+	private final int[][] zoomTable;
+
+	/**
+	 * @param zoomTable
+	 *            the cumulated number of POIs and ways per zoom level of the block.
+	 */
+	DecodedBlock(int[][] zoomTable) {
+		int numberOfWays = zoomTable[zoomTable.length - 1][1];
+
+		this.zoomTable = zoomTable;
+		this.pois = new ArrayList<PointOfInterest>();
+		this.ways = new ArrayList<Way>();
+		this.wayOffsets = new int[numberOfWays + 1];
+		this.wayTileBitmasks = new int[numberOfWays];
+	}
+
+	@Override
+	public void pointOfInterest(PoiRecord poiRecord) {
+		this.pois.add(poiRecord.toPointOfInterest());
+	}
+
+	@Override
+	public void queryCompleted(boolean isWater) {
+		// the water flag is not stored in the block
+	}
+
+	@Override
+	public void way(WayRecord wayRecord) {
+		// the first data block starts a new way entry with its own tile bitmask
+		if (wayRecord.wayDataBlock == 0) {
+			this.wayTileBitmasks[this.numberOfWayEntries++] = wayRecord.tileBitmask;
+		}
+		Way way = wayRecord.toWay();
+		if (way != null) {
+			this.ways.add(way);
+		}
+		this.wayOffsets[this.numberOfWayEntries] = this.ways.size();
+	}
+
+	/**
+	 * Selects all elements of this block which belong to the given query.
+	 * 
+	 * @param queryParameters
+	 *            the parameters of the query.
+	 * @param subFileParameter
+	 *            the parameters of the sub-file which contains this block.
+	 * @return the selected POIs and ways.
+	 */
+	PoiWayBundle filter(QueryParameters queryParameters, SubFileParameter subFileParameter) {
+		int zoomTableRow = queryParameters.queryZoomLevel - subFileParameter.zoomLevelMin;
+		int poisOnQueryZoomLevel = this.zoomTable[zoomTableRow][0];
+		int waysOnQueryZoomLevel = this.zoomTable[zoomTableRow][1];
+
+		List<Way> selectedWays = new ArrayList<Way>();
+		for (int wayIndex = 0; wayIndex < waysOnQueryZoomLevel; ++wayIndex) {
+			// check if the way is inside the requested tile
+			if (queryParameters.useTileBitmask
+					&& (queryParameters.queryTileBitmask & this.wayTileBitmasks[wayIndex]) == 0) {
+				continue;
+			}
+
+			// one way entry may consist of multiple way data blocks
+			for (int i = this.wayOffsets[wayIndex]; i < this.wayOffsets[wayIndex + 1]; ++i) {
+				selectedWays.add(this.ways.get(i));
+			}
+		}
+
+		return new PoiWayBundle(this.pois.subList(0, poisOnQueryZoomLevel), selectedWays);
+	}
+}
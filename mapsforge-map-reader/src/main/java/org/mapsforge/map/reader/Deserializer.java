@@ -14,6 +14,8 @@
  */
 package org.mapsforge.map.reader;
 
+import java.nio.ByteBuffer;
+
 /**
  * An utility class to convert byte arrays to numbers.
  */
@@ -34,6 +36,23 @@ final class Deserializer {
 				| (buffer[offset + 3] & 0xffL) << 8 | (buffer[offset + 4] & 0xffL);
 	}
 
+	/**
+	 * Converts five bytes of a byte buffer to an unsigned long.
+	 * <p>
+	 * The byte order is big-endian.
+	 * 
+	 * @param buffer
+	 *            the byte buffer.
+	 * @param offset
+	 *            the absolute offset in the buffer.
+	 * @return the long value.
+	 */
+	static long getFiveBytesLong(ByteBuffer buffer, int offset) {
+		return (buffer.get(offset) & 0xffL) << 32 | (buffer.get(offset + 1) & 0xffL) << 24
+				| (buffer.get(offset + 2) & 0xffL) << 16 | (buffer.get(offset + 3) & 0xffL) << 8
+				| (buffer.get(offset + 4) & 0xffL);
+	}
+
 	/**
 	 * Converts four bytes of a byte array to a signed int.
 	 * <p>
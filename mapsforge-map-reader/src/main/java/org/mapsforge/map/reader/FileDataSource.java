@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+/**
+ * A {@link MapDataSource} which reads a map file from the file system.
+ * <p>
+ * The content may be a whole file or a contiguous part of it, such as an uncompressed entry of a zip or tar archive.
+ * Optionally the content is memory-mapped, then it is decoded directly from the mapping. Otherwise concurrent reads
+ * are serialized, as seeking and reading the file must not be interleaved.
+ */
+public class FileDataSource implements MapDataSource {
+	private static final Logger LOGGER = Logger.getLogger(FileDataSource.class.getName());
+
+	/**
+	 * Mode that is used to open the file.
+	 */
+	private static final String READ_ONLY_MODE = "r";
+
+	/**
+	 * Opens an uncompressed entry of a tar archive.
+	 * 
+	 * @param tarFile
+	 *            the tar archive.
+	 * @param entryName
+	 *            the complete path of the entry in the archive.
+	 * @param memoryMapped
+	 *            true if the entry should be memory-mapped, false otherwise.
+	 * @return the opened data source.
+	 * @throws IOException
+	 *             if the archive cannot be read or does not contain the entry.
+	 */
+	public static FileDataSource openTarEntry(File tarFile, String entryName, boolean memoryMapped)
+			throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(tarFile, READ_ONLY_MODE);
+		try {
+			ArchiveEntry archiveEntry = ArchiveEntry.findTarEntry(randomAccessFile, entryName);
+			return new FileDataSource(randomAccessFile, archiveEntry.offset, archiveEntry.length, memoryMapped);
+		} catch (IOException e) {
+			// make sure that the file is closed
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens an entry of a zip archive, which must have been stored without compression.
+	 * 
+	 * @param zipFile
+	 *            the zip archive.
+	 * @param entryName
+	 *            the complete path of the entry in the archive.
+	 * @param memoryMapped
+	 *            true if the entry should be memory-mapped, false otherwise.
+	 * @return the opened data source.
+	 * @throws IOException
+	 *             if the archive cannot be read, does not contain the entry or the entry is compressed.
+	 */
+	public static FileDataSource openZipEntry(File zipFile, String entryName, boolean memoryMapped)
+			throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(zipFile, READ_ONLY_MODE);
+		try {
+			ArchiveEntry archiveEntry = ArchiveEntry.findZipEntry(randomAccessFile, entryName);
+			return new FileDataSource(randomAccessFile, archiveEntry.offset, archiveEntry.length, memoryMapped);
+		} catch (IOException e) {
+			// make sure that the file is closed
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	private final ByteBuffer mappedContent;
+	private final long offset;
+	private final RandomAccessFile randomAccessFile;
+	private final long size;
+
+	/**
+	 * Opens the given file without memory mapping.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	public FileDataSource(File file) throws IOException {
+		this(file, false);
+	}
+
+	/**
+	 * Opens the given file. A file which is too large to be mapped as a whole is read conventionally.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @param memoryMapped
+	 *            true if the file should be memory-mapped, false otherwise.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	public FileDataSource(File file, boolean memoryMapped) throws IOException {
+		this.randomAccessFile = new RandomAccessFile(file, READ_ONLY_MODE);
+		try {
+			this.offset = 0;
+			this.size = this.randomAccessFile.length();
+			this.mappedContent = map(memoryMapped);
+		} catch (IOException e) {
+			// make sure that the file is closed
+			this.randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	private FileDataSource(RandomAccessFile randomAccessFile, long offset, long size, boolean memoryMapped)
+			throws IOException {
+		this.randomAccessFile = randomAccessFile;
+		this.offset = offset;
+		this.size = size;
+		this.mappedContent = map(memoryMapped);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.randomAccessFile.close();
+	}
+
+	@Override
+	public ByteBuffer getByteBuffer() {
+		return this.mappedContent;
+	}
+
+	@Override
+	public long length() {
+		return this.size;
+	}
+
+	@Override
+	public int read(long position, byte[] buffer, int bufferOffset, int length) throws IOException {
+		int bytesToRead = (int) Math.max(0, Math.min(length, this.size - position));
+		int bytesRead = 0;
+
+		// the file may be shared with other threads, seeking and reading must not be interleaved
+		synchronized (this.randomAccessFile) {
+			this.randomAccessFile.seek(this.offset + position);
+			while (bytesRead < bytesToRead) {
+				int result = this.randomAccessFile.read(buffer, bufferOffset + bytesRead, bytesToRead - bytesRead);
+				if (result < 0) {
+					break;
+				}
+				bytesRead += result;
+			}
+		}
+		return bytesRead;
+	}
+
+	private ByteBuffer map(boolean memoryMapped) throws IOException {
+		if (!memoryMapped) {
+			return null;
+		} else if (this.size > Integer.MAX_VALUE) {
+			LOGGER.warning("content too large to be memory-mapped: " + this.size);
+			return null;
+		}
+		return this.randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, this.offset, this.size);
+	}
+}
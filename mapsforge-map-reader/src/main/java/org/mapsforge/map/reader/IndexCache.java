@@ -15,16 +15,26 @@
 package org.mapsforge.map.reader;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.mapsforge.core.util.LRUCache;
 import org.mapsforge.map.reader.header.SubFileParameter;
 
 /**
  * A cache for database index blocks with a fixed size and LRU policy.
+ * <p>
+ * The cache is split into stripes which are locked independently, so that concurrent readers of the same
+ * {@link MapFile} rarely block each other. The index of small sub-files can optionally be pinned, it is then read
+ * completely on its first use and never evicted.
+ * <p>
+ * If the map file is memory-mapped, the index entries are decoded directly from the mapping and nothing is cached.
+ * <p>
+ * This class is thread-safe, the cache is shared by all {@link MapDatabase} instances which read the same
+ * {@link MapFile}.
  */
 class IndexCache {
 	/**
@@ -35,31 +45,96 @@ class IndexCache {
 	private static final Logger LOGGER = Logger.getLogger(IndexCache.class.getName());
 
 	/**
-	 * Maximum size in bytes of one index block.
+	 * Size in bytes of one index block whose entries do not contain block sizes.
 	 */
-	private static final int SIZE_OF_INDEX_BLOCK = INDEX_ENTRIES_PER_BLOCK * SubFileParameter.BYTES_PER_INDEX_ENTRY;
+	static final int SIZE_OF_INDEX_BLOCK = INDEX_ENTRIES_PER_BLOCK * SubFileParameter.BYTES_PER_INDEX_ENTRY;
 
-	private final Map<IndexCacheEntryKey, byte[]> map;
-	private final RandomAccessFile randomAccessFile;
+	private static int calculateCapacity(int cacheSize, boolean hilbertBlockOrder) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("cacheSize must not be negative: " + cacheSize);
+		}
+		int indexEntrySize = SubFileParameter.BYTES_PER_INDEX_ENTRY;
+		if (hilbertBlockOrder) {
+			indexEntrySize += SubFileParameter.BYTES_PER_BLOCK_SIZE;
+		}
+		return cacheSize / (INDEX_ENTRIES_PER_BLOCK * indexEntrySize);
+	}
+
+	private static long decodeIndexEntry(byte[] index, int address, boolean blockSize) {
+		if (blockSize) {
+			return Deserializer.getInt(index, address + SubFileParameter.BYTES_PER_INDEX_ENTRY);
+		}
+		return Deserializer.getFiveBytesLong(index, address);
+	}
+
+	private final MapDataSource dataSource;
+	private final ByteBuffer mappedFile;
+	private final ConcurrentMap<SubFileParameter, byte[]> pinnedIndexes;
+	private final int pinnedIndexSize;
+	private final Map<IndexCacheEntryKey, byte[]>[] stripes;
 
 	/**
-	 * @param randomAccessFile
+	 * @param mappedFile
+	 *            the memory-mapped content of the map file from which the index should be read.
+	 */
+	IndexCache(ByteBuffer mappedFile) {
+		this.mappedFile = mappedFile;
+		this.dataSource = null;
+		this.pinnedIndexes = null;
+		this.pinnedIndexSize = 0;
+		this.stripes = null;
+	}
+
+	/**
+	 * @param dataSource
 	 *            the map file from which the index should be read and cached.
-	 * @param capacity
-	 *            the maximum number of entries in the cache.
+	 * @param cacheSize
+	 *            the maximum amount of bytes used for cached index blocks.
+	 * @param pinnedIndexSize
+	 *            the maximum index size in bytes of a sub-file whose index is kept completely in memory.
+	 * @param hilbertBlockOrder
+	 *            true if the index entries of the map file contain block sizes, which makes the index blocks larger.
 	 * @throws IllegalArgumentException
-	 *             if the capacity is negative.
+	 *             if the cache size is negative.
 	 */
-	IndexCache(RandomAccessFile randomAccessFile, int capacity) {
-		this.randomAccessFile = randomAccessFile;
-		this.map = new LRUCache<IndexCacheEntryKey, byte[]>(capacity);
+	IndexCache(MapDataSource dataSource, int cacheSize, int pinnedIndexSize, boolean hilbertBlockOrder) {
+		int capacity = calculateCapacity(cacheSize, hilbertBlockOrder);
+
+		this.mappedFile = null;
+		this.dataSource = dataSource;
+		this.pinnedIndexes = new ConcurrentHashMap<SubFileParameter, byte[]>();
+		this.pinnedIndexSize = pinnedIndexSize;
+		this.stripes = CacheStripes.createStripes(capacity);
 	}
 
 	/**
 	 * Destroy the cache at the end of its lifetime.
 	 */
 	void destroy() {
-		this.map.clear();
+		if (this.stripes != null) {
+			for (Map<IndexCacheEntryKey, byte[]> stripe : this.stripes) {
+				synchronized (stripe) {
+					stripe.clear();
+				}
+			}
+			this.pinnedIndexes.clear();
+		}
+	}
+
+	/**
+	 * Returns the size of a block in a sub-file with Hilbert block order, whose index entries contain the block sizes.
+	 * If the required index entry is not cached, it will be read from the map file index and put in the cache.
+	 * 
+	 * @param subFileParameter
+	 *            the parameters of the map file for which the block size is needed.
+	 * @param blockNumber
+	 *            the number of the block in the map file.
+	 * @param queryStatistics
+	 *            the statistics to which the lookup should be added, may be null.
+	 * @return the block size or -1 if the block number is invalid.
+	 */
+	int getBlockSize(SubFileParameter subFileParameter, long blockNumber, QueryStatistics queryStatistics) {
+		return (int) readIndexEntry(subFileParameter, blockNumber, true, queryStatistics);
 	}
 
 	/**
@@ -70,47 +145,125 @@ class IndexCache {
 	 *            the parameters of the map file for which the index entry is needed.
 	 * @param blockNumber
 	 *            the number of the block in the map file.
+	 * @param queryStatistics
+	 *            the statistics to which the lookup should be added, may be null.
 	 * @return the index entry or -1 if the block number is invalid.
 	 */
-	long getIndexEntry(SubFileParameter subFileParameter, long blockNumber) {
+	long getIndexEntry(SubFileParameter subFileParameter, long blockNumber, QueryStatistics queryStatistics) {
+		return readIndexEntry(subFileParameter, blockNumber, false, queryStatistics);
+	}
+
+	/**
+	 * @return the complete index of the given sub-file or null if its index is too large to be pinned.
+	 */
+	private byte[] getPinnedIndex(SubFileParameter subFileParameter, QueryStatistics queryStatistics)
+			throws IOException {
+		long indexSize = subFileParameter.indexEndAddress - subFileParameter.indexStartAddress;
+		if (indexSize > this.pinnedIndexSize) {
+			return null;
+		}
+
+		byte[] pinnedIndex = this.pinnedIndexes.get(subFileParameter);
+		if (pinnedIndex == null) {
+			pinnedIndex = readIndex(subFileParameter.indexStartAddress, (int) indexSize, queryStatistics);
+			if (pinnedIndex == null) {
+				return null;
+			}
+
+			// another thread might have pinned the same index in the meantime
+			byte[] previousIndex = this.pinnedIndexes.putIfAbsent(subFileParameter, pinnedIndex);
+			if (previousIndex != null) {
+				return previousIndex;
+			}
+		}
+		return pinnedIndex;
+	}
+
+	/**
+	 * @return the read bytes or null if not enough bytes could be read.
+	 */
+	private byte[] readIndex(long position, int length, QueryStatistics queryStatistics) throws IOException {
+		byte[] index = new byte[length];
+		if (queryStatistics == null) {
+			return this.dataSource.read(position, index, 0, length) == length ? index : null;
+		}
+
+		long startTime = System.nanoTime();
+		int bytesRead = this.dataSource.read(position, index, 0, length);
+		queryStatistics.ioNanos += System.nanoTime() - startTime;
+		++queryStatistics.indexCacheMisses;
+		return bytesRead == length ? index : null;
+	}
+
+	/**
+	 * Decodes either the block pointer or the block size of an index entry.
+	 */
+	private long readIndexEntry(SubFileParameter subFileParameter, long blockNumber, boolean blockSize,
+			QueryStatistics queryStatistics) {
 		try {
 			// check if the block number is out of bounds
 			if (blockNumber >= subFileParameter.numberOfBlocks) {
 				return -1;
 			}
 
+			if (queryStatistics != null) {
+				// each lookup is a hit unless an index block has to be read
+				++queryStatistics.indexLookups;
+			}
+
+			if (this.mappedFile != null) {
+				// decode the index entry directly from the mapped file
+				int indexEntryPosition = (int) (subFileParameter.indexStartAddress + blockNumber
+						* subFileParameter.indexEntrySize);
+				if (blockSize) {
+					return this.mappedFile.getInt(indexEntryPosition + SubFileParameter.BYTES_PER_INDEX_ENTRY);
+				}
+				return Deserializer.getFiveBytesLong(this.mappedFile, indexEntryPosition);
+			}
+
+			byte[] pinnedIndex = getPinnedIndex(subFileParameter, queryStatistics);
+			if (pinnedIndex != null) {
+				int addressInIndex = (int) (blockNumber * subFileParameter.indexEntrySize);
+				return decodeIndexEntry(pinnedIndex, addressInIndex, blockSize);
+			}
+
 			// calculate the index block number
 			long indexBlockNumber = blockNumber / INDEX_ENTRIES_PER_BLOCK;
 
 			// create the cache entry key for this request
 			IndexCacheEntryKey indexCacheEntryKey = new IndexCacheEntryKey(subFileParameter, indexBlockNumber);
+			Map<IndexCacheEntryKey, byte[]> stripe = CacheStripes.getStripe(this.stripes, indexCacheEntryKey);
 
 			// check for cached index block
-			byte[] indexBlock = this.map.get(indexCacheEntryKey);
+			byte[] indexBlock;
+			synchronized (stripe) {
+				indexBlock = stripe.get(indexCacheEntryKey);
+			}
 			if (indexBlock == null) {
-				// cache miss, seek to the correct index block in the file and read it
-				long indexBlockPosition = subFileParameter.indexStartAddress + indexBlockNumber * SIZE_OF_INDEX_BLOCK;
+				// cache miss, read the correct index block from the file
+				int sizeOfIndexBlock = INDEX_ENTRIES_PER_BLOCK * subFileParameter.indexEntrySize;
+				long indexBlockPosition = subFileParameter.indexStartAddress + indexBlockNumber * sizeOfIndexBlock;
 
 				int remainingIndexSize = (int) (subFileParameter.indexEndAddress - indexBlockPosition);
-				int indexBlockSize = Math.min(SIZE_OF_INDEX_BLOCK, remainingIndexSize);
-				indexBlock = new byte[indexBlockSize];
-
-				this.randomAccessFile.seek(indexBlockPosition);
-				if (this.randomAccessFile.read(indexBlock, 0, indexBlockSize) != indexBlockSize) {
+				int indexBlockSize = Math.min(sizeOfIndexBlock, remainingIndexSize);
+				indexBlock = readIndex(indexBlockPosition, indexBlockSize, queryStatistics);
+				if (indexBlock == null) {
 					LOGGER.warning("reading the current index block has failed");
 					return -1;
 				}
 
 				// put the index block in the map
-				this.map.put(indexCacheEntryKey, indexBlock);
+				synchronized (stripe) {
+					stripe.put(indexCacheEntryKey, indexBlock);
+				}
 			}
 
 			// calculate the address of the index entry inside the index block
 			long indexEntryInBlock = blockNumber % INDEX_ENTRIES_PER_BLOCK;
-			int addressInIndexBlock = (int) (indexEntryInBlock * SubFileParameter.BYTES_PER_INDEX_ENTRY);
+			int addressInIndexBlock = (int) (indexEntryInBlock * subFileParameter.indexEntrySize);
 
 			// return the real index entry
-			return Deserializer.getFiveBytesLong(indexBlock, addressInIndexBlock);
+			return decodeIndexEntry(indexBlock, addressInIndexBlock, blockSize);
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 			return -1;
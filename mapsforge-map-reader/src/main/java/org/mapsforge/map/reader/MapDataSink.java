@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tile;
+
+/**
+ * Receives the map data of a query as a stream of elements, see {@link MapDatabase#readMapData(Tile, MapDataSink)}.
+ * <p>
+ * The records which are passed to the callback methods are reused by the {@link MapDatabase} for all elements. They
+ * are only valid during the callback and must not be stored.
+ */
+public interface MapDataSink {
+	/**
+	 * Called for each POI of the query.
+	 * 
+	 * @param poiRecord
+	 *            the data of the POI, only valid during this call.
+	 */
+	void pointOfInterest(PoiRecord poiRecord);
+
+	/**
+	 * Called once after all elements of the query have been passed to this sink.
+	 * 
+	 * @param isWater
+	 *            true if the read area is completely covered by water, false otherwise.
+	 */
+	void queryCompleted(boolean isWater);
+
+	/**
+	 * Called for each way of the query.
+	 * 
+	 * @param wayRecord
+	 *            the data of the way, only valid during this call.
+	 */
+	void way(WayRecord wayRecord);
+}
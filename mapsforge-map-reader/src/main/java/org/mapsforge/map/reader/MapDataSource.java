@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only source with random access to the content of a map file.
+ * <p>
+ * A {@link MapFile} reads its header, index and blocks only via this interface, so that a map can be read from a
+ * plain file or an uncompressed entry of a zip or tar archive ({@link FileDataSource}) or from memory
+ * ({@link ByteBufferDataSource}).
+ * <p>
+ * Implementations must be thread-safe, the same source is read concurrently by all {@link MapDatabase} instances
+ * which are attached to the same map file.
+ */
+public interface MapDataSource extends Closeable {
+	/**
+	 * Returns the whole content of this source as a buffer, if it is available in memory or memory-mapped. The map
+	 * file is then decoded directly from the buffer via absolute get operations, which avoids all read calls and
+	 * copies.
+	 * 
+	 * @return a buffer whose index 0 is the first byte of the content, or null if the content must be read via
+	 *         {@link #read(long, byte[], int, int)}.
+	 */
+	ByteBuffer getByteBuffer();
+
+	/**
+	 * @return the length of the content in bytes.
+	 * @throws IOException
+	 *             if an error occurs while determining the length.
+	 */
+	long length() throws IOException;
+
+	/**
+	 * Reads bytes from the given position of the content. Fewer bytes than requested are only returned if the end of
+	 * the content has been reached.
+	 * 
+	 * @param position
+	 *            the position in the content from which the bytes should be read.
+	 * @param buffer
+	 *            the buffer into which the bytes should be read.
+	 * @param offset
+	 *            the start offset in the buffer.
+	 * @param length
+	 *            the number of bytes to read.
+	 * @return the number of read bytes.
+	 * @throws IOException
+	 *             if an error occurs while reading.
+	 */
+	int read(long position, byte[] buffer, int offset, int length) throws IOException;
+}
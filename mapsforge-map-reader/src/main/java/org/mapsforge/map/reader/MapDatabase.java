@@ -16,13 +16,16 @@ package org.mapsforge.map.reader;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.core.util.MercatorProjection;
@@ -34,11 +37,42 @@ import org.mapsforge.map.reader.header.SubFileParameter;
 /**
  * A class for reading binary map files.
  * <p>
- * This class is not thread-safe. Each thread should use its own instance.
+ * This class is not thread-safe. Each thread should use its own instance. Multiple instances can share one opened
+ * {@link MapFile} with its header and index cache via {@link #openFile(MapFile)}.
  * 
  * @see <a href="https://code.google.com/p/mapsforge/wiki/SpecificationBinaryMapFile">Specification</a>
  */
 public class MapDatabase {
+	/**
+	 * Counts the elements which are passed to the sink of a query.
+	 */
+	private static class CountingMapDataSink implements MapDataSink {
+		private final MapDataSink mapDataSink;
+		private final QueryStatistics queryStatistics;
+
+		CountingMapDataSink(MapDataSink mapDataSink, QueryStatistics queryStatistics) {
+			this.mapDataSink = mapDataSink;
+			this.queryStatistics = queryStatistics;
+		}
+
+		@Override
+		public void pointOfInterest(PoiRecord poiRecord) {
+			++this.queryStatistics.poisReturned;
+			this.mapDataSink.pointOfInterest(poiRecord);
+		}
+
+		@Override
+		public void queryCompleted(boolean isWater) {
+			this.mapDataSink.queryCompleted(isWater);
+		}
+
+		@Override
+		public void way(WayRecord wayRecord) {
+			++this.queryStatistics.waysReturned;
+			this.mapDataSink.way(wayRecord);
+		}
+	}
+
 	/**
 	 * Bitmask to extract the block offset from an index entry.
 	 */
@@ -64,11 +98,6 @@ public class MapDatabase {
 	 */
 	private static final String DEBUG_SIGNATURE_WAY = "way signature: ";
 
-	/**
-	 * Amount of cache blocks that the index cache should store.
-	 */
-	private static final int INDEX_CACHE_SIZE = 64;
-
 	/**
 	 * Error message for an invalid first way offset.
 	 */
@@ -77,14 +106,14 @@ public class MapDatabase {
 	private static final Logger LOGGER = Logger.getLogger(MapDatabase.class.getName());
 
 	/**
-	 * Maximum way nodes sequence length which is considered as valid.
+	 * Maximum number of map objects in the zoom table which is considered as valid.
 	 */
-	private static final int MAXIMUM_WAY_NODES_SEQUENCE_LENGTH = 8192;
+	private static final int MAXIMUM_ZOOM_TABLE_OBJECTS = 65536;
 
 	/**
-	 * Maximum number of map objects in the zoom table which is considered as valid.
+	 * Distance in bytes between two bytes which are touched to load a memory-mapped block.
 	 */
-	private static final int MAXIMUM_ZOOM_TABLE_OBJECTS = 65536;
+	private static final int PAGE_SIZE = 4096;
 
 	/**
 	 * Bitmask for the optional POI feature "elevation".
@@ -116,8 +145,6 @@ public class MapDatabase {
 	 */
 	private static final int POI_NUMBER_OF_TAGS_BITMASK = 0x0f;
 
-	private static final String READ_ONLY_MODE = "r";
-
 	/**
 	 * Length of the debug signature at the beginning of each block.
 	 */
@@ -134,24 +161,9 @@ public class MapDatabase {
 	private static final byte SIGNATURE_LENGTH_WAY = 32;
 
 	/**
-	 * The key of the elevation OpenStreetMap tag.
+	 * Bitmask for the optional way bit-packed encoding.
 	 */
-	private static final String TAG_KEY_ELE = "ele";
-
-	/**
-	 * The key of the house number OpenStreetMap tag.
-	 */
-	private static final String TAG_KEY_HOUSE_NUMBER = "addr:housenumber";
-
-	/**
-	 * The key of the name OpenStreetMap tag.
-	 */
-	private static final String TAG_KEY_NAME = "name";
-
-	/**
-	 * The key of the reference OpenStreetMap tag.
-	 */
-	private static final String TAG_KEY_REF = "ref";
+	private static final int WAY_FEATURE_BIT_PACKED_ENCODING = 0x02;
 
 	/**
 	 * Bitmask for the optional way data blocks byte.
@@ -198,40 +210,67 @@ public class MapDatabase {
 	 */
 	private static final int WAY_NUMBER_OF_TAGS_BITMASK = 0x0f;
 
+	private BlockCache blockCache;
+	private int clipMargin;
 	private IndexCache databaseIndexCache;
 	private long fileSize;
-	private RandomAccessFile inputFile;
+	private MapFile mapFile;
 	private MapFileHeader mapFileHeader;
+	private boolean mapFileOwner;
+	private PoiRecord poiRecord;
+	private MapPrefetcher prefetcher;
+	private QueryListener queryListener;
+	private long queryStartTime;
+	private QueryStatistics queryStatistics;
 	private ReadBuffer readBuffer;
 	private String signatureBlock;
 	private String signaturePoi;
 	private String signatureWay;
+	private float simplificationTolerance;
 	private int tileLatitude;
 	private int tileLongitude;
+	private WayClipper wayClipper;
+	private WayRecord wayRecord;
+	private WaySimplifier waySimplifier;
 
 	/**
 	 * Closes the map file and destroys all internal caches. Has no effect if no map file is currently opened.
+	 * <p>
+	 * A shared map file which has been attached via {@link #openFile(MapFile)} is only detached but not closed.
 	 */
 	public void closeFile() {
 		try {
-			this.mapFileHeader = null;
-
-			if (this.databaseIndexCache != null) {
-				this.databaseIndexCache.destroy();
-				this.databaseIndexCache = null;
-			}
-
-			if (this.inputFile != null) {
-				this.inputFile.close();
-				this.inputFile = null;
+			MapFile currentMapFile = this.mapFile;
+			boolean closeMapFile = this.mapFileOwner;
+			if (this.readBuffer != null) {
+				this.readBuffer.destroy();
 			}
 
+			this.blockCache = null;
+			this.databaseIndexCache = null;
+			this.mapFile = null;
+			this.mapFileHeader = null;
+			this.mapFileOwner = false;
+			this.poiRecord = null;
+			this.prefetcher = null;
 			this.readBuffer = null;
+			this.wayRecord = null;
+
+			if (currentMapFile != null && closeMapFile) {
+				currentMapFile.close();
+			}
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 		}
 	}
 
+	/**
+	 * Disables the clipping of ways to the queried tile, see {@link #setClipMargin(int)}.
+	 */
+	public void disableClipping() {
+		this.wayClipper = null;
+	}
+
 	/**
 	 * @return the metadata for the current map file.
 	 * @throws IllegalStateException
@@ -244,11 +283,19 @@ public class MapDatabase {
 		return this.mapFileHeader.getMapFileInfo();
 	}
 
+	/**
+	 * @return true if decoded blocks of the current map file are cached, false otherwise.
+	 * @see MapFileOptions#setBlockCacheSize(int)
+	 */
+	public boolean hasBlockCache() {
+		return this.blockCache != null;
+	}
+
 	/**
 	 * @return true if a map file is currently opened, false otherwise.
 	 */
 	public boolean hasOpenFile() {
-		return this.inputFile != null;
+		return this.mapFile != null;
 	}
 
 	/**
@@ -261,36 +308,59 @@ public class MapDatabase {
 	 *             if the given map file is null.
 	 */
 	public FileOpenResult openFile(File mapFile) {
+		return openFile(mapFile, false);
+	}
+
+	/**
+	 * Opens the given map file, reads its header data and validates them.
+	 * <p>
+	 * If memory mapping is enabled, the whole file is mapped into memory and all index entries and blocks are decoded
+	 * directly from the mapping. This avoids a system call and a copy for each block, which pays off if the file is
+	 * already in the page cache. Files which are too large to be mapped as a whole are read conventionally.
+	 * 
+	 * @param mapFile
+	 *            the map file.
+	 * @param memoryMapped
+	 *            true if the map file should be memory-mapped, false otherwise.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map file is null.
+	 */
+	public FileOpenResult openFile(File mapFile, boolean memoryMapped) {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setMemoryMapped(memoryMapped);
+		return openFile(mapFile, mapFileOptions);
+	}
+
+	/**
+	 * Opens the given map file with the given options, reads its header data and validates them.
+	 * 
+	 * @param mapFile
+	 *            the map file.
+	 * @param mapFileOptions
+	 *            the options for opening and caching the map file.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map file or options are null.
+	 */
+	public FileOpenResult openFile(File mapFile, MapFileOptions mapFileOptions) {
 		try {
 			if (mapFile == null) {
 				throw new IllegalArgumentException("mapFile must not be null");
+			} else if (mapFileOptions == null) {
+				throw new IllegalArgumentException("mapFileOptions must not be null");
 			}
 
 			// make sure to close any previously opened file first
 			closeFile();
 
 			// check if the file exists and is readable
-			if (!mapFile.exists()) {
-				return new FileOpenResult("file does not exist: " + mapFile);
-			} else if (!mapFile.isFile()) {
-				return new FileOpenResult("not a file: " + mapFile);
-			} else if (!mapFile.canRead()) {
-				return new FileOpenResult("cannot read file: " + mapFile);
-			}
-
-			// open the file in read only mode
-			this.inputFile = new RandomAccessFile(mapFile, READ_ONLY_MODE);
-			this.fileSize = this.inputFile.length();
-
-			this.readBuffer = new ReadBuffer(this.inputFile);
-			this.mapFileHeader = new MapFileHeader();
-			FileOpenResult fileOpenResult = this.mapFileHeader.readHeader(this.readBuffer, this.fileSize);
+			FileOpenResult fileOpenResult = MapFile.checkFile(mapFile);
 			if (!fileOpenResult.isSuccess()) {
-				closeFile();
 				return fileOpenResult;
 			}
 
-			return FileOpenResult.SUCCESS;
+			return openMapFile(new FileDataSource(mapFile, mapFileOptions.isMemoryMapped()), mapFileOptions);
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 			// make sure that the file is closed
@@ -299,6 +369,145 @@ public class MapDatabase {
 		}
 	}
 
+	/**
+	 * Opens the map file in the given data source, reads its header data and validates them. The data source is
+	 * closed together with the map file by {@link #closeFile()}, also if the map file cannot be opened.
+	 * 
+	 * @param dataSource
+	 *            the data source which contains the map file.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given data source is null.
+	 */
+	public FileOpenResult openFile(MapDataSource dataSource) {
+		try {
+			if (dataSource == null) {
+				throw new IllegalArgumentException("dataSource must not be null");
+			}
+
+			// make sure to close any previously opened file first
+			closeFile();
+
+			return openMapFile(dataSource, new MapFileOptions());
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			// make sure that the data source is closed
+			closeFile();
+			return new FileOpenResult(e.getMessage());
+		}
+	}
+
+	/**
+	 * Attaches this instance to the given map file which may be shared with other threads. Each thread must use its
+	 * own MapDatabase instance, while the header and the index cache are shared via the map file.
+	 * <p>
+	 * Calling {@link #closeFile()} afterwards does not close the shared map file.
+	 * 
+	 * @param mapFile
+	 *            the opened map file.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map file is null.
+	 */
+	public FileOpenResult openFile(MapFile mapFile) {
+		if (mapFile == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		}
+
+		// make sure to close any previously opened file first
+		closeFile();
+
+		if (mapFile.isClosed()) {
+			return new FileOpenResult("map file has been closed");
+		}
+
+		attachMapFile(mapFile, false);
+		return FileOpenResult.SUCCESS;
+	}
+
+	/**
+	 * Determines the status of the given tile from the index of the map file without reading any block data.
+	 * <p>
+	 * A block is empty if its size according to the index is zero. A tile whose blocks are all empty does not need to
+	 * be queried via {@link #readMapData(Tile)}. If the status is {@link TileStatus#WATER}, the tile can be rendered as
+	 * water right away.
+	 * 
+	 * @param tile
+	 *            the tile whose status should be determined.
+	 * @return the status of the tile or null if the index could not be read.
+	 */
+	public TileStatus queryTileStatus(Tile tile) {
+		startQuery();
+		TileStatus tileStatus = readTileStatus(tile);
+		completeQuery(0, 0);
+		return tileStatus;
+	}
+
+	/**
+	 * Determines the status of all tiles in the given range from the index of the map file without reading any block
+	 * data. Each tile is determined like in {@link #queryTileStatus(Tile)}, the index entries are read via the index
+	 * cache.
+	 * 
+	 * @param fromTileX
+	 *            the X number of the left column of tiles.
+	 * @param fromTileY
+	 *            the Y number of the top row of tiles.
+	 * @param toTileX
+	 *            the X number of the right column of tiles (inclusive).
+	 * @param toTileY
+	 *            the Y number of the bottom row of tiles (inclusive).
+	 * @param zoomLevel
+	 *            the zoom level of the tiles.
+	 * @return the status of each tile indexed by row and column relative to the first tile, or null if the index
+	 *         could not be read.
+	 * @throws IllegalArgumentException
+	 *             if the range is empty or too large.
+	 */
+	public TileStatus[][] queryTileStatus(long fromTileX, long fromTileY, long toTileX, long toTileY, byte zoomLevel) {
+		if (fromTileX > toTileX || fromTileY > toTileY) {
+			throw new IllegalArgumentException("invalid tile range: " + fromTileX + ", " + fromTileY + ", " + toTileX
+					+ ", " + toTileY);
+		} else if (toTileX - fromTileX >= Integer.MAX_VALUE || toTileY - fromTileY >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("tile range too large: " + fromTileX + ", " + fromTileY + ", "
+					+ toTileX + ", " + toTileY);
+		}
+
+		startQuery();
+		TileStatus[][] tileStatus = new TileStatus[(int) (toTileY - fromTileY + 1)][(int) (toTileX - fromTileX + 1)];
+		for (long tileY = fromTileY; tileY <= toTileY && tileStatus != null; ++tileY) {
+			for (long tileX = fromTileX; tileX <= toTileX; ++tileX) {
+				TileStatus status = readTileStatus(new Tile(tileX, tileY, zoomLevel));
+				if (status == null) {
+					tileStatus = null;
+					break;
+				}
+				tileStatus[(int) (tileY - fromTileY)][(int) (tileX - fromTileX)] = status;
+			}
+		}
+		completeQuery(0, 0);
+		return tileStatus;
+	}
+
+	/**
+	 * Reads all map data inside the given bounding box at the given zoom level.
+	 * <p>
+	 * The blocks are calculated directly from the bounding box. Only the POIs inside the bounding box and the ways
+	 * whose bounding box intersects it are returned. A way which is stored in multiple blocks is returned only once.
+	 * The block cache is not used by this method.
+	 * 
+	 * @param boundingBox
+	 *            the area of the read map data.
+	 * @param zoomLevel
+	 *            the zoom level of the read map data.
+	 * @return the read map data.
+	 */
+	public MapReadResult readMapData(BoundingBox boundingBox, byte zoomLevel) {
+		startQuery();
+		MapReadResult mapReadResult = readBoundingBox(boundingBox, zoomLevel);
+		completeQuery(mapReadResult);
+		return mapReadResult;
+	}
+
 	/**
 	 * Reads all map data for the area covered by the given tile at the tile zoom level.
 	 * 
@@ -307,84 +516,527 @@ public class MapDatabase {
 	 * @return the read map data.
 	 */
 	public MapReadResult readMapData(Tile tile) {
+		startQuery();
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		MapReadResult mapReadResult = null;
+		if (readMapData(tile, null, mapReadResultBuilder, mapReadResultBuilder)) {
+			mapReadResult = mapReadResultBuilder.build();
+		}
+		completeQuery(mapReadResult);
+		return mapReadResult;
+	}
+
+	/**
+	 * Reads the map data for the area covered by the given tile at the tile zoom level, restricted to the elements
+	 * which are accepted by the given filter.
+	 * <p>
+	 * Rejected elements are skipped right after their tag IDs have been read, their names and coordinates are never
+	 * decoded. The block cache is not used by this method.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param tagFilter
+	 *            the filter which decides about the elements to be read.
+	 * @return the read map data.
+	 */
+	public MapReadResult readMapData(Tile tile, TagFilter tagFilter) {
+		startQuery();
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		MapReadResult mapReadResult = null;
+		if (readMapData(tile, tagFilter, mapReadResultBuilder, null)) {
+			mapReadResult = mapReadResultBuilder.build();
+		}
+		completeQuery(mapReadResult);
+		return mapReadResult;
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level and passes each element to the
+	 * given sink.
+	 * <p>
+	 * In contrast to {@link #readMapData(Tile)}, no objects are created for the elements. The sink receives reusable
+	 * records which are only valid during each callback, the names of the elements are still decoded into strings.
+	 * The block cache is not used by this method, callers which benefit from cached blocks should use
+	 * {@link #readMapData(Tile)} if {@link #hasBlockCache()} returns true.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 */
+	public boolean readMapData(Tile tile, MapDataSink mapDataSink) {
+		return readMapData(tile, null, mapDataSink);
+	}
+
+	/**
+	 * Reads the map data for the area covered by the given tile at the tile zoom level and passes each element which
+	 * is accepted by the given filter to the given sink.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param tagFilter
+	 *            the filter which decides about the elements to be read.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 * @see #readMapData(Tile, MapDataSink)
+	 * @see #readMapData(Tile, TagFilter)
+	 */
+	public boolean readMapData(Tile tile, TagFilter tagFilter, MapDataSink mapDataSink) {
+		startQuery();
+		MapDataSink queryDataSink = mapDataSink;
+		if (this.queryStatistics != null) {
+			queryDataSink = new CountingMapDataSink(mapDataSink, this.queryStatistics);
+		}
+		boolean success = readMapData(tile, tagFilter, queryDataSink, null);
+		completeQuery(0, 0);
+		return success;
+	}
+
+	/**
+	 * Reads all map data for the areas covered by the given tiles at their tile zoom levels.
+	 * <p>
+	 * Each block which is needed by at least one of the tiles is read and decoded only once. The blocks are read in
+	 * the order of their position in the file and adjacent blocks are merged into a single read operation.
+	 * 
+	 * @param tiles
+	 *            the tiles which define area and zoom level of read map data.
+	 * @return the read map data for each tile, the value is null if the data for a tile could not be read.
+	 */
+	public Map<Tile, MapReadResult> readMapData(Collection<Tile> tiles) {
+		startQuery();
+		Map<Tile, MapReadResult> mapReadResults = new HashMap<Tile, MapReadResult>();
 		try {
-			prepareExecution();
-			QueryParameters queryParameters = new QueryParameters();
-			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+			List<TileQuery> tileQueries = new ArrayList<TileQuery>();
+			Map<BlockCacheKey, QueryBlock> queryBlocks = new HashMap<BlockCacheKey, QueryBlock>();
+
+			for (Tile tile : tiles) {
+				QueryParameters queryParameters = new QueryParameters();
+				queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+
+				// get and check the sub-file for the query zoom level
+				SubFileParameter subFileParameter = this.mapFileHeader
+						.getSubFileParameter(queryParameters.queryZoomLevel);
+				if (subFileParameter == null) {
+					LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+					mapReadResults.put(tile, null);
+					continue;
+				}
 
-			// get and check the sub-file for the query zoom level
-			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
-			if (subFileParameter == null) {
-				LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
-				return null;
+				QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+				QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+				TileQuery tileQuery = new TileQuery(tile, queryParameters, subFileParameter);
+				tileQueries.add(tileQuery);
+
+				// collect the blocks of the tile, each block is only looked up once
+				for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
+					for (long column = queryParameters.fromBlockX; column <= queryParameters.toBlockX; ++column) {
+						long blockNumber = row * subFileParameter.blocksWidth + column;
+						BlockCacheKey blockCacheKey = new BlockCacheKey(subFileParameter, blockNumber);
+						QueryBlock queryBlock = queryBlocks.get(blockCacheKey);
+						if (queryBlock == null) {
+							queryBlock = createQueryBlock(subFileParameter, blockNumber);
+							queryBlocks.put(blockCacheKey, queryBlock);
+						}
+						tileQuery.queryBlocks.add(queryBlock);
+					}
+				}
 			}
 
-			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
-			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+			// read all blocks which are neither empty nor cached in the order of their file position
+			List<QueryBlock> blocksToRead = new ArrayList<QueryBlock>();
+			for (QueryBlock queryBlock : queryBlocks.values()) {
+				if (queryBlock.blockSize > 0 && queryBlock.decodedBlock == null) {
+					blocksToRead.add(queryBlock);
+				}
+			}
+			Collections.sort(blocksToRead);
+			readQueryBlocks(blocksToRead);
 
-			return processBlocks(queryParameters, subFileParameter);
+			for (TileQuery tileQuery : tileQueries) {
+				mapReadResults.put(tileQuery.tile, processTileQuery(tileQuery));
+			}
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
-			return null;
+		}
+
+		if (this.queryStatistics != null) {
+			long poisReturned = 0;
+			long waysReturned = 0;
+			for (MapReadResult mapReadResult : mapReadResults.values()) {
+				if (mapReadResult != null) {
+					poisReturned += mapReadResult.pointOfInterests.size();
+					waysReturned += mapReadResult.ways.size();
+				}
+			}
+			completeQuery(poisReturned, waysReturned);
+		}
+		return mapReadResults;
+	}
+
+	/**
+	 * Enables the clipping of ways to the queried tile. The way nodes are clipped to the area of the tile plus the
+	 * given margin while they are decoded, so that large polygons and long lines only contain the part which may be
+	 * visible on the tile. Closed ways are clipped as polygons and stay closed. Open ways are only shortened at both
+	 * ends and are not split where they leave the clipped area and enter it again. Ways which lie completely outside
+	 * of it are skipped.
+	 * <p>
+	 * Clipping is disabled by default. It applies to {@link #readMapData(Tile)} and its variants with a filter or a
+	 * sink, the block cache is not used by these methods while clipping is enabled.
+	 * 
+	 * @param newClipMargin
+	 *            the margin around the tile in pixels, it should cover the widest stroke of the rendered ways.
+	 * @throws IllegalArgumentException
+	 *             if the margin is negative.
+	 */
+	public void setClipMargin(int newClipMargin) {
+		if (newClipMargin < 0) {
+			throw new IllegalArgumentException("clipMargin must not be negative: " + newClipMargin);
+		}
+		this.clipMargin = newClipMargin;
+		if (this.wayClipper == null) {
+			this.wayClipper = new WayClipper();
 		}
 	}
 
-	private void decodeWayNodesDoubleDelta(float[] waySegment) {
-		// get the first way node latitude offset (VBE-S)
-		int wayNodeLatitude = this.tileLatitude + this.readBuffer.readSignedInt();
+	/**
+	 * Enables the simplification of ways depending on the zoom level of the queried tile. Consecutive way nodes whose
+	 * distance is below the given tolerance in both directions are dropped while the way nodes are decoded, so that
+	 * tiles with a lower zoom level than the stored detail do not contain nodes which cannot be distinguished. The
+	 * first and the last way node of each coordinate block are always kept.
+	 * <p>
+	 * Simplification is disabled by default. It applies to {@link #readMapData(Tile)} and its variants with a filter or
+	 * a sink, the block cache is not used by these methods while simplification is enabled.
+	 * 
+	 * @param newSimplificationTolerance
+	 *            the tolerance in pixels, a tolerance of one drops all nodes within the same pixel. Zero disables the
+	 *            simplification.
+	 * @throws IllegalArgumentException
+	 *             if the tolerance is negative or not a number.
+	 */
+	public void setSimplificationTolerance(float newSimplificationTolerance) {
+		if (!(newSimplificationTolerance >= 0)) {
+			throw new IllegalArgumentException("simplificationTolerance must not be negative: "
+					+ newSimplificationTolerance);
+		}
+		this.simplificationTolerance = newSimplificationTolerance;
+		if (newSimplificationTolerance == 0) {
+			this.waySimplifier = null;
+		} else if (this.waySimplifier == null) {
+			this.waySimplifier = new WaySimplifier();
+		}
+	}
 
-		// get the first way node longitude offset (VBE-S)
-		int wayNodeLongitude = this.tileLongitude + this.readBuffer.readSignedInt();
+	/**
+	 * Sets the prefetcher which is notified about every tile that is queried via this database, so that it can load the
+	 * neighbouring blocks in the background. The prefetcher must read the same map file as this database, it is
+	 * removed when the file is closed.
+	 * 
+	 * @param prefetcher
+	 *            the prefetcher for the queried tiles, null to disable prefetching.
+	 */
+	public void setPrefetcher(MapPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
 
-		// store the first way node
-		waySegment[1] = wayNodeLatitude;
-		waySegment[0] = wayNodeLongitude;
+	/**
+	 * Sets the listener which receives the statistics of each query via this database: the index cache hits and
+	 * misses, the number of blocks and bytes read from the file, the number of ways skipped by their tile bitmask and
+	 * decoded, the number of returned elements and the time spent on I/O and decoding. Each call of a public query
+	 * method is reported as one query, including {@link #queryTileStatus(Tile)}.
+	 * <p>
+	 * No statistics are collected while no listener is set, which is the default.
+	 * 
+	 * @param queryListener
+	 *            the listener for the query statistics, null to disable the statistics.
+	 */
+	public void setQueryListener(QueryListener queryListener) {
+		this.queryListener = queryListener;
+		if (queryListener == null) {
+			this.queryStatistics = null;
+		} else if (this.queryStatistics == null) {
+			this.queryStatistics = new QueryStatistics();
+		}
+	}
 
-		int previousSingleDeltaLatitude = 0;
-		int previousSingleDeltaLongitude = 0;
+	/**
+	 * Reads the index entries and blocks which are needed for the given tile, so that a later query finds them in the
+	 * caches. Decoded blocks are only kept if the map file has a block cache, otherwise only the index cache and the
+	 * file system cache of the operating system are filled. Blocks which are already in the block cache are skipped.
+	 * 
+	 * @param tile
+	 *            the tile whose blocks should be loaded.
+	 * @return the number of bytes which have been read from the file.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	int prefetchBlocks(Tile tile) throws IOException {
+		QueryParameters queryParameters = new QueryParameters();
+		queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
 
-		for (int wayNodesIndex = 2; wayNodesIndex < waySegment.length; wayNodesIndex += 2) {
-			// get the way node latitude double-delta offset (VBE-S)
-			int doubleDeltaLatitude = this.readBuffer.readSignedInt();
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+		if (subFileParameter == null) {
+			return 0;
+		}
+
+		QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+		QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+		int bytesRead = 0;
+		for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
+			for (long column = queryParameters.fromBlockX; column <= queryParameters.toBlockX; ++column) {
+				long blockNumber = row * subFileParameter.blocksWidth + column;
+				if (this.blockCache != null && this.blockCache.get(subFileParameter, blockNumber) != null) {
+					continue;
+				}
+
+				long blockPointer = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+						this.queryStatistics) & BITMASK_INDEX_OFFSET;
+				int blockSize = getBlockSize(subFileParameter, blockNumber, blockPointer);
+				if (blockSize <= 0
+						|| !this.readBuffer.readFromFile(subFileParameter.startAddress + blockPointer, blockSize)) {
+					continue;
+				}
+				bytesRead += blockSize;
+
+				if (this.blockCache == null) {
+					// touch each page of the block in case that the map file is memory-mapped
+					for (int bufferPosition = 0; bufferPosition < blockSize; bufferPosition += PAGE_SIZE) {
+						this.readBuffer.setBufferPosition(bufferPosition);
+						this.readBuffer.readByte();
+					}
+					continue;
+				}
+
+				if (this.mapFileHeader.getMapFileInfo().compressedBlocks && !this.readBuffer.inflate(blockSize)) {
+					continue;
+				}
+				calculateTileCoordinates(subFileParameter, row, column);
+				try {
+					DecodedBlock decodedBlock = decodeBlock(subFileParameter);
+					if (decodedBlock != null) {
+						this.blockCache.put(subFileParameter, blockNumber, decodedBlock);
+					}
+				} catch (IndexOutOfBoundsException e) {
+					LOGGER.log(Level.SEVERE, null, e);
+				}
+			}
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Reads, decodes and checks a single block of the given sub-file for the {@link MapFileVerifier}. The sizes and
+	 * the element counts of the block are added to the given statistics, all decoded elements are passed to the sink.
+	 * 
+	 * @param subFileParameter
+	 *            the sub-file which contains the block.
+	 * @param blockNumber
+	 *            the number of the block in the sub-file.
+	 * @param mapFileStatistics
+	 *            the statistics to which the block should be added.
+	 * @param mapDataSink
+	 *            the sink which receives all elements of the block.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	void verifyBlock(SubFileParameter subFileParameter, long blockNumber, MapFileStatistics mapFileStatistics,
+			MapDataSink mapDataSink) throws IOException {
+		long blockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+				this.queryStatistics);
+		if (blockIndexEntry == -1) {
+			mapFileStatistics.addError(subFileParameter, blockNumber, "invalid index entry");
+			return;
+		}
+
+		long blockPointer = blockIndexEntry & BITMASK_INDEX_OFFSET;
+		long nextBlockPointer = getBlockEnd(subFileParameter, blockNumber, blockPointer);
+		if (blockPointer < 1 || nextBlockPointer < blockPointer || nextBlockPointer > subFileParameter.subFileSize) {
+			mapFileStatistics.addError(subFileParameter, blockNumber, "invalid block pointers: " + blockPointer + ", "
+					+ nextBlockPointer);
+			return;
+		}
+
+		long blockSize = nextBlockPointer - blockPointer;
+		mapFileStatistics.addBlock(blockSize, (blockIndexEntry & BITMASK_INDEX_WATER) != 0);
+		if (blockSize == 0) {
+			return;
+		} else if (blockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
+			mapFileStatistics.addError(subFileParameter, blockNumber, "block too large: " + blockSize);
+			return;
+		} else if (!readBlock(subFileParameter.startAddress + blockPointer, (int) blockSize)) {
+			mapFileStatistics.addError(subFileParameter, blockNumber, "reading block has failed: " + blockSize);
+			return;
+		}
+
+		calculateTileCoordinates(subFileParameter, blockNumber / subFileParameter.blocksWidth, blockNumber
+				% subFileParameter.blocksWidth);
+		try {
+			int[][] zoomTable = processBlockSignature() ? readZoomTable(subFileParameter) : null;
+			if (zoomTable == null) {
+				mapFileStatistics.addError(subFileParameter, blockNumber, "invalid block header");
+				return;
+			}
+			mapFileStatistics.addZoomTable(subFileParameter, zoomTable);
+
+			QueryParameters queryParameters = new QueryParameters();
+			queryParameters.queryZoomLevel = subFileParameter.zoomLevelMax;
+			if (!processBlockElements(queryParameters, subFileParameter, zoomTable, mapDataSink)) {
+				mapFileStatistics.addError(subFileParameter, blockNumber, "invalid block elements");
+			}
+		} catch (IndexOutOfBoundsException e) {
+			mapFileStatistics.addError(subFileParameter, blockNumber, "block data out of bounds: " + e.getMessage());
+		}
+	}
 
-			// get the way node longitude double-delta offset (VBE-S)
-			int doubleDeltaLongitude = this.readBuffer.readSignedInt();
+	private void attachMapFile(MapFile newMapFile, boolean owner) {
+		this.mapFile = newMapFile;
+		this.mapFileOwner = owner;
+		this.blockCache = newMapFile.blockCache;
+		this.databaseIndexCache = newMapFile.indexCache;
+		this.fileSize = newMapFile.fileSize;
+		this.mapFileHeader = newMapFile.mapFileHeader;
+		this.readBuffer = newMapFile.createReadBuffer();
+		this.poiRecord = new PoiRecord(this.mapFileHeader.getMapFileInfo().poiTags, this.readBuffer);
+		this.wayRecord = new WayRecord(this.mapFileHeader.getMapFileInfo().wayTags, this.readBuffer);
+	}
 
-			int singleDeltaLatitude = doubleDeltaLatitude + previousSingleDeltaLatitude;
-			int singleDeltaLongitude = doubleDeltaLongitude + previousSingleDeltaLongitude;
+	/**
+	 * Calculates the top-left coordinates of the base tile which is covered by the given block.
+	 */
+	private void calculateTileCoordinates(SubFileParameter subFileParameter, long row, long column) {
+		double tileLatitudeDeg = MercatorProjection.tileYToLatitude(subFileParameter.boundaryTileTop + row,
+				subFileParameter.baseZoomLevel);
+		double tileLongitudeDeg = MercatorProjection.tileXToLongitude(subFileParameter.boundaryTileLeft + column,
+				subFileParameter.baseZoomLevel);
+		this.tileLatitude = (int) (tileLatitudeDeg * 1000000);
+		this.tileLongitude = (int) (tileLongitudeDeg * 1000000);
+	}
 
-			wayNodeLatitude = wayNodeLatitude + singleDeltaLatitude;
-			wayNodeLongitude = wayNodeLongitude + singleDeltaLongitude;
+	/**
+	 * Reports the statistics of the finished query to the query listener, if one is set.
+	 */
+	private void completeQuery(long poisReturned, long waysReturned) {
+		if (this.queryStatistics != null) {
+			this.queryStatistics.queryNanos = System.nanoTime() - this.queryStartTime;
+			this.queryStatistics.poisReturned += poisReturned;
+			this.queryStatistics.waysReturned += waysReturned;
+			this.queryListener.queryCompleted(this.queryStatistics);
+		}
+	}
 
-			waySegment[wayNodesIndex + 1] = wayNodeLatitude;
-			waySegment[wayNodesIndex] = wayNodeLongitude;
+	private void completeQuery(MapReadResult mapReadResult) {
+		if (mapReadResult == null) {
+			completeQuery(0, 0);
+		} else {
+			completeQuery(mapReadResult.pointOfInterests.size(), mapReadResult.ways.size());
+		}
+	}
 
-			previousSingleDeltaLatitude = singleDeltaLatitude;
-			previousSingleDeltaLongitude = singleDeltaLongitude;
+	/**
+	 * Creates a new query block and looks up its position, size and water flag in the index.
+	 */
+	private QueryBlock createQueryBlock(SubFileParameter subFileParameter, long blockNumber) {
+		QueryBlock queryBlock = new QueryBlock(subFileParameter, blockNumber);
+
+		long blockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+				this.queryStatistics);
+		queryBlock.isWater = (blockIndexEntry & BITMASK_INDEX_WATER) != 0;
+		queryBlock.blockPointer = blockIndexEntry & BITMASK_INDEX_OFFSET;
+		queryBlock.blockSize = getBlockSize(subFileParameter, blockNumber, queryBlock.blockPointer);
+
+		if (queryBlock.blockSize > 0 && this.blockCache != null) {
+			queryBlock.decodedBlock = this.blockCache.get(subFileParameter, blockNumber);
+			if (queryBlock.decodedBlock != null && this.queryStatistics != null) {
+				++this.queryStatistics.blockCacheHits;
+			}
 		}
+		return queryBlock;
 	}
 
-	private void decodeWayNodesSingleDelta(float[] waySegment) {
-		// get the first way node latitude single-delta offset (VBE-S)
-		int wayNodeLatitude = this.tileLatitude + this.readBuffer.readSignedInt();
+	/**
+	 * Decodes all elements of the current block up to the highest zoom level of the sub-file.
+	 * 
+	 * @return the decoded block or null if the block is invalid.
+	 */
+	private DecodedBlock decodeBlock(SubFileParameter subFileParameter) {
+		if (!processBlockSignature()) {
+			return null;
+		}
 
-		// get the first way node longitude single-delta offset (VBE-S)
-		int wayNodeLongitude = this.tileLongitude + this.readBuffer.readSignedInt();
+		int[][] zoomTable = readZoomTable(subFileParameter);
+		if (zoomTable == null) {
+			return null;
+		}
 
-		// store the first way node
-		waySegment[1] = wayNodeLatitude;
-		waySegment[0] = wayNodeLongitude;
+		QueryParameters queryParameters = new QueryParameters();
+		queryParameters.queryZoomLevel = subFileParameter.zoomLevelMax;
 
-		for (int wayNodesIndex = 2; wayNodesIndex < waySegment.length; wayNodesIndex += 2) {
-			// get the way node latitude offset (VBE-S)
-			wayNodeLatitude = wayNodeLatitude + this.readBuffer.readSignedInt();
+		DecodedBlock decodedBlock = new DecodedBlock(zoomTable);
+		if (!processBlockElements(queryParameters, subFileParameter, zoomTable, decodedBlock)) {
+			return null;
+		}
+		return decodedBlock;
+	}
 
-			// get the way node longitude offset (VBE-S)
-			wayNodeLongitude = wayNodeLongitude + this.readBuffer.readSignedInt();
+	/**
+	 * Calculates the end of a block relative to the sub-file. If the sub-file has a Hilbert block order, the end is
+	 * taken from the block size in the index entry, otherwise from the pointer of the following block.
+	 * 
+	 * @return the end of the block or a value outside of the sub-file if the index is invalid.
+	 */
+	private long getBlockEnd(SubFileParameter subFileParameter, long blockNumber, long blockPointer) {
+		if (subFileParameter.hilbertBlockOrder) {
+			int blockSize = this.databaseIndexCache.getBlockSize(subFileParameter, blockNumber, this.queryStatistics);
+			return blockSize < 0 ? -1 : blockPointer + blockSize;
+		} else if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
+			// the last block ends with the sub-file
+			return subFileParameter.subFileSize;
+		}
+		return this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber + 1,
+				this.queryStatistics) & BITMASK_INDEX_OFFSET;
+	}
+
+	/**
+	 * Calculates the size of a block from its index entry.
+	 * 
+	 * @return the size of the block, zero if the block is empty or too large, or -1 if the index is invalid.
+	 */
+	private int getBlockSize(SubFileParameter subFileParameter, long blockNumber, long currentBlockPointer) {
+		if (currentBlockPointer < 1 || currentBlockPointer > subFileParameter.subFileSize) {
+			LOGGER.warning("invalid current block pointer: " + currentBlockPointer);
+			LOGGER.warning("subFileSize: " + subFileParameter.subFileSize);
+			return -1;
+		}
+
+		// get and check the next block pointer
+		long nextBlockPointer = getBlockEnd(subFileParameter, blockNumber, currentBlockPointer);
+		if (nextBlockPointer < 1 || nextBlockPointer > subFileParameter.subFileSize) {
+			LOGGER.warning("invalid next block pointer: " + nextBlockPointer);
+			LOGGER.warning("sub-file size: " + subFileParameter.subFileSize);
+			return -1;
+		}
 
-			waySegment[wayNodesIndex + 1] = wayNodeLatitude;
-			waySegment[wayNodesIndex] = wayNodeLongitude;
+		// calculate the size of the current block
+		int currentBlockSize = (int) (nextBlockPointer - currentBlockPointer);
+		if (currentBlockSize < 0) {
+			LOGGER.warning("current block size must not be negative: " + currentBlockSize);
+			return -1;
+		} else if (currentBlockSize == 0) {
+			// the current block is empty
+			return 0;
+		} else if (currentBlockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
+			// the current block is too large and cannot be read
+			LOGGER.warning("current block size too large: " + currentBlockSize);
+			return 0;
+		} else if (currentBlockPointer + currentBlockSize > this.fileSize) {
+			LOGGER.warning("current block largher than file size: " + currentBlockSize);
+			return -1;
 		}
+
+		return currentBlockSize;
 	}
 
 	/**
@@ -397,21 +1049,40 @@ public class MapDatabase {
 		}
 	}
 
-	private void prepareExecution() {
-		if (this.databaseIndexCache == null) {
-			this.databaseIndexCache = new IndexCache(this.inputFile, INDEX_CACHE_SIZE);
+	/**
+	 * Opens the map file in the given data source and attaches it as owned map file.
+	 */
+	private FileOpenResult openMapFile(MapDataSource dataSource, MapFileOptions mapFileOptions) throws IOException {
+		MapFile newMapFile = new MapFile(dataSource, mapFileOptions);
+		if (!newMapFile.fileOpenResult.isSuccess()) {
+			return newMapFile.fileOpenResult;
 		}
+
+		attachMapFile(newMapFile, true);
+		return FileOpenResult.SUCCESS;
 	}
 
-	private PoiWayBundle processBlock(QueryParameters queryParameters, SubFileParameter subFileParameter) {
+	private boolean processBlock(QueryParameters queryParameters, SubFileParameter subFileParameter,
+			MapDataSink mapDataSink) {
 		if (!processBlockSignature()) {
-			return null;
+			return false;
 		}
 
 		int[][] zoomTable = readZoomTable(subFileParameter);
 		if (zoomTable == null) {
-			return null;
+			return false;
 		}
+
+		return processBlockElements(queryParameters, subFileParameter, zoomTable, mapDataSink);
+	}
+
+	/**
+	 * Processes the POIs and ways of the current block which belong to the query zoom level.
+	 * 
+	 * @return true if all elements could be processed successfully, false otherwise.
+	 */
+	private boolean processBlockElements(QueryParameters queryParameters, SubFileParameter subFileParameter,
+			int[][] zoomTable, MapDataSink mapDataSink) {
 		int zoomTableRow = queryParameters.queryZoomLevel - subFileParameter.zoomLevelMin;
 		int poisOnQueryZoomLevel = zoomTable[zoomTableRow][0];
 		int waysOnQueryZoomLevel = zoomTable[zoomTableRow][1];
@@ -423,7 +1094,7 @@ public class MapDatabase {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
 		// add the current buffer position to the relative first way offset
@@ -433,12 +1104,11 @@ public class MapDatabase {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
-		List<PointOfInterest> pois = processPOIs(poisOnQueryZoomLevel);
-		if (pois == null) {
-			return null;
+		if (!processPOIs(queryParameters, poisOnQueryZoomLevel, mapDataSink)) {
+			return false;
 		}
 
 		// finished reading POIs, check if the current buffer position is valid
@@ -447,26 +1117,25 @@ public class MapDatabase {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
 		// move the pointer to the first way
 		this.readBuffer.setBufferPosition(firstWayOffset);
 
-		List<Way> ways = processWays(queryParameters, waysOnQueryZoomLevel);
-		if (ways == null) {
-			return null;
-		}
-
-		return new PoiWayBundle(pois, ways);
+		return processWays(queryParameters, waysOnQueryZoomLevel, mapDataSink);
 	}
 
-	private MapReadResult processBlocks(QueryParameters queryParameters, SubFileParameter subFileParameter)
-			throws IOException {
+	/**
+	 * @param mapReadResultBuilder
+	 *            the builder which receives cached blocks, null if the block cache should not be used.
+	 * @return true if all blocks could be processed successfully, false otherwise.
+	 */
+	private boolean processBlocks(QueryParameters queryParameters, SubFileParameter subFileParameter,
+			MapDataSink mapDataSink, MapReadResultBuilder mapReadResultBuilder) throws IOException {
 		boolean queryIsWater = true;
 		boolean queryReadWaterInfo = false;
-
-		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		BlockCache queryBlockCache = mapReadResultBuilder == null ? null : this.blockCache;
 
 		// read and process all blocks from top to bottom and from left to right
 		for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
@@ -476,7 +1145,8 @@ public class MapDatabase {
 				long blockNumber = row * subFileParameter.blocksWidth + column;
 
 				// get the current index entry
-				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber);
+				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+						this.queryStatistics);
 
 				// check if the current query would still return a water tile
 				if (queryIsWater) {
@@ -485,80 +1155,61 @@ public class MapDatabase {
 					queryReadWaterInfo = true;
 				}
 
-				// get and check the current block pointer
+				// get and check the current block pointer and size
 				long currentBlockPointer = currentBlockIndexEntry & BITMASK_INDEX_OFFSET;
-				if (currentBlockPointer < 1 || currentBlockPointer > subFileParameter.subFileSize) {
-					LOGGER.warning("invalid current block pointer: " + currentBlockPointer);
-					LOGGER.warning("subFileSize: " + subFileParameter.subFileSize);
-					return null;
-				}
-
-				long nextBlockPointer;
-				// check if the current block is the last block in the file
-				if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
-					// set the next block pointer to the end of the file
-					nextBlockPointer = subFileParameter.subFileSize;
-				} else {
-					// get and check the next block pointer
-					nextBlockPointer = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber + 1)
-							& BITMASK_INDEX_OFFSET;
-					if (nextBlockPointer < 1 || nextBlockPointer > subFileParameter.subFileSize) {
-						LOGGER.warning("invalid next block pointer: " + nextBlockPointer);
-						LOGGER.warning("sub-file size: " + subFileParameter.subFileSize);
-						return null;
-					}
-				}
-
-				// calculate the size of the current block
-				int currentBlockSize = (int) (nextBlockPointer - currentBlockPointer);
+				int currentBlockSize = getBlockSize(subFileParameter, blockNumber, currentBlockPointer);
 				if (currentBlockSize < 0) {
-					LOGGER.warning("current block size must not be negative: " + currentBlockSize);
-					return null;
+					return false;
 				} else if (currentBlockSize == 0) {
-					// the current block is empty, continue with the next block
+					// the current block is empty or too large, continue with the next block
 					continue;
-				} else if (currentBlockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
-					// the current block is too large, continue with the next block
-					LOGGER.warning("current block size too large: " + currentBlockSize);
-					continue;
-				} else if (currentBlockPointer + currentBlockSize > this.fileSize) {
-					LOGGER.warning("current block largher than file size: " + currentBlockSize);
-					return null;
 				}
 
-				// seek to the current block in the map file
-				this.inputFile.seek(subFileParameter.startAddress + currentBlockPointer);
+				// check if the decoded block is already cached
+				if (queryBlockCache != null) {
+					DecodedBlock decodedBlock = queryBlockCache.get(subFileParameter, blockNumber);
+					if (decodedBlock != null) {
+						if (this.queryStatistics != null) {
+							++this.queryStatistics.blockCacheHits;
+						}
+						mapReadResultBuilder.add(decodedBlock.filter(queryParameters, subFileParameter));
+						continue;
+					}
+				}
 
 				// read the current block into the buffer
-				if (!this.readBuffer.readFromFile(currentBlockSize)) {
+				if (!readBlock(subFileParameter.startAddress + currentBlockPointer, currentBlockSize)) {
 					// skip the current block
 					LOGGER.warning("reading current block has failed: " + currentBlockSize);
-					return null;
+					return false;
 				}
 
 				// calculate the top-left coordinates of the underlying tile
-				double tileLatitudeDeg = MercatorProjection.tileYToLatitude(subFileParameter.boundaryTileTop + row,
-						subFileParameter.baseZoomLevel);
-				double tileLongitudeDeg = MercatorProjection.tileXToLongitude(subFileParameter.boundaryTileLeft
-						+ column, subFileParameter.baseZoomLevel);
-				this.tileLatitude = (int) (tileLatitudeDeg * 1000000);
-				this.tileLongitude = (int) (tileLongitudeDeg * 1000000);
+				calculateTileCoordinates(subFileParameter, row, column);
 
+				long decodeStartTime = this.queryStatistics == null ? 0 : System.nanoTime();
 				try {
-					PoiWayBundle poiWayBundle = processBlock(queryParameters, subFileParameter);
-					mapReadResultBuilder.add(poiWayBundle);
-				} catch (ArrayIndexOutOfBoundsException e) {
+					if (queryBlockCache == null) {
+						processBlock(queryParameters, subFileParameter, mapDataSink);
+					} else {
+						DecodedBlock decodedBlock = decodeBlock(subFileParameter);
+						if (decodedBlock != null) {
+							queryBlockCache.put(subFileParameter, blockNumber, decodedBlock);
+							mapReadResultBuilder.add(decodedBlock.filter(queryParameters, subFileParameter));
+						}
+					}
+				} catch (IndexOutOfBoundsException e) {
 					LOGGER.log(Level.SEVERE, null, e);
 				}
+				if (this.queryStatistics != null) {
+					this.queryStatistics.decodeNanos += System.nanoTime() - decodeStartTime;
+				}
 			}
 		}
 
 		// the query is finished, was the water flag set for all blocks?
-		if (queryIsWater && queryReadWaterInfo) {
-			mapReadResultBuilder.isWater = true;
-		}
-
-		return mapReadResultBuilder.build();
+		mapDataSink.queryCompleted(queryIsWater && queryReadWaterInfo);
+		return true;
 	}
 
 	/**
@@ -570,7 +1221,7 @@ public class MapDatabase {
 		if (this.mapFileHeader.getMapFileInfo().debugFile) {
 			// get and check the block signature
 			this.signatureBlock = this.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_BLOCK);
-			if (!this.signatureBlock.startsWith("###TileStart")) {
+			if (this.signatureBlock == null || !this.signatureBlock.startsWith("###TileStart")) {
 				LOGGER.warning("invalid block signature: " + this.signatureBlock);
 				return false;
 			}
@@ -578,39 +1229,37 @@ public class MapDatabase {
 		return true;
 	}
 
-	private List<PointOfInterest> processPOIs(int numberOfPois) {
-		List<PointOfInterest> pois = new ArrayList<PointOfInterest>();
+	private boolean processPOIs(QueryParameters queryParameters, int numberOfPois, MapDataSink mapDataSink) {
 		Tag[] poiTags = this.mapFileHeader.getMapFileInfo().poiTags;
+		PoiRecord poi = this.poiRecord;
 
 		for (int elementCounter = numberOfPois; elementCounter != 0; --elementCounter) {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				// get and check the POI signature
 				this.signaturePoi = this.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_POI);
-				if (!this.signaturePoi.startsWith("***POIStart")) {
+				if (this.signaturePoi == null || !this.signaturePoi.startsWith("***POIStart")) {
 					LOGGER.warning("invalid POI signature: " + this.signaturePoi);
 					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
-					return null;
+					return false;
 				}
 			}
 
 			// get the POI latitude offset (VBE-S)
-			int latitude = this.tileLatitude + this.readBuffer.readSignedInt();
+			poi.latitude = this.tileLatitude + this.readBuffer.readSignedInt();
 
 			// get the POI longitude offset (VBE-S)
-			int longitude = this.tileLongitude + this.readBuffer.readSignedInt();
+			poi.longitude = this.tileLongitude + this.readBuffer.readSignedInt();
 
 			// get the special byte which encodes multiple flags
 			byte specialByte = this.readBuffer.readByte();
 
 			// bit 1-4 represent the layer
-			byte layer = (byte) ((specialByte & POI_LAYER_BITMASK) >>> POI_LAYER_SHIFT);
+			poi.layer = (byte) ((specialByte & POI_LAYER_BITMASK) >>> POI_LAYER_SHIFT);
 			// bit 5-8 represent the number of tag IDs
-			byte numberOfTags = (byte) (specialByte & POI_NUMBER_OF_TAGS_BITMASK);
-
-			List<Tag> tags = new ArrayList<Tag>();
+			poi.numberOfTags = specialByte & POI_NUMBER_OF_TAGS_BITMASK;
 
 			// get the tag IDs (VBE-U)
-			for (byte tagIndex = numberOfTags; tagIndex != 0; --tagIndex) {
+			for (int tagIndex = 0; tagIndex < poi.numberOfTags; ++tagIndex) {
 				int tagId = this.readBuffer.readUnsignedInt();
 				if (tagId < 0 || tagId >= poiTags.length) {
 					LOGGER.warning("invalid POI tag ID: " + tagId);
@@ -618,9 +1267,9 @@ public class MapDatabase {
 						LOGGER.warning(DEBUG_SIGNATURE_POI + this.signaturePoi);
 						LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 					}
-					return null;
+					return false;
 				}
-				tags.add(poiTags[tagId]);
+				poi.tagIds[tagIndex] = tagId;
 			}
 
 			// get the feature bitmask (1 byte)
@@ -629,81 +1278,92 @@ public class MapDatabase {
 			// bit 1-3 enable optional features
 			boolean featureName = (featureByte & POI_FEATURE_NAME) != 0;
 			boolean featureHouseNumber = (featureByte & POI_FEATURE_HOUSE_NUMBER) != 0;
-			boolean featureElevation = (featureByte & POI_FEATURE_ELEVATION) != 0;
+			poi.hasElevation = (featureByte & POI_FEATURE_ELEVATION) != 0;
+
+			// check if the POI is accepted by the tag filter
+			if (queryParameters.tagFilter != null
+					&& !queryParameters.tagFilter.acceptPointOfInterest(poi.tagIds, poi.numberOfTags)) {
+				// skip the optional features and continue with the next POI
+				if (featureName) {
+					this.readBuffer.skipUTF8EncodedString();
+				}
+				if (featureHouseNumber) {
+					this.readBuffer.skipUTF8EncodedString();
+				}
+				if (poi.hasElevation) {
+					this.readBuffer.readSignedInt();
+				}
+				continue;
+			}
 
-			// check if the POI has a name
+			// remember the position of the name and the house number, they are decoded on demand
+			int namePosition = -1;
 			if (featureName) {
-				tags.add(new Tag(TAG_KEY_NAME, this.readBuffer.readUTF8EncodedString()));
+				namePosition = this.readBuffer.getBufferPosition();
+				this.readBuffer.skipUTF8EncodedString();
 			}
-
-			// check if the POI has a house number
+			int houseNumberPosition = -1;
 			if (featureHouseNumber) {
-				tags.add(new Tag(TAG_KEY_HOUSE_NUMBER, this.readBuffer.readUTF8EncodedString()));
+				houseNumberPosition = this.readBuffer.getBufferPosition();
+				this.readBuffer.skipUTF8EncodedString();
 			}
+			poi.startPointOfInterest(namePosition, houseNumberPosition);
 
 			// check if the POI has an elevation
-			if (featureElevation) {
-				tags.add(new Tag(TAG_KEY_ELE, Integer.toString(this.readBuffer.readSignedInt())));
-			}
+			poi.elevation = poi.hasElevation ? this.readBuffer.readSignedInt() : 0;
 
-			pois.add(new PointOfInterest(layer, tags, new GeoPoint(latitude, longitude)));
+			mapDataSink.pointOfInterest(poi);
 		}
 
-		return pois;
+		return true;
 	}
 
-	private float[][] processWayDataBlock(boolean doubleDeltaEncoding) {
-		// get and check the number of way coordinate blocks (VBE-U)
-		int numberOfWayCoordinateBlocks = this.readBuffer.readUnsignedInt();
-		if (numberOfWayCoordinateBlocks < 1 || numberOfWayCoordinateBlocks > Short.MAX_VALUE) {
-			LOGGER.warning("invalid number of way coordinate blocks: " + numberOfWayCoordinateBlocks);
-			logDebugSignatures();
-			return null;
-		}
+	/**
+	 * Assembles the result of a single tile from the already decoded blocks of a batch query.
+	 * 
+	 * @return the map data of the tile or null if one of its blocks is invalid.
+	 */
+	private MapReadResult processTileQuery(TileQuery tileQuery) {
+		boolean queryIsWater = true;
+		boolean queryReadWaterInfo = false;
 
-		// create the array which will store the different way coordinate blocks
-		float[][] wayCoordinates = new float[numberOfWayCoordinateBlocks][];
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
 
-		// read the way coordinate blocks
-		for (int coordinateBlock = 0; coordinateBlock < numberOfWayCoordinateBlocks; ++coordinateBlock) {
-			// get and check the number of way nodes (VBE-U)
-			int numberOfWayNodes = this.readBuffer.readUnsignedInt();
-			if (numberOfWayNodes < 2 || numberOfWayNodes > MAXIMUM_WAY_NODES_SEQUENCE_LENGTH) {
-				LOGGER.warning("invalid number of way nodes: " + numberOfWayNodes);
-				logDebugSignatures();
-				return null;
+		for (QueryBlock queryBlock : tileQuery.queryBlocks) {
+			// check if the current query would still return a water tile
+			if (queryIsWater) {
+				queryIsWater &= queryBlock.isWater;
+				queryReadWaterInfo = true;
 			}
 
-			// each way node consists of latitude and longitude
-			int wayNodesSequenceLength = numberOfWayNodes * 2;
-
-			// create the array which will store the current way segment
-			float[] waySegment = new float[wayNodesSequenceLength];
-
-			if (doubleDeltaEncoding) {
-				decodeWayNodesDoubleDelta(waySegment);
-			} else {
-				decodeWayNodesSingleDelta(waySegment);
+			if (queryBlock.blockSize < 0) {
+				return null;
+			} else if (queryBlock.decodedBlock != null) {
+				mapReadResultBuilder.add(queryBlock.decodedBlock.filter(tileQuery.queryParameters,
+						tileQuery.subFileParameter));
 			}
+		}
 
-			wayCoordinates[coordinateBlock] = waySegment;
+		// the query is finished, was the water flag set for all blocks?
+		if (queryIsWater && queryReadWaterInfo) {
+			mapReadResultBuilder.isWater = true;
 		}
 
-		return wayCoordinates;
+		return mapReadResultBuilder.build();
 	}
 
-	private List<Way> processWays(QueryParameters queryParameters, int numberOfWays) {
-		List<Way> ways = new ArrayList<Way>();
+	private boolean processWays(QueryParameters queryParameters, int numberOfWays, MapDataSink mapDataSink) {
 		Tag[] wayTags = this.mapFileHeader.getMapFileInfo().wayTags;
+		WayRecord way = this.wayRecord;
 
 		for (int elementCounter = numberOfWays; elementCounter != 0; --elementCounter) {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				// get and check the way signature
 				this.signatureWay = this.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_WAY);
-				if (!this.signatureWay.startsWith("---WayStart")) {
+				if (this.signatureWay == null || !this.signatureWay.startsWith("---WayStart")) {
 					LOGGER.warning("invalid way signature: " + this.signatureWay);
 					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
-					return null;
+					return false;
 				}
 			}
 
@@ -714,41 +1374,51 @@ public class MapDatabase {
 				if (this.mapFileHeader.getMapFileInfo().debugFile) {
 					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 				}
-				return null;
+				return false;
 			}
 
-			if (queryParameters.useTileBitmask) {
-				// get the way tile bitmask (2 bytes)
-				int tileBitmask = this.readBuffer.readShort();
-				// check if the way is inside the requested tile
-				if ((queryParameters.queryTileBitmask & tileBitmask) == 0) {
-					// skip the rest of the way and continue with the next way
-					this.readBuffer.skipBytes(wayDataSize - 2);
-					continue;
+			// remember the end of the way in case that it is skipped
+			int wayEndPosition = this.readBuffer.getBufferPosition() + wayDataSize;
+
+			// get the way tile bitmask (2 bytes)
+			way.tileBitmask = this.readBuffer.readShort();
+			// check if the way is inside the requested tile
+			if (queryParameters.useTileBitmask && (queryParameters.queryTileBitmask & way.tileBitmask) == 0) {
+				// skip the rest of the way and continue with the next way
+				this.readBuffer.skipBytes(wayDataSize - 2);
+				if (this.queryStatistics != null) {
+					++this.queryStatistics.waysSkipped;
 				}
-			} else {
-				// ignore the way tile bitmask (2 bytes)
-				this.readBuffer.skipBytes(2);
+				continue;
+			}
+			if (this.queryStatistics != null) {
+				++this.queryStatistics.waysDecoded;
 			}
 
 			// get the special byte which encodes multiple flags
 			byte specialByte = this.readBuffer.readByte();
 
 			// bit 1-4 represent the layer
-			byte layer = (byte) ((specialByte & WAY_LAYER_BITMASK) >>> WAY_LAYER_SHIFT);
+			way.layer = (byte) ((specialByte & WAY_LAYER_BITMASK) >>> WAY_LAYER_SHIFT);
 			// bit 5-8 represent the number of tag IDs
-			byte numberOfTags = (byte) (specialByte & WAY_NUMBER_OF_TAGS_BITMASK);
+			way.numberOfTags = specialByte & WAY_NUMBER_OF_TAGS_BITMASK;
 
-			List<Tag> tags = new ArrayList<Tag>();
-
-			for (byte tagIndex = numberOfTags; tagIndex != 0; --tagIndex) {
+			for (int tagIndex = 0; tagIndex < way.numberOfTags; ++tagIndex) {
 				int tagId = this.readBuffer.readUnsignedInt();
 				if (tagId < 0 || tagId >= wayTags.length) {
 					LOGGER.warning("invalid way tag ID: " + tagId);
 					logDebugSignatures();
-					return null;
+					return false;
 				}
-				tags.add(wayTags[tagId]);
+				way.tagIds[tagIndex] = tagId;
+			}
+
+			// check if the way is accepted by the tag filter
+			if (queryParameters.tagFilter != null
+					&& !queryParameters.tagFilter.acceptWay(way.tagIds, way.numberOfTags)) {
+				// skip the rest of the way and continue with the next way
+				this.readBuffer.setBufferPosition(wayEndPosition);
+				continue;
 			}
 
 			// get the feature bitmask (1 byte)
@@ -761,56 +1431,190 @@ public class MapDatabase {
 			boolean featureLabelPosition = (featureByte & WAY_FEATURE_LABEL_POSITION) != 0;
 			boolean featureWayDataBlocksByte = (featureByte & WAY_FEATURE_DATA_BLOCKS_BYTE) != 0;
 			boolean featureWayDoubleDeltaEncoding = (featureByte & WAY_FEATURE_DOUBLE_DELTA_ENCODING) != 0;
+			boolean featureWayBitPackedEncoding = (featureByte & WAY_FEATURE_BIT_PACKED_ENCODING) != 0;
 
-			// check if the way has a name
+			// remember the position of the strings, they are decoded on demand
+			int namePosition = -1;
 			if (featureName) {
-				tags.add(new Tag(TAG_KEY_NAME, this.readBuffer.readUTF8EncodedString()));
+				namePosition = this.readBuffer.getBufferPosition();
+				this.readBuffer.skipUTF8EncodedString();
 			}
-
-			// check if the way has a house number
+			int houseNumberPosition = -1;
 			if (featureHouseNumber) {
-				tags.add(new Tag(TAG_KEY_HOUSE_NUMBER, this.readBuffer.readUTF8EncodedString()));
+				houseNumberPosition = this.readBuffer.getBufferPosition();
+				this.readBuffer.skipUTF8EncodedString();
 			}
-
-			// check if the way has a reference
+			int refPosition = -1;
 			if (featureRef) {
-				tags.add(new Tag(TAG_KEY_REF, this.readBuffer.readUTF8EncodedString()));
+				refPosition = this.readBuffer.getBufferPosition();
+				this.readBuffer.skipUTF8EncodedString();
 			}
+			way.startWay(namePosition, houseNumberPosition, refPosition);
 
-			GeoPoint labelPosition = readOptionalLabelPosition(featureLabelPosition);
+			readOptionalLabelPosition(way, featureLabelPosition);
 
 			int wayDataBlocks = readOptionalWayDataBlocksByte(featureWayDataBlocksByte);
 			if (wayDataBlocks < 1) {
 				LOGGER.warning("invalid number of way data blocks: " + wayDataBlocks);
 				logDebugSignatures();
-				return null;
+				return false;
 			}
 
+			way.tileLatitude = this.tileLatitude;
+			way.tileLongitude = this.tileLongitude;
 			for (int wayDataBlock = 0; wayDataBlock < wayDataBlocks; ++wayDataBlock) {
-				float[][] wayNodes = processWayDataBlock(featureWayDoubleDeltaEncoding);
-				if (wayNodes == null) {
-					return null;
+				// the way nodes are decoded on demand
+				way.startWayDataBlock(this.readBuffer.getBufferPosition(), featureWayDoubleDeltaEncoding,
+						featureWayBitPackedEncoding);
+				way.wayDataBlock = wayDataBlock;
+
+				// ways which have been clipped away completely are skipped
+				if (way.wayClipper == null || way.getNumberOfCoordinateBlocks() > 0) {
+					mapDataSink.way(way);
 				}
 
-				ways.add(new Way(layer, tags, wayNodes, labelPosition));
+				if (wayDataBlock < wayDataBlocks - 1) {
+					// the next way data block starts behind the way nodes of the current one
+					if (!way.decodeCoordinates()) {
+						logDebugSignatures();
+						return false;
+					}
+					this.readBuffer.setBufferPosition(way.getCoordinatesEndPosition());
+				}
 			}
+
+			// continue with the next way
+			this.readBuffer.setBufferPosition(wayEndPosition);
 		}
 
-		return ways;
+		return true;
+	}
+
+	/**
+	 * @param tagFilter
+	 *            the filter for the read elements, null if all elements should be read.
+	 * @param mapReadResultBuilder
+	 *            the builder which receives cached blocks, null if the block cache should not be used.
+	 */
+	private boolean readMapData(Tile tile, TagFilter tagFilter, MapDataSink mapDataSink,
+			MapReadResultBuilder mapReadResultBuilder) {
+		try {
+			QueryParameters queryParameters = new QueryParameters();
+			queryParameters.tagFilter = tagFilter;
+			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+
+			// get and check the sub-file for the query zoom level
+			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+			if (subFileParameter == null) {
+				LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+				return false;
+			}
+
+			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+			if (this.prefetcher != null) {
+				this.prefetcher.prefetch(tile);
+			}
+
+			if (this.wayClipper == null && this.waySimplifier == null) {
+				return processBlocks(queryParameters, subFileParameter, mapDataSink, mapReadResultBuilder);
+			}
+
+			// the cached blocks are shared by all tiles and must not be clipped or simplified
+			if (this.wayClipper != null) {
+				setClipRectangle(tile);
+				this.wayRecord.wayClipper = this.wayClipper;
+			}
+			if (this.waySimplifier != null) {
+				setSimplificationTolerance(tile);
+				this.wayRecord.waySimplifier = this.waySimplifier;
+			}
+			try {
+				return processBlocks(queryParameters, subFileParameter, mapDataSink, null);
+			} finally {
+				this.wayRecord.wayClipper = null;
+				this.wayRecord.waySimplifier = null;
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a single block into the read buffer and decompresses it if the blocks of the map file are compressed.
+	 */
+	private boolean readBlock(long blockPosition, int blockSize) throws IOException {
+		if (!readBlocks(blockPosition, blockSize, 1)) {
+			return false;
+		} else if (!this.mapFileHeader.getMapFileInfo().compressedBlocks) {
+			return true;
+		} else if (this.queryStatistics == null) {
+			return this.readBuffer.inflate(blockSize);
+		}
+
+		// the decompression is part of the decode phase
+		long startTime = System.nanoTime();
+		boolean success = this.readBuffer.inflate(blockSize);
+		this.queryStatistics.decodeNanos += System.nanoTime() - startTime;
+		return success;
+	}
+
+	/**
+	 * Reads the given number of adjacent blocks into the read buffer and adds them to the query statistics.
+	 */
+	private boolean readBlocks(long position, int length, int numberOfBlocks) throws IOException {
+		if (this.queryStatistics == null) {
+			return this.readBuffer.readFromFile(position, length);
+		}
+
+		long startTime = System.nanoTime();
+		boolean success = this.readBuffer.readFromFile(position, length);
+		this.queryStatistics.ioNanos += System.nanoTime() - startTime;
+		this.queryStatistics.blocksRead += numberOfBlocks;
+		this.queryStatistics.bytesRead += length;
+		return success;
+	}
+
+	/**
+	 * Reads the map data inside a bounding box, see {@link #readMapData(BoundingBox, byte)}.
+	 */
+	private MapReadResult readBoundingBox(BoundingBox boundingBox, byte zoomLevel) {
+		try {
+			QueryParameters queryParameters = new QueryParameters();
+			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(zoomLevel);
+
+			// get and check the sub-file for the query zoom level
+			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+			if (subFileParameter == null) {
+				LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+				return null;
+			}
+
+			QueryCalculations.calculateBaseTiles(queryParameters, boundingBox, subFileParameter);
+			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+			BoundingBoxResultBuilder boundingBoxResultBuilder = new BoundingBoxResultBuilder(boundingBox);
+			if (!processBlocks(queryParameters, subFileParameter, boundingBoxResultBuilder, null)) {
+				return null;
+			}
+			return boundingBoxResultBuilder.build();
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		}
 	}
 
-	private GeoPoint readOptionalLabelPosition(boolean featureLabelPosition) {
+	private void readOptionalLabelPosition(WayRecord way, boolean featureLabelPosition) {
+		way.hasLabelPosition = featureLabelPosition;
 		if (featureLabelPosition) {
 			// get the label position latitude offset (VBE-S)
-			float latitude = this.tileLatitude + this.readBuffer.readSignedInt();
+			way.labelLatitude = this.tileLatitude + this.readBuffer.readSignedInt();
 
 			// get the label position longitude offset (VBE-S)
-			float longitude = this.tileLongitude + this.readBuffer.readSignedInt();
-
-			return new GeoPoint(latitude, longitude);
+			way.labelLongitude = this.tileLongitude + this.readBuffer.readSignedInt();
 		}
-
-		return null;
 	}
 
 	private int readOptionalWayDataBlocksByte(boolean featureWayDataBlocksByte) {
@@ -822,6 +1626,115 @@ public class MapDatabase {
 		return 1;
 	}
 
+	/**
+	 * Reads and decodes the given blocks, which must be sorted by their position in the file. Adjacent blocks are read
+	 * at once as long as they fit into the read buffer, compressed blocks are read one by one.
+	 */
+	private void readQueryBlocks(List<QueryBlock> queryBlocks) throws IOException {
+		boolean compressedBlocks = this.mapFileHeader.getMapFileInfo().compressedBlocks;
+		int runStart = 0;
+		while (runStart < queryBlocks.size()) {
+			long runPosition = queryBlocks.get(runStart).getFilePosition();
+			long runLength = queryBlocks.get(runStart).blockSize;
+
+			// extend the run as long as the next block directly follows the previous one
+			int runEnd = runStart + 1;
+			while (runEnd < queryBlocks.size()) {
+				QueryBlock queryBlock = queryBlocks.get(runEnd);
+				if (compressedBlocks || queryBlock.getFilePosition() != runPosition + runLength
+						|| runLength + queryBlock.blockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
+					break;
+				}
+				runLength += queryBlock.blockSize;
+				++runEnd;
+			}
+
+			boolean success = compressedBlocks ? readBlock(runPosition, (int) runLength) : readBlocks(runPosition,
+					(int) runLength, runEnd - runStart);
+			if (!success) {
+				LOGGER.warning("reading blocks has failed: " + runLength);
+				for (int i = runStart; i < runEnd; ++i) {
+					queryBlocks.get(i).blockSize = -1;
+				}
+			} else {
+				for (int i = runStart; i < runEnd; ++i) {
+					QueryBlock queryBlock = queryBlocks.get(i);
+					SubFileParameter subFileParameter = queryBlock.subFileParameter;
+
+					// move to the start of the block inside the read buffer
+					this.readBuffer.setBufferPosition((int) (queryBlock.getFilePosition() - runPosition));
+
+					long row = queryBlock.blockNumber / subFileParameter.blocksWidth;
+					long column = queryBlock.blockNumber % subFileParameter.blocksWidth;
+					calculateTileCoordinates(subFileParameter, row, column);
+
+					long decodeStartTime = this.queryStatistics == null ? 0 : System.nanoTime();
+					try {
+						queryBlock.decodedBlock = decodeBlock(subFileParameter);
+						if (queryBlock.decodedBlock != null && this.blockCache != null) {
+							this.blockCache.put(subFileParameter, queryBlock.blockNumber, queryBlock.decodedBlock);
+						}
+					} catch (IndexOutOfBoundsException e) {
+						LOGGER.log(Level.SEVERE, null, e);
+					}
+					if (this.queryStatistics != null) {
+						this.queryStatistics.decodeNanos += System.nanoTime() - decodeStartTime;
+					}
+				}
+			}
+
+			runStart = runEnd;
+		}
+	}
+
+	/**
+	 * Determines the status of a single tile from the index of the map file, see {@link #queryTileStatus(Tile)}.
+	 */
+	private TileStatus readTileStatus(Tile tile) {
+		QueryParameters queryParameters = new QueryParameters();
+		queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+
+		// get and check the sub-file for the query zoom level
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+		if (subFileParameter == null) {
+			LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+			return null;
+		}
+
+		QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+		QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+		boolean tileIsWater = true;
+		boolean tileReadWaterInfo = false;
+		for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
+			for (long column = queryParameters.fromBlockX; column <= queryParameters.toBlockX; ++column) {
+				long blockNumber = row * subFileParameter.blocksWidth + column;
+				long blockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+						this.queryStatistics);
+				if (blockIndexEntry == -1) {
+					return null;
+				}
+				tileIsWater &= (blockIndexEntry & BITMASK_INDEX_WATER) != 0;
+				tileReadWaterInfo = true;
+
+				long blockPointer = blockIndexEntry & BITMASK_INDEX_OFFSET;
+				long nextBlockPointer = getBlockEnd(subFileParameter, blockNumber, blockPointer);
+
+				// an invalid next index entry results in a pointer beyond the sub-file
+				if (blockPointer < 1 || nextBlockPointer < blockPointer
+						|| nextBlockPointer > subFileParameter.subFileSize) {
+					LOGGER.warning("invalid block pointers: " + blockPointer + ", " + nextBlockPointer);
+					return null;
+				} else if (nextBlockPointer > blockPointer) {
+					return TileStatus.DATA;
+				}
+			}
+		}
+
+		// a tile outside of the sub-file has no blocks and is not water, like in processBlocks
+		return tileIsWater && tileReadWaterInfo ? TileStatus.WATER : TileStatus.EMPTY;
+	}
+
 	private int[][] readZoomTable(SubFileParameter subFileParameter) {
 		int rows = subFileParameter.zoomLevelMax - subFileParameter.zoomLevelMin + 1;
 		int[][] zoomTable = new int[rows][2];
@@ -853,4 +1766,46 @@ public class MapDatabase {
 
 		return zoomTable;
 	}
+
+	/**
+	 * Sets the area of the given tile plus the clip margin as clip rectangle.
+	 */
+	private void setClipRectangle(Tile tile) {
+		double minPixelX = tile.getPixelX() - this.clipMargin;
+		double minPixelY = tile.getPixelY() - this.clipMargin;
+		double maxPixelX = tile.getPixelX() + Tile.TILE_SIZE + this.clipMargin;
+		double maxPixelY = tile.getPixelY() + Tile.TILE_SIZE + this.clipMargin;
+
+		double minLongitude = Math.max(-180, MercatorProjection.pixelXToLongitude(minPixelX, tile.zoomLevel));
+		double maxLongitude = Math.min(180, MercatorProjection.pixelXToLongitude(maxPixelX, tile.zoomLevel));
+		double minLatitude = MercatorProjection.pixelYToLatitude(maxPixelY, tile.zoomLevel);
+		double maxLatitude = MercatorProjection.pixelYToLatitude(minPixelY, tile.zoomLevel);
+		this.wayClipper.setClipRectangle((int) Math.floor(minLatitude * 1000000),
+				(int) Math.floor(minLongitude * 1000000), (int) Math.ceil(maxLatitude * 1000000),
+				(int) Math.ceil(maxLongitude * 1000000));
+	}
+
+	/**
+	 * Converts the simplification tolerance to microdegrees at the center of the given tile.
+	 */
+	private void setSimplificationTolerance(Tile tile) {
+		long mapSize = (long) Tile.TILE_SIZE << tile.zoomLevel;
+		double longitudeTolerance = this.simplificationTolerance * 360 / mapSize;
+
+		double pixelY = tile.getPixelY() + Tile.TILE_SIZE / 2;
+		double latitudeTolerance = MercatorProjection.pixelYToLatitude(pixelY, tile.zoomLevel)
+				- MercatorProjection.pixelYToLatitude(pixelY + this.simplificationTolerance, tile.zoomLevel);
+
+		this.waySimplifier.setTolerance((int) (latitudeTolerance * 1000000), (int) (longitudeTolerance * 1000000));
+	}
+
+	/**
+	 * Resets the statistics at the start of a query, if a query listener is set.
+	 */
+	private void startQuery() {
+		if (this.queryStatistics != null) {
+			this.queryStatistics.reset();
+			this.queryStartTime = System.nanoTime();
+		}
+	}
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileHeader;
+import org.mapsforge.map.reader.header.MapFileInfo;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * An opened binary map file which can be shared between multiple threads.
+ * <p>
+ * A MapFile holds everything that does not change after the file has been opened: the validated header with all
+ * sub-file parameters, the file handle, the index cache and the optional block cache. Queries are executed by
+ * {@link MapDatabase} instances which are attached to a MapFile via {@link MapDatabase#openFile(MapFile)}. Each thread
+ * must use its own MapDatabase, but creating one is cheap as it only allocates a read buffer.
+ * <p>
+ * The content of the map file is read via a {@link MapDataSource}, by default from a {@link FileDataSource}. If the
+ * file is not memory-mapped, concurrent reads of the file itself are serialized while decoding runs in parallel.
+ * Memory-mapped files and in-memory sources are read without any synchronization.
+ */
+public class MapFile implements Closeable {
+	/**
+	 * Opens the given map file, reads its header data and validates them.
+	 * 
+	 * @param file
+	 *            the map file.
+	 * @return the opened map file.
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid map file.
+	 * @throws IllegalArgumentException
+	 *             if the given map file is null.
+	 */
+	public static MapFile open(File file) throws IOException {
+		return open(file, false);
+	}
+
+	/**
+	 * Opens the given map file, reads its header data and validates them.
+	 * 
+	 * @param file
+	 *            the map file.
+	 * @param memoryMapped
+	 *            true if the map file should be memory-mapped, false otherwise.
+	 * @return the opened map file.
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid map file.
+	 * @throws IllegalArgumentException
+	 *             if the given map file is null.
+	 * @see MapDatabase#openFile(File, boolean)
+	 */
+	public static MapFile open(File file, boolean memoryMapped) throws IOException {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setMemoryMapped(memoryMapped);
+		return open(file, mapFileOptions);
+	}
+
+	/**
+	 * Opens the given map file with the given options, reads its header data and validates them.
+	 * 
+	 * @param file
+	 *            the map file.
+	 * @param mapFileOptions
+	 *            the options for opening and caching the map file.
+	 * @return the opened map file.
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid map file.
+	 * @throws IllegalArgumentException
+	 *             if the given map file or options are null.
+	 */
+	public static MapFile open(File file, MapFileOptions mapFileOptions) throws IOException {
+		FileOpenResult fileOpenResult = checkFile(file);
+		if (!fileOpenResult.isSuccess()) {
+			throw new IOException(fileOpenResult.getErrorMessage());
+		} else if (mapFileOptions == null) {
+			throw new IllegalArgumentException("mapFileOptions must not be null");
+		}
+		return open(new FileDataSource(file, mapFileOptions.isMemoryMapped()), mapFileOptions);
+	}
+
+	/**
+	 * Opens a map file from the given data source, reads its header data and validates them.
+	 * 
+	 * @param dataSource
+	 *            the data source which contains the map file, it is closed together with the map file.
+	 * @return the opened map file.
+	 * @throws IOException
+	 *             if the data source cannot be read or does not contain a valid map file.
+	 * @throws IllegalArgumentException
+	 *             if the given data source is null.
+	 */
+	public static MapFile open(MapDataSource dataSource) throws IOException {
+		return open(dataSource, new MapFileOptions());
+	}
+
+	/**
+	 * Opens a map file from the given data source with the given options, reads its header data and validates them.
+	 * The memory mapping option is ignored, the data source decides whether its content is available in memory.
+	 * 
+	 * @param dataSource
+	 *            the data source which contains the map file, it is closed together with the map file.
+	 * @param mapFileOptions
+	 *            the options for caching the map file.
+	 * @return the opened map file.
+	 * @throws IOException
+	 *             if the data source cannot be read or does not contain a valid map file.
+	 * @throws IllegalArgumentException
+	 *             if the given data source or options are null.
+	 */
+	public static MapFile open(MapDataSource dataSource, MapFileOptions mapFileOptions) throws IOException {
+		MapFile mapFile = new MapFile(dataSource, mapFileOptions);
+		if (!mapFile.fileOpenResult.isSuccess()) {
+			throw new IOException(mapFile.fileOpenResult.getErrorMessage());
+		}
+		return mapFile;
+	}
+
+	/**
+	 * Checks that the given file exists and is readable.
+	 * 
+	 * @param file
+	 *            the map file.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map file is null.
+	 */
+	static FileOpenResult checkFile(File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		} else if (!file.exists()) {
+			return new FileOpenResult("file does not exist: " + file);
+		} else if (!file.isFile()) {
+			return new FileOpenResult("not a file: " + file);
+		} else if (!file.canRead()) {
+			return new FileOpenResult("cannot read file: " + file);
+		}
+		return FileOpenResult.SUCCESS;
+	}
+
+	private volatile boolean closed;
+	final BlockCache blockCache;
+	final MapDataSource dataSource;
+	final FileOpenResult fileOpenResult;
+	final long fileSize;
+	final IndexCache indexCache;
+	final MapFileHeader mapFileHeader;
+	final ByteBuffer mappedFile;
+
+	/**
+	 * Opens the map file in the given data source and reads its header. If the header is invalid, the data source is
+	 * closed again and the {@link #fileOpenResult} contains the error message.
+	 * 
+	 * @param dataSource
+	 *            the data source which contains the map file.
+	 * @param mapFileOptions
+	 *            the options for caching the map file.
+	 * @throws IOException
+	 *             if an error occurs while reading the data source.
+	 * @throws IllegalArgumentException
+	 *             if the given data source or options are null.
+	 */
+	MapFile(MapDataSource dataSource, MapFileOptions mapFileOptions) throws IOException {
+		if (dataSource == null) {
+			throw new IllegalArgumentException("dataSource must not be null");
+		} else if (mapFileOptions == null) {
+			dataSource.close();
+			throw new IllegalArgumentException("mapFileOptions must not be null");
+		}
+
+		this.dataSource = dataSource;
+		try {
+			this.fileSize = dataSource.length();
+			this.mappedFile = dataSource.getByteBuffer();
+
+			MapFileHeader header = new MapFileHeader();
+			this.fileOpenResult = header.readHeader(createReadBuffer(), this.fileSize);
+			if (this.fileOpenResult.isSuccess()) {
+				this.mapFileHeader = header;
+				if (mapFileOptions.getBlockCacheSize() > 0) {
+					this.blockCache = new BlockCache(mapFileOptions.getBlockCacheSize());
+				} else {
+					this.blockCache = null;
+				}
+				if (this.mappedFile != null) {
+					this.indexCache = new IndexCache(this.mappedFile);
+				} else {
+					this.indexCache = new IndexCache(dataSource, mapFileOptions.getIndexCacheSize(),
+							mapFileOptions.getPinnedIndexSize(), header.getMapFileInfo().hilbertBlockOrder);
+				}
+			} else {
+				this.mapFileHeader = null;
+				this.blockCache = null;
+				this.indexCache = null;
+				this.closed = true;
+				dataSource.close();
+			}
+		} catch (IOException e) {
+			// make sure that the data source is closed
+			dataSource.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the map file and destroys all caches. All {@link MapDatabase} instances which are attached to this
+	 * map file can no longer be used afterwards. Has no effect if the map file has already been closed.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while closing the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		if (this.blockCache != null) {
+			this.blockCache.destroy();
+		}
+		this.indexCache.destroy();
+		this.dataSource.close();
+	}
+
+	/**
+	 * @return the metadata of this map file.
+	 */
+	public MapFileInfo getMapFileInfo() {
+		return this.mapFileHeader.getMapFileInfo();
+	}
+
+	/**
+	 * @return true if this map file has been closed, false otherwise.
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * @return a new read buffer for a single thread which reads from this map file.
+	 */
+	ReadBuffer createReadBuffer() {
+		// compressed blocks must be copied to the heap for decompression anyway
+		if (this.mappedFile != null
+				&& (this.mapFileHeader == null || !this.mapFileHeader.getMapFileInfo().compressedBlocks)) {
+			return new MappedReadBuffer(this.mappedFile);
+		}
+		return new ReadBuffer(this.dataSource);
+	}
+
+	/**
+	 * @return the parameters of all sub-files in the order of their start address.
+	 */
+	List<SubFileParameter> getSubFileParameters() {
+		List<SubFileParameter> subFileParameters = new ArrayList<SubFileParameter>();
+		byte zoomLevelMax = this.mapFileHeader.getQueryZoomLevel(Byte.MAX_VALUE);
+		for (byte zoomLevel = 0; zoomLevel <= zoomLevelMax; ++zoomLevel) {
+			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(zoomLevel);
+			if (subFileParameter != null && !subFileParameters.contains(subFileParameter)) {
+				int index = 0;
+				while (index < subFileParameters.size()
+						&& subFileParameters.get(index).startAddress < subFileParameter.startAddress) {
+					++index;
+				}
+				subFileParameters.add(index, subFileParameter);
+			}
+		}
+		return subFileParameters;
+	}
+}
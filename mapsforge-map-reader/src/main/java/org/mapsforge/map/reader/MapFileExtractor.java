@@ -0,0 +1,409 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * Extracts the area of a bounding box from an existing map file into a new map file.
+ * <p>
+ * Each block of a map file is self-contained, so the blocks which cover the bounding box are copied unchanged and
+ * without decoding. Only the header, the sub-file parameters and the index are rewritten. As the blocks are copied as
+ * a whole, the new map file may still contain elements which lie slightly outside of the bounding box. The optional
+ * start position is removed from the header if it lies outside of the bounding box.
+ */
+public final class MapFileExtractor {
+	/**
+	 * Bitmask to extract the block offset from an index entry.
+	 */
+	private static final long BITMASK_INDEX_OFFSET = 0x7FFFFFFFFFL;
+
+	/**
+	 * Bitmask to extract the water information from an index entry.
+	 */
+	private static final long BITMASK_INDEX_WATER = 0x8000000000L;
+
+	/**
+	 * Position of the bounding box in the file header.
+	 */
+	private static final int BOUNDING_BOX_POSITION = 44;
+
+	/**
+	 * Size of the buffer for copying the blocks.
+	 */
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final double COORDINATES_DIVISOR = 1000000d;
+
+	/**
+	 * Position of the file size in the file header.
+	 */
+	private static final int FILE_SIZE_POSITION = 28;
+
+	/**
+	 * Bitmask for the optional start position in the flags of the file header.
+	 */
+	private static final byte HEADER_BITMASK_START_POSITION = 0x40;
+
+	/**
+	 * Position of the remaining header size in the file header.
+	 */
+	private static final int HEADER_SIZE_POSITION = 20;
+
+	/**
+	 * Position of the projection name in the file header, which is the last field before the flags.
+	 */
+	private static final int PROJECTION_NAME_POSITION = 62;
+
+	private static final String READ_ONLY_MODE = "r";
+	private static final String READ_WRITE_MODE = "rw";
+
+	/**
+	 * Length of the debug signature at the beginning of the index.
+	 */
+	private static final int SIGNATURE_LENGTH_INDEX = 16;
+
+	/**
+	 * Size of the optional start position in the file header.
+	 */
+	private static final int START_POSITION_SIZE = 8;
+
+	/**
+	 * Size of the parameters of a single sub-file in the file header.
+	 */
+	private static final int SUB_FILE_PARAMETER_SIZE = 19;
+
+	/**
+	 * Copies the area of the given bounding box from the source map file into the destination map file. An existing
+	 * destination file is overwritten.
+	 * 
+	 * @param source
+	 *            the map file from which the blocks should be copied.
+	 * @param destination
+	 *            the new map file.
+	 * @param boundingBox
+	 *            the area which should be extracted.
+	 * @throws IOException
+	 *             if the source map file is invalid or if an error occurs while reading or writing a file.
+	 * @throws IllegalArgumentException
+	 *             if an argument is null or if the bounding box does not intersect the source map file.
+	 */
+	public static void extract(File source, File destination, BoundingBox boundingBox) throws IOException {
+		if (destination == null) {
+			throw new IllegalArgumentException("destination must not be null");
+		} else if (boundingBox == null) {
+			throw new IllegalArgumentException("boundingBox must not be null");
+		}
+
+		MapFile mapFile = MapFile.open(source);
+		try {
+			BoundingBox newBoundingBox = intersect(mapFile.getMapFileInfo().boundingBox, boundingBox);
+			if (newBoundingBox == null) {
+				throw new IllegalArgumentException("boundingBox does not intersect the map file: " + boundingBox);
+			}
+
+			RandomAccessFile outputFile = new RandomAccessFile(destination, READ_WRITE_MODE);
+			try {
+				outputFile.setLength(0);
+				new MapFileExtractor(mapFile, outputFile, newBoundingBox).extract();
+			} finally {
+				outputFile.close();
+			}
+		} finally {
+			mapFile.close();
+		}
+	}
+
+	/**
+	 * Starts the extraction from the command line.
+	 * 
+	 * @param args
+	 *            the source map file, the destination map file and the bounding box in the format
+	 *            minLat,minLon,maxLat,maxLon.
+	 * @throws IOException
+	 *             if an error occurs while reading or writing a file.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("usage: MapFileExtractor <source> <destination> <minLat,minLon,maxLat,maxLon>");
+			System.exit(1);
+		}
+		extract(new File(args[0]), new File(args[1]), BoundingBox.fromString(args[2]));
+	}
+
+	/**
+	 * @return the position of the flags in the given file header.
+	 */
+	private static int getFlagsPosition(byte[] header) {
+		// skip the variable byte encoded length of the projection name and the name itself
+		int position = PROJECTION_NAME_POSITION;
+		int projectionNameLength = 0;
+		int shift = 0;
+		while ((header[position] & 0x80) != 0) {
+			projectionNameLength |= (header[position++] & 0x7f) << shift;
+			shift += 7;
+		}
+		projectionNameLength |= header[position++] << shift;
+		return position + projectionNameLength;
+	}
+
+	private static BoundingBox intersect(BoundingBox boundingBox1, BoundingBox boundingBox2) {
+		int minLatitude = Math.max(boundingBox1.minLatitudeE6, boundingBox2.minLatitudeE6);
+		int minLongitude = Math.max(boundingBox1.minLongitudeE6, boundingBox2.minLongitudeE6);
+		int maxLatitude = Math.min(boundingBox1.maxLatitudeE6, boundingBox2.maxLatitudeE6);
+		int maxLongitude = Math.min(boundingBox1.maxLongitudeE6, boundingBox2.maxLongitudeE6);
+		if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+			return null;
+		}
+		return new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+	}
+
+	private static void putFiveBytesLong(byte[] buffer, int offset, long value) {
+		buffer[offset] = (byte) (value >> 32);
+		buffer[offset + 1] = (byte) (value >> 24);
+		buffer[offset + 2] = (byte) (value >> 16);
+		buffer[offset + 3] = (byte) (value >> 8);
+		buffer[offset + 4] = (byte) value;
+	}
+
+	/**
+	 * Removes the start position, which directly follows the flags, from the given file header.
+	 * 
+	 * @return the new file header.
+	 */
+	private static byte[] removeStartPosition(byte[] header) {
+		int flagsPosition = getFlagsPosition(header);
+		byte[] newHeader = new byte[header.length - START_POSITION_SIZE];
+		System.arraycopy(header, 0, newHeader, 0, flagsPosition + 1);
+		System.arraycopy(header, flagsPosition + 1 + START_POSITION_SIZE, newHeader, flagsPosition + 1,
+				newHeader.length - flagsPosition - 1);
+
+		newHeader[flagsPosition] &= ~HEADER_BITMASK_START_POSITION;
+		ByteBuffer.wrap(newHeader).putInt(HEADER_SIZE_POSITION, newHeader.length - HEADER_SIZE_POSITION - 4);
+		return newHeader;
+	}
+
+	private final BoundingBox boundingBox;
+	private final byte[] buffer;
+	private final MapDataSource dataSource;
+	private final boolean debugFile;
+	private final MapFile mapFile;
+	private final RandomAccessFile outputFile;
+
+	private MapFileExtractor(MapFile mapFile, RandomAccessFile outputFile, BoundingBox boundingBox) {
+		this.dataSource = mapFile.dataSource;
+		this.mapFile = mapFile;
+		this.debugFile = mapFile.getMapFileInfo().debugFile;
+		this.outputFile = outputFile;
+		this.boundingBox = boundingBox;
+		this.buffer = new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Copies the given number of bytes from the given position of the input file to the output file.
+	 */
+	private void copy(long position, long length) throws IOException {
+		long remainingBytes = length;
+		while (remainingBytes > 0) {
+			int bytesToCopy = (int) Math.min(remainingBytes, this.buffer.length);
+			readFully(position + length - remainingBytes, this.buffer, bytesToCopy);
+			this.outputFile.write(this.buffer, 0, bytesToCopy);
+			remainingBytes -= bytesToCopy;
+		}
+	}
+
+	/**
+	 * Copies the given blocks of a sub-file with Hilbert block order one by one, as the blocks of a row are not stored
+	 * consecutively. The blocks of the new sub-file are stored row by row, which is valid as each index entry still
+	 * contains the block size.
+	 */
+	private void copyBlocks(SubFileParameter subFileParameter, long startAddress, long fromRow, long toRow,
+			long fromColumn, int blocksWidth, byte[] index) throws IOException {
+		int indexEntrySize = subFileParameter.indexEntrySize;
+		byte[] indexEntryBytes = new byte[indexEntrySize];
+		int indexPosition = 0;
+		for (long row = fromRow; row <= toRow; ++row) {
+			for (int column = 0; column < blocksWidth; ++column) {
+				long blockNumber = row * subFileParameter.blocksWidth + fromColumn + column;
+				readFully(subFileParameter.indexStartAddress + blockNumber * indexEntrySize, indexEntryBytes,
+						indexEntrySize);
+
+				long indexEntry = Deserializer.getFiveBytesLong(indexEntryBytes, 0);
+				long blockPointer = indexEntry & BITMASK_INDEX_OFFSET;
+				int blockSize = Deserializer.getInt(indexEntryBytes, SubFileParameter.BYTES_PER_INDEX_ENTRY);
+				if (blockPointer < 1 || blockSize < 0 || blockPointer + blockSize > subFileParameter.subFileSize) {
+					throw new IOException("invalid block: " + blockPointer + ", " + blockSize);
+				}
+
+				// move the block pointer to the new position, the water flag and the block size are kept
+				long newBlockPointer = this.outputFile.getFilePointer() - startAddress;
+				putFiveBytesLong(index, indexPosition, (indexEntry & BITMASK_INDEX_WATER) | newBlockPointer);
+				System.arraycopy(indexEntryBytes, SubFileParameter.BYTES_PER_INDEX_ENTRY, index, indexPosition
+						+ SubFileParameter.BYTES_PER_INDEX_ENTRY, SubFileParameter.BYTES_PER_BLOCK_SIZE);
+				indexPosition += indexEntrySize;
+
+				copy(subFileParameter.startAddress + blockPointer, blockSize);
+			}
+		}
+	}
+
+	/**
+	 * Copies the given blocks of a sub-file whose blocks are stored row by row, the blocks of each row are copied at
+	 * once.
+	 */
+	private void copyRows(SubFileParameter subFileParameter, long startAddress, long fromRow, long toRow,
+			long fromColumn, int blocksWidth, byte[] index) throws IOException {
+		// the blocks of a row are stored consecutively and can be copied at once
+		byte[] indexEntries = new byte[(blocksWidth + 1) * SubFileParameter.BYTES_PER_INDEX_ENTRY];
+		int indexPosition = 0;
+		for (long row = fromRow; row <= toRow; ++row) {
+			long firstBlockNumber = row * subFileParameter.blocksWidth + fromColumn;
+			long lastBlockNumber = firstBlockNumber + blocksWidth - 1;
+
+			// read the index entries of the row and of the following block
+			int entriesToRead = lastBlockNumber + 1 == subFileParameter.numberOfBlocks ? blocksWidth : blocksWidth + 1;
+			readFully(subFileParameter.indexStartAddress + firstBlockNumber * SubFileParameter.BYTES_PER_INDEX_ENTRY,
+					indexEntries, entriesToRead * SubFileParameter.BYTES_PER_INDEX_ENTRY);
+
+			long rowStartPointer = Deserializer.getFiveBytesLong(indexEntries, 0) & BITMASK_INDEX_OFFSET;
+			long rowEndPointer;
+			if (entriesToRead == blocksWidth) {
+				rowEndPointer = subFileParameter.subFileSize;
+			} else {
+				rowEndPointer = Deserializer.getFiveBytesLong(indexEntries,
+						blocksWidth * SubFileParameter.BYTES_PER_INDEX_ENTRY) & BITMASK_INDEX_OFFSET;
+			}
+			if (rowStartPointer < 1 || rowEndPointer < rowStartPointer
+					|| rowEndPointer > subFileParameter.subFileSize) {
+				throw new IOException("invalid block pointers: " + rowStartPointer + ", " + rowEndPointer);
+			}
+
+			// move the block pointers of the row to the new position, the water flags are kept
+			long newRowStartPointer = this.outputFile.getFilePointer() - startAddress;
+			for (int column = 0; column < blocksWidth; ++column) {
+				long indexEntry = Deserializer.getFiveBytesLong(indexEntries, column
+						* SubFileParameter.BYTES_PER_INDEX_ENTRY);
+				long blockPointer = (indexEntry & BITMASK_INDEX_OFFSET) - rowStartPointer + newRowStartPointer;
+				putFiveBytesLong(index, indexPosition, (indexEntry & BITMASK_INDEX_WATER) | blockPointer);
+				indexPosition += SubFileParameter.BYTES_PER_INDEX_ENTRY;
+			}
+
+			copy(subFileParameter.startAddress + rowStartPointer, rowEndPointer - rowStartPointer);
+		}
+	}
+
+	private void extract() throws IOException {
+		// read the complete file header
+		byte[] remainingHeaderSize = new byte[4];
+		readFully(HEADER_SIZE_POSITION, remainingHeaderSize, remainingHeaderSize.length);
+		int headerSize = HEADER_SIZE_POSITION + 4 + Deserializer.getInt(remainingHeaderSize, 0);
+		byte[] header = new byte[headerSize];
+		readFully(0, header, headerSize);
+
+		GeoPoint startPosition = this.mapFile.getMapFileInfo().startPosition;
+		if (startPosition != null && !this.boundingBox.contains(startPosition)) {
+			header = removeStartPosition(header);
+			headerSize = header.length;
+		}
+
+		// the sub-file parameters are stored at the end of the file header
+		List<SubFileParameter> subFileParameters = this.mapFile.getSubFileParameters();
+		int subFileParametersPosition = headerSize - subFileParameters.size() * SUB_FILE_PARAMETER_SIZE;
+		if (header[subFileParametersPosition - 1] != subFileParameters.size()) {
+			throw new IOException("unexpected number of sub-files: " + header[subFileParametersPosition - 1]);
+		}
+
+		ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		headerBuffer.position(BOUNDING_BOX_POSITION);
+		headerBuffer.putInt(this.boundingBox.minLatitudeE6);
+		headerBuffer.putInt(this.boundingBox.minLongitudeE6);
+		headerBuffer.putInt(this.boundingBox.maxLatitudeE6);
+		headerBuffer.putInt(this.boundingBox.maxLongitudeE6);
+
+		headerBuffer.position(subFileParametersPosition);
+		this.outputFile.seek(headerSize);
+		for (SubFileParameter subFileParameter : subFileParameters) {
+			long startAddress = this.outputFile.getFilePointer();
+			long subFileSize = extractSubFile(subFileParameter, startAddress);
+
+			headerBuffer.put(subFileParameter.baseZoomLevel);
+			headerBuffer.put(subFileParameter.zoomLevelMin);
+			headerBuffer.put(subFileParameter.zoomLevelMax);
+			headerBuffer.putLong(startAddress);
+			headerBuffer.putLong(subFileSize);
+		}
+		headerBuffer.putLong(FILE_SIZE_POSITION, this.outputFile.length());
+
+		this.outputFile.seek(0);
+		this.outputFile.write(header);
+	}
+
+	/**
+	 * Copies the blocks of the given sub-file which cover the bounding box to the end of the output file.
+	 * 
+	 * @return the size of the new sub-file in bytes.
+	 */
+	private long extractSubFile(SubFileParameter subFileParameter, long startAddress) throws IOException {
+		// calculate the boundary tiles of the new sub-file in the same way as the SubFileParameter does
+		byte baseZoomLevel = subFileParameter.baseZoomLevel;
+		long fromColumn = MercatorProjection.longitudeToTileX(this.boundingBox.minLongitudeE6 / COORDINATES_DIVISOR,
+				baseZoomLevel) - subFileParameter.boundaryTileLeft;
+		long toColumn = MercatorProjection.longitudeToTileX(this.boundingBox.maxLongitudeE6 / COORDINATES_DIVISOR,
+				baseZoomLevel) - subFileParameter.boundaryTileLeft;
+		long fromRow = MercatorProjection.latitudeToTileY(this.boundingBox.maxLatitudeE6 / COORDINATES_DIVISOR,
+				baseZoomLevel) - subFileParameter.boundaryTileTop;
+		long toRow = MercatorProjection.latitudeToTileY(this.boundingBox.minLatitudeE6 / COORDINATES_DIVISOR,
+				baseZoomLevel) - subFileParameter.boundaryTileTop;
+
+		int blocksWidth = (int) (toColumn - fromColumn + 1);
+		int numberOfBlocks = (int) ((toRow - fromRow + 1) * blocksWidth);
+		byte[] index = new byte[numberOfBlocks * subFileParameter.indexEntrySize];
+
+		// copy the debug signature of the index
+		if (this.debugFile) {
+			copy(subFileParameter.startAddress, SIGNATURE_LENGTH_INDEX);
+		}
+		long indexStartAddress = this.outputFile.getFilePointer();
+		this.outputFile.seek(indexStartAddress + index.length);
+
+		if (subFileParameter.hilbertBlockOrder) {
+			copyBlocks(subFileParameter, startAddress, fromRow, toRow, fromColumn, blocksWidth, index);
+		} else {
+			copyRows(subFileParameter, startAddress, fromRow, toRow, fromColumn, blocksWidth, index);
+		}
+
+		long endAddress = this.outputFile.getFilePointer();
+		this.outputFile.seek(indexStartAddress);
+		this.outputFile.write(index);
+		this.outputFile.seek(endAddress);
+		return endAddress - startAddress;
+	}
+
+	private void readFully(long position, byte[] data, int length) throws IOException {
+		if (this.dataSource.read(position, data, 0, length) != length) {
+			throw new EOFException("unexpected end of file at position " + position);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Options which define how a {@link MapFile} is opened and how much memory it may use for caching.
+ * <p>
+ * The options are read once when the map file is opened, later modifications have no effect on already opened files.
+ */
+public class MapFileOptions {
+	/**
+	 * Default size of the index cache in bytes, which equals 64 index blocks without block sizes.
+	 */
+	public static final int DEFAULT_INDEX_CACHE_SIZE = 64 * IndexCache.SIZE_OF_INDEX_BLOCK;
+
+	private static void checkNotNegative(String name, long value) {
+		if (value < 0) {
+			throw new IllegalArgumentException(name + " must not be negative: " + value);
+		}
+	}
+
+	private int blockCacheSize;
+	private int indexCacheSize = DEFAULT_INDEX_CACHE_SIZE;
+	private boolean memoryMapped;
+	private int pinnedIndexSize;
+
+	/**
+	 * @return the maximum number of decoded blocks in the block cache.
+	 */
+	public int getBlockCacheSize() {
+		return this.blockCacheSize;
+	}
+
+	/**
+	 * @return the maximum amount of bytes which are used to cache index blocks.
+	 */
+	public int getIndexCacheSize() {
+		return this.indexCacheSize;
+	}
+
+	/**
+	 * @return the maximum index size in bytes of a sub-file whose index is kept completely in memory.
+	 */
+	public int getPinnedIndexSize() {
+		return this.pinnedIndexSize;
+	}
+
+	/**
+	 * @return true if the map file should be memory-mapped, false otherwise.
+	 */
+	public boolean isMemoryMapped() {
+		return this.memoryMapped;
+	}
+
+	/**
+	 * Sets the maximum number of decoded blocks which are cached. Above the base zoom level of a sub-file, neighbouring
+	 * tiles are read from the same block, the cache then avoids reading and decoding the block again for each tile. A
+	 * value of zero disables the block cache, which is the default.
+	 * 
+	 * @param blockCacheSize
+	 *            the capacity of the block cache.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public void setBlockCacheSize(int blockCacheSize) {
+		checkNotNegative("blockCacheSize", blockCacheSize);
+		this.blockCacheSize = blockCacheSize;
+	}
+
+	/**
+	 * Sets the maximum amount of bytes which are used to cache index blocks. The cache is shared by all
+	 * {@link MapDatabase} instances which read the same map file. The index blocks of map files with Hilbert block
+	 * order are larger, as their index entries contain the block sizes, so fewer of them fit into the cache.
+	 * 
+	 * @param indexCacheSize
+	 *            the size of the index cache in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the size is negative.
+	 */
+	public void setIndexCacheSize(int indexCacheSize) {
+		checkNotNegative("indexCacheSize", indexCacheSize);
+		this.indexCacheSize = indexCacheSize;
+	}
+
+	/**
+	 * @param memoryMapped
+	 *            true if the map file should be memory-mapped, false otherwise.
+	 * @see MapDatabase#openFile(java.io.File, boolean)
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * Sets the maximum index size of a sub-file whose index is read completely and kept in memory on its first use.
+	 * Pinned index blocks do not count against the index cache size and are never evicted. A value of zero disables
+	 * pinning.
+	 * 
+	 * @param pinnedIndexSize
+	 *            the maximum index size in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the size is negative.
+	 */
+	public void setPinnedIndexSize(int pinnedIndexSize) {
+		checkNotNegative("pinnedIndexSize", pinnedIndexSize);
+		this.pinnedIndexSize = pinnedIndexSize;
+	}
+}
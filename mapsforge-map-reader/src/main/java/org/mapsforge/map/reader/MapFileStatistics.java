@@ -0,0 +1,256 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * Aggregated statistics and errors of a map file as collected by the {@link MapFileVerifier}.
+ */
+public class MapFileStatistics {
+	/**
+	 * Maximum number of error messages which are kept, further errors are only counted.
+	 */
+	private static final int MAXIMUM_ERROR_MESSAGES = 100;
+
+	/**
+	 * Maximum zoom level which can be stored in a map file.
+	 */
+	static final int ZOOM_LEVEL_MAX = 22;
+
+	private static void addAll(long[] counts, long[] otherCounts) {
+		for (int i = 0; i < counts.length; ++i) {
+			counts[i] += otherCounts[i];
+		}
+	}
+
+	private static Map<Tag, Long> createHistogram(Tag[] tags, long[] tagCounts) {
+		Map<Tag, Long> histogram = new LinkedHashMap<Tag, Long>();
+		for (int tagId = 0; tagId < tags.length; ++tagId) {
+			if (tagCounts[tagId] > 0) {
+				histogram.put(tags[tagId], Long.valueOf(tagCounts[tagId]));
+			}
+		}
+		return Collections.unmodifiableMap(histogram);
+	}
+
+	private final List<String> errorMessages;
+	private long maximumBlockSize;
+	private long numberOfBlocks;
+	private long numberOfEmptyBlocks;
+	private long numberOfErrors;
+	private final long[] numberOfPointsOfInterest;
+	private long numberOfWaterBlocks;
+	private final long[] numberOfWays;
+	private final long[] poiTagCounts;
+	private final Tag[] poiTags;
+	private long totalBlockSize;
+	private final long[] wayTagCounts;
+	private final Tag[] wayTags;
+
+	/**
+	 * @param poiTags
+	 *            the POI tag table of the map file.
+	 * @param wayTags
+	 *            the way tag table of the map file.
+	 */
+	MapFileStatistics(Tag[] poiTags, Tag[] wayTags) {
+		this.poiTags = poiTags;
+		this.wayTags = wayTags;
+		this.errorMessages = new ArrayList<String>();
+		this.numberOfPointsOfInterest = new long[ZOOM_LEVEL_MAX + 1];
+		this.numberOfWays = new long[ZOOM_LEVEL_MAX + 1];
+		this.poiTagCounts = new long[poiTags.length];
+		this.wayTagCounts = new long[wayTags.length];
+	}
+
+	/**
+	 * @return the messages of the first errors which have been found.
+	 */
+	public List<String> getErrorMessages() {
+		return Collections.unmodifiableList(this.errorMessages);
+	}
+
+	/**
+	 * @return the size of the largest block in bytes.
+	 */
+	public long getMaximumBlockSize() {
+		return this.maximumBlockSize;
+	}
+
+	/**
+	 * @return the number of blocks in all sub-files.
+	 */
+	public long getNumberOfBlocks() {
+		return this.numberOfBlocks;
+	}
+
+	/**
+	 * @return the number of blocks without any data.
+	 */
+	public long getNumberOfEmptyBlocks() {
+		return this.numberOfEmptyBlocks;
+	}
+
+	/**
+	 * @return the number of errors which have been found.
+	 */
+	public long getNumberOfErrors() {
+		return this.numberOfErrors;
+	}
+
+	/**
+	 * @param zoomLevel
+	 *            the zoom level.
+	 * @return the number of POIs which are visible from the given zoom level on.
+	 */
+	public long getNumberOfPointsOfInterest(byte zoomLevel) {
+		return this.numberOfPointsOfInterest[zoomLevel];
+	}
+
+	/**
+	 * @return the number of blocks which are completely covered by water.
+	 */
+	public long getNumberOfWaterBlocks() {
+		return this.numberOfWaterBlocks;
+	}
+
+	/**
+	 * @param zoomLevel
+	 *            the zoom level.
+	 * @return the number of ways which are visible from the given zoom level on.
+	 */
+	public long getNumberOfWays(byte zoomLevel) {
+		return this.numberOfWays[zoomLevel];
+	}
+
+	/**
+	 * @return how often each POI tag is used, tags which are not used are omitted.
+	 */
+	public Map<Tag, Long> getPoiTagHistogram() {
+		return createHistogram(this.poiTags, this.poiTagCounts);
+	}
+
+	/**
+	 * @return the size of all blocks in bytes.
+	 */
+	public long getTotalBlockSize() {
+		return this.totalBlockSize;
+	}
+
+	/**
+	 * @return how often each way tag is used, tags which are not used are omitted.
+	 */
+	public Map<Tag, Long> getWayTagHistogram() {
+		return createHistogram(this.wayTags, this.wayTagCounts);
+	}
+
+	/**
+	 * @return true if no errors have been found, false otherwise.
+	 */
+	public boolean isValid() {
+		return this.numberOfErrors == 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("MapFileStatistics [numberOfBlocks=");
+		stringBuilder.append(this.numberOfBlocks);
+		stringBuilder.append(", numberOfEmptyBlocks=");
+		stringBuilder.append(this.numberOfEmptyBlocks);
+		stringBuilder.append(", numberOfWaterBlocks=");
+		stringBuilder.append(this.numberOfWaterBlocks);
+		stringBuilder.append(", totalBlockSize=");
+		stringBuilder.append(this.totalBlockSize);
+		stringBuilder.append(", maximumBlockSize=");
+		stringBuilder.append(this.maximumBlockSize);
+		stringBuilder.append(", numberOfErrors=");
+		stringBuilder.append(this.numberOfErrors);
+		stringBuilder.append("]");
+		return stringBuilder.toString();
+	}
+
+	void add(MapFileStatistics mapFileStatistics) {
+		for (String errorMessage : mapFileStatistics.errorMessages) {
+			addErrorMessage(errorMessage);
+		}
+		this.numberOfErrors += mapFileStatistics.numberOfErrors - mapFileStatistics.errorMessages.size();
+		this.maximumBlockSize = Math.max(this.maximumBlockSize, mapFileStatistics.maximumBlockSize);
+		this.numberOfBlocks += mapFileStatistics.numberOfBlocks;
+		this.numberOfEmptyBlocks += mapFileStatistics.numberOfEmptyBlocks;
+		this.numberOfWaterBlocks += mapFileStatistics.numberOfWaterBlocks;
+		this.totalBlockSize += mapFileStatistics.totalBlockSize;
+		addAll(this.numberOfPointsOfInterest, mapFileStatistics.numberOfPointsOfInterest);
+		addAll(this.numberOfWays, mapFileStatistics.numberOfWays);
+		addAll(this.poiTagCounts, mapFileStatistics.poiTagCounts);
+		addAll(this.wayTagCounts, mapFileStatistics.wayTagCounts);
+	}
+
+	void addBlock(long blockSize, boolean isWater) {
+		++this.numberOfBlocks;
+		if (blockSize == 0) {
+			++this.numberOfEmptyBlocks;
+		}
+		if (isWater) {
+			++this.numberOfWaterBlocks;
+		}
+		this.totalBlockSize += blockSize;
+		this.maximumBlockSize = Math.max(this.maximumBlockSize, blockSize);
+	}
+
+	void addError(SubFileParameter subFileParameter, long blockNumber, String message) {
+		addErrorMessage("sub-file " + subFileParameter.baseZoomLevel + ", block " + blockNumber + ": " + message);
+	}
+
+	void addPointOfInterest(PoiRecord poiRecord) {
+		for (int tagIndex = 0; tagIndex < poiRecord.getNumberOfTags(); ++tagIndex) {
+			++this.poiTagCounts[poiRecord.getTagId(tagIndex)];
+		}
+	}
+
+	void addWay(WayRecord wayRecord) {
+		for (int tagIndex = 0; tagIndex < wayRecord.getNumberOfTags(); ++tagIndex) {
+			++this.wayTagCounts[wayRecord.getTagId(tagIndex)];
+		}
+	}
+
+	/**
+	 * Adds the number of elements per zoom level from the cumulated zoom table of a block.
+	 */
+	void addZoomTable(SubFileParameter subFileParameter, int[][] zoomTable) {
+		for (int row = 0; row < zoomTable.length; ++row) {
+			int zoomLevel = subFileParameter.zoomLevelMin + row;
+			int previousPois = row == 0 ? 0 : zoomTable[row - 1][0];
+			int previousWays = row == 0 ? 0 : zoomTable[row - 1][1];
+			this.numberOfPointsOfInterest[zoomLevel] += zoomTable[row][0] - previousPois;
+			this.numberOfWays[zoomLevel] += zoomTable[row][1] - previousWays;
+		}
+	}
+
+	private void addErrorMessage(String errorMessage) {
+		++this.numberOfErrors;
+		if (this.errorMessages.size() < MAXIMUM_ERROR_MESSAGES) {
+			this.errorMessages.add(errorMessage);
+		}
+	}
+}
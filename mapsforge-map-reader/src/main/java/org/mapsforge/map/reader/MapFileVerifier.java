@@ -0,0 +1,245 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * Decodes every block of a map file to check its validity and to collect statistics.
+ * <p>
+ * The blocks of all sub-files are split into ranges which are processed in parallel by the given number of threads.
+ * Each thread uses its own {@link MapDatabase} and the same decoding logic as the queries, so every error which would
+ * occur during a query is found. The results of all threads are aggregated into a single {@link MapFileStatistics}.
+ */
+public final class MapFileVerifier {
+	private static class BlockRange {
+		final long fromBlockNumber;
+		final SubFileParameter subFileParameter;
+		final long toBlockNumber;
+
+		BlockRange(SubFileParameter subFileParameter, long fromBlockNumber, long toBlockNumber) {
+			this.subFileParameter = subFileParameter;
+			this.fromBlockNumber = fromBlockNumber;
+			this.toBlockNumber = toBlockNumber;
+		}
+	}
+
+	private static class VerifierTask implements Callable<MapFileStatistics>, MapDataSink {
+		private final Queue<BlockRange> blockRanges;
+		private long blockNumber;
+		private final MapFile mapFile;
+		private final MapFileStatistics mapFileStatistics;
+		private SubFileParameter subFileParameter;
+
+		VerifierTask(MapFile mapFile, Queue<BlockRange> blockRanges) {
+			this.mapFile = mapFile;
+			this.blockRanges = blockRanges;
+			MapFileInfo mapFileInfo = mapFile.getMapFileInfo();
+			this.mapFileStatistics = new MapFileStatistics(mapFileInfo.poiTags, mapFileInfo.wayTags);
+		}
+
+		@Override
+		public MapFileStatistics call() throws IOException {
+			MapDatabase mapDatabase = new MapDatabase();
+			FileOpenResult fileOpenResult = mapDatabase.openFile(this.mapFile);
+			if (!fileOpenResult.isSuccess()) {
+				throw new IOException(fileOpenResult.getErrorMessage());
+			}
+
+			try {
+				BlockRange blockRange;
+				while ((blockRange = this.blockRanges.poll()) != null) {
+					this.subFileParameter = blockRange.subFileParameter;
+					this.blockNumber = blockRange.fromBlockNumber;
+					while (this.blockNumber < blockRange.toBlockNumber) {
+						mapDatabase.verifyBlock(this.subFileParameter, this.blockNumber, this.mapFileStatistics, this);
+						++this.blockNumber;
+					}
+				}
+			} finally {
+				mapDatabase.closeFile();
+			}
+			return this.mapFileStatistics;
+		}
+
+		@Override
+		public void pointOfInterest(PoiRecord poiRecord) {
+			this.mapFileStatistics.addPointOfInterest(poiRecord);
+		}
+
+		@Override
+		public void queryCompleted(boolean isWater) {
+			// do nothing
+		}
+
+		@Override
+		public void way(WayRecord wayRecord) {
+			if (!wayRecord.decodeCoordinates()) {
+				this.mapFileStatistics.addError(this.subFileParameter, this.blockNumber, "invalid way nodes");
+			}
+
+			// count the tags only once for ways with multiple way data blocks
+			if (wayRecord.wayDataBlock == 0) {
+				this.mapFileStatistics.addWay(wayRecord);
+			}
+		}
+	}
+
+	/**
+	 * Number of consecutive blocks which are processed by a thread at once.
+	 */
+	private static final int BLOCKS_PER_RANGE = 256;
+
+	/**
+	 * Starts the verification from the command line and prints the statistics. The exit code is 1 if the map file is
+	 * invalid.
+	 * 
+	 * @param args
+	 *            the map file and optionally the number of threads.
+	 * @throws IOException
+	 *             if the map file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("usage: MapFileVerifier <file> [threads]");
+			System.exit(1);
+		}
+		int numberOfThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime()
+				.availableProcessors();
+
+		MapFileStatistics mapFileStatistics = verify(new File(args[0]), numberOfThreads);
+		System.out.println(mapFileStatistics);
+		for (byte zoomLevel = 0; zoomLevel <= MapFileStatistics.ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long pois = mapFileStatistics.getNumberOfPointsOfInterest(zoomLevel);
+			long ways = mapFileStatistics.getNumberOfWays(zoomLevel);
+			if (pois > 0 || ways > 0) {
+				System.out.println("zoom level " + zoomLevel + ": " + pois + " POIs, " + ways + " ways");
+			}
+		}
+		for (Map.Entry<Tag, Long> entry : mapFileStatistics.getPoiTagHistogram().entrySet()) {
+			System.out.println("POI tag " + entry.getKey() + ": " + entry.getValue());
+		}
+		for (Map.Entry<Tag, Long> entry : mapFileStatistics.getWayTagHistogram().entrySet()) {
+			System.out.println("way tag " + entry.getKey() + ": " + entry.getValue());
+		}
+		for (String errorMessage : mapFileStatistics.getErrorMessages()) {
+			System.err.println(errorMessage);
+		}
+
+		if (!mapFileStatistics.isValid()) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Opens the given map file memory-mapped, if possible, and verifies it.
+	 * 
+	 * @param file
+	 *            the map file.
+	 * @param numberOfThreads
+	 *            the number of threads which decode the blocks in parallel.
+	 * @return the statistics and errors of the map file.
+	 * @throws IOException
+	 *             if the map file cannot be opened or read.
+	 * @throws IllegalArgumentException
+	 *             if the file is null or the number of threads is less than one.
+	 */
+	public static MapFileStatistics verify(File file, int numberOfThreads) throws IOException {
+		MapFile mapFile = MapFile.open(file, true);
+		try {
+			return verify(mapFile, numberOfThreads);
+		} finally {
+			mapFile.close();
+		}
+	}
+
+	/**
+	 * Decodes all blocks of the given map file in parallel.
+	 * 
+	 * @param mapFile
+	 *            the map file.
+	 * @param numberOfThreads
+	 *            the number of threads which decode the blocks in parallel.
+	 * @return the statistics and errors of the map file.
+	 * @throws IOException
+	 *             if the map file cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the map file is null or closed or the number of threads is less than one.
+	 */
+	public static MapFileStatistics verify(MapFile mapFile, int numberOfThreads) throws IOException {
+		if (mapFile == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		} else if (mapFile.isClosed()) {
+			throw new IllegalArgumentException("mapFile has been closed");
+		} else if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be positive: " + numberOfThreads);
+		}
+
+		// split the blocks of all sub-files into ranges which are processed one after another by the threads
+		Queue<BlockRange> blockRanges = new ConcurrentLinkedQueue<BlockRange>();
+		for (SubFileParameter subFileParameter : mapFile.getSubFileParameters()) {
+			for (long blockNumber = 0; blockNumber < subFileParameter.numberOfBlocks; blockNumber += BLOCKS_PER_RANGE) {
+				blockRanges.add(new BlockRange(subFileParameter, blockNumber, Math.min(blockNumber + BLOCKS_PER_RANGE,
+						subFileParameter.numberOfBlocks)));
+			}
+		}
+
+		List<VerifierTask> verifierTasks = new ArrayList<VerifierTask>();
+		for (int i = 0; i < numberOfThreads; ++i) {
+			verifierTasks.add(new VerifierTask(mapFile, blockRanges));
+		}
+
+		MapFileInfo mapFileInfo = mapFile.getMapFileInfo();
+		MapFileStatistics mapFileStatistics = new MapFileStatistics(mapFileInfo.poiTags, mapFileInfo.wayTags);
+		ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			for (Future<MapFileStatistics> future : executorService.invokeAll(verifierTasks)) {
+				mapFileStatistics.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("verification has been interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executorService.shutdownNow();
+		}
+		return mapFileStatistics;
+	}
+
+	private MapFileVerifier() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Loads the blocks around queried tiles on a background thread, so that the first query for a neighbouring tile does
+ * not have to wait for the disk.
+ * <p>
+ * The prefetcher reads via its own {@link MapDatabase} from a shared {@link MapFile}. It fills the index cache and the
+ * block cache of the map file, if one has been configured via {@link MapFileOptions#setBlockCacheSize(int)}. Without a
+ * block cache, the read blocks only end up in the file system cache of the operating system.
+ * <p>
+ * The background thread has the lowest priority and reads at most the configured number of bytes per second, so that
+ * it does not compete with the queries in the foreground. Only a limited number of tiles is queued, the oldest ones
+ * are dropped if the queue is full. This class is thread-safe.
+ */
+public class MapPrefetcher {
+	private class PrefetchThread extends Thread {
+		private long availableBytes;
+		private long lastUpdateTime;
+
+		PrefetchThread() {
+			setDaemon(true);
+			setName(THREAD_NAME);
+			setPriority(Thread.MIN_PRIORITY);
+		}
+
+		@Override
+		public void run() {
+			MapDatabase mapDatabase = new MapDatabase();
+			FileOpenResult fileOpenResult = mapDatabase.openFile(MapPrefetcher.this.mapFile);
+			if (!fileOpenResult.isSuccess()) {
+				LOGGER.warning(fileOpenResult.getErrorMessage());
+				return;
+			}
+
+			this.availableBytes = MapPrefetcher.this.bytesPerSecond;
+			this.lastUpdateTime = System.currentTimeMillis();
+			try {
+				while (!isInterrupted()) {
+					Tile tile = takeTile();
+					waitForBudget();
+					if (MapPrefetcher.this.mapFile.isClosed()) {
+						break;
+					}
+					this.availableBytes -= mapDatabase.prefetchBlocks(tile);
+				}
+			} catch (InterruptedException e) {
+				// the prefetcher has been closed
+			} catch (IOException e) {
+				if (!MapPrefetcher.this.mapFile.isClosed()) {
+					LOGGER.log(Level.SEVERE, null, e);
+				}
+			} finally {
+				mapDatabase.closeFile();
+			}
+		}
+
+		/**
+		 * Waits until the I/O budget of this thread allows to read another tile.
+		 */
+		private void waitForBudget() throws InterruptedException {
+			while (true) {
+				long currentTime = System.currentTimeMillis();
+				long elapsedTime = Math.max(0, currentTime - this.lastUpdateTime);
+				this.lastUpdateTime = currentTime;
+
+				// never save more than the budget of one second
+				long bytesPerSecond = MapPrefetcher.this.bytesPerSecond;
+				this.availableBytes = Math.min(bytesPerSecond, this.availableBytes + elapsedTime * bytesPerSecond
+						/ 1000);
+				if (this.availableBytes > 0) {
+					return;
+				}
+
+				Thread.sleep(1 + -this.availableBytes * 1000 / bytesPerSecond);
+			}
+		}
+	}
+
+	/**
+	 * Number of recently prefetched tiles which are not queued again.
+	 */
+	private static final int DEFAULT_RECENT_TILES = 256;
+
+	private static final Logger LOGGER = Logger.getLogger(MapPrefetcher.class.getName());
+	private static final String THREAD_NAME = "MapPrefetcher";
+
+	private static boolean isValidTile(long tileX, long tileY, byte zoomLevel) {
+		long maximumTileNumber = (1L << zoomLevel) - 1;
+		return tileX >= 0 && tileY >= 0 && tileX <= maximumTileNumber && tileY <= maximumTileNumber;
+	}
+
+	final int bytesPerSecond;
+	final MapFile mapFile;
+	private final PrefetchThread prefetchThread;
+	private final int queueCapacity;
+	private final Set<Tile> queuedTiles;
+	private final Map<Tile, Boolean> recentTiles;
+
+	/**
+	 * Creates a new prefetcher and starts its background thread.
+	 * 
+	 * @param mapFile
+	 *            the map file from which the blocks should be read.
+	 * @param queueCapacity
+	 *            the maximum number of tiles which wait to be prefetched.
+	 * @param bytesPerSecond
+	 *            the maximum number of bytes which are read per second.
+	 * @throws IllegalArgumentException
+	 *             if the map file is null or closed, or if one of the limits is less than one.
+	 */
+	public MapPrefetcher(MapFile mapFile, int queueCapacity, int bytesPerSecond) {
+		if (mapFile == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		} else if (mapFile.isClosed()) {
+			throw new IllegalArgumentException("mapFile has been closed");
+		} else if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+		} else if (bytesPerSecond < 1) {
+			throw new IllegalArgumentException("bytesPerSecond must be positive: " + bytesPerSecond);
+		}
+
+		this.mapFile = mapFile;
+		this.queueCapacity = queueCapacity;
+		this.bytesPerSecond = bytesPerSecond;
+		this.queuedTiles = new LinkedHashSet<Tile>();
+		this.recentTiles = new LRUCache<Tile, Boolean>(Math.max(DEFAULT_RECENT_TILES, queueCapacity));
+		this.prefetchThread = new PrefetchThread();
+		this.prefetchThread.start();
+	}
+
+	/**
+	 * Stops the background thread and waits until it has finished reading. This method must be called before the map
+	 * file is closed.
+	 */
+	public void close() {
+		synchronized (this) {
+			this.queuedTiles.clear();
+		}
+		this.prefetchThread.interrupt();
+		try {
+			this.prefetchThread.join();
+		} catch (InterruptedException e) {
+			// restore the interrupted status
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return true if the background thread is still running, false otherwise.
+	 */
+	public boolean isAlive() {
+		return this.prefetchThread.isAlive();
+	}
+
+	/**
+	 * Queues the eight neighbours of the given tile.
+	 * 
+	 * @param tile
+	 *            the tile which has just been queried.
+	 */
+	public void prefetch(Tile tile) {
+		prefetch(tile, 0, 0);
+	}
+
+	/**
+	 * Queues the neighbours of the given tile which lie in the given direction of movement. If the movement is
+	 * horizontal or vertical, the next column or row of three tiles is queued; for a diagonal movement, both of them.
+	 * Without a movement, all eight neighbours are queued.
+	 * 
+	 * @param tile
+	 *            the tile which has just been queried.
+	 * @param directionX
+	 *            the horizontal movement, only the sign is used.
+	 * @param directionY
+	 *            the vertical movement (positive towards the south), only the sign is used.
+	 */
+	public void prefetch(Tile tile, int directionX, int directionY) {
+		int signX = Integer.signum(directionX);
+		int signY = Integer.signum(directionY);
+
+		synchronized (this) {
+			// the queried tile itself has just been read
+			this.queuedTiles.remove(tile);
+			this.recentTiles.put(tile, Boolean.TRUE);
+
+			for (int deltaY = -1; deltaY <= 1; ++deltaY) {
+				for (int deltaX = -1; deltaX <= 1; ++deltaX) {
+					if (deltaX == 0 && deltaY == 0) {
+						continue;
+					} else if ((signX != 0 || signY != 0) && (signX == 0 || deltaX != signX)
+							&& (signY == 0 || deltaY != signY)) {
+						// the neighbour does not lie in the direction of movement
+						continue;
+					}
+
+					long tileX = tile.tileX + deltaX;
+					long tileY = tile.tileY + deltaY;
+					if (isValidTile(tileX, tileY, tile.zoomLevel)) {
+						queueTile(new Tile(tileX, tileY, tile.zoomLevel));
+					}
+				}
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until a tile is queued and removes it from the queue.
+	 */
+	synchronized Tile takeTile() throws InterruptedException {
+		while (this.queuedTiles.isEmpty()) {
+			wait();
+		}
+
+		Iterator<Tile> iterator = this.queuedTiles.iterator();
+		Tile tile = iterator.next();
+		iterator.remove();
+		this.recentTiles.put(tile, Boolean.TRUE);
+		return tile;
+	}
+
+	/**
+	 * Adds the given tile to the queue unless it has been prefetched recently. Must be called while holding the lock.
+	 */
+	private void queueTile(Tile tile) {
+		if (this.recentTiles.containsKey(tile) || !this.queuedTiles.add(tile)) {
+			return;
+		}
+
+		// drop the oldest tile if the queue is full
+		if (this.queuedTiles.size() > this.queueCapacity) {
+			Iterator<Tile> iterator = this.queuedTiles.iterator();
+			iterator.next();
+			iterator.remove();
+		}
+	}
+}
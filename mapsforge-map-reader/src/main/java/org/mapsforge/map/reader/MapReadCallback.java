@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tile;
+
+/**
+ * Receives the result of an asynchronous query, see {@link AsyncMapDatabase#readMapData(Tile, MapReadCallback)}.
+ * <p>
+ * The callback is executed by one of the query threads of the {@link AsyncMapDatabase}. It should return quickly and
+ * hand over any expensive work to another thread, otherwise it delays the queued queries.
+ */
+public interface MapReadCallback {
+	/**
+	 * Called once after the map data of the given tile have been read.
+	 * 
+	 * @param tile
+	 *            the queried tile.
+	 * @param mapReadResult
+	 *            the read map data or null if the query has failed.
+	 */
+	void mapDataRead(Tile tile, MapReadResult mapReadResult);
+}
@@ -17,7 +17,7 @@ package org.mapsforge.map.reader;
 import java.util.ArrayList;
 import java.util.List;
 
-class MapReadResultBuilder {
+class MapReadResultBuilder implements MapDataSink {
 	boolean isWater;
 	final List<PointOfInterest> pointOfInterests;
 	final List<Way> ways;
@@ -32,6 +32,24 @@ class MapReadResultBuilder {
 		this.ways.addAll(poiWayBundle.ways);
 	}
 
+	@Override
+	public void pointOfInterest(PoiRecord poiRecord) {
+		this.pointOfInterests.add(poiRecord.toPointOfInterest());
+	}
+
+	@Override
+	public void queryCompleted(boolean isWater) {
+		this.isWater = isWater;
+	}
+
+	@Override
+	public void way(WayRecord wayRecord) {
+		Way way = wayRecord.toWay();
+		if (way != null) {
+			this.ways.add(way);
+		}
+	}
+
 	MapReadResult build() {
 		return new MapReadResult(this);
 	}
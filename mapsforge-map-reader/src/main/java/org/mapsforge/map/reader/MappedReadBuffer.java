@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * A {@link ReadBuffer} which decodes the data directly from a memory-mapped map file.
+ * <p>
+ * Reading a block only moves a window over the mapped file, no system call is made and no data is copied. Only absolute
+ * get operations are used, so multiple instances may share the same mapped buffer. Like the byte array of a
+ * {@link ReadBuffer}, the window throws an {@link ArrayIndexOutOfBoundsException} if data outside of it is read. The
+ * window is checked once per read call, the loops of the decoding methods only rely on the bounds check of the mapped
+ * buffer itself.
+ */
+class MappedReadBuffer extends ReadBuffer {
+	private static final String CHARSET_UTF8 = "UTF-8";
+	private static final Logger LOGGER = Logger.getLogger(MappedReadBuffer.class.getName());
+
+	private int bufferLength;
+	private int bufferPosition;
+	private int bufferStart;
+	private long filePosition;
+	private final ByteBuffer mappedFile;
+	private byte[] stringBuffer;
+
+	/**
+	 * @param mappedFile
+	 *            the memory-mapped content of the whole map file.
+	 */
+	MappedReadBuffer(ByteBuffer mappedFile) {
+		super(null);
+		this.mappedFile = mappedFile;
+	}
+
+	@Override
+	public byte readByte() {
+		int index = getIndex(1);
+		++this.bufferPosition;
+		return this.mappedFile.get(index);
+	}
+
+	@Override
+	public boolean readFromFile(int length) {
+		return readFromFile(this.filePosition, length);
+	}
+
+	@Override
+	public int readInt() {
+		int index = getIndex(4);
+		this.bufferPosition += 4;
+		return this.mappedFile.getInt(index);
+	}
+
+	@Override
+	public long readLong() {
+		int index = getIndex(8);
+		this.bufferPosition += 8;
+		return this.mappedFile.getLong(index);
+	}
+
+	@Override
+	public int readShort() {
+		int index = getIndex(2);
+		this.bufferPosition += 2;
+		return this.mappedFile.getShort(index);
+	}
+
+	@Override
+	public int readSignedInt() {
+		int variableByteDecode = 0;
+		byte variableByteShift = 0;
+		int index = this.bufferStart + this.bufferPosition;
+
+		// check if the continuation bit is set
+		byte currentByte = this.mappedFile.get(index++);
+		while ((currentByte & 0x80) != 0) {
+			variableByteDecode |= (currentByte & 0x7f) << variableByteShift;
+			variableByteShift += 7;
+			currentByte = this.mappedFile.get(index++);
+		}
+		setIndex(index);
+
+		// read the six data bits from the last byte
+		if ((currentByte & 0x40) != 0) {
+			// negative
+			return -(variableByteDecode | ((currentByte & 0x3f) << variableByteShift));
+		}
+		// positive
+		return variableByteDecode | ((currentByte & 0x3f) << variableByteShift);
+	}
+
+	@Override
+	public int readUnsignedInt() {
+		int variableByteDecode = 0;
+		byte variableByteShift = 0;
+		int index = this.bufferStart + this.bufferPosition;
+
+		// check if the continuation bit is set
+		byte currentByte = this.mappedFile.get(index++);
+		while ((currentByte & 0x80) != 0) {
+			variableByteDecode |= (currentByte & 0x7f) << variableByteShift;
+			variableByteShift += 7;
+			currentByte = this.mappedFile.get(index++);
+		}
+		setIndex(index);
+
+		// read the seven data bits from the last byte
+		return variableByteDecode | (currentByte << variableByteShift);
+	}
+
+	@Override
+	public String readUTF8EncodedString(int stringLength) {
+		if (stringLength > 0 && this.bufferPosition + stringLength <= this.bufferLength) {
+			if (this.stringBuffer == null || this.stringBuffer.length < stringLength) {
+				this.stringBuffer = new byte[stringLength];
+			}
+			int index = getIndex(stringLength);
+			for (int i = 0; i < stringLength; ++i) {
+				this.stringBuffer[i] = this.mappedFile.get(index + i);
+			}
+			this.bufferPosition += stringLength;
+			try {
+				return new String(this.stringBuffer, 0, stringLength, CHARSET_UTF8);
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		LOGGER.warning("invalid string length: " + stringLength);
+		return null;
+	}
+
+	@Override
+	boolean readFromFile(long offset, int length) {
+		// ensure that the window is not too large
+		if (length > MAXIMUM_BUFFER_SIZE) {
+			LOGGER.warning("invalid read length: " + length);
+			return false;
+		} else if (offset < 0 || offset + length > this.mappedFile.capacity()) {
+			return false;
+		}
+
+		// move the window to the requested data and reset the buffer position
+		this.bufferStart = (int) offset;
+		this.bufferLength = length;
+		this.bufferPosition = 0;
+		this.filePosition = offset + length;
+		return true;
+	}
+
+	@Override
+	int getBufferPosition() {
+		return this.bufferPosition;
+	}
+
+	@Override
+	int getBufferSize() {
+		return this.bufferLength;
+	}
+
+	@Override
+	void readBitPacked(int[] values, int offset, int stride, int length, int bitWidth) {
+		long mask = (1L << bitWidth) - 1;
+		long bits = 0;
+		int availableBits = 0;
+		// the number of bytes of the values is known in advance
+		int index = getIndex((int) (((long) length * bitWidth + 7) >>> 3));
+		int end = offset + length * stride;
+		for (int i = offset; i < end; i += stride) {
+			while (availableBits < bitWidth) {
+				bits |= (this.mappedFile.get(index++) & 0xffL) << availableBits;
+				availableBits += 8;
+			}
+			int zigZag = (int) (bits & mask);
+			values[i] = (zigZag >>> 1) ^ -(zigZag & 1);
+			bits >>>= bitWidth;
+			availableBits -= bitWidth;
+		}
+		this.bufferPosition = index - this.bufferStart;
+	}
+
+	/**
+	 * @return the index of the current buffer position in the mapped file.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if the given number of bytes at the current buffer position exceeds the current window.
+	 */
+	private int getIndex(int bytes) {
+		if (this.bufferPosition < 0 || this.bufferPosition + bytes > this.bufferLength) {
+			throw new ArrayIndexOutOfBoundsException(this.bufferPosition + bytes - 1);
+		}
+		return this.bufferStart + this.bufferPosition;
+	}
+
+	/**
+	 * Moves the buffer position behind a value of variable length which ends before the given index of the mapped file.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if the value exceeds the current window.
+	 */
+	private void setIndex(int index) {
+		int newBufferPosition = index - this.bufferStart;
+		if (this.bufferPosition < 0 || newBufferPosition > this.bufferLength) {
+			throw new ArrayIndexOutOfBoundsException(newBufferPosition - 1);
+		}
+		this.bufferPosition = newBufferPosition;
+	}
+
+	@Override
+	void setBufferPosition(int bufferPosition) {
+		this.bufferPosition = bufferPosition;
+	}
+
+	@Override
+	void skipBytes(int bytes) {
+		this.bufferPosition += bytes;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * Reads the map data of all map files in a directory as if they were a single map file.
+ * <p>
+ * The headers of all map files are read once when the directory is opened and the bounding boxes of the files are
+ * kept in a spatial index. A query only reads the map files whose bounding box intersects the queried tile. The map
+ * files are opened lazily and only the given number of recently used files are kept open, so that a large number of
+ * regional map files can be served without running out of file descriptors. A map file which cannot be opened when it
+ * is queried is skipped by all further queries.
+ * <p>
+ * POIs and ways which are stored identically in several map files, for example ways which cross the border of two
+ * regions, are returned only once. This class is not thread-safe. Each thread should use its own instance.
+ */
+public class MultiMapDatabase implements Closeable {
+	private static class MapFileFilter implements FileFilter {
+		MapFileFilter() {
+			// do nothing
+		}
+
+		@Override
+		public boolean accept(File file) {
+			return file.isFile() && file.getName().endsWith(FILE_EXTENSION);
+		}
+	}
+
+	/**
+	 * File name extension of the map files in the directory.
+	 */
+	private static final String FILE_EXTENSION = ".map";
+
+	private static final Logger LOGGER = Logger.getLogger(MultiMapDatabase.class.getName());
+
+	/**
+	 * Opens all map files in the given directory and reads their headers.
+	 * 
+	 * @param directory
+	 *            the directory which contains the map files.
+	 * @param maximumOpenFiles
+	 *            the maximum number of map files which are kept open.
+	 * @return the opened directory.
+	 * @throws IOException
+	 *             if the directory cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the given directory is null or the maximum number of open files is less than one.
+	 */
+	public static MultiMapDatabase open(File directory, int maximumOpenFiles) throws IOException {
+		return open(directory, new MapFileOptions(), maximumOpenFiles);
+	}
+
+	/**
+	 * Opens all map files in the given directory and reads their headers. Map files which cannot be opened are logged
+	 * and skipped.
+	 * 
+	 * @param directory
+	 *            the directory which contains the map files.
+	 * @param mapFileOptions
+	 *            the options for opening and caching each map file.
+	 * @param maximumOpenFiles
+	 *            the maximum number of map files which are kept open.
+	 * @return the opened directory.
+	 * @throws IOException
+	 *             if the directory cannot be read.
+	 * @throws IllegalArgumentException
+	 *             if the given directory or options are null or the maximum number of open files is less than one.
+	 */
+	public static MultiMapDatabase open(File directory, MapFileOptions mapFileOptions, int maximumOpenFiles)
+			throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory must not be null");
+		} else if (mapFileOptions == null) {
+			throw new IllegalArgumentException("mapFileOptions must not be null");
+		} else if (maximumOpenFiles < 1) {
+			throw new IllegalArgumentException("maximumOpenFiles must be positive: " + maximumOpenFiles);
+		}
+
+		File[] files = directory.listFiles(new MapFileFilter());
+		if (files == null) {
+			throw new IOException("cannot read directory: " + directory);
+		}
+		Arrays.sort(files);
+
+		MultiMapDatabase multiMapDatabase = new MultiMapDatabase(mapFileOptions, maximumOpenFiles);
+		for (File file : files) {
+			MapFile mapFile;
+			try {
+				mapFile = MapFile.open(file);
+			} catch (IOException e) {
+				LOGGER.warning("skipping map file " + file + ": " + e.getMessage());
+				continue;
+			}
+
+			try {
+				multiMapDatabase.addMapFile(file, mapFile.getMapFileInfo());
+			} finally {
+				mapFile.close();
+			}
+		}
+		return multiMapDatabase;
+	}
+
+	private static BoundingBox getBoundingBox(Tile tile) {
+		double minLatitude = MercatorProjection.tileYToLatitude(tile.tileY + 1, tile.zoomLevel);
+		double minLongitude = MercatorProjection.tileXToLongitude(tile.tileX, tile.zoomLevel);
+		double maxLatitude = MercatorProjection.tileYToLatitude(tile.tileY, tile.zoomLevel);
+		double maxLongitude = MercatorProjection.tileXToLongitude(tile.tileX + 1, tile.zoomLevel);
+		return new BoundingBox((int) (minLatitude * 1000000), (int) (minLongitude * 1000000),
+				(int) (maxLatitude * 1000000), (int) (maxLongitude * 1000000));
+	}
+
+	private final BoundingBoxGrid boundingBoxGrid;
+	private final Set<Integer> failedMapFiles;
+	private final Map<Integer, MapDatabase> mapDatabases;
+	private final List<File> mapFiles;
+	private final List<MapFileInfo> mapFileInfos;
+	private final MapFileOptions mapFileOptions;
+
+	private MultiMapDatabase(MapFileOptions mapFileOptions, final int maximumOpenFiles) {
+		this.mapFileOptions = mapFileOptions;
+		this.boundingBoxGrid = new BoundingBoxGrid();
+		this.failedMapFiles = new HashSet<Integer>();
+		this.mapFiles = new ArrayList<File>();
+		this.mapFileInfos = new ArrayList<MapFileInfo>();
+		this.mapDatabases = new LRUCache<Integer, MapDatabase>(maximumOpenFiles) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, MapDatabase> eldest) {
+				if (size() > maximumOpenFiles) {
+					// close the least recently used map file
+					eldest.getValue().closeFile();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Closes all open map files. The directory can still be queried afterwards, the map files are opened again when
+	 * they are needed.
+	 */
+	@Override
+	public void close() {
+		for (MapDatabase mapDatabase : this.mapDatabases.values()) {
+			mapDatabase.closeFile();
+		}
+		this.mapDatabases.clear();
+	}
+
+	/**
+	 * @return the metadata of all map files in the directory.
+	 */
+	public List<MapFileInfo> getMapFileInfos() {
+		return Collections.unmodifiableList(this.mapFileInfos);
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level from all map files which
+	 * intersect the tile.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @return the merged map data of all map files.
+	 */
+	public MapReadResult readMapData(Tile tile) {
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		Set<PoiKey> poiKeys = new HashSet<PoiKey>();
+		Set<WayKey> wayKeys = new HashSet<WayKey>();
+
+		boolean isWater = true;
+		boolean readWaterInfo = false;
+		for (Integer id : this.boundingBoxGrid.getIntersecting(getBoundingBox(tile))) {
+			MapDatabase mapDatabase = getMapDatabase(id);
+			if (mapDatabase == null) {
+				continue;
+			}
+
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			if (mapReadResult == null) {
+				LOGGER.warning("skipping map file: " + this.mapFiles.get(id.intValue()));
+				continue;
+			}
+
+			// the tile is only water if it is water in all map files
+			isWater &= mapReadResult.isWater;
+			readWaterInfo = true;
+
+			for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
+				if (poiKeys.add(new PoiKey(pointOfInterest))) {
+					mapReadResultBuilder.pointOfInterests.add(pointOfInterest);
+				}
+			}
+			for (Way way : mapReadResult.ways) {
+				if (wayKeys.add(new WayKey(way))) {
+					mapReadResultBuilder.ways.add(way);
+				}
+			}
+		}
+
+		mapReadResultBuilder.isWater = isWater && readWaterInfo;
+		return mapReadResultBuilder.build();
+	}
+
+	/**
+	 * @return the number of map files which are currently open.
+	 */
+	int getNumberOfOpenFiles() {
+		return this.mapDatabases.size();
+	}
+
+	private void addMapFile(File file, MapFileInfo mapFileInfo) {
+		this.boundingBoxGrid.add(mapFileInfo.boundingBox);
+		this.mapFiles.add(file);
+		this.mapFileInfos.add(mapFileInfo);
+	}
+
+	/**
+	 * Returns the database for the given map file, the map file is opened if necessary. A map file which cannot be
+	 * opened is remembered and not opened again.
+	 * 
+	 * @return the database or null if the map file cannot be opened.
+	 */
+	private MapDatabase getMapDatabase(Integer id) {
+		MapDatabase mapDatabase = this.mapDatabases.get(id);
+		if (mapDatabase != null) {
+			return mapDatabase;
+		} else if (this.failedMapFiles.contains(id)) {
+			return null;
+		}
+
+		mapDatabase = new MapDatabase();
+		File file = this.mapFiles.get(id.intValue());
+		FileOpenResult fileOpenResult = mapDatabase.openFile(file, this.mapFileOptions);
+		if (!fileOpenResult.isSuccess()) {
+			LOGGER.warning("skipping map file " + file + ": " + fileOpenResult.getErrorMessage());
+			this.failedMapFiles.add(id);
+			return null;
+		}
+		this.mapDatabases.put(id, mapDatabase);
+		return mapDatabase;
+	}
+}
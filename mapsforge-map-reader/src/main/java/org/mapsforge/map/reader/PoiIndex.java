@@ -0,0 +1,372 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * An offline search index for the POIs of a map file, which is created by {@link PoiIndexWriter}.
+ * <p>
+ * The index consists of a regular grid over the bounding box of the map file, in which the POIs are stored cell by
+ * cell, and of a list of all POI names in alphabetical order. POIs with a given tag around a point are found via the
+ * grid cells which intersect the search area, POIs whose name starts with a given prefix via a binary search in the
+ * sorted names. The complete index is kept in memory and never modified after it has been read, so this class is
+ * thread-safe.
+ */
+public final class PoiIndex {
+	/**
+	 * Orders POIs by their distance to the center of a query.
+	 */
+	private static class DistanceComparator implements Comparator<PointOfInterest> {
+		private final GeoPoint center;
+
+		DistanceComparator(GeoPoint center) {
+			this.center = center;
+		}
+
+		@Override
+		public int compare(PointOfInterest pointOfInterest1, PointOfInterest pointOfInterest2) {
+			return Double.compare(getDistance(this.center, pointOfInterest1.position.latitudeE6,
+					pointOfInterest1.position.longitudeE6), getDistance(this.center,
+					pointOfInterest2.position.latitudeE6, pointOfInterest2.position.longitudeE6));
+		}
+	}
+
+	private static final double EQUATORIAL_RADIUS = 6378137.0;
+	private static final String TAG_KEY_ELE = "ele";
+	private static final String TAG_KEY_HOUSE_NUMBER = "addr:housenumber";
+	private static final String TAG_KEY_NAME = "name";
+
+	/**
+	 * Magic string at the beginning of each POI index file.
+	 */
+	static final String MAGIC = "mapsforge POI index";
+
+	/**
+	 * Version of the POI index file format which is written and supported by this implementation.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Reads the given POI index file into memory.
+	 * 
+	 * @param indexFile
+	 *            the POI index file.
+	 * @return the POI index.
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid POI index.
+	 */
+	public static PoiIndex open(File indexFile) throws IOException {
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			return new PoiIndex(dataInputStream);
+		} finally {
+			dataInputStream.close();
+		}
+	}
+
+	/**
+	 * Calculates the grid cell of a coordinate. The coordinate is moved into the bounding box first.
+	 */
+	static int getCell(BoundingBox boundingBox, int gridSize, int latitude, int longitude) {
+		long height = (long) boundingBox.maxLatitudeE6 - boundingBox.minLatitudeE6 + 1;
+		long width = (long) boundingBox.maxLongitudeE6 - boundingBox.minLongitudeE6 + 1;
+		long latitudeOffset = boundingBox.maxLatitudeE6
+				- clamp(latitude, boundingBox.minLatitudeE6, boundingBox.maxLatitudeE6);
+		long longitudeOffset = clamp(longitude, boundingBox.minLongitudeE6, boundingBox.maxLongitudeE6)
+				- boundingBox.minLongitudeE6;
+		return (int) (latitudeOffset * gridSize / height * gridSize + longitudeOffset * gridSize / width);
+	}
+
+	/**
+	 * Converts the given name into the form in which it is sorted and compared.
+	 */
+	static String normalizeName(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static int clamp(int value, int minimum, int maximum) {
+		return Math.max(minimum, Math.min(maximum, value));
+	}
+
+	/**
+	 * Approximates the distance in meters between a point and a coordinate, which is accurate enough for the small
+	 * distances of a local search.
+	 */
+	private static double getDistance(GeoPoint geoPoint, int latitude, int longitude) {
+		double latitudeDifference = Math.toRadians((latitude - geoPoint.latitudeE6) / 1000000d);
+		double longitudeDifference = Math.toRadians((longitude - geoPoint.longitudeE6) / 1000000d)
+				* Math.cos(Math.toRadians((latitude + geoPoint.latitudeE6) / 2000000d));
+		return EQUATORIAL_RADIUS * Math.sqrt(latitudeDifference * latitudeDifference + longitudeDifference
+				* longitudeDifference);
+	}
+
+	private static String readOptionalString(DataInputStream dataInputStream) throws IOException {
+		String string = dataInputStream.readUTF();
+		return string.length() == 0 ? null : string;
+	}
+
+	private final BoundingBox boundingBox;
+	private final int[] cellOffsets;
+	private final int[] elevations;
+	private final int gridSize;
+	private final boolean[] hasElevation;
+	private final String[] houseNumbers;
+	private final int[] latitudes;
+	private final byte[] layers;
+	private final int[] longitudes;
+	private final long mapDate;
+	private final long mapFileSize;
+	private final String[] names;
+	private final int[] sortedNameIndices;
+	private final String[] sortedNames;
+	private final Map<Tag, Integer> tagIds;
+	private final int[] tagOffsets;
+	private final int[] tagReferences;
+	private final Tag[] tags;
+
+	private PoiIndex(DataInputStream dataInputStream) throws IOException {
+		byte[] magic = new byte[MAGIC.length()];
+		dataInputStream.readFully(magic);
+		if (!MAGIC.equals(new String(magic, "US-ASCII"))) {
+			throw new IOException("invalid magic string");
+		}
+		int version = dataInputStream.readInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported POI index version: " + version);
+		}
+
+		this.mapDate = dataInputStream.readLong();
+		this.mapFileSize = dataInputStream.readLong();
+		this.boundingBox = new BoundingBox(dataInputStream.readInt(), dataInputStream.readInt(),
+				dataInputStream.readInt(), dataInputStream.readInt());
+		this.gridSize = dataInputStream.readInt();
+
+		int numberOfTags = dataInputStream.readInt();
+		this.tags = new Tag[numberOfTags];
+		this.tagIds = new HashMap<Tag, Integer>();
+		for (int tagId = 0; tagId < numberOfTags; ++tagId) {
+			this.tags[tagId] = new Tag(dataInputStream.readUTF(), dataInputStream.readUTF());
+			this.tagIds.put(this.tags[tagId], Integer.valueOf(tagId));
+		}
+
+		this.cellOffsets = new int[this.gridSize * this.gridSize + 1];
+		for (int cell = 0; cell < this.cellOffsets.length; ++cell) {
+			this.cellOffsets[cell] = dataInputStream.readInt();
+		}
+
+		int numberOfPointsOfInterest = this.cellOffsets[this.cellOffsets.length - 1];
+		this.latitudes = new int[numberOfPointsOfInterest];
+		this.longitudes = new int[numberOfPointsOfInterest];
+		this.layers = new byte[numberOfPointsOfInterest];
+		this.names = new String[numberOfPointsOfInterest];
+		this.houseNumbers = new String[numberOfPointsOfInterest];
+		this.hasElevation = new boolean[numberOfPointsOfInterest];
+		this.elevations = new int[numberOfPointsOfInterest];
+		this.tagOffsets = new int[numberOfPointsOfInterest + 1];
+		List<Integer> tagReferenceList = new ArrayList<Integer>();
+		for (int i = 0; i < numberOfPointsOfInterest; ++i) {
+			this.latitudes[i] = dataInputStream.readInt();
+			this.longitudes[i] = dataInputStream.readInt();
+			this.layers[i] = dataInputStream.readByte();
+			int numberOfPoiTags = dataInputStream.readUnsignedByte();
+			for (int j = 0; j < numberOfPoiTags; ++j) {
+				int tagId = dataInputStream.readInt();
+				if (tagId < 0 || tagId >= numberOfTags) {
+					throw new IOException("invalid tag ID: " + tagId);
+				}
+				tagReferenceList.add(Integer.valueOf(tagId));
+			}
+			this.tagOffsets[i + 1] = tagReferenceList.size();
+			this.names[i] = readOptionalString(dataInputStream);
+			this.houseNumbers[i] = readOptionalString(dataInputStream);
+			this.hasElevation[i] = dataInputStream.readBoolean();
+			this.elevations[i] = dataInputStream.readInt();
+		}
+		this.tagReferences = new int[tagReferenceList.size()];
+		for (int i = 0; i < this.tagReferences.length; ++i) {
+			this.tagReferences[i] = tagReferenceList.get(i).intValue();
+		}
+
+		int numberOfNames = dataInputStream.readInt();
+		this.sortedNameIndices = new int[numberOfNames];
+		this.sortedNames = new String[numberOfNames];
+		for (int i = 0; i < numberOfNames; ++i) {
+			int poiIndex = dataInputStream.readInt();
+			if (poiIndex < 0 || poiIndex >= numberOfPointsOfInterest || this.names[poiIndex] == null) {
+				throw new IOException("invalid name index entry: " + poiIndex);
+			}
+			this.sortedNameIndices[i] = poiIndex;
+			this.sortedNames[i] = normalizeName(this.names[poiIndex]);
+		}
+	}
+
+	/**
+	 * @return the bounding box of the indexed map file.
+	 */
+	public BoundingBox getBoundingBox() {
+		return this.boundingBox;
+	}
+
+	/**
+	 * @return the date of the indexed map file in milliseconds since January 1, 1970.
+	 */
+	public long getMapDate() {
+		return this.mapDate;
+	}
+
+	/**
+	 * @return the size of the indexed map file in bytes.
+	 */
+	public long getMapFileSize() {
+		return this.mapFileSize;
+	}
+
+	/**
+	 * @return the number of POIs in this index.
+	 */
+	public int getNumberOfPointsOfInterest() {
+		return this.latitudes.length;
+	}
+
+	/**
+	 * Finds all POIs within the given bounding box whose name starts with the given prefix, ignoring the case.
+	 * 
+	 * @param namePrefix
+	 *            the beginning of the name.
+	 * @param searchArea
+	 *            the area in which the POIs must be located.
+	 * @return the matching POIs in alphabetical order of their names.
+	 */
+	public List<PointOfInterest> getPointsOfInterest(String namePrefix, BoundingBox searchArea) {
+		String normalizedPrefix = normalizeName(namePrefix);
+		int index = Arrays.binarySearch(this.sortedNames, normalizedPrefix);
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			// move to the first of several equal names
+			while (index > 0 && this.sortedNames[index - 1].equals(normalizedPrefix)) {
+				--index;
+			}
+		}
+
+		List<PointOfInterest> pointsOfInterest = new ArrayList<PointOfInterest>();
+		for (; index < this.sortedNames.length && this.sortedNames[index].startsWith(normalizedPrefix); ++index) {
+			int poiIndex = this.sortedNameIndices[index];
+			if (contains(searchArea, poiIndex)) {
+				pointsOfInterest.add(toPointOfInterest(poiIndex));
+			}
+		}
+		return pointsOfInterest;
+	}
+
+	/**
+	 * Finds all POIs with the given tag within the given distance around a point.
+	 * 
+	 * @param tag
+	 *            the tag which the POIs must have.
+	 * @param center
+	 *            the center of the search area.
+	 * @param radius
+	 *            the maximum distance of the POIs to the center in meters.
+	 * @return the matching POIs, the nearest one first.
+	 */
+	public List<PointOfInterest> getPointsOfInterest(Tag tag, GeoPoint center, int radius) {
+		List<PointOfInterest> pointsOfInterest = new ArrayList<PointOfInterest>();
+		Integer tagId = this.tagIds.get(tag);
+		if (tagId == null) {
+			return pointsOfInterest;
+		}
+
+		int latitudeDelta = (int) (GeoPoint.latitudeDistance(radius) * 1000000);
+		int longitudeDelta = (int) Math.min(360000000, GeoPoint.longitudeDistance(radius,
+				Math.min(89, Math.abs(center.getLatitude()))) * 1000000);
+		int minLatitude = center.latitudeE6 - latitudeDelta;
+		int maxLatitude = center.latitudeE6 + latitudeDelta;
+		int minLongitude = center.longitudeE6 - longitudeDelta;
+		int maxLongitude = center.longitudeE6 + longitudeDelta;
+		if (minLatitude > this.boundingBox.maxLatitudeE6 || maxLatitude < this.boundingBox.minLatitudeE6
+				|| minLongitude > this.boundingBox.maxLongitudeE6 || maxLongitude < this.boundingBox.minLongitudeE6) {
+			return pointsOfInterest;
+		}
+
+		// the cell numbers grow from north to south and from west to east
+		int topLeftCell = getCell(this.boundingBox, this.gridSize, maxLatitude, minLongitude);
+		int bottomRightCell = getCell(this.boundingBox, this.gridSize, minLatitude, maxLongitude);
+		for (int row = topLeftCell / this.gridSize; row <= bottomRightCell / this.gridSize; ++row) {
+			int fromCell = row * this.gridSize + topLeftCell % this.gridSize;
+			int toCell = row * this.gridSize + bottomRightCell % this.gridSize;
+			for (int poiIndex = this.cellOffsets[fromCell]; poiIndex < this.cellOffsets[toCell + 1]; ++poiIndex) {
+				if (hasTag(poiIndex, tagId.intValue())
+						&& getDistance(center, this.latitudes[poiIndex], this.longitudes[poiIndex]) <= radius) {
+					pointsOfInterest.add(toPointOfInterest(poiIndex));
+				}
+			}
+		}
+
+		Collections.sort(pointsOfInterest, new DistanceComparator(center));
+		return pointsOfInterest;
+	}
+
+	private boolean contains(BoundingBox searchArea, int poiIndex) {
+		return this.latitudes[poiIndex] >= searchArea.minLatitudeE6
+				&& this.latitudes[poiIndex] <= searchArea.maxLatitudeE6
+				&& this.longitudes[poiIndex] >= searchArea.minLongitudeE6
+				&& this.longitudes[poiIndex] <= searchArea.maxLongitudeE6;
+	}
+
+	private boolean hasTag(int poiIndex, int tagId) {
+		for (int i = this.tagOffsets[poiIndex]; i < this.tagOffsets[poiIndex + 1]; ++i) {
+			if (this.tagReferences[i] == tagId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private PointOfInterest toPointOfInterest(int poiIndex) {
+		List<Tag> poiTags = new ArrayList<Tag>();
+		for (int i = this.tagOffsets[poiIndex]; i < this.tagOffsets[poiIndex + 1]; ++i) {
+			poiTags.add(this.tags[this.tagReferences[i]]);
+		}
+		if (this.names[poiIndex] != null) {
+			poiTags.add(new Tag(TAG_KEY_NAME, this.names[poiIndex]));
+		}
+		if (this.houseNumbers[poiIndex] != null) {
+			poiTags.add(new Tag(TAG_KEY_HOUSE_NUMBER, this.houseNumbers[poiIndex]));
+		}
+		if (this.hasElevation[poiIndex]) {
+			poiTags.add(new Tag(TAG_KEY_ELE, Integer.toString(this.elevations[poiIndex])));
+		}
+		return new PointOfInterest(this.layers[poiIndex], poiTags, new GeoPoint(this.latitudes[poiIndex],
+				this.longitudes[poiIndex]));
+	}
+}
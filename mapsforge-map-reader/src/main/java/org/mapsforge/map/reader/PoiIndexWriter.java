@@ -0,0 +1,267 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * Creates the {@link PoiIndex} of a map file.
+ * <p>
+ * All POIs are read from the sub-file with the highest zoom levels, which contains every POI of the map file exactly
+ * once. Their tags, names, house numbers and elevations are written to a separate index file, which is sorted by grid
+ * cells and has an additional name index.
+ */
+public final class PoiIndexWriter {
+	private static class IndexEntry {
+		int cell;
+		int elevation;
+		boolean hasElevation;
+		String houseNumber;
+		int latitude;
+		byte layer;
+		int longitude;
+		String name;
+		int[] tagIds;
+
+		IndexEntry() {
+			// do nothing
+		}
+	}
+
+	private static class PoiCollector implements MapDataSink {
+		final List<IndexEntry> indexEntries = new ArrayList<IndexEntry>();
+
+		PoiCollector() {
+			// do nothing
+		}
+
+		@Override
+		public void pointOfInterest(PoiRecord poiRecord) {
+			IndexEntry indexEntry = new IndexEntry();
+			indexEntry.latitude = poiRecord.getLatitude();
+			indexEntry.longitude = poiRecord.getLongitude();
+			indexEntry.layer = poiRecord.getLayer();
+			indexEntry.tagIds = new int[poiRecord.getNumberOfTags()];
+			for (int i = 0; i < indexEntry.tagIds.length; ++i) {
+				indexEntry.tagIds[i] = poiRecord.getTagId(i);
+			}
+			indexEntry.name = poiRecord.getName();
+			indexEntry.houseNumber = poiRecord.getHouseNumber();
+			indexEntry.hasElevation = poiRecord.hasElevation();
+			indexEntry.elevation = poiRecord.getElevation();
+			this.indexEntries.add(indexEntry);
+		}
+
+		@Override
+		public void queryCompleted(boolean isWater) {
+			// do nothing
+		}
+
+		@Override
+		public void way(WayRecord wayRecord) {
+			// do nothing
+		}
+	}
+
+	/**
+	 * Default file extension of POI index files, which is appended to the name of the map file.
+	 */
+	public static final String FILE_EXTENSION = ".poi";
+
+	/**
+	 * Maximum number of grid cells in each direction.
+	 */
+	private static final int MAXIMUM_GRID_SIZE = 1024;
+
+	/**
+	 * Average number of POIs per grid cell.
+	 */
+	private static final int POIS_PER_CELL = 16;
+
+	/**
+	 * Starts the indexer from the command line.
+	 * 
+	 * @param args
+	 *            the map file and optionally the index file.
+	 * @throws IOException
+	 *             if the map file cannot be read or the index file cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("usage: PoiIndexWriter <map file> [index file]");
+			System.exit(1);
+		}
+		File indexFile = new File(args.length > 1 ? args[1] : args[0] + FILE_EXTENSION);
+		int numberOfPointsOfInterest = write(new File(args[0]), indexFile);
+		System.out.println(numberOfPointsOfInterest + " POIs written to " + indexFile);
+	}
+
+	/**
+	 * Reads all POIs of the given map file and writes their index to the given file.
+	 * 
+	 * @param mapFile
+	 *            the map file which should be indexed.
+	 * @param indexFile
+	 *            the file to which the POI index should be written.
+	 * @return the number of indexed POIs.
+	 * @throws IOException
+	 *             if the map file cannot be read or is invalid, or if the index file cannot be written.
+	 */
+	public static int write(File mapFile, File indexFile) throws IOException {
+		MapFile openedMapFile = MapFile.open(mapFile, true);
+		try {
+			MapFileInfo mapFileInfo = openedMapFile.getMapFileInfo();
+			List<IndexEntry> indexEntries = readPointsOfInterest(openedMapFile);
+			writeIndex(mapFileInfo, indexEntries, indexFile);
+			return indexEntries.size();
+		} finally {
+			openedMapFile.close();
+		}
+	}
+
+	private static List<IndexEntry> readPointsOfInterest(MapFile mapFile) throws IOException {
+		// the sub-file with the highest zoom levels contains all POIs
+		SubFileParameter subFileParameter = null;
+		for (SubFileParameter candidate : mapFile.getSubFileParameters()) {
+			if (subFileParameter == null || candidate.zoomLevelMax > subFileParameter.zoomLevelMax) {
+				subFileParameter = candidate;
+			}
+		}
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		if (!fileOpenResult.isSuccess()) {
+			throw new IOException(fileOpenResult.getErrorMessage());
+		}
+
+		MapFileInfo mapFileInfo = mapFile.getMapFileInfo();
+		MapFileStatistics mapFileStatistics = new MapFileStatistics(mapFileInfo.poiTags, mapFileInfo.wayTags);
+		PoiCollector poiCollector = new PoiCollector();
+		try {
+			for (long blockNumber = 0; blockNumber < subFileParameter.numberOfBlocks; ++blockNumber) {
+				mapDatabase.verifyBlock(subFileParameter, blockNumber, mapFileStatistics, poiCollector);
+			}
+		} finally {
+			mapDatabase.closeFile();
+		}
+
+		if (!mapFileStatistics.isValid()) {
+			throw new IOException("invalid map file: " + mapFileStatistics.getErrorMessages().get(0));
+		}
+		return poiCollector.indexEntries;
+	}
+
+	private static void writeIndex(MapFileInfo mapFileInfo, List<IndexEntry> indexEntries, File indexFile)
+			throws IOException {
+		BoundingBox boundingBox = mapFileInfo.boundingBox;
+		int gridSize = (int) Math.min(MAXIMUM_GRID_SIZE, Math.max(1,
+				Math.ceil(Math.sqrt(indexEntries.size() / (double) POIS_PER_CELL))));
+		int[] cellOffsets = new int[gridSize * gridSize + 1];
+		for (IndexEntry indexEntry : indexEntries) {
+			indexEntry.cell = PoiIndex.getCell(boundingBox, gridSize, indexEntry.latitude, indexEntry.longitude);
+			++cellOffsets[indexEntry.cell + 1];
+		}
+		for (int cell = 1; cell < cellOffsets.length; ++cell) {
+			cellOffsets[cell] += cellOffsets[cell - 1];
+		}
+
+		// store the POIs cell by cell, the sort is stable and keeps their order within each cell
+		Collections.sort(indexEntries, new Comparator<IndexEntry>() {
+			@Override
+			public int compare(IndexEntry indexEntry1, IndexEntry indexEntry2) {
+				return indexEntry1.cell < indexEntry2.cell ? -1 : (indexEntry1.cell == indexEntry2.cell ? 0 : 1);
+			}
+		});
+
+		final List<Integer> nameIndices = new ArrayList<Integer>();
+		final List<String> normalizedNames = new ArrayList<String>();
+		for (int i = 0; i < indexEntries.size(); ++i) {
+			String name = indexEntries.get(i).name;
+			normalizedNames.add(name == null ? null : PoiIndex.normalizeName(name));
+			if (name != null) {
+				nameIndices.add(Integer.valueOf(i));
+			}
+		}
+		Collections.sort(nameIndices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer index1, Integer index2) {
+				return normalizedNames.get(index1.intValue()).compareTo(normalizedNames.get(index2.intValue()));
+			}
+		});
+
+		DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+				indexFile)));
+		try {
+			dataOutputStream.write(PoiIndex.MAGIC.getBytes("US-ASCII"));
+			dataOutputStream.writeInt(PoiIndex.VERSION);
+			dataOutputStream.writeLong(mapFileInfo.mapDate);
+			dataOutputStream.writeLong(mapFileInfo.fileSize);
+			dataOutputStream.writeInt(boundingBox.minLatitudeE6);
+			dataOutputStream.writeInt(boundingBox.minLongitudeE6);
+			dataOutputStream.writeInt(boundingBox.maxLatitudeE6);
+			dataOutputStream.writeInt(boundingBox.maxLongitudeE6);
+			dataOutputStream.writeInt(gridSize);
+
+			dataOutputStream.writeInt(mapFileInfo.poiTags.length);
+			for (Tag tag : mapFileInfo.poiTags) {
+				dataOutputStream.writeUTF(tag.key);
+				dataOutputStream.writeUTF(tag.value);
+			}
+
+			for (int cellOffset : cellOffsets) {
+				dataOutputStream.writeInt(cellOffset);
+			}
+
+			for (IndexEntry indexEntry : indexEntries) {
+				dataOutputStream.writeInt(indexEntry.latitude);
+				dataOutputStream.writeInt(indexEntry.longitude);
+				dataOutputStream.writeByte(indexEntry.layer);
+				dataOutputStream.writeByte(indexEntry.tagIds.length);
+				for (int tagId : indexEntry.tagIds) {
+					dataOutputStream.writeInt(tagId);
+				}
+				dataOutputStream.writeUTF(indexEntry.name == null ? "" : indexEntry.name);
+				dataOutputStream.writeUTF(indexEntry.houseNumber == null ? "" : indexEntry.houseNumber);
+				dataOutputStream.writeBoolean(indexEntry.hasElevation);
+				dataOutputStream.writeInt(indexEntry.elevation);
+			}
+
+			dataOutputStream.writeInt(nameIndices.size());
+			for (Integer nameIndex : nameIndices) {
+				dataOutputStream.writeInt(nameIndex.intValue());
+			}
+		} finally {
+			dataOutputStream.close();
+		}
+	}
+
+	private PoiIndexWriter() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * An immutable container class which identifies a POI by its layer, position and tags. It is used to detect POIs
+ * which are stored in multiple map files.
+ */
+class PoiKey {
+	private final int hashCodeValue;
+	private final PointOfInterest pointOfInterest;
+
+	/**
+	 * Creates an immutable key to be stored in a set.
+	 * 
+	 * @param pointOfInterest
+	 *            the POI which is identified by this key.
+	 */
+	PoiKey(PointOfInterest pointOfInterest) {
+		this.pointOfInterest = pointOfInterest;
+		this.hashCodeValue = calculateHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof PoiKey)) {
+			return false;
+		}
+		PoiKey other = (PoiKey) obj;
+		if (this.hashCodeValue != other.hashCodeValue) {
+			return false;
+		} else if (this.pointOfInterest.layer != other.pointOfInterest.layer) {
+			return false;
+		} else if (!this.pointOfInterest.position.equals(other.pointOfInterest.position)) {
+			return false;
+		} else if (!this.pointOfInterest.tags.equals(other.pointOfInterest.tags)) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCodeValue;
+	}
+
+	/**
+	 * @return the hash code of this object.
+	 */
+	private int calculateHashCode() {
+		int result = 7;
+		result = 31 * result + this.pointOfInterest.layer;
+		result = 31 * result + this.pointOfInterest.position.hashCode();
+		result = 31 * result + this.pointOfInterest.tags.hashCode();
+		return result;
+	}
+}
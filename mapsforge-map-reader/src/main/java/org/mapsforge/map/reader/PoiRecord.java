@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A reusable record for the data of a single POI which is passed to a {@link MapDataSink}.
+ * <p>
+ * All values are overwritten when the next POI is read, the record must not be stored. The strings are decoded from
+ * the read buffer the first time they are requested, so the record must not be used after the {@link MapDataSink}
+ * callback has returned.
+ */
+public final class PoiRecord {
+	/**
+	 * Maximum number of tag IDs of a single POI.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_TAGS = 15;
+
+	/**
+	 * The key of the elevation OpenStreetMap tag.
+	 */
+	private static final String TAG_KEY_ELE = "ele";
+
+	/**
+	 * The key of the house number OpenStreetMap tag.
+	 */
+	private static final String TAG_KEY_HOUSE_NUMBER = "addr:housenumber";
+
+	/**
+	 * The key of the name OpenStreetMap tag.
+	 */
+	private static final String TAG_KEY_NAME = "name";
+
+	int elevation;
+	boolean hasElevation;
+	private String houseNumber;
+	private int houseNumberPosition;
+	int latitude;
+	byte layer;
+	int longitude;
+	private String name;
+	private int namePosition;
+	int numberOfTags;
+	private final Tag[] poiTags;
+	private final ReadBuffer readBuffer;
+	final int[] tagIds;
+
+	/**
+	 * @param poiTags
+	 *            the POI tag table of the map file.
+	 * @param readBuffer
+	 *            the read buffer which contains the data of the current block.
+	 */
+	PoiRecord(Tag[] poiTags, ReadBuffer readBuffer) {
+		this.poiTags = poiTags;
+		this.readBuffer = readBuffer;
+		this.tagIds = new int[MAXIMUM_NUMBER_OF_TAGS];
+	}
+
+	/**
+	 * @return the elevation of this POI in meters, only valid if {@link #hasElevation()} returns true.
+	 */
+	public int getElevation() {
+		return this.elevation;
+	}
+
+	/**
+	 * @return the house number of this POI (may be null).
+	 */
+	public String getHouseNumber() {
+		if (this.houseNumberPosition >= 0) {
+			this.houseNumber = this.readBuffer.readUTF8EncodedStringAt(this.houseNumberPosition);
+			this.houseNumberPosition = -1;
+		}
+		return this.houseNumber;
+	}
+
+	/**
+	 * @return the latitude of this POI in microdegrees.
+	 */
+	public int getLatitude() {
+		return this.latitude;
+	}
+
+	/**
+	 * @return the layer of this POI + 5 (to avoid negative values).
+	 */
+	public byte getLayer() {
+		return this.layer;
+	}
+
+	/**
+	 * @return the longitude of this POI in microdegrees.
+	 */
+	public int getLongitude() {
+		return this.longitude;
+	}
+
+	/**
+	 * @return the name of this POI (may be null).
+	 */
+	public String getName() {
+		if (this.namePosition >= 0) {
+			this.name = this.readBuffer.readUTF8EncodedStringAt(this.namePosition);
+			this.namePosition = -1;
+		}
+		return this.name;
+	}
+
+	/**
+	 * @return the number of tag IDs of this POI.
+	 */
+	public int getNumberOfTags() {
+		return this.numberOfTags;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the tag, must be smaller than {@link #getNumberOfTags()}.
+	 * @return the tag with the given index.
+	 */
+	public Tag getTag(int index) {
+		return this.poiTags[this.tagIds[index]];
+	}
+
+	/**
+	 * Creates a new list with all tags of this POI. The name, the house number and the elevation are added as separate
+	 * tags.
+	 * 
+	 * @return the tags of this POI.
+	 */
+	public List<Tag> getTags() {
+		List<Tag> tags = new ArrayList<Tag>();
+		for (int i = 0; i < this.numberOfTags; ++i) {
+			tags.add(getTag(i));
+		}
+		String poiName = getName();
+		if (poiName != null) {
+			tags.add(new Tag(TAG_KEY_NAME, poiName));
+		}
+		String poiHouseNumber = getHouseNumber();
+		if (poiHouseNumber != null) {
+			tags.add(new Tag(TAG_KEY_HOUSE_NUMBER, poiHouseNumber));
+		}
+		if (this.hasElevation) {
+			tags.add(new Tag(TAG_KEY_ELE, Integer.toString(this.elevation)));
+		}
+		return tags;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the tag, must be smaller than {@link #getNumberOfTags()}.
+	 * @return the ID of the tag with the given index in the POI tag table of the map file.
+	 */
+	public int getTagId(int index) {
+		return this.tagIds[index];
+	}
+
+	/**
+	 * @return true if this POI has an elevation, false otherwise.
+	 */
+	public boolean hasElevation() {
+		return this.hasElevation;
+	}
+
+	/**
+	 * Resets the lazily decoded strings of this record for a new POI.
+	 * 
+	 * @param newNamePosition
+	 *            the position of the name in the read buffer or -1 if the POI has no name.
+	 * @param newHouseNumberPosition
+	 *            the position of the house number in the read buffer or -1 if the POI has no house number.
+	 */
+	void startPointOfInterest(int newNamePosition, int newHouseNumberPosition) {
+		this.name = null;
+		this.namePosition = newNamePosition;
+		this.houseNumber = null;
+		this.houseNumberPosition = newHouseNumberPosition;
+	}
+
+	/**
+	 * @return a new immutable POI with the current data of this record.
+	 */
+	PointOfInterest toPointOfInterest() {
+		return new PointOfInterest(this.layer, getTags(), new GeoPoint(this.latitude, this.longitude));
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * A single block which is needed by one or more tiles of a batch query.
+ */
+class QueryBlock implements Comparable<QueryBlock> {
+	final long blockNumber;
+	long blockPointer;
+	int blockSize;
+	DecodedBlock decodedBlock;
+	boolean isWater;
+	final SubFileParameter subFileParameter;
+
+	QueryBlock(SubFileParameter subFileParameter, long blockNumber) {
+		this.subFileParameter = subFileParameter;
+		this.blockNumber = blockNumber;
+	}
+
+	@Override
+	public int compareTo(QueryBlock queryBlock) {
+		long filePosition = getFilePosition();
+		long otherFilePosition = queryBlock.getFilePosition();
+		if (filePosition < otherFilePosition) {
+			return -1;
+		} else if (filePosition > otherFilePosition) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the absolute position of this block in the map file.
+	 */
+	long getFilePosition() {
+		return this.subFileParameter.startAddress + this.blockPointer;
+	}
+}
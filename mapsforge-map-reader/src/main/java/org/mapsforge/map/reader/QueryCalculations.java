@@ -14,7 +14,9 @@
  */
 package org.mapsforge.map.reader;
 
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.reader.header.SubFileParameter;
 
 final class QueryCalculations {
@@ -98,6 +100,17 @@ final class QueryCalculations {
 		}
 	}
 
+	static void calculateBaseTiles(QueryParameters queryParameters, BoundingBox boundingBox,
+			SubFileParameter subFileParameter) {
+		// calculate the XY numbers of the base tiles at the corners of the bounding box
+		byte zoomLevel = subFileParameter.baseZoomLevel;
+		queryParameters.fromBaseTileX = MercatorProjection.longitudeToTileX(boundingBox.getMinLongitude(), zoomLevel);
+		queryParameters.fromBaseTileY = MercatorProjection.latitudeToTileY(boundingBox.getMaxLatitude(), zoomLevel);
+		queryParameters.toBaseTileX = MercatorProjection.longitudeToTileX(boundingBox.getMaxLongitude(), zoomLevel);
+		queryParameters.toBaseTileY = MercatorProjection.latitudeToTileY(boundingBox.getMinLatitude(), zoomLevel);
+		queryParameters.useTileBitmask = false;
+	}
+
 	static void calculateBaseTiles(QueryParameters queryParameters, Tile tile, SubFileParameter subFileParameter) {
 		if (tile.zoomLevel < subFileParameter.baseZoomLevel) {
 			// calculate the XY numbers of the upper left and lower right sub-tiles
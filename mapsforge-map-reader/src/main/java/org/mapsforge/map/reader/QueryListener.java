@@ -0,0 +1,33 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Receives the statistics of each query of a {@link MapDatabase}, see
+ * {@link MapDatabase#setQueryListener(QueryListener)}.
+ * <p>
+ * The listener is called by the thread which has executed the query, right before the query method returns. It should
+ * return quickly, for example by adding the values to counters which are exported to a monitoring system.
+ */
+public interface QueryListener {
+	/**
+	 * Called once after each query.
+	 * 
+	 * @param queryStatistics
+	 *            the statistics of the query, they are reused by the {@link MapDatabase} and only valid during this
+	 *            call.
+	 */
+	void queryCompleted(QueryStatistics queryStatistics);
+}
@@ -21,6 +21,7 @@ class QueryParameters {
 	long fromBlockY;
 	int queryTileBitmask;
 	int queryZoomLevel;
+	TagFilter tagFilter;
 	long toBaseTileX;
 	long toBaseTileY;
 	long toBlockX;
@@ -42,6 +43,8 @@ class QueryParameters {
 		stringBuilder.append(this.queryTileBitmask);
 		stringBuilder.append(", queryZoomLevel=");
 		stringBuilder.append(this.queryZoomLevel);
+		stringBuilder.append(", tagFilter=");
+		stringBuilder.append(this.tagFilter);
 		stringBuilder.append(", toBaseTileX=");
 		stringBuilder.append(this.toBaseTileX);
 		stringBuilder.append(", toBaseTileY=");
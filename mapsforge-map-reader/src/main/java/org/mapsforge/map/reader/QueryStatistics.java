@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Counters and timings of a single query of a {@link MapDatabase}, as reported to a {@link QueryListener}.
+ * <p>
+ * The time of a query is split into the I/O phase, which covers all reads of index blocks and blocks from the map
+ * file, and the decode phase, which covers the decompression and decoding of the blocks. For queries with a
+ * {@link MapDataSink}, the decode phase includes the time spent in the sink. The remaining time of the query is
+ * spent on the index lookups, the block cache and building the result.
+ */
+public class QueryStatistics {
+	long blockCacheHits;
+	long blocksRead;
+	long bytesRead;
+	long decodeNanos;
+	long indexCacheMisses;
+	long indexLookups;
+	long ioNanos;
+	long poisReturned;
+	long queryNanos;
+	long waysDecoded;
+	long waysReturned;
+	long waysSkipped;
+
+	QueryStatistics() {
+		// only instantiated by the MapDatabase
+	}
+
+	/**
+	 * @return the number of blocks which have been taken from the block cache.
+	 */
+	public long getBlockCacheHits() {
+		return this.blockCacheHits;
+	}
+
+	/**
+	 * @return the number of blocks which have been read from the map file.
+	 */
+	public long getBlocksRead() {
+		return this.blocksRead;
+	}
+
+	/**
+	 * @return the number of block bytes which have been read from the map file.
+	 */
+	public long getBytesRead() {
+		return this.bytesRead;
+	}
+
+	/**
+	 * @return the time in nanoseconds which has been spent on decoding blocks.
+	 */
+	public long getDecodeNanos() {
+		return this.decodeNanos;
+	}
+
+	/**
+	 * @return the number of index entries which have been found without reading the map file.
+	 */
+	public long getIndexCacheHits() {
+		return this.indexLookups - this.indexCacheMisses;
+	}
+
+	/**
+	 * @return the number of index entries whose index block had to be read from the map file.
+	 */
+	public long getIndexCacheMisses() {
+		return this.indexCacheMisses;
+	}
+
+	/**
+	 * @return the time in nanoseconds which has been spent on reading index blocks and blocks from the map file.
+	 */
+	public long getIoNanos() {
+		return this.ioNanos;
+	}
+
+	/**
+	 * @return the number of POIs which have been returned by the query.
+	 */
+	public long getPoisReturned() {
+		return this.poisReturned;
+	}
+
+	/**
+	 * @return the total time of the query in nanoseconds.
+	 */
+	public long getQueryNanos() {
+		return this.queryNanos;
+	}
+
+	/**
+	 * @return the number of ways whose data have been decoded because their tile bitmask matched the query.
+	 */
+	public long getWaysDecoded() {
+		return this.waysDecoded;
+	}
+
+	/**
+	 * @return the number of ways which have been returned by the query.
+	 */
+	public long getWaysReturned() {
+		return this.waysReturned;
+	}
+
+	/**
+	 * @return the number of ways which have been skipped because of their tile bitmask.
+	 */
+	public long getWaysSkipped() {
+		return this.waysSkipped;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("QueryStatistics [blockCacheHits=");
+		stringBuilder.append(this.blockCacheHits);
+		stringBuilder.append(", blocksRead=");
+		stringBuilder.append(this.blocksRead);
+		stringBuilder.append(", bytesRead=");
+		stringBuilder.append(this.bytesRead);
+		stringBuilder.append(", decodeNanos=");
+		stringBuilder.append(this.decodeNanos);
+		stringBuilder.append(", indexCacheHits=");
+		stringBuilder.append(getIndexCacheHits());
+		stringBuilder.append(", indexCacheMisses=");
+		stringBuilder.append(this.indexCacheMisses);
+		stringBuilder.append(", ioNanos=");
+		stringBuilder.append(this.ioNanos);
+		stringBuilder.append(", poisReturned=");
+		stringBuilder.append(this.poisReturned);
+		stringBuilder.append(", queryNanos=");
+		stringBuilder.append(this.queryNanos);
+		stringBuilder.append(", waysDecoded=");
+		stringBuilder.append(this.waysDecoded);
+		stringBuilder.append(", waysReturned=");
+		stringBuilder.append(this.waysReturned);
+		stringBuilder.append(", waysSkipped=");
+		stringBuilder.append(this.waysSkipped);
+		stringBuilder.append(']');
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * Sets all counters and timings to zero.
+	 */
+	void reset() {
+		this.blockCacheHits = 0;
+		this.blocksRead = 0;
+		this.bytesRead = 0;
+		this.decodeNanos = 0;
+		this.indexCacheMisses = 0;
+		this.indexLookups = 0;
+		this.ioNanos = 0;
+		this.poisReturned = 0;
+		this.queryNanos = 0;
+		this.waysDecoded = 0;
+		this.waysReturned = 0;
+		this.waysSkipped = 0;
+	}
+}
@@ -15,12 +15,13 @@
 package org.mapsforge.map.reader;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
- * Reads from a {@link RandomAccessFile} into a buffer and decodes the data.
+ * Reads from a {@link MapDataSource} into a buffer and decodes the data.
  */
 public class ReadBuffer {
 	private static final String CHARSET_UTF8 = "UTF-8";
@@ -33,10 +34,13 @@ public class ReadBuffer {
 
 	private byte[] bufferData;
 	private int bufferPosition;
-	private final RandomAccessFile inputFile;
+	private final MapDataSource dataSource;
+	private long filePosition;
+	private byte[] inflatedData;
+	private Inflater inflater;
 
-	ReadBuffer(RandomAccessFile inputFile) {
-		this.inputFile = inputFile;
+	ReadBuffer(MapDataSource dataSource) {
+		this.dataSource = dataSource;
 	}
 
 	/**
@@ -49,8 +53,9 @@ public class ReadBuffer {
 	}
 
 	/**
-	 * Reads the given amount of bytes from the file into the read buffer and resets the internal buffer position. If
-	 * the capacity of the read buffer is too small, a larger one is created automatically.
+	 * Reads the given amount of bytes, which follow the previously read bytes in the file, into the read buffer and
+	 * resets the internal buffer position. If the capacity of the read buffer is too small, a larger one is created
+	 * automatically.
 	 * 
 	 * @param length
 	 *            the amount of bytes to read from the file.
@@ -59,6 +64,22 @@ public class ReadBuffer {
 	 *             if an error occurs while reading the file.
 	 */
 	public boolean readFromFile(int length) throws IOException {
+		return readFromFile(this.filePosition, length);
+	}
+
+	/**
+	 * Reads the given amount of bytes from the given position in the file into the read buffer and resets the internal
+	 * buffer position. If the capacity of the read buffer is too small, a larger one is created automatically.
+	 * 
+	 * @param offset
+	 *            the absolute position in the file from which the data should be read.
+	 * @param length
+	 *            the amount of bytes to read from the file.
+	 * @return true if the whole data was read successfully, false otherwise.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	boolean readFromFile(long offset, int length) throws IOException {
 		// ensure that the read buffer is large enough
 		if (this.bufferData == null || this.bufferData.length < length) {
 			// ensure that the read buffer is not too large
@@ -71,7 +92,8 @@ public class ReadBuffer {
 
 		// reset the buffer position and read the data into the buffer
 		this.bufferPosition = 0;
-		return this.inputFile.read(this.bufferData, 0, length) == length;
+		this.filePosition = offset + length;
+		return this.dataSource.read(offset, this.bufferData, 0, length) == length;
 	}
 
 	/**
@@ -187,6 +209,17 @@ public class ReadBuffer {
 		return null;
 	}
 
+	/**
+	 * Releases the native resources of the decompressor at the end of the lifetime of this buffer. The buffer must not
+	 * be used afterwards.
+	 */
+	void destroy() {
+		if (this.inflater != null) {
+			this.inflater.end();
+			this.inflater = null;
+		}
+	}
+
 	/**
 	 * @return the current buffer position.
 	 */
@@ -201,6 +234,98 @@ public class ReadBuffer {
 		return this.bufferData.length;
 	}
 
+	/**
+	 * Decompresses a block in the read buffer and resets the internal buffer position. The compressed block starts at
+	 * the current buffer position with its uncompressed size (VBE-U), followed by the raw deflate data.
+	 * 
+	 * @param length
+	 *            the length of the compressed block in bytes.
+	 * @return true if the block was decompressed successfully, false otherwise.
+	 */
+	boolean inflate(int length) {
+		int end = this.bufferPosition + length;
+		int uncompressedLength = readUnsignedInt();
+		if (uncompressedLength < 0 || uncompressedLength > MAXIMUM_BUFFER_SIZE) {
+			LOGGER.warning("invalid uncompressed length: " + uncompressedLength);
+			return false;
+		}
+
+		if (this.inflater == null) {
+			this.inflater = new Inflater(true);
+		}
+		if (this.inflatedData == null || this.inflatedData.length < uncompressedLength) {
+			this.inflatedData = new byte[uncompressedLength];
+		}
+
+		try {
+			this.inflater.reset();
+			this.inflater.setInput(this.bufferData, this.bufferPosition, end - this.bufferPosition);
+			if (this.inflater.inflate(this.inflatedData, 0, uncompressedLength) != uncompressedLength) {
+				LOGGER.warning("invalid compressed block: " + length);
+				return false;
+			}
+		} catch (DataFormatException e) {
+			LOGGER.warning("invalid compressed block: " + e.getMessage());
+			return false;
+		}
+
+		// the previous buffer is reused for the next block
+		byte[] compressedData = this.bufferData;
+		this.bufferData = this.inflatedData;
+		this.inflatedData = compressedData;
+		this.bufferPosition = 0;
+		return true;
+	}
+
+	/**
+	 * Reads zig-zag encoded values which are bit-packed with the given bit width, the least significant bit first.
+	 * 
+	 * @param values
+	 *            the array into which the decoded values should be stored.
+	 * @param offset
+	 *            the index of the first decoded value in the array.
+	 * @param stride
+	 *            the distance between two decoded values in the array.
+	 * @param length
+	 *            the number of values to read.
+	 * @param bitWidth
+	 *            the number of bits of each value, between 0 and 32.
+	 */
+	void readBitPacked(int[] values, int offset, int stride, int length, int bitWidth) {
+		long mask = (1L << bitWidth) - 1;
+		long bits = 0;
+		int availableBits = 0;
+		int position = this.bufferPosition;
+		int end = offset + length * stride;
+		for (int i = offset; i < end; i += stride) {
+			while (availableBits < bitWidth) {
+				bits |= (this.bufferData[position++] & 0xffL) << availableBits;
+				availableBits += 8;
+			}
+			int zigZag = (int) (bits & mask);
+			values[i] = (zigZag >>> 1) ^ -(zigZag & 1);
+			bits >>>= bitWidth;
+			availableBits -= bitWidth;
+		}
+		this.bufferPosition = position;
+	}
+
+	/**
+	 * Decodes a variable amount of bytes at the given offset to a string without changing the current buffer
+	 * position.
+	 * 
+	 * @param bufferPosition
+	 *            the offset of the string in the read buffer.
+	 * @return the UTF-8 decoded string (may be null).
+	 */
+	String readUTF8EncodedStringAt(int bufferPosition) {
+		int currentBufferPosition = getBufferPosition();
+		setBufferPosition(bufferPosition);
+		String string = readUTF8EncodedString();
+		setBufferPosition(currentBufferPosition);
+		return string;
+	}
+
 	/**
 	 * Sets the buffer position to the given offset.
 	 * 
@@ -211,6 +336,13 @@ public class ReadBuffer {
 		this.bufferPosition = bufferPosition;
 	}
 
+	/**
+	 * Skips a variable amount of bytes in the read buffer which encode a string.
+	 */
+	void skipUTF8EncodedString() {
+		skipBytes(readUnsignedInt());
+	}
+
 	/**
 	 * Skips the given number of bytes in the read buffer.
 	 * 
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Decides which elements of a query are decoded, based on their tag IDs only.
+ * <p>
+ * The tag IDs refer to the tag tables of the map file, see {@link org.mapsforge.map.reader.header.MapFileInfo#poiTags}
+ * and {@link org.mapsforge.map.reader.header.MapFileInfo#wayTags}. Rejected elements are skipped before their names
+ * and coordinates are decoded.
+ */
+public interface TagFilter {
+	/**
+	 * @param tagIds
+	 *            the IDs of the POI tags, only the first numberOfTags entries are valid.
+	 * @param numberOfTags
+	 *            the number of tag IDs of the POI.
+	 * @return true if the POI should be decoded, false if it should be skipped.
+	 */
+	boolean acceptPointOfInterest(int[] tagIds, int numberOfTags);
+
+	/**
+	 * @param tagIds
+	 *            the IDs of the way tags, only the first numberOfTags entries are valid.
+	 * @param numberOfTags
+	 *            the number of tag IDs of the way.
+	 * @return true if the way should be decoded, false if it should be skipped.
+	 */
+	boolean acceptWay(int[] tagIds, int numberOfTags);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Collection;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * A {@link TagFilter} which accepts all elements that have at least one tag with one of the given keys, for example
+ * only ways with a highway=* tag.
+ */
+public class TagKeyFilter implements TagFilter {
+	private static boolean[] createAcceptedTagIds(Tag[] tags, Collection<String> keys) {
+		boolean[] acceptedTagIds = new boolean[tags.length];
+		for (int tagId = 0; tagId < tags.length; ++tagId) {
+			acceptedTagIds[tagId] = keys.contains(tags[tagId].key);
+		}
+		return acceptedTagIds;
+	}
+
+	private static boolean isAccepted(boolean[] acceptedTagIds, int[] tagIds, int numberOfTags) {
+		for (int i = 0; i < numberOfTags; ++i) {
+			if (acceptedTagIds[tagIds[i]]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final boolean[] acceptedPoiTagIds;
+	private final boolean[] acceptedWayTagIds;
+
+	/**
+	 * @param mapFileInfo
+	 *            the metadata of the map file which contains the tag tables.
+	 * @param poiKeys
+	 *            the keys of all accepted POI tags, an empty collection rejects all POIs.
+	 * @param wayKeys
+	 *            the keys of all accepted way tags, an empty collection rejects all ways.
+	 */
+	public TagKeyFilter(MapFileInfo mapFileInfo, Collection<String> poiKeys, Collection<String> wayKeys) {
+		this.acceptedPoiTagIds = createAcceptedTagIds(mapFileInfo.poiTags, poiKeys);
+		this.acceptedWayTagIds = createAcceptedTagIds(mapFileInfo.wayTags, wayKeys);
+	}
+
+	@Override
+	public boolean acceptPointOfInterest(int[] tagIds, int numberOfTags) {
+		return isAccepted(this.acceptedPoiTagIds, tagIds, numberOfTags);
+	}
+
+	@Override
+	public boolean acceptWay(int[] tagIds, int numberOfTags) {
+		return isAccepted(this.acceptedWayTagIds, tagIds, numberOfTags);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * The parameters and the needed blocks of a single tile in a batch query.
+ */
+class TileQuery {
+	final List<QueryBlock> queryBlocks;
+	final QueryParameters queryParameters;
+	final SubFileParameter subFileParameter;
+	final Tile tile;
+
+	TileQuery(Tile tile, QueryParameters queryParameters, SubFileParameter subFileParameter) {
+		this.tile = tile;
+		this.queryParameters = queryParameters;
+		this.subFileParameter = subFileParameter;
+		this.queryBlocks = new ArrayList<QueryBlock>();
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Enumeration of the states of a tile which can be determined from the index of a map file alone.
+ * 
+ * @see MapDatabase#queryTileStatus(org.mapsforge.core.model.Tile)
+ */
+public enum TileStatus {
+	/**
+	 * At least one of the blocks which are covered by the tile contains map data.
+	 */
+	DATA,
+
+	/**
+	 * All blocks which are covered by the tile are empty, but not all of them are completely covered by water.
+	 */
+	EMPTY,
+
+	/**
+	 * All blocks which are covered by the tile are empty and completely covered by water.
+	 */
+	WATER;
+}
@@ -40,6 +40,10 @@ public class Way {
 
 	/**
 	 * The geographical coordinates of the way nodes in the order longitude/latitude.
+	 * <p>
+	 * The arrays must not be modified, the same way may be returned by multiple queries if a block cache is used. The
+	 * float values cannot represent all microdegree coordinates exactly, a {@link MapDataSink} together with
+	 * {@link WayRecord#decodeWayNodes(WayNodeBuffer)} provides the exact integer values.
 	 */
 	public final float[][] wayNodes;
 
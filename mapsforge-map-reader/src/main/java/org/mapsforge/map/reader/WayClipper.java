@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Clips the coordinate blocks of ways to a rectangle while they are decoded.
+ * <p>
+ * Closed coordinate blocks, whose first and last way node are equal, are clipped as polygons via the
+ * Sutherland-Hodgman algorithm and stay closed. All other coordinate blocks are clipped as lines, only the parts in
+ * front of the first and behind the last intersection with the rectangle are removed. A line which leaves the
+ * rectangle and enters it again is not split, it keeps its way nodes outside of the rectangle in between. Every
+ * coordinate block after the first one is an inner ring of the first, so the parts of a line must not become separate
+ * coordinate blocks. Coordinate blocks which lie completely inside the rectangle are copied unchanged, those outside of
+ * it are dropped. This class is not thread-safe.
+ */
+final class WayClipper {
+	private static final int INITIAL_CAPACITY = 256;
+
+	private static boolean isInside(int edge, int longitude, int latitude, int minimum, int maximum) {
+		switch (edge) {
+			case 0:
+				return longitude >= minimum;
+			case 1:
+				return longitude <= maximum;
+			case 2:
+				return latitude >= minimum;
+			default:
+				return latitude <= maximum;
+		}
+	}
+
+	private int[] clippedCoordinates;
+	private int maxLatitude;
+	private int maxLongitude;
+	private int minLatitude;
+	private int minLongitude;
+	private double parameterEnd;
+	private double parameterStart;
+	private int[] temporaryCoordinates;
+
+	WayClipper() {
+		this.clippedCoordinates = new int[INITIAL_CAPACITY];
+		this.temporaryCoordinates = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Clips one coordinate block of the source buffer and appends the result to the destination buffer.
+	 * 
+	 * @param source
+	 *            the buffer which contains the unclipped way nodes.
+	 * @param coordinateBlock
+	 *            the index of the coordinate block in the source buffer.
+	 * @param destination
+	 *            the buffer to which the clipped coordinate blocks should be appended.
+	 */
+	void clip(WayNodeBuffer source, int coordinateBlock, WayNodeBuffer destination) {
+		int[] coordinates = source.getCoordinates();
+		int offset = source.getCoordinateBlockOffset(coordinateBlock);
+		int end = offset + source.getNumberOfWayNodes(coordinateBlock) * 2;
+
+		// check the bounding box of the coordinate block first
+		int blockMinLongitude = Integer.MAX_VALUE;
+		int blockMaxLongitude = Integer.MIN_VALUE;
+		int blockMinLatitude = Integer.MAX_VALUE;
+		int blockMaxLatitude = Integer.MIN_VALUE;
+		for (int i = offset; i < end; i += 2) {
+			blockMinLongitude = Math.min(blockMinLongitude, coordinates[i]);
+			blockMaxLongitude = Math.max(blockMaxLongitude, coordinates[i]);
+			blockMinLatitude = Math.min(blockMinLatitude, coordinates[i + 1]);
+			blockMaxLatitude = Math.max(blockMaxLatitude, coordinates[i + 1]);
+		}
+		if (blockMaxLongitude < this.minLongitude || blockMinLongitude > this.maxLongitude
+				|| blockMaxLatitude < this.minLatitude || blockMinLatitude > this.maxLatitude) {
+			return;
+		} else if (blockMinLongitude >= this.minLongitude && blockMaxLongitude <= this.maxLongitude
+				&& blockMinLatitude >= this.minLatitude && blockMaxLatitude <= this.maxLatitude) {
+			copy(coordinates, offset, end - offset, destination);
+			return;
+		}
+
+		if (coordinates[offset] == coordinates[end - 2] && coordinates[offset + 1] == coordinates[end - 1]) {
+			clipPolygon(coordinates, offset, end, destination);
+		} else {
+			clipLine(coordinates, offset, end, destination);
+		}
+	}
+
+	/**
+	 * Sets the rectangle to which the ways are clipped.
+	 */
+	void setClipRectangle(int newMinLatitude, int newMinLongitude, int newMaxLatitude, int newMaxLongitude) {
+		this.minLatitude = newMinLatitude;
+		this.minLongitude = newMinLongitude;
+		this.maxLatitude = newMaxLatitude;
+		this.maxLongitude = newMaxLongitude;
+	}
+
+	/**
+	 * Appends the way node at the given parameter of a segment to the clipped coordinates.
+	 * 
+	 * @return the new length of the clipped coordinates.
+	 */
+	private int addClippedWayNode(int length, int[] coordinates, int segment, double parameter) {
+		double longitude = coordinates[segment];
+		double latitude = coordinates[segment + 1];
+		return addWayNode(length, (int) Math.round(longitude + parameter * (coordinates[segment + 2] - longitude)),
+				(int) Math.round(latitude + parameter * (coordinates[segment + 3] - latitude)));
+	}
+
+	/**
+	 * Appends a way node to the clipped coordinates.
+	 * 
+	 * @return the new length of the clipped coordinates.
+	 */
+	private int addWayNode(int length, int longitude, int latitude) {
+		ensureCapacity(length + 2);
+		this.clippedCoordinates[length] = longitude;
+		this.clippedCoordinates[length + 1] = latitude;
+		return length + 2;
+	}
+
+	/**
+	 * Clips a line with the Liang-Barsky algorithm. Only the way nodes in front of the first and behind the last
+	 * segment which intersects the rectangle are removed, the way nodes in between are kept unchanged.
+	 */
+	private void clipLine(int[] coordinates, int offset, int end, WayNodeBuffer destination) {
+		// find the first segment which intersects the rectangle
+		int firstSegment = -1;
+		for (int i = offset; i < end - 2; i += 2) {
+			if (clipSegment(coordinates, i)) {
+				firstSegment = i;
+				break;
+			}
+		}
+		if (firstSegment < 0) {
+			return;
+		}
+		int length = addClippedWayNode(0, coordinates, firstSegment, this.parameterStart);
+
+		// find the last segment which intersects the rectangle, this may be the first one again
+		int lastSegment = end - 4;
+		while (!clipSegment(coordinates, lastSegment)) {
+			lastSegment -= 2;
+		}
+
+		for (int i = firstSegment + 2; i <= lastSegment; i += 2) {
+			length = addWayNode(length, coordinates[i], coordinates[i + 1]);
+		}
+		length = addClippedWayNode(length, coordinates, lastSegment, this.parameterEnd);
+		copy(this.clippedCoordinates, 0, length, destination);
+	}
+
+	/**
+	 * Restricts the parameter range of the current segment by one edge of the rectangle.
+	 * 
+	 * @return false if the segment lies completely outside of the edge, true otherwise.
+	 */
+	private boolean clipParameters(double denominator, double numerator) {
+		if (denominator == 0) {
+			// the segment is parallel to the edge
+			return numerator >= 0;
+		}
+
+		double parameter = numerator / denominator;
+		if (denominator < 0) {
+			this.parameterStart = Math.max(this.parameterStart, parameter);
+		} else {
+			this.parameterEnd = Math.min(this.parameterEnd, parameter);
+		}
+		return this.parameterStart <= this.parameterEnd;
+	}
+
+	/**
+	 * Clips a closed polygon successively against each edge of the rectangle with the Sutherland-Hodgman algorithm.
+	 */
+	private void clipPolygon(int[] coordinates, int offset, int end, WayNodeBuffer destination) {
+		// the last way node is equal to the first one and is added again at the end
+		int length = end - offset - 2;
+		ensureCapacity(length);
+		System.arraycopy(coordinates, offset, this.clippedCoordinates, 0, length);
+
+		for (int edge = 0; edge < 4 && length > 0; ++edge) {
+			int minimum = edge < 2 ? this.minLongitude : this.minLatitude;
+			int maximum = edge < 2 ? this.maxLongitude : this.maxLatitude;
+
+			// swap the input and the output array
+			int[] input = this.clippedCoordinates;
+			this.clippedCoordinates = this.temporaryCoordinates;
+			this.temporaryCoordinates = input;
+			int inputLength = length;
+			length = 0;
+
+			int previousLongitude = input[inputLength - 2];
+			int previousLatitude = input[inputLength - 1];
+			boolean previousInside = isInside(edge, previousLongitude, previousLatitude, minimum, maximum);
+			for (int i = 0; i < inputLength; i += 2) {
+				int longitude = input[i];
+				int latitude = input[i + 1];
+				boolean inside = isInside(edge, longitude, latitude, minimum, maximum);
+				if (inside != previousInside) {
+					// add the intersection of the edge with the polygon side
+					double t;
+					if (edge < 2) {
+						int border = edge == 0 ? minimum : maximum;
+						t = (border - previousLongitude) / (double) (longitude - previousLongitude);
+						length = addWayNode(length, border, (int) Math.round(previousLatitude + t
+								* (latitude - previousLatitude)));
+					} else {
+						int border = edge == 2 ? minimum : maximum;
+						t = (border - previousLatitude) / (double) (latitude - previousLatitude);
+						length = addWayNode(length, (int) Math.round(previousLongitude + t
+								* (longitude - previousLongitude)), border);
+					}
+				}
+				if (inside) {
+					length = addWayNode(length, longitude, latitude);
+				}
+				previousLongitude = longitude;
+				previousLatitude = latitude;
+				previousInside = inside;
+			}
+		}
+
+		// a polygon needs at least three different way nodes
+		if (length >= 6) {
+			length = addWayNode(length, this.clippedCoordinates[0], this.clippedCoordinates[1]);
+			copy(this.clippedCoordinates, 0, length, destination);
+		}
+	}
+
+	/**
+	 * Calculates the parameter range of the segment which starts at the given position inside of the rectangle.
+	 * 
+	 * @return false if the segment lies completely outside of the rectangle, true otherwise.
+	 */
+	private boolean clipSegment(int[] coordinates, int segment) {
+		double longitude = coordinates[segment];
+		double latitude = coordinates[segment + 1];
+		double deltaLongitude = coordinates[segment + 2] - longitude;
+		double deltaLatitude = coordinates[segment + 3] - latitude;
+
+		// clip the parameter range of the segment against each edge
+		this.parameterStart = 0;
+		this.parameterEnd = 1;
+		return clipParameters(-deltaLongitude, longitude - this.minLongitude)
+				&& clipParameters(deltaLongitude, this.maxLongitude - longitude)
+				&& clipParameters(-deltaLatitude, latitude - this.minLatitude)
+				&& clipParameters(deltaLatitude, this.maxLatitude - latitude);
+	}
+
+	private void copy(int[] coordinates, int offset, int length, WayNodeBuffer destination) {
+		int destinationOffset = destination.addCoordinateBlock(length / 2);
+		System.arraycopy(coordinates, offset, destination.getCoordinates(), destinationOffset, length);
+	}
+
+	private void ensureCapacity(int length) {
+		if (this.clippedCoordinates.length < length) {
+			int[] newCoordinates = new int[Math.max(length, this.clippedCoordinates.length * 2)];
+			System.arraycopy(this.clippedCoordinates, 0, newCoordinates, 0, this.clippedCoordinates.length);
+			this.clippedCoordinates = newCoordinates;
+			this.temporaryCoordinates = new int[newCoordinates.length];
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Arrays;
+
+/**
+ * An immutable container class which identifies a way by its layer, tags and way nodes. It is used to detect ways
+ * which are stored in multiple blocks.
+ */
+class WayKey {
+	private final int hashCodeValue;
+	private final Way way;
+
+	/**
+	 * Creates an immutable key to be stored in a set.
+	 * 
+	 * @param way
+	 *            the way which is identified by this key.
+	 */
+	WayKey(Way way) {
+		this.way = way;
+		this.hashCodeValue = calculateHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof WayKey)) {
+			return false;
+		}
+		WayKey other = (WayKey) obj;
+		if (this.hashCodeValue != other.hashCodeValue) {
+			return false;
+		} else if (this.way.layer != other.way.layer) {
+			return false;
+		} else if (!this.way.tags.equals(other.way.tags)) {
+			return false;
+		} else if (!Arrays.deepEquals(this.way.wayNodes, other.way.wayNodes)) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCodeValue;
+	}
+
+	/**
+	 * @return the hash code of this object.
+	 */
+	private int calculateHashCode() {
+		int result = 7;
+		result = 31 * result + this.way.layer;
+		result = 31 * result + this.way.tags.hashCode();
+		result = 31 * result + Arrays.deepHashCode(this.way.wayNodes);
+		return result;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * A growable buffer for the way nodes of any number of ways in microdegrees.
+ * <p>
+ * All coordinate blocks are stored one after another in a single int array in the order longitude/latitude. A
+ * buffer can be filled via {@link WayRecord#decodeWayNodes(WayNodeBuffer)} and reused after {@link #clear()}, so the
+ * way nodes can be processed without creating any objects. This class is not thread-safe.
+ */
+public final class WayNodeBuffer {
+	private static final int INITIAL_COORDINATE_BLOCKS = 8;
+	private static final int INITIAL_COORDINATES = 256;
+
+	private int[] coordinateBlockOffsets;
+	private int[] coordinates;
+	private int numberOfCoordinateBlocks;
+
+	/**
+	 * Constructs an empty buffer.
+	 */
+	public WayNodeBuffer() {
+		this.coordinateBlockOffsets = new int[INITIAL_COORDINATE_BLOCKS + 1];
+		this.coordinates = new int[INITIAL_COORDINATES];
+	}
+
+	/**
+	 * Removes all coordinate blocks from this buffer, the allocated memory is kept.
+	 */
+	public void clear() {
+		this.numberOfCoordinateBlocks = 0;
+	}
+
+	/**
+	 * @param coordinateBlock
+	 *            the index of the coordinate block.
+	 * @return the index of the first longitude of the given coordinate block in the coordinates array.
+	 */
+	public int getCoordinateBlockOffset(int coordinateBlock) {
+		return this.coordinateBlockOffsets[coordinateBlock];
+	}
+
+	/**
+	 * Returns the internal array which contains the way nodes of all coordinate blocks. The array may be larger than
+	 * needed and is replaced when the buffer grows, only the ranges of the coordinate blocks are valid.
+	 * 
+	 * @return the way node coordinates in the order longitude/latitude.
+	 */
+	public int[] getCoordinates() {
+		return this.coordinates;
+	}
+
+	/**
+	 * @return the number of coordinate blocks in this buffer.
+	 */
+	public int getNumberOfCoordinateBlocks() {
+		return this.numberOfCoordinateBlocks;
+	}
+
+	/**
+	 * @param coordinateBlock
+	 *            the index of the coordinate block.
+	 * @return the number of way nodes in the given coordinate block.
+	 */
+	public int getNumberOfWayNodes(int coordinateBlock) {
+		return (this.coordinateBlockOffsets[coordinateBlock + 1] - this.coordinateBlockOffsets[coordinateBlock]) / 2;
+	}
+
+	/**
+	 * Appends a new coordinate block and ensures that the coordinates array is large enough for it.
+	 * 
+	 * @param numberOfWayNodes
+	 *            the number of way nodes of the new coordinate block.
+	 * @return the index of the first longitude of the new coordinate block in the coordinates array.
+	 */
+	int addCoordinateBlock(int numberOfWayNodes) {
+		if (this.coordinateBlockOffsets.length < this.numberOfCoordinateBlocks + 2) {
+			int[] newCoordinateBlockOffsets = new int[this.coordinateBlockOffsets.length * 2];
+			System.arraycopy(this.coordinateBlockOffsets, 0, newCoordinateBlockOffsets, 0,
+					this.numberOfCoordinateBlocks + 1);
+			this.coordinateBlockOffsets = newCoordinateBlockOffsets;
+		}
+
+		int offset = this.coordinateBlockOffsets[this.numberOfCoordinateBlocks];
+		int end = offset + numberOfWayNodes * 2;
+		if (this.coordinates.length < end) {
+			int[] newCoordinates = new int[Math.max(end, this.coordinates.length * 2)];
+			System.arraycopy(this.coordinates, 0, newCoordinates, 0, offset);
+			this.coordinates = newCoordinates;
+		}
+
+		this.coordinateBlockOffsets[++this.numberOfCoordinateBlocks] = end;
+		return offset;
+	}
+
+	/**
+	 * Appends copies of the coordinate blocks of the given buffer to this buffer.
+	 * 
+	 * @param wayNodeBuffer
+	 *            the buffer whose coordinate blocks should be copied.
+	 */
+	void append(WayNodeBuffer wayNodeBuffer) {
+		for (int coordinateBlock = 0; coordinateBlock < wayNodeBuffer.numberOfCoordinateBlocks; ++coordinateBlock) {
+			int offset = addCoordinateBlock(wayNodeBuffer.getNumberOfWayNodes(coordinateBlock));
+			int sourceOffset = wayNodeBuffer.coordinateBlockOffsets[coordinateBlock];
+			System.arraycopy(wayNodeBuffer.coordinates, sourceOffset, this.coordinates, offset,
+					wayNodeBuffer.coordinateBlockOffsets[coordinateBlock + 1] - sourceOffset);
+		}
+	}
+
+	/**
+	 * Reduces the number of way nodes of the last coordinate block.
+	 * 
+	 * @param numberOfWayNodes
+	 *            the new number of way nodes, must not be larger than the current one.
+	 */
+	void shrinkLastCoordinateBlock(int numberOfWayNodes) {
+		int offset = this.coordinateBlockOffsets[this.numberOfCoordinateBlocks - 1];
+		this.coordinateBlockOffsets[this.numberOfCoordinateBlocks] = offset + numberOfWayNodes * 2;
+	}
+
+	/**
+	 * Removes all coordinate blocks behind the given number of coordinate blocks.
+	 * 
+	 * @param newNumberOfCoordinateBlocks
+	 *            the number of coordinate blocks which should be kept.
+	 */
+	void truncate(int newNumberOfCoordinateBlocks) {
+		this.numberOfCoordinateBlocks = newNumberOfCoordinateBlocks;
+	}
+}
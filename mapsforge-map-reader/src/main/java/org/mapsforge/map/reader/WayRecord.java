@@ -0,0 +1,555 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A reusable record for the data of a single way which is passed to a {@link MapDataSink}.
+ * <p>
+ * The way nodes of all coordinate blocks are stored in one array in the order longitude/latitude, the coordinate
+ * blocks of a way follow each other. All values are overwritten when the next way is read, the record must not be
+ * stored.
+ * <p>
+ * The strings and the way nodes are not decoded while the block is read. The record only remembers their position in
+ * the read buffer and decodes them the first time they are requested, so ways which are dropped by the caller cost
+ * almost nothing. Therefore the record must not be used after the {@link MapDataSink} callback has returned.
+ */
+public final class WayRecord {
+	/**
+	 * Maximum number of way node deltas which are bit-packed with the same bit width.
+	 */
+	private static final int BIT_PACKING_GROUP_SIZE = 128;
+
+	private static final Logger LOGGER = Logger.getLogger(WayRecord.class.getName());
+
+	/**
+	 * Maximum way nodes sequence length which is considered as valid.
+	 */
+	private static final int MAXIMUM_WAY_NODES_SEQUENCE_LENGTH = 8192;
+
+	/**
+	 * Maximum number of tag IDs of a single way.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_TAGS = 15;
+
+	/**
+	 * The key of the house number OpenStreetMap tag.
+	 */
+	private static final String TAG_KEY_HOUSE_NUMBER = "addr:housenumber";
+
+	/**
+	 * The key of the name OpenStreetMap tag.
+	 */
+	private static final String TAG_KEY_NAME = "name";
+
+	/**
+	 * The key of the reference OpenStreetMap tag.
+	 */
+	private static final String TAG_KEY_REF = "ref";
+
+	private boolean bitPackedEncoding;
+	private boolean coordinatesDecoded;
+	private int coordinatesEndPosition;
+	private int coordinatesPosition;
+	private boolean coordinatesValid;
+	private WayNodeBuffer decodedBuffer;
+	private boolean doubleDeltaEncoding;
+	boolean hasLabelPosition;
+	private String houseNumber;
+	private int houseNumberPosition;
+	int labelLatitude;
+	int labelLongitude;
+	byte layer;
+	private String name;
+	private int namePosition;
+	int numberOfTags;
+	private final ReadBuffer readBuffer;
+	private String ref;
+	private int refPosition;
+	private WayNodeBuffer simplifiedBuffer;
+	final int[] tagIds;
+	int tileBitmask;
+	int tileLatitude;
+	int tileLongitude;
+	WayClipper wayClipper;
+	int wayDataBlock;
+	private final WayNodeBuffer wayNodeBuffer;
+	WaySimplifier waySimplifier;
+	private final Tag[] wayTags;
+
+	/**
+	 * @param wayTags
+	 *            the way tag table of the map file.
+	 * @param readBuffer
+	 *            the read buffer which contains the data of the current block.
+	 */
+	WayRecord(Tag[] wayTags, ReadBuffer readBuffer) {
+		this.wayTags = wayTags;
+		this.readBuffer = readBuffer;
+		this.tagIds = new int[MAXIMUM_NUMBER_OF_TAGS];
+		this.wayNodeBuffer = new WayNodeBuffer();
+	}
+
+	/**
+	 * Decodes the way nodes of this way into the given buffer instead of the internal one of this record. The
+	 * coordinate blocks are appended to the buffer, so the way nodes of multiple ways can be collected in one buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer to which the way nodes should be appended.
+	 * @return the index of the first coordinate block of this way in the buffer or -1 if the way nodes are invalid.
+	 */
+	public int decodeWayNodes(WayNodeBuffer buffer) {
+		int firstCoordinateBlock = buffer.getNumberOfCoordinateBlocks();
+		if (this.coordinatesDecoded) {
+			if (!this.coordinatesValid) {
+				return -1;
+			}
+			buffer.append(this.wayNodeBuffer);
+		} else if (!processWayDataBlock(buffer)) {
+			buffer.truncate(firstCoordinateBlock);
+			return -1;
+		}
+		return firstCoordinateBlock;
+	}
+
+	/**
+	 * @param coordinateBlock
+	 *            the index of the coordinate block.
+	 * @return the index of the first longitude of the given coordinate block in the coordinates array.
+	 */
+	public int getCoordinateBlockOffset(int coordinateBlock) {
+		decodeCoordinates();
+		return this.wayNodeBuffer.getCoordinateBlockOffset(coordinateBlock);
+	}
+
+	/**
+	 * Returns the reused array which contains the way nodes of all coordinate blocks in microdegrees. The array may be
+	 * larger than needed, only the ranges of the coordinate blocks are valid.
+	 * 
+	 * @return the way node coordinates in the order longitude/latitude.
+	 */
+	public int[] getCoordinates() {
+		decodeCoordinates();
+		return this.wayNodeBuffer.getCoordinates();
+	}
+
+	/**
+	 * @return the house number of this way (may be null).
+	 */
+	public String getHouseNumber() {
+		if (this.houseNumberPosition >= 0) {
+			this.houseNumber = this.readBuffer.readUTF8EncodedStringAt(this.houseNumberPosition);
+			this.houseNumberPosition = -1;
+		}
+		return this.houseNumber;
+	}
+
+	/**
+	 * @return the latitude of the label position in microdegrees, only valid if {@link #hasLabelPosition()} returns
+	 *         true.
+	 */
+	public int getLabelLatitude() {
+		return this.labelLatitude;
+	}
+
+	/**
+	 * @return the longitude of the label position in microdegrees, only valid if {@link #hasLabelPosition()} returns
+	 *         true.
+	 */
+	public int getLabelLongitude() {
+		return this.labelLongitude;
+	}
+
+	/**
+	 * @return the layer of this way + 5 (to avoid negative values).
+	 */
+	public byte getLayer() {
+		return this.layer;
+	}
+
+	/**
+	 * @return the name of this way (may be null).
+	 */
+	public String getName() {
+		if (this.namePosition >= 0) {
+			this.name = this.readBuffer.readUTF8EncodedStringAt(this.namePosition);
+			this.namePosition = -1;
+		}
+		return this.name;
+	}
+
+	/**
+	 * @return the number of coordinate blocks of this way, the first one is the outer way of an area. Zero if the way
+	 *         nodes are invalid or have been clipped away completely.
+	 */
+	public int getNumberOfCoordinateBlocks() {
+		decodeCoordinates();
+		return this.wayNodeBuffer.getNumberOfCoordinateBlocks();
+	}
+
+	/**
+	 * @return the number of tag IDs of this way.
+	 */
+	public int getNumberOfTags() {
+		return this.numberOfTags;
+	}
+
+	/**
+	 * @param coordinateBlock
+	 *            the index of the coordinate block.
+	 * @return the number of way nodes in the given coordinate block.
+	 */
+	public int getNumberOfWayNodes(int coordinateBlock) {
+		decodeCoordinates();
+		return this.wayNodeBuffer.getNumberOfWayNodes(coordinateBlock);
+	}
+
+	/**
+	 * @return the reference of this way (may be null).
+	 */
+	public String getRef() {
+		if (this.refPosition >= 0) {
+			this.ref = this.readBuffer.readUTF8EncodedStringAt(this.refPosition);
+			this.refPosition = -1;
+		}
+		return this.ref;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the tag, must be smaller than {@link #getNumberOfTags()}.
+	 * @return the tag with the given index.
+	 */
+	public Tag getTag(int index) {
+		return this.wayTags[this.tagIds[index]];
+	}
+
+	/**
+	 * Creates a new list with all tags of this way. The name, the house number and the reference are added as
+	 * separate tags.
+	 * 
+	 * @return the tags of this way.
+	 */
+	public List<Tag> getTags() {
+		List<Tag> tags = new ArrayList<Tag>();
+		for (int i = 0; i < this.numberOfTags; ++i) {
+			tags.add(getTag(i));
+		}
+		String wayName = getName();
+		if (wayName != null) {
+			tags.add(new Tag(TAG_KEY_NAME, wayName));
+		}
+		String wayHouseNumber = getHouseNumber();
+		if (wayHouseNumber != null) {
+			tags.add(new Tag(TAG_KEY_HOUSE_NUMBER, wayHouseNumber));
+		}
+		String wayRef = getRef();
+		if (wayRef != null) {
+			tags.add(new Tag(TAG_KEY_REF, wayRef));
+		}
+		return tags;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the tag, must be smaller than {@link #getNumberOfTags()}.
+	 * @return the ID of the tag with the given index in the way tag table of the map file.
+	 */
+	public int getTagId(int index) {
+		return this.tagIds[index];
+	}
+
+	/**
+	 * @return true if this way has a label position, false otherwise.
+	 */
+	public boolean hasLabelPosition() {
+		return this.hasLabelPosition;
+	}
+
+	/**
+	 * Decodes the way nodes of the current way data block if this has not been done yet.
+	 * 
+	 * @return true if the way nodes are valid, false otherwise.
+	 */
+	boolean decodeCoordinates() {
+		if (!this.coordinatesDecoded) {
+			this.coordinatesDecoded = true;
+			this.wayNodeBuffer.clear();
+			this.coordinatesValid = processWayDataBlock(this.wayNodeBuffer);
+			if (!this.coordinatesValid) {
+				this.wayNodeBuffer.clear();
+			}
+		}
+		return this.coordinatesValid;
+	}
+
+	/**
+	 * @return the position in the read buffer behind the way nodes of the current way data block, only valid after
+	 *         the way nodes have been decoded.
+	 */
+	int getCoordinatesEndPosition() {
+		return this.coordinatesEndPosition;
+	}
+
+	/**
+	 * Resets the lazily decoded strings of this record for a new way.
+	 * 
+	 * @param newNamePosition
+	 *            the position of the name in the read buffer or -1 if the way has no name.
+	 * @param newHouseNumberPosition
+	 *            the position of the house number in the read buffer or -1 if the way has no house number.
+	 * @param newRefPosition
+	 *            the position of the reference in the read buffer or -1 if the way has no reference.
+	 */
+	void startWay(int newNamePosition, int newHouseNumberPosition, int newRefPosition) {
+		this.name = null;
+		this.namePosition = newNamePosition;
+		this.houseNumber = null;
+		this.houseNumberPosition = newHouseNumberPosition;
+		this.ref = null;
+		this.refPosition = newRefPosition;
+	}
+
+	/**
+	 * Resets the lazily decoded way nodes of this record for a new way data block.
+	 * 
+	 * @param bufferPosition
+	 *            the position of the way data block in the read buffer.
+	 * @param doubleDelta
+	 *            true if the way nodes are double-delta encoded, false otherwise.
+	 * @param bitPacked
+	 *            true if the way node deltas are bit-packed, false otherwise.
+	 */
+	void startWayDataBlock(int bufferPosition, boolean doubleDelta, boolean bitPacked) {
+		this.coordinatesDecoded = false;
+		this.coordinatesPosition = bufferPosition;
+		this.doubleDeltaEncoding = doubleDelta;
+		this.bitPackedEncoding = bitPacked;
+	}
+
+	/**
+	 * @return a new immutable way with the current data of this record or null if the way nodes are invalid or have
+	 *         been clipped away completely.
+	 */
+	Way toWay() {
+		if (!decodeCoordinates() || this.wayNodeBuffer.getNumberOfCoordinateBlocks() == 0) {
+			return null;
+		}
+
+		List<Tag> tags = getTags();
+
+		int[] coordinates = this.wayNodeBuffer.getCoordinates();
+		float[][] wayNodes = new float[this.wayNodeBuffer.getNumberOfCoordinateBlocks()][];
+		for (int coordinateBlock = 0; coordinateBlock < wayNodes.length; ++coordinateBlock) {
+			int offset = this.wayNodeBuffer.getCoordinateBlockOffset(coordinateBlock);
+			float[] waySegment = new float[this.wayNodeBuffer.getNumberOfWayNodes(coordinateBlock) * 2];
+			for (int i = 0; i < waySegment.length; ++i) {
+				waySegment[i] = coordinates[offset + i];
+			}
+			wayNodes[coordinateBlock] = waySegment;
+		}
+
+		GeoPoint labelPosition = null;
+		if (this.hasLabelPosition) {
+			labelPosition = new GeoPoint(this.labelLatitude, this.labelLongitude);
+		}
+
+		return new Way(this.layer, tags, wayNodes, labelPosition);
+	}
+
+	/**
+	 * Decodes the way nodes of the current way data block into the given buffer. The current position of the read
+	 * buffer is not changed.
+	 */
+	private boolean decodeWayDataBlock(WayNodeBuffer buffer) {
+		int bufferPosition = this.readBuffer.getBufferPosition();
+		this.readBuffer.setBufferPosition(this.coordinatesPosition);
+		try {
+			// get and check the number of way coordinate blocks (VBE-U)
+			int numberOfWayCoordinateBlocks = this.readBuffer.readUnsignedInt();
+			if (numberOfWayCoordinateBlocks < 1 || numberOfWayCoordinateBlocks > Short.MAX_VALUE) {
+				LOGGER.warning("invalid number of way coordinate blocks: " + numberOfWayCoordinateBlocks);
+				return false;
+			}
+
+			// read the way coordinate blocks
+			for (int coordinateBlock = 0; coordinateBlock < numberOfWayCoordinateBlocks; ++coordinateBlock) {
+				// get and check the number of way nodes (VBE-U)
+				int numberOfWayNodes = this.readBuffer.readUnsignedInt();
+				if (numberOfWayNodes < 2 || numberOfWayNodes > MAXIMUM_WAY_NODES_SEQUENCE_LENGTH) {
+					LOGGER.warning("invalid number of way nodes: " + numberOfWayNodes);
+					return false;
+				}
+
+				// each way node consists of latitude and longitude
+				int offset = buffer.addCoordinateBlock(numberOfWayNodes);
+				int end = offset + numberOfWayNodes * 2;
+
+				if (this.bitPackedEncoding) {
+					if (!decodeWayNodesBitPacked(buffer.getCoordinates(), offset, end)) {
+						return false;
+					}
+				} else if (this.doubleDeltaEncoding) {
+					decodeWayNodesDoubleDelta(buffer.getCoordinates(), offset, end);
+				} else {
+					decodeWayNodesSingleDelta(buffer.getCoordinates(), offset, end);
+				}
+			}
+
+			this.coordinatesEndPosition = this.readBuffer.getBufferPosition();
+			return true;
+		} finally {
+			this.readBuffer.setBufferPosition(bufferPosition);
+		}
+	}
+
+	private boolean decodeWayNodesBitPacked(int[] coordinates, int offset, int end) {
+		// get the first way node latitude and longitude offsets (VBE-S)
+		coordinates[offset + 1] = this.tileLatitude + this.readBuffer.readSignedInt();
+		coordinates[offset] = this.tileLongitude + this.readBuffer.readSignedInt();
+
+		int groupStart = offset + 2;
+		while (groupStart < end) {
+			int groupEnd = Math.min(end, groupStart + BIT_PACKING_GROUP_SIZE * 2);
+			int groupSize = (groupEnd - groupStart) / 2;
+
+			// get the bit width and the packed deltas of the latitudes, then of the longitudes
+			int latitudeBitWidth = this.readBuffer.readByte();
+			if (latitudeBitWidth < 0 || latitudeBitWidth > 32) {
+				LOGGER.warning("invalid bit width: " + latitudeBitWidth);
+				return false;
+			}
+			this.readBuffer.readBitPacked(coordinates, groupStart + 1, 2, groupSize, latitudeBitWidth);
+			int longitudeBitWidth = this.readBuffer.readByte();
+			if (longitudeBitWidth < 0 || longitudeBitWidth > 32) {
+				LOGGER.warning("invalid bit width: " + longitudeBitWidth);
+				return false;
+			}
+			this.readBuffer.readBitPacked(coordinates, groupStart, 2, groupSize, longitudeBitWidth);
+
+			// add up the deltas
+			for (int wayNodesIndex = groupStart; wayNodesIndex < groupEnd; ++wayNodesIndex) {
+				coordinates[wayNodesIndex] += coordinates[wayNodesIndex - 2];
+			}
+			groupStart = groupEnd;
+		}
+		return true;
+	}
+
+	private void decodeWayNodesDoubleDelta(int[] coordinates, int offset, int end) {
+		// get the first way node latitude offset (VBE-S)
+		int wayNodeLatitude = this.tileLatitude + this.readBuffer.readSignedInt();
+
+		// get the first way node longitude offset (VBE-S)
+		int wayNodeLongitude = this.tileLongitude + this.readBuffer.readSignedInt();
+
+		// store the first way node
+		coordinates[offset + 1] = wayNodeLatitude;
+		coordinates[offset] = wayNodeLongitude;
+
+		int previousSingleDeltaLatitude = 0;
+		int previousSingleDeltaLongitude = 0;
+
+		for (int wayNodesIndex = offset + 2; wayNodesIndex < end; wayNodesIndex += 2) {
+			// get the way node latitude double-delta offset (VBE-S)
+			int doubleDeltaLatitude = this.readBuffer.readSignedInt();
+
+			// get the way node longitude double-delta offset (VBE-S)
+			int doubleDeltaLongitude = this.readBuffer.readSignedInt();
+
+			int singleDeltaLatitude = doubleDeltaLatitude + previousSingleDeltaLatitude;
+			int singleDeltaLongitude = doubleDeltaLongitude + previousSingleDeltaLongitude;
+
+			wayNodeLatitude = wayNodeLatitude + singleDeltaLatitude;
+			wayNodeLongitude = wayNodeLongitude + singleDeltaLongitude;
+
+			coordinates[wayNodesIndex + 1] = wayNodeLatitude;
+			coordinates[wayNodesIndex] = wayNodeLongitude;
+
+			previousSingleDeltaLatitude = singleDeltaLatitude;
+			previousSingleDeltaLongitude = singleDeltaLongitude;
+		}
+	}
+
+	private void decodeWayNodesSingleDelta(int[] coordinates, int offset, int end) {
+		// get the first way node latitude single-delta offset (VBE-S)
+		int wayNodeLatitude = this.tileLatitude + this.readBuffer.readSignedInt();
+
+		// get the first way node longitude single-delta offset (VBE-S)
+		int wayNodeLongitude = this.tileLongitude + this.readBuffer.readSignedInt();
+
+		// store the first way node
+		coordinates[offset + 1] = wayNodeLatitude;
+		coordinates[offset] = wayNodeLongitude;
+
+		for (int wayNodesIndex = offset + 2; wayNodesIndex < end; wayNodesIndex += 2) {
+			// get the way node latitude offset (VBE-S)
+			wayNodeLatitude = wayNodeLatitude + this.readBuffer.readSignedInt();
+
+			// get the way node longitude offset (VBE-S)
+			wayNodeLongitude = wayNodeLongitude + this.readBuffer.readSignedInt();
+
+			coordinates[wayNodesIndex + 1] = wayNodeLatitude;
+			coordinates[wayNodesIndex] = wayNodeLongitude;
+		}
+	}
+
+	/**
+	 * Decodes the way nodes of the current way data block into the given buffer, simplifies them if a simplifier has
+	 * been set and clips them if a clipper has been set. The current position of the read buffer is not changed.
+	 */
+	private boolean processWayDataBlock(WayNodeBuffer buffer) {
+		if (this.wayClipper == null && this.waySimplifier == null) {
+			return decodeWayDataBlock(buffer);
+		}
+
+		if (this.decodedBuffer == null) {
+			this.decodedBuffer = new WayNodeBuffer();
+			this.simplifiedBuffer = new WayNodeBuffer();
+		}
+		this.decodedBuffer.clear();
+		if (!decodeWayDataBlock(this.decodedBuffer)) {
+			return false;
+		}
+
+		WayNodeBuffer source = this.decodedBuffer;
+		int numberOfCoordinateBlocks = source.getNumberOfCoordinateBlocks();
+		if (this.waySimplifier != null) {
+			// simplify first, so that fewer way nodes need to be clipped
+			WayNodeBuffer destination = buffer;
+			if (this.wayClipper != null) {
+				destination = this.simplifiedBuffer;
+				destination.clear();
+			}
+			for (int coordinateBlock = 0; coordinateBlock < numberOfCoordinateBlocks; ++coordinateBlock) {
+				this.waySimplifier.simplify(source, coordinateBlock, destination);
+			}
+			source = destination;
+		}
+
+		if (this.wayClipper != null) {
+			for (int coordinateBlock = 0; coordinateBlock < numberOfCoordinateBlocks; ++coordinateBlock) {
+				this.wayClipper.clip(source, coordinateBlock, buffer);
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Reduces the number of way nodes which cannot be distinguished at the zoom level of a query.
+ * <p>
+ * A way node is dropped if its distance to the previously kept way node is below the tolerance in both directions.
+ * The first and the last way node of each coordinate block are always kept, so that closed coordinate blocks stay
+ * closed. Coordinate blocks with less than three way nodes are copied unchanged. This class is not thread-safe.
+ */
+final class WaySimplifier {
+	private int latitudeTolerance;
+	private int longitudeTolerance;
+
+	/**
+	 * Sets the minimum distance between two consecutive way nodes in microdegrees.
+	 */
+	void setTolerance(int newLatitudeTolerance, int newLongitudeTolerance) {
+		this.latitudeTolerance = newLatitudeTolerance;
+		this.longitudeTolerance = newLongitudeTolerance;
+	}
+
+	/**
+	 * Simplifies one coordinate block of the source buffer and appends the result to the destination buffer.
+	 * 
+	 * @param source
+	 *            the buffer which contains the original way nodes.
+	 * @param coordinateBlock
+	 *            the index of the coordinate block in the source buffer.
+	 * @param destination
+	 *            the buffer to which the simplified coordinate block should be appended.
+	 */
+	void simplify(WayNodeBuffer source, int coordinateBlock, WayNodeBuffer destination) {
+		int numberOfWayNodes = source.getNumberOfWayNodes(coordinateBlock);
+		int offset = destination.addCoordinateBlock(numberOfWayNodes);
+		int[] sourceCoordinates = source.getCoordinates();
+		int[] coordinates = destination.getCoordinates();
+		int sourceOffset = source.getCoordinateBlockOffset(coordinateBlock);
+		int sourceEnd = sourceOffset + numberOfWayNodes * 2;
+
+		if (numberOfWayNodes < 3) {
+			// there is no way node between the first and the last one
+			System.arraycopy(sourceCoordinates, sourceOffset, coordinates, offset, numberOfWayNodes * 2);
+			return;
+		}
+
+		int previousLongitude = sourceCoordinates[sourceOffset];
+		int previousLatitude = sourceCoordinates[sourceOffset + 1];
+		coordinates[offset] = previousLongitude;
+		coordinates[offset + 1] = previousLatitude;
+		int end = offset + 2;
+
+		for (int i = sourceOffset + 2; i < sourceEnd - 2; i += 2) {
+			int longitude = sourceCoordinates[i];
+			int latitude = sourceCoordinates[i + 1];
+			if (Math.abs(longitude - previousLongitude) < this.longitudeTolerance
+					&& Math.abs(latitude - previousLatitude) < this.latitudeTolerance) {
+				continue;
+			}
+			coordinates[end] = longitude;
+			coordinates[end + 1] = latitude;
+			end += 2;
+			previousLongitude = longitude;
+			previousLatitude = latitude;
+		}
+
+		coordinates[end] = sourceCoordinates[sourceEnd - 2];
+		coordinates[end + 1] = sourceCoordinates[sourceEnd - 1];
+		destination.shrinkLastCoordinateBlock((end + 2 - offset) / 2);
+	}
+}
@@ -220,6 +220,7 @@ public class MapFileHeader {
 			subFileParameterBuilder.subFileSize = subFileSize;
 
 			subFileParameterBuilder.boundingBox = mapFileInfoBuilder.boundingBox;
+			subFileParameterBuilder.hilbertBlockOrder = mapFileInfoBuilder.optionalFields.isHilbertOrdered;
 
 			// add the current sub-file to the list of sub-files
 			tempSubFileParameters[currentSubFile] = subFileParameterBuilder.build();
@@ -35,6 +35,11 @@ public class MapFileInfo {
 	 */
 	public final String comment;
 
+	/**
+	 * True if each block of the map file is compressed with the deflate algorithm, false otherwise.
+	 */
+	public final boolean compressedBlocks;
+
 	/**
 	 * The created by field of the map file (may be null).
 	 */
@@ -55,6 +60,12 @@ public class MapFileInfo {
 	 */
 	public final int fileVersion;
 
+	/**
+	 * True if the blocks of each sub-file are stored in the order of a Hilbert curve and the index contains the size
+	 * of each block, false otherwise.
+	 */
+	public final boolean hilbertBlockOrder;
+
 	/**
 	 * The preferred language for names as defined in ISO 3166-1 (may be null).
 	 */
@@ -107,10 +118,12 @@ public class MapFileInfo {
 
 	MapFileInfo(MapFileInfoBuilder mapFileInfoBuilder) {
 		this.comment = mapFileInfoBuilder.optionalFields.comment;
+		this.compressedBlocks = mapFileInfoBuilder.optionalFields.isCompressedFile;
 		this.createdBy = mapFileInfoBuilder.optionalFields.createdBy;
 		this.debugFile = mapFileInfoBuilder.optionalFields.isDebugFile;
 		this.fileSize = mapFileInfoBuilder.fileSize;
 		this.fileVersion = mapFileInfoBuilder.fileVersion;
+		this.hilbertBlockOrder = mapFileInfoBuilder.optionalFields.isHilbertOrdered;
 		this.languagePreference = mapFileInfoBuilder.optionalFields.languagePreference;
 		this.boundingBox = mapFileInfoBuilder.boundingBox;
 		this.mapCenter = this.boundingBox.getCenterPoint();
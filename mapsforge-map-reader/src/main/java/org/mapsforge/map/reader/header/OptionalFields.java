@@ -23,6 +23,11 @@ final class OptionalFields {
 	 */
 	private static final int HEADER_BITMASK_COMMENT = 0x08;
 
+	/**
+	 * Bitmask for the compressed blocks flag in the file header.
+	 */
+	private static final int HEADER_BITMASK_COMPRESSED_BLOCKS = 0x02;
+
 	/**
 	 * Bitmask for the created by field in the file header.
 	 */
@@ -33,6 +38,11 @@ final class OptionalFields {
 	 */
 	private static final int HEADER_BITMASK_DEBUG = 0x80;
 
+	/**
+	 * Bitmask for the Hilbert block order flag in the file header.
+	 */
+	private static final int HEADER_BITMASK_HILBERT_BLOCK_ORDER = 0x01;
+
 	/**
 	 * Bitmask for the language preference field in the file header.
 	 */
@@ -62,6 +72,17 @@ final class OptionalFields {
 		OptionalFields optionalFields = new OptionalFields(readBuffer.readByte());
 		mapFileInfoBuilder.optionalFields = optionalFields;
 
+		// older readers ignore these flags, so they are only valid in map files which older readers reject
+		if (mapFileInfoBuilder.fileVersion < RequiredFields.FILE_VERSION_EXTENDED) {
+			if (optionalFields.isHilbertOrdered) {
+				return new FileOpenResult("Hilbert block order requires file version "
+						+ RequiredFields.FILE_VERSION_EXTENDED + ": " + mapFileInfoBuilder.fileVersion);
+			} else if (optionalFields.isCompressedFile) {
+				return new FileOpenResult("compressed blocks require file version "
+						+ RequiredFields.FILE_VERSION_EXTENDED + ": " + mapFileInfoBuilder.fileVersion);
+			}
+		}
+
 		FileOpenResult fileOpenResult = optionalFields.readOptionalFields(readBuffer);
 		if (!fileOpenResult.isSuccess()) {
 			return fileOpenResult;
@@ -76,13 +97,17 @@ final class OptionalFields {
 	final boolean hasLanguagePreference;
 	final boolean hasStartPosition;
 	final boolean hasStartZoomLevel;
+	final boolean isCompressedFile;
 	final boolean isDebugFile;
+	final boolean isHilbertOrdered;
 	String languagePreference;
 	GeoPoint startPosition;
 	Byte startZoomLevel;
 
 	private OptionalFields(byte flags) {
 		this.isDebugFile = (flags & HEADER_BITMASK_DEBUG) != 0;
+		this.isCompressedFile = (flags & HEADER_BITMASK_COMPRESSED_BLOCKS) != 0;
+		this.isHilbertOrdered = (flags & HEADER_BITMASK_HILBERT_BLOCK_ORDER) != 0;
 		this.hasStartPosition = (flags & HEADER_BITMASK_START_POSITION) != 0;
 		this.hasStartZoomLevel = (flags & HEADER_BITMASK_START_ZOOM_LEVEL) != 0;
 		this.hasLanguagePreference = (flags & HEADER_BITMASK_LANGUAGE_PREFERENCE) != 0;
@@ -27,6 +27,11 @@ final class RequiredFields {
 	 */
 	private static final String BINARY_OSM_MAGIC_BYTE = "mapsforge binary OSM";
 
+	/**
+	 * Oldest version of the map file format which is supported by this implementation.
+	 */
+	private static final int FILE_VERSION_MIN = 3;
+
 	/**
 	 * Maximum size of the file header in bytes.
 	 */
@@ -48,9 +53,10 @@ final class RequiredFields {
 	private static final char SPACE = ' ';
 
 	/**
-	 * Version of the map file format which is supported by this implementation.
+	 * First version of the map file format which may use options that change the layout of the index or the blocks,
+	 * older readers must reject such map files. This is also the newest version supported by this implementation.
 	 */
-	private static final int SUPPORTED_FILE_VERSION = 3;
+	static final int FILE_VERSION_EXTENDED = 4;
 
 	/**
 	 * The maximum latitude values in microdegrees.
@@ -121,7 +127,7 @@ final class RequiredFields {
 	static FileOpenResult readFileVersion(ReadBuffer readBuffer, MapFileInfoBuilder mapFileInfoBuilder) {
 		// get and check the file version (4 bytes)
 		int fileVersion = readBuffer.readInt();
-		if (fileVersion != SUPPORTED_FILE_VERSION) {
+		if (fileVersion < FILE_VERSION_MIN || fileVersion > FILE_VERSION_EXTENDED) {
 			return new FileOpenResult("unsupported file version: " + fileVersion);
 		}
 		mapFileInfoBuilder.fileVersion = fileVersion;
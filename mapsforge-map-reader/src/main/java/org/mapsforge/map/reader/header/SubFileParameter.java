@@ -21,7 +21,13 @@ import org.mapsforge.core.util.MercatorProjection;
  */
 public class SubFileParameter {
 	/**
-	 * Number of bytes a single index entry consists of.
+	 * Number of bytes of the block size which follows the block pointer in each index entry of a sub-file with
+	 * Hilbert block order.
+	 */
+	public static final byte BYTES_PER_BLOCK_SIZE = 4;
+
+	/**
+	 * Number of bytes a single index entry without block size consists of.
 	 */
 	public static final byte BYTES_PER_INDEX_ENTRY = 5;
 
@@ -65,11 +71,22 @@ public class SubFileParameter {
 	 */
 	public final long boundaryTileTop;
 
+	/**
+	 * True if the blocks are stored in the order of a Hilbert curve and each index entry contains the block size,
+	 * false otherwise.
+	 */
+	public final boolean hilbertBlockOrder;
+
 	/**
 	 * Absolute end address of the index in the enclosing file.
 	 */
 	public final long indexEndAddress;
 
+	/**
+	 * Number of bytes a single index entry of this sub-file consists of.
+	 */
+	public final int indexEntrySize;
+
 	/**
 	 * Absolute start address of the index in the enclosing file.
 	 */
@@ -112,6 +129,9 @@ public class SubFileParameter {
 		this.baseZoomLevel = subFileParameterBuilder.baseZoomLevel;
 		this.zoomLevelMin = subFileParameterBuilder.zoomLevelMin;
 		this.zoomLevelMax = subFileParameterBuilder.zoomLevelMax;
+		this.hilbertBlockOrder = subFileParameterBuilder.hilbertBlockOrder;
+		this.indexEntrySize = this.hilbertBlockOrder ? BYTES_PER_INDEX_ENTRY + BYTES_PER_BLOCK_SIZE
+				: BYTES_PER_INDEX_ENTRY;
 		this.hashCodeValue = calculateHashCode();
 
 		// calculate the XY numbers of the boundary tiles in this sub-file
@@ -131,7 +151,7 @@ public class SubFileParameter {
 		// calculate the total amount of blocks in this sub-file
 		this.numberOfBlocks = this.blocksWidth * this.blocksHeight;
 
-		this.indexEndAddress = this.indexStartAddress + this.numberOfBlocks * BYTES_PER_INDEX_ENTRY;
+		this.indexEndAddress = this.indexStartAddress + this.numberOfBlocks * this.indexEntrySize;
 	}
 
 	@Override
@@ -174,6 +194,8 @@ public class SubFileParameter {
 		stringBuilder.append(this.boundaryTileRight);
 		stringBuilder.append(", boundaryTileTop=");
 		stringBuilder.append(this.boundaryTileTop);
+		stringBuilder.append(", hilbertBlockOrder=");
+		stringBuilder.append(this.hilbertBlockOrder);
 		stringBuilder.append(", indexStartAddress=");
 		stringBuilder.append(this.indexStartAddress);
 		stringBuilder.append(", numberOfBlocks=");
@@ -19,6 +19,7 @@ import org.mapsforge.core.model.BoundingBox;
 class SubFileParameterBuilder {
 	byte baseZoomLevel;
 	BoundingBox boundingBox;
+	boolean hilbertBlockOrder;
 	long indexStartAddress;
 	long startAddress;
 	long subFileSize;
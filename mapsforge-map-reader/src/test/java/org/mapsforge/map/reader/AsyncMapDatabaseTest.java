@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * Tests the {@link AsyncMapDatabase} class.
+ */
+public class AsyncMapDatabaseTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final int NUMBER_OF_QUERIES = 100;
+	private static final int NUMBER_OF_THREADS = 4;
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static Tile createTile(int queryNumber) {
+		byte zoomLevel = (byte) (ZOOM_LEVEL_MIN + queryNumber % (ZOOM_LEVEL_MAX - ZOOM_LEVEL_MIN + 1));
+		long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+		long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+		return new Tile(tileX, tileY, zoomLevel);
+	}
+
+	/**
+	 * Tests the constructor with invalid arguments.
+	 */
+	@Test
+	public void invalidArgumentsTest() throws IOException {
+		try {
+			new AsyncMapDatabase(null, NUMBER_OF_THREADS);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		MapFile mapFile = MapFile.open(MAP_FILE);
+		try {
+			new AsyncMapDatabase(mapFile, 0);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		mapFile.close();
+		try {
+			new AsyncMapDatabase(mapFile, NUMBER_OF_THREADS);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests that the callback is notified if a query throws an exception.
+	 */
+	@Test
+	public void readMapDataExceptionTest() throws IOException, InterruptedException, ExecutionException {
+		MapFile mapFile = MapFile.open(MAP_FILE);
+		AsyncMapDatabase asyncMapDatabase = new AsyncMapDatabase(mapFile, NUMBER_OF_THREADS);
+
+		final AtomicInteger callbacks = new AtomicInteger();
+		MapReadCallback mapReadCallback = new MapReadCallback() {
+			@Override
+			public void mapDataRead(Tile tile, MapReadResult mapReadResult) {
+				if (mapReadResult == null) {
+					callbacks.incrementAndGet();
+				}
+			}
+		};
+
+		// a query without a tile fails with a NullPointerException
+		Future<MapReadResult> future = asyncMapDatabase.readMapData(null, mapReadCallback);
+		try {
+			future.get();
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof RuntimeException);
+		}
+		Assert.assertEquals(1, callbacks.get());
+
+		// the map database of the failed query must still be usable
+		for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+			Assert.assertNotNull(asyncMapDatabase.readMapData(createTile(i)).get());
+		}
+
+		asyncMapDatabase.close();
+		mapFile.close();
+	}
+
+	/**
+	 * Tests the {@link AsyncMapDatabase#readMapData(Tile, MapReadCallback)} method.
+	 */
+	@Test
+	public void readMapDataTest() throws IOException, InterruptedException, ExecutionException {
+		MapFile mapFile = MapFile.open(MAP_FILE);
+		AsyncMapDatabase asyncMapDatabase = new AsyncMapDatabase(mapFile, NUMBER_OF_THREADS);
+
+		final AtomicInteger callbacks = new AtomicInteger();
+		MapReadCallback mapReadCallback = new MapReadCallback() {
+			@Override
+			public void mapDataRead(Tile tile, MapReadResult mapReadResult) {
+				if (mapReadResult != null && mapReadResult.ways.size() == 1) {
+					callbacks.incrementAndGet();
+				}
+			}
+		};
+
+		List<Future<MapReadResult>> futures = new ArrayList<Future<MapReadResult>>();
+		for (int i = 0; i < NUMBER_OF_QUERIES; ++i) {
+			futures.add(asyncMapDatabase.readMapData(createTile(i), mapReadCallback));
+		}
+
+		for (Future<MapReadResult> future : futures) {
+			MapReadResult mapReadResult = future.get();
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+		}
+		Assert.assertEquals(NUMBER_OF_QUERIES, callbacks.get());
+
+		asyncMapDatabase.close();
+		Assert.assertTrue(asyncMapDatabase.isClosed());
+		try {
+			asyncMapDatabase.readMapData(createTile(0));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+		mapFile.close();
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CacheStripes} class.
+ */
+public class CacheStripesTest {
+	private static final int[] CAPACITIES = { 0, 1, 7, 8, 16, 24, 31, 100, 128, 1000 };
+
+	private static int getTotalCapacity(Map<Integer, Integer>[] stripes) {
+		// fill the stripes until every stripe is full
+		for (int i = 0; i < 100000; ++i) {
+			CacheStripes.getStripe(stripes, Integer.valueOf(i)).put(Integer.valueOf(i), Integer.valueOf(i));
+		}
+
+		int totalCapacity = 0;
+		for (Map<Integer, Integer> stripe : stripes) {
+			totalCapacity += stripe.size();
+		}
+		return totalCapacity;
+	}
+
+	/**
+	 * Tests the {@link CacheStripes#createStripes} method.
+	 */
+	@Test
+	public void createStripesTest() {
+		for (int capacity : CAPACITIES) {
+			Map<Integer, Integer>[] stripes = CacheStripes.createStripes(capacity);
+			Assert.assertEquals(CacheStripes.getNumberOfStripes(capacity), stripes.length);
+			Assert.assertEquals(capacity, getTotalCapacity(stripes));
+		}
+	}
+
+	/**
+	 * Tests the {@link CacheStripes#getNumberOfStripes} method.
+	 */
+	@Test
+	public void getNumberOfStripesTest() {
+		Assert.assertEquals(1, CacheStripes.getNumberOfStripes(0));
+		Assert.assertEquals(1, CacheStripes.getNumberOfStripes(15));
+		Assert.assertEquals(2, CacheStripes.getNumberOfStripes(16));
+		Assert.assertEquals(2, CacheStripes.getNumberOfStripes(31));
+		Assert.assertEquals(4, CacheStripes.getNumberOfStripes(32));
+		Assert.assertEquals(8, CacheStripes.getNumberOfStripes(127));
+		Assert.assertEquals(16, CacheStripes.getNumberOfStripes(128));
+		Assert.assertEquals(16, CacheStripes.getNumberOfStripes(Integer.MAX_VALUE));
+
+		for (int capacity : CAPACITIES) {
+			int numberOfStripes = CacheStripes.getNumberOfStripes(capacity);
+			Assert.assertEquals(0, numberOfStripes & (numberOfStripes - 1));
+			Assert.assertTrue(numberOfStripes == 1
+					|| capacity / numberOfStripes >= CacheStripes.MINIMUM_STRIPE_CAPACITY);
+		}
+	}
+}
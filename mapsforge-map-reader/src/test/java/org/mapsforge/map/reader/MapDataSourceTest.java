@@ -0,0 +1,202 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Tests the {@link FileDataSource} and {@link ByteBufferDataSource} classes.
+ */
+public class MapDataSourceTest {
+	private static final String ENTRY_NAME = "maps/with_data.map";
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final int TAR_BLOCK_SIZE = 512;
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static File createTarFile(byte[] content) throws IOException {
+		File tarFile = File.createTempFile("maps", ".tar");
+		tarFile.deleteOnExit();
+
+		byte[] header = new byte[TAR_BLOCK_SIZE];
+		putString(header, 0, "other.txt");
+		putString(header, 124, String.format("%011o", Integer.valueOf(3)));
+		header[156] = '0';
+
+		FileOutputStream fileOutputStream = new FileOutputStream(tarFile);
+		try {
+			// an unrelated entry in front of the map file
+			fileOutputStream.write(header);
+			fileOutputStream.write(new byte[TAR_BLOCK_SIZE]);
+
+			header = new byte[TAR_BLOCK_SIZE];
+			putString(header, 0, ENTRY_NAME);
+			putString(header, 124, String.format("%011o", Integer.valueOf(content.length)));
+			header[156] = '0';
+			fileOutputStream.write(header);
+			fileOutputStream.write(content);
+			fileOutputStream.write(new byte[TAR_BLOCK_SIZE - content.length % TAR_BLOCK_SIZE + 2 * TAR_BLOCK_SIZE]);
+		} finally {
+			fileOutputStream.close();
+		}
+		return tarFile;
+	}
+
+	private static File createZipFile(byte[] content, int method) throws IOException {
+		File zipFile = File.createTempFile("maps", ".zip");
+		zipFile.deleteOnExit();
+
+		ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zipFile));
+		try {
+			zipOutputStream.putNextEntry(new ZipEntry("readme.txt"));
+			zipOutputStream.write(new byte[100]);
+
+			ZipEntry zipEntry = new ZipEntry(ENTRY_NAME);
+			zipEntry.setMethod(method);
+			if (method == ZipEntry.STORED) {
+				CRC32 crc32 = new CRC32();
+				crc32.update(content);
+				zipEntry.setCrc(crc32.getValue());
+				zipEntry.setSize(content.length);
+			}
+			zipOutputStream.putNextEntry(zipEntry);
+			zipOutputStream.write(content);
+			zipOutputStream.closeEntry();
+		} finally {
+			zipOutputStream.close();
+		}
+		return zipFile;
+	}
+
+	private static void executeQueries(MapDataSource dataSource) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(dataSource);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertEquals(MAP_FILE.length(), mapDatabase.getMapFileInfo().fileSize);
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			MapReadResult mapReadResult = mapDatabase.readMapData(new Tile(tileX, tileY, zoomLevel));
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+		}
+		mapDatabase.closeFile();
+	}
+
+	private static void putString(byte[] buffer, int offset, String string) {
+		byte[] bytes = string.getBytes();
+		System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+	}
+
+	private static byte[] readMapFile() throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(MAP_FILE, "r");
+		try {
+			byte[] data = new byte[(int) randomAccessFile.length()];
+			randomAccessFile.readFully(data);
+			return data;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Tests a map file in a {@link ByteBufferDataSource}.
+	 */
+	@Test
+	public void byteBufferTest() throws IOException {
+		byte[] content = readMapFile();
+
+		// the map file starts at the position of the buffer
+		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(content.length + 10);
+		byteBuffer.position(10);
+		byteBuffer.put(content);
+		byteBuffer.position(10);
+		executeQueries(new ByteBufferDataSource(byteBuffer));
+		Assert.assertEquals(10, byteBuffer.position());
+
+		ByteBufferDataSource dataSource = new ByteBufferDataSource(ByteBuffer.wrap(content));
+		byte[] buffer = new byte[8];
+		Assert.assertEquals(8, dataSource.read(content.length - 8, buffer, 0, 8));
+		Assert.assertEquals(3, dataSource.read(content.length - 3, buffer, 0, 8));
+		Assert.assertEquals(0, dataSource.read(content.length, buffer, 0, 8));
+	}
+
+	/**
+	 * Tests a map file in a plain {@link FileDataSource}.
+	 */
+	@Test
+	public void fileTest() throws IOException {
+		executeQueries(new FileDataSource(MAP_FILE));
+		executeQueries(new FileDataSource(MAP_FILE, true));
+	}
+
+	/**
+	 * Tests a map file in an entry of a tar archive.
+	 */
+	@Test
+	public void tarEntryTest() throws IOException {
+		File tarFile = createTarFile(readMapFile());
+		executeQueries(FileDataSource.openTarEntry(tarFile, ENTRY_NAME, false));
+		executeQueries(FileDataSource.openTarEntry(tarFile, ENTRY_NAME, true));
+
+		try {
+			FileDataSource.openTarEntry(tarFile, "missing.map", false);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests a map file in an entry of a zip archive.
+	 */
+	@Test
+	public void zipEntryTest() throws IOException {
+		byte[] content = readMapFile();
+		File zipFile = createZipFile(content, ZipEntry.STORED);
+		executeQueries(FileDataSource.openZipEntry(zipFile, ENTRY_NAME, false));
+		executeQueries(FileDataSource.openZipEntry(zipFile, ENTRY_NAME, true));
+
+		try {
+			FileDataSource.openZipEntry(zipFile, "missing.map", false);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		// compressed entries cannot be read with random access
+		File compressedZipFile = createZipFile(content, ZipEntry.DEFLATED);
+		try {
+			FileDataSource.openZipEntry(compressedZipFile, ENTRY_NAME, false);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+}
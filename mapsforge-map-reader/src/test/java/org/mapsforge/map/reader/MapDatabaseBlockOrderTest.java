@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Tests the {@link MapDatabase} class with a map file whose blocks are not stored row by row and whose index contains
+ * the block sizes.
+ */
+public class MapDatabaseBlockOrderTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+
+	private static File createReorderedFile() throws IOException {
+		return MapFileRewriter.rewrite(MAP_FILE, MapFileRewriter.FLAG_HILBERT_BLOCK_ORDER, MapFileRewriter.IDENTITY);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method with explicit block sizes.
+	 */
+	@Test
+	public void executeQueryTest() throws IOException {
+		File reorderedFile = createReorderedFile();
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(reorderedFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertTrue(mapDatabase.getMapFileInfo().hilbertBlockOrder);
+		mapDatabase.closeFile();
+
+		MapFileRewriter.compareQueries(MAP_FILE, reorderedFile, false);
+		MapFileRewriter.compareQueries(MAP_FILE, reorderedFile, true);
+	}
+
+	/**
+	 * Tests that the Hilbert block order is only accepted in map files with the extended file version.
+	 */
+	@Test
+	public void fileVersionTest() throws IOException {
+		File reorderedFile = createReorderedFile();
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(reorderedFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertEquals(4, mapDatabase.getMapFileInfo().fileVersion);
+		mapDatabase.closeFile();
+
+		MapFileRewriter.setFileVersion(reorderedFile, 3);
+		fileOpenResult = mapDatabase.openFile(reorderedFile);
+		Assert.assertFalse(fileOpenResult.isSuccess());
+		Assert.assertNotNull(fileOpenResult.getErrorMessage());
+	}
+
+	/**
+	 * Tests the {@link MapFileExtractor} class with explicit block sizes.
+	 */
+	@Test
+	public void extractTest() throws IOException {
+		BoundingBox boundingBox = new BoundingBox(10000, 10000, 50000, 50000);
+		File sourceFile = File.createTempFile("extracted", ".map");
+		sourceFile.deleteOnExit();
+		MapFileExtractor.extract(MAP_FILE, sourceFile, boundingBox);
+
+		File destination = File.createTempFile("extracted", ".map");
+		destination.deleteOnExit();
+		MapFileExtractor.extract(createReorderedFile(), destination, boundingBox);
+		MapFileRewriter.compareQueries(sourceFile, destination, false);
+	}
+
+	/**
+	 * Tests the {@link MapFileVerifier} class with explicit block sizes.
+	 */
+	@Test
+	public void verifyTest() throws IOException {
+		MapFileRewriter.compareStatistics(MAP_FILE, createReorderedFile());
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Tests the {@link MapDatabase} class with a map file whose blocks are compressed.
+ */
+public class MapDatabaseCompressionTest {
+	/**
+	 * Compresses each block like the map file writer does.
+	 */
+	private static final MapFileRewriter.BlockTransform COMPRESSION = new MapFileRewriter.BlockTransform() {
+		@Override
+		public byte[] transform(byte[] data, int offset, int length) {
+			ByteArrayOutputStream block = new ByteArrayOutputStream();
+			writeVariableByteUnsigned(length, block);
+
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			byte[] buffer = new byte[1024];
+			while (!deflater.finished()) {
+				block.write(buffer, 0, deflater.deflate(buffer));
+			}
+			deflater.end();
+			return block.toByteArray();
+		}
+	};
+
+	private static final byte FLAG_COMPRESSED_BLOCKS = 0x02;
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+
+	private static File createCompressedFile() throws IOException {
+		return MapFileRewriter.rewrite(MAP_FILE, FLAG_COMPRESSED_BLOCKS, COMPRESSION);
+	}
+
+	private static void writeVariableByteUnsigned(int value, ByteArrayOutputStream output) {
+		int remainingValue = value;
+		while (remainingValue > 0x7f) {
+			output.write((remainingValue & 0x7f) | 0x80);
+			remainingValue >>>= 7;
+		}
+		output.write(remainingValue);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method with compressed blocks.
+	 */
+	@Test
+	public void executeQueryTest() throws IOException {
+		File compressedFile = createCompressedFile();
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(compressedFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertTrue(mapDatabase.getMapFileInfo().compressedBlocks);
+		mapDatabase.closeFile();
+
+		MapFileRewriter.compareQueries(MAP_FILE, compressedFile, false);
+		MapFileRewriter.compareQueries(MAP_FILE, compressedFile, true);
+	}
+
+	/**
+	 * Tests that compressed blocks are only accepted in map files with the extended file version.
+	 */
+	@Test
+	public void fileVersionTest() throws IOException {
+		File compressedFile = createCompressedFile();
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(compressedFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertEquals(4, mapDatabase.getMapFileInfo().fileVersion);
+		mapDatabase.closeFile();
+
+		MapFileRewriter.setFileVersion(compressedFile, 3);
+		fileOpenResult = mapDatabase.openFile(compressedFile);
+		Assert.assertFalse(fileOpenResult.isSuccess());
+		Assert.assertNotNull(fileOpenResult.getErrorMessage());
+	}
+
+	/**
+	 * Tests the {@link MapFileVerifier} class with compressed blocks.
+	 */
+	@Test
+	public void verifyTest() throws IOException {
+		MapFileRewriter.compareStatistics(MAP_FILE, createCompressedFile());
+	}
+}
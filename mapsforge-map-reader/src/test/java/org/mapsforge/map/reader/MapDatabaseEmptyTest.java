@@ -53,4 +53,26 @@ public class MapDatabaseEmptyTest {
 		mapDatabase.closeFile();
 		Assert.assertFalse(mapDatabase.hasOpenFile());
 	}
+
+	/**
+	 * Tests the {@link MapDatabase#queryTileStatus(Tile)} method.
+	 */
+	@Test
+	public void queryTileStatusTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = 0; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(1, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(1, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			TileStatus tileStatus = mapDatabase.queryTileStatus(tile);
+			TileStatus expectedTileStatus = mapDatabase.readMapData(tile).isWater ? TileStatus.WATER : TileStatus.EMPTY;
+			Assert.assertEquals(expectedTileStatus, tileStatus);
+		}
+
+		mapDatabase.closeFile();
+	}
 }
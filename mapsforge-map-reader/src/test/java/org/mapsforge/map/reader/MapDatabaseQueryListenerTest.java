@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Tests the {@link QueryListener} and {@link QueryStatistics} classes.
+ */
+public class MapDatabaseQueryListenerTest {
+	private static class TestQueryListener implements QueryListener {
+		long blockCacheHits;
+		long blocksRead;
+		long bytesRead;
+		long decodeNanos;
+		long indexCacheHits;
+		long indexCacheMisses;
+		long ioNanos;
+		long poisReturned;
+		int queries;
+		long queryNanos;
+		long waysDecoded;
+		long waysReturned;
+
+		TestQueryListener() {
+			// do nothing
+		}
+
+		@Override
+		public void queryCompleted(QueryStatistics queryStatistics) {
+			++this.queries;
+			this.blockCacheHits = queryStatistics.getBlockCacheHits();
+			this.blocksRead = queryStatistics.getBlocksRead();
+			this.bytesRead = queryStatistics.getBytesRead();
+			this.decodeNanos = queryStatistics.getDecodeNanos();
+			this.indexCacheHits = queryStatistics.getIndexCacheHits();
+			this.indexCacheMisses = queryStatistics.getIndexCacheMisses();
+			this.ioNanos = queryStatistics.getIoNanos();
+			this.poisReturned = queryStatistics.getPoisReturned();
+			this.queryNanos = queryStatistics.getQueryNanos();
+			this.waysDecoded = queryStatistics.getWaysDecoded();
+			this.waysReturned = queryStatistics.getWaysReturned();
+		}
+	}
+
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final byte ZOOM_LEVEL = 8;
+
+	private static Tile createTile() {
+		long tileX = MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL);
+		long tileY = MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL);
+		return new Tile(tileX, tileY, ZOOM_LEVEL);
+	}
+
+	private static MapDatabase openMapDatabase(MapFileOptions mapFileOptions) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, mapFileOptions);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		return mapDatabase;
+	}
+
+	/**
+	 * Tests the statistics of a batch query, which is reported as a single query.
+	 */
+	@Test
+	public void batchQueryTest() {
+		MapDatabase mapDatabase = openMapDatabase(new MapFileOptions());
+		TestQueryListener testQueryListener = new TestQueryListener();
+		mapDatabase.setQueryListener(testQueryListener);
+
+		Tile tile = createTile();
+		List<Tile> tiles = new ArrayList<Tile>();
+		tiles.add(tile);
+		tiles.add(new Tile(tile.tileX + 1, tile.tileY, ZOOM_LEVEL));
+		Map<Tile, MapReadResult> mapReadResults = mapDatabase.readMapData(tiles);
+		Assert.assertEquals(2, mapReadResults.size());
+
+		Assert.assertEquals(1, testQueryListener.queries);
+		Assert.assertEquals(1, testQueryListener.poisReturned);
+		Assert.assertEquals(1, testQueryListener.waysReturned);
+		Assert.assertTrue(testQueryListener.blocksRead > 0);
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests that cached blocks are counted as block cache hits instead of read blocks.
+	 */
+	@Test
+	public void blockCacheTest() {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setBlockCacheSize(16);
+		MapDatabase mapDatabase = openMapDatabase(mapFileOptions);
+		TestQueryListener testQueryListener = new TestQueryListener();
+		mapDatabase.setQueryListener(testQueryListener);
+
+		Tile tile = createTile();
+		mapDatabase.readMapData(tile);
+		Assert.assertEquals(0, testQueryListener.blockCacheHits);
+		Assert.assertTrue(testQueryListener.blocksRead > 0);
+
+		mapDatabase.readMapData(tile);
+		Assert.assertEquals(2, testQueryListener.queries);
+		Assert.assertTrue(testQueryListener.blockCacheHits > 0);
+		Assert.assertEquals(0, testQueryListener.blocksRead);
+		Assert.assertEquals(0, testQueryListener.bytesRead);
+		Assert.assertEquals(1, testQueryListener.poisReturned);
+		Assert.assertEquals(1, testQueryListener.waysReturned);
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests that the status query of a range of tiles is reported as a single query.
+	 */
+	@Test
+	public void queryTileStatusRangeTest() {
+		MapDatabase mapDatabase = openMapDatabase(new MapFileOptions());
+		TestQueryListener testQueryListener = new TestQueryListener();
+		mapDatabase.setQueryListener(testQueryListener);
+
+		Tile tile = createTile();
+		TileStatus[][] tileStatus = mapDatabase.queryTileStatus(tile.tileX - 1, tile.tileY - 1, tile.tileX + 1,
+				tile.tileY + 1, ZOOM_LEVEL);
+		Assert.assertEquals(3, tileStatus.length);
+		Assert.assertEquals(TileStatus.DATA, tileStatus[1][1]);
+
+		Assert.assertEquals(1, testQueryListener.queries);
+		Assert.assertTrue(testQueryListener.indexCacheMisses > 0);
+		Assert.assertEquals(0, testQueryListener.blocksRead);
+		Assert.assertEquals(0, testQueryListener.poisReturned);
+		Assert.assertEquals(0, testQueryListener.waysReturned);
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests the statistics of single tile queries with and without a sink.
+	 */
+	@Test
+	public void readMapDataTest() {
+		MapDatabase mapDatabase = openMapDatabase(new MapFileOptions());
+		TestQueryListener testQueryListener = new TestQueryListener();
+		mapDatabase.setQueryListener(testQueryListener);
+
+		Tile tile = createTile();
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+		Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+		Assert.assertEquals(1, testQueryListener.queries);
+		Assert.assertTrue(testQueryListener.indexCacheMisses > 0);
+		Assert.assertTrue(testQueryListener.blocksRead > 0);
+		Assert.assertTrue(testQueryListener.bytesRead > 0);
+		Assert.assertTrue(testQueryListener.waysDecoded > 0);
+		Assert.assertEquals(1, testQueryListener.poisReturned);
+		Assert.assertEquals(1, testQueryListener.waysReturned);
+		Assert.assertTrue(testQueryListener.queryNanos >= testQueryListener.ioNanos + testQueryListener.decodeNanos);
+
+		// the index block is cached now
+		Assert.assertTrue(mapDatabase.readMapData(tile, new MapReadResultBuilder()));
+		Assert.assertEquals(2, testQueryListener.queries);
+		Assert.assertEquals(0, testQueryListener.indexCacheMisses);
+		Assert.assertTrue(testQueryListener.indexCacheHits > 0);
+		Assert.assertEquals(1, testQueryListener.poisReturned);
+		Assert.assertEquals(1, testQueryListener.waysReturned);
+
+		// the tile status only needs the index
+		Assert.assertEquals(TileStatus.DATA, mapDatabase.queryTileStatus(tile));
+		Assert.assertEquals(3, testQueryListener.queries);
+		Assert.assertEquals(0, testQueryListener.blocksRead);
+		Assert.assertEquals(0, testQueryListener.poisReturned);
+
+		mapDatabase.setQueryListener(null);
+		mapDatabase.readMapData(tile);
+		Assert.assertEquals(3, testQueryListener.queries);
+
+		mapDatabase.closeFile();
+	}
+}
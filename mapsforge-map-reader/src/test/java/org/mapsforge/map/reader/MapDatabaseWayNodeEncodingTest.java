@@ -27,12 +27,42 @@ import org.mapsforge.map.reader.header.FileOpenResult;
  */
 public class MapDatabaseWayNodeEncodingTest {
 	private static final File MAP_FILE_DOUBLE_DELTA = new File("src/test/resources/way_node_encoding/double_delta.map");
+
+	/**
+	 * Copy of {@link #MAP_FILE_SINGLE_DELTA} whose way has been replaced by a way with 200 nodes, encoded with
+	 * {@code MapFileWriter.writeWayNodesBitPacked}. Like the writer, the file header uses file version 4 for the
+	 * bit-packed encoding.
+	 */
+	private static final File MAP_FILE_LONG_WAY_BIT_PACKED = new File(
+			"src/test/resources/way_node_encoding/long_way_bit_packed.map");
+
+	/**
+	 * Copy of {@link #MAP_FILE_SINGLE_DELTA} whose way has been replaced by the same way as in
+	 * {@link #MAP_FILE_LONG_WAY_BIT_PACKED}, encoded with {@code MapFileWriter.writeWayNodes}.
+	 */
+	private static final File MAP_FILE_LONG_WAY_SINGLE_DELTA = new File(
+			"src/test/resources/way_node_encoding/long_way_single_delta.map");
+
 	private static final File MAP_FILE_SINGLE_DELTA = new File("src/test/resources/way_node_encoding/single_delta.map");
 	private static final byte ZOOM_LEVEL = 8;
 
-	private static void runTest(File mapFile) {
+	private static Way readWay(File mapFile, boolean memoryMapped) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile, memoryMapped);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		long tileX = MercatorProjection.longitudeToTileX(0, ZOOM_LEVEL);
+		long tileY = MercatorProjection.latitudeToTileY(0, ZOOM_LEVEL);
+		MapReadResult mapReadResult = mapDatabase.readMapData(new Tile(tileX, tileY, ZOOM_LEVEL));
+		mapDatabase.closeFile();
+
+		Assert.assertEquals(1, mapReadResult.ways.size());
+		return mapReadResult.ways.get(0);
+	}
+
+	private static void runTest(File mapFile, boolean memoryMapped) {
 		MapDatabase mapDatabase = new MapDatabase();
-		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile, memoryMapped);
 		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
 
 		long tileX = MercatorProjection.longitudeToTileX(0, ZOOM_LEVEL);
@@ -50,12 +80,109 @@ public class MapDatabaseWayNodeEncodingTest {
 		Assert.assertArrayEquals(wayNodesExpected, way.wayNodes);
 	}
 
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method with a bit-packed way whose deltas span two groups with
+	 * different bit widths.
+	 */
+	@Test
+	public void bitPackedTest() {
+		Way way = readWay(MAP_FILE_LONG_WAY_SINGLE_DELTA, false);
+		Assert.assertEquals(1, way.wayNodes.length);
+		float[] wayNodes = way.wayNodes[0];
+		Assert.assertEquals(400, wayNodes.length);
+		Assert.assertEquals(1000, wayNodes[0], 0);
+		Assert.assertEquals(-1000, wayNodes[1], 0);
+		Assert.assertEquals(73280, wayNodes[398], 0);
+		Assert.assertEquals(-91000, wayNodes[399], 0);
+
+		Assert.assertArrayEquals(way.wayNodes, readWay(MAP_FILE_LONG_WAY_BIT_PACKED, false).wayNodes);
+		Assert.assertArrayEquals(way.wayNodes, readWay(MAP_FILE_LONG_WAY_BIT_PACKED, true).wayNodes);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#setClipMargin(int)} method.
+	 */
+	@Test
+	public void clipMarginTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE_DOUBLE_DELTA);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// the tile is smaller than the square of the way
+		byte zoomLevel = 14;
+		long tileX = MercatorProjection.longitudeToTileX(0, zoomLevel);
+		long tileY = MercatorProjection.latitudeToTileY(0, zoomLevel);
+		Tile tile = new Tile(tileX, tileY, zoomLevel);
+		int maxLongitude = (int) Math.ceil(MercatorProjection.tileXToLongitude(tileX + 1, zoomLevel) * 1000000);
+		int minLatitude = (int) Math.floor(MercatorProjection.tileYToLatitude(tileY + 1, zoomLevel) * 1000000);
+
+		MapReadResult mapReadResultUnclipped = mapDatabase.readMapData(tile);
+		mapDatabase.setClipMargin(0);
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+		mapDatabase.closeFile();
+
+		Assert.assertEquals(1, mapReadResultUnclipped.ways.size());
+		float[] wayNodes = mapReadResultUnclipped.ways.get(0).wayNodes[0];
+		Assert.assertEquals(10, wayNodes.length);
+		Assert.assertTrue(wayNodes[0] > maxLongitude);
+
+		Assert.assertEquals(1, mapReadResult.ways.size());
+		float[][] wayNodesExpected = new float[][] { { maxLongitude, 0, maxLongitude, minLatitude, 0, minLatitude, 0,
+				0, maxLongitude, 0 } };
+		Assert.assertArrayEquals(wayNodesExpected, mapReadResult.ways.get(0).wayNodes);
+	}
+
 	/**
 	 * Tests the {@link MapDatabase#readMapData(Tile)} method.
 	 */
 	@Test
 	public void executeQueryTest() {
-		runTest(MAP_FILE_SINGLE_DELTA);
-		runTest(MAP_FILE_DOUBLE_DELTA);
+		runTest(MAP_FILE_SINGLE_DELTA, false);
+		runTest(MAP_FILE_DOUBLE_DELTA, false);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method with memory-mapped map files.
+	 */
+	@Test
+	public void executeQueryMemoryMappedTest() {
+		runTest(MAP_FILE_SINGLE_DELTA, true);
+		runTest(MAP_FILE_DOUBLE_DELTA, true);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#setSimplificationTolerance(float)} method.
+	 */
+	@Test
+	public void simplificationToleranceTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE_SINGLE_DELTA);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		long tileX = MercatorProjection.longitudeToTileX(0, ZOOM_LEVEL);
+		long tileY = MercatorProjection.latitudeToTileY(0, ZOOM_LEVEL);
+		Tile tile = new Tile(tileX, tileY, ZOOM_LEVEL);
+
+		// the sides of the square are about 18 pixels long
+		mapDatabase.setSimplificationTolerance(10);
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+		Assert.assertEquals(10, mapReadResult.ways.get(0).wayNodes[0].length);
+
+		mapDatabase.setSimplificationTolerance(20);
+		mapReadResult = mapDatabase.readMapData(tile);
+		float[][] wayNodesExpected = new float[][] { { 0, 0, 0, 0 } };
+		Assert.assertArrayEquals(wayNodesExpected, mapReadResult.ways.get(0).wayNodes);
+
+		mapDatabase.setSimplificationTolerance(0);
+		mapReadResult = mapDatabase.readMapData(tile);
+		mapDatabase.closeFile();
+		Assert.assertEquals(10, mapReadResult.ways.get(0).wayNodes[0].length);
+
+		try {
+			mapDatabase.setSimplificationTolerance(-1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
 	}
 }
@@ -15,9 +15,16 @@
 package org.mapsforge.map.reader;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.GeoPoint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
@@ -29,6 +36,70 @@ import org.mapsforge.map.reader.header.MapFileInfo;
  * Tests the {@link MapDatabase} class.
  */
 public class MapDatabaseWithDataTest {
+	private static class TestMapDataSink implements MapDataSink {
+		int pointOfInterests;
+		boolean queryCompleted;
+		private final WayNodeBuffer wayNodeBuffer = new WayNodeBuffer();
+		int ways;
+
+		TestMapDataSink() {
+			// do nothing
+		}
+
+		@Override
+		public void pointOfInterest(PoiRecord poiRecord) {
+			++this.pointOfInterests;
+			Assert.assertEquals(7, poiRecord.getLayer());
+			Assert.assertEquals(40000, poiRecord.getLatitude());
+			Assert.assertEquals(80000, poiRecord.getLongitude());
+			Assert.assertEquals(1, poiRecord.getNumberOfTags());
+			Assert.assertEquals(new Tag("place=country"), poiRecord.getTag(0));
+			Assert.assertEquals("АБВГДЕЖЗ", poiRecord.getName());
+			Assert.assertEquals("абвгдежз", poiRecord.getHouseNumber());
+			Assert.assertTrue(poiRecord.hasElevation());
+			Assert.assertEquals(25, poiRecord.getElevation());
+		}
+
+		@Override
+		public void queryCompleted(boolean isWater) {
+			this.queryCompleted = true;
+		}
+
+		@Override
+		public void way(WayRecord wayRecord) {
+			++this.ways;
+
+			// decode the way nodes into a separate buffer before and after they have been decoded by the record
+			this.wayNodeBuffer.clear();
+			Assert.assertEquals(0, wayRecord.decodeWayNodes(this.wayNodeBuffer));
+			Assert.assertEquals(4, wayRecord.getLayer());
+			Assert.assertFalse(wayRecord.hasLabelPosition());
+			Assert.assertEquals(1, wayRecord.getNumberOfTags());
+			Assert.assertEquals(new Tag("highway=motorway"), wayRecord.getTag(0));
+			Assert.assertEquals("ÄÖÜ", wayRecord.getName());
+			Assert.assertEquals("äöü", wayRecord.getRef());
+			Assert.assertNull(wayRecord.getHouseNumber());
+
+			Assert.assertEquals(1, wayRecord.getNumberOfCoordinateBlocks());
+			Assert.assertEquals(3, wayRecord.getNumberOfWayNodes(0));
+			int[] wayNodesExpected = new int[] { 0, 0, 80000, 40000, 0, 80000 };
+			int offset = wayRecord.getCoordinateBlockOffset(0);
+			for (int i = 0; i < wayNodesExpected.length; ++i) {
+				Assert.assertEquals(wayNodesExpected[i], wayRecord.getCoordinates()[offset + i]);
+			}
+
+			Assert.assertEquals(1, wayRecord.decodeWayNodes(this.wayNodeBuffer));
+			Assert.assertEquals(2, this.wayNodeBuffer.getNumberOfCoordinateBlocks());
+			for (int coordinateBlock = 0; coordinateBlock < 2; ++coordinateBlock) {
+				Assert.assertEquals(3, this.wayNodeBuffer.getNumberOfWayNodes(coordinateBlock));
+				offset = this.wayNodeBuffer.getCoordinateBlockOffset(coordinateBlock);
+				for (int i = 0; i < wayNodesExpected.length; ++i) {
+					Assert.assertEquals(wayNodesExpected[i], this.wayNodeBuffer.getCoordinates()[offset + i]);
+				}
+			}
+		}
+	}
+
 	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
 	private static final byte ZOOM_LEVEL_MAX = 11;
 	private static final int ZOOM_LEVEL_MIN = 6;
@@ -54,20 +125,18 @@ public class MapDatabaseWithDataTest {
 		Assert.assertTrue(way.tags.contains(new Tag("ref=äöü")));
 	}
 
-	/**
-	 * Tests the {@link MapDatabase#readMapData(Tile)} method.
-	 */
-	@Test
-	public void executeQueryTest() {
+	private static void executeQuery(MapFileOptions mapFileOptions) {
 		MapDatabase mapDatabase = new MapDatabase();
-		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, mapFileOptions);
 		Assert.assertTrue(mapDatabase.hasOpenFile());
 		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
 
 		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
 		Assert.assertTrue(mapFileInfo.debugFile);
 
-		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+		// query all zoom levels twice to read cached blocks in the second pass
+		for (int i = 0; i < 2 * (ZOOM_LEVEL_MAX - ZOOM_LEVEL_MIN + 1); ++i) {
+			byte zoomLevel = (byte) (ZOOM_LEVEL_MIN + i % (ZOOM_LEVEL_MAX - ZOOM_LEVEL_MIN + 1));
 			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
 			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
 			Tile tile = new Tile(tileX, tileY, zoomLevel);
@@ -84,4 +153,240 @@ public class MapDatabaseWithDataTest {
 		mapDatabase.closeFile();
 		Assert.assertFalse(mapDatabase.hasOpenFile());
 	}
+
+	private static void executeBatchQuery(MapFileOptions mapFileOptions) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, mapFileOptions);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+
+			// query the tile with the data together with its neighbours
+			List<Tile> tiles = new ArrayList<Tile>();
+			for (long y = tileY - 1; y <= tileY + 1; ++y) {
+				for (long x = tileX - 1; x <= tileX + 1; ++x) {
+					tiles.add(new Tile(x, y, zoomLevel));
+				}
+			}
+
+			Map<Tile, MapReadResult> mapReadResults = mapDatabase.readMapData(tiles);
+			Assert.assertEquals(tiles.size(), mapReadResults.size());
+
+			for (Tile tile : tiles) {
+				MapReadResult expected = mapDatabase.readMapData(tile);
+				MapReadResult actual = mapReadResults.get(tile);
+				Assert.assertEquals(expected.isWater, actual.isWater);
+				Assert.assertEquals(expected.pointOfInterests.size(), actual.pointOfInterests.size());
+				Assert.assertEquals(expected.ways.size(), actual.ways.size());
+			}
+
+			MapReadResult mapReadResult = mapReadResults.get(new Tile(tileX, tileY, zoomLevel));
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+			checkWay(mapReadResult.ways.get(0));
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(BoundingBox, byte)} method.
+	 */
+	@Test
+	public void executeBoundingBoxQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			MapReadResult mapReadResult = mapDatabase.readMapData(new BoundingBox(1, 1, 80000, 80000), zoomLevel);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+			checkWay(mapReadResult.ways.get(0));
+
+			// the POI lies outside of this bounding box while the way intersects it
+			mapReadResult = mapDatabase.readMapData(new BoundingBox(50000, 1, 80000, 80000), zoomLevel);
+			Assert.assertEquals(0, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+
+			// the bounding box of the whole map also touches the neighbouring blocks
+			mapReadResult = mapDatabase.readMapData(mapDatabase.getMapFileInfo().boundingBox, zoomLevel);
+			Set<WayKey> wayKeys = new HashSet<WayKey>();
+			for (Way way : mapReadResult.ways) {
+				Assert.assertTrue(wayKeys.add(new WayKey(way)));
+			}
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(java.util.Collection)} method.
+	 */
+	@Test
+	public void executeBatchQueryTest() {
+		executeBatchQuery(new MapFileOptions());
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(java.util.Collection)} method with a block cache.
+	 */
+	@Test
+	public void executeBatchQueryBlockCacheTest() {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setBlockCacheSize(16);
+		executeBatchQuery(mapFileOptions);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile, MapDataSink)} method.
+	 */
+	@Test
+	public void executeSinkQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+
+			TestMapDataSink testMapDataSink = new TestMapDataSink();
+			Assert.assertTrue(mapDatabase.readMapData(new Tile(tileX, tileY, zoomLevel), testMapDataSink));
+			Assert.assertEquals(1, testMapDataSink.pointOfInterests);
+			Assert.assertEquals(1, testMapDataSink.ways);
+			Assert.assertTrue(testMapDataSink.queryCompleted);
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile, TagFilter)} method.
+	 */
+	@Test
+	public void executeTagFilterQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+		TagFilter highwayFilter = new TagKeyFilter(mapFileInfo, Collections.<String> emptySet(),
+				Collections.singleton("highway"));
+		TagFilter placeFilter = new TagKeyFilter(mapFileInfo, Collections.singleton("place"),
+				Collections.singleton("railway"));
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile, highwayFilter);
+			Assert.assertEquals(0, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			checkWay(mapReadResult.ways.get(0));
+
+			mapReadResult = mapDatabase.readMapData(tile, placeFilter);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(0, mapReadResult.ways.size());
+			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method.
+	 */
+	@Test
+	public void executeQueryTest() {
+		executeQuery(new MapFileOptions());
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method with a memory-mapped map file.
+	 */
+	@Test
+	public void executeQueryMemoryMappedTest() {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setMemoryMapped(true);
+		executeQuery(mapFileOptions);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#readMapData(Tile)} method with a block cache.
+	 */
+	@Test
+	public void executeQueryBlockCacheTest() {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setBlockCacheSize(16);
+		executeQuery(mapFileOptions);
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#queryTileStatus(long, long, long, long, byte)} method.
+	 */
+	@Test
+	public void queryTileStatusTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Assert.assertEquals(TileStatus.DATA, mapDatabase.queryTileStatus(new Tile(tileX, tileY, zoomLevel)));
+
+			// tiles which are not covered by data must not contain any elements
+			TileStatus[][] tileStatus = mapDatabase.queryTileStatus(tileX - 1, tileY - 1, tileX + 1, tileY + 1,
+					zoomLevel);
+			for (int row = 0; row < 3; ++row) {
+				for (int column = 0; column < 3; ++column) {
+					Tile tile = new Tile(tileX - 1 + column, tileY - 1 + row, zoomLevel);
+					Assert.assertEquals(mapDatabase.queryTileStatus(tile), tileStatus[row][column]);
+					if (tileStatus[row][column] != TileStatus.DATA) {
+						MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+						Assert.assertTrue(mapReadResult.pointOfInterests.isEmpty());
+						Assert.assertTrue(mapReadResult.ways.isEmpty());
+					}
+				}
+			}
+		}
+
+		try {
+			mapDatabase.queryTileStatus(1, 0, 0, 0, ZOOM_LEVEL_MAX);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		try {
+			mapDatabase.queryTileStatus(0, 0, Integer.MAX_VALUE, 0, ZOOM_LEVEL_MAX);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests the {@link MapDatabase#queryTileStatus(Tile)} method with a tile outside of the map file.
+	 */
+	@Test
+	public void queryTileStatusOutsideTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		Tile tile = new Tile(10, 10, (byte) 10);
+		Assert.assertEquals(TileStatus.EMPTY, mapDatabase.queryTileStatus(tile));
+		Assert.assertFalse(mapDatabase.readMapData(tile).isWater);
+
+		mapDatabase.closeFile();
+	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * Tests the {@link MapFileExtractor} class.
+ */
+public class MapFileExtractorTest {
+	private static final File FILE_HEADER_MAP_FILE = new File("src/test/resources/file_header/file_header.map");
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static File createDestination() throws IOException {
+		File destination = File.createTempFile("extract", ".map");
+		destination.deleteOnExit();
+		return destination;
+	}
+
+	private static MapFileInfo extractFileHeader(BoundingBox boundingBox) throws IOException {
+		File destination = createDestination();
+		MapFileExtractor.extract(FILE_HEADER_MAP_FILE, destination, boundingBox);
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(destination);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+		mapDatabase.closeFile();
+
+		Assert.assertEquals(boundingBox, mapFileInfo.boundingBox);
+		Assert.assertEquals(destination.length(), mapFileInfo.fileSize);
+		return mapFileInfo;
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			byte[] data = new byte[(int) randomAccessFile.length()];
+			randomAccessFile.readFully(data);
+			return data;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Tests the {@link MapFileExtractor#extract(File, File, BoundingBox)} method.
+	 */
+	@Test
+	public void extractTest() throws IOException {
+		BoundingBox boundingBox = new BoundingBox(10000, 10000, 50000, 50000);
+		File destination = createDestination();
+		MapFileExtractor.extract(MAP_FILE, destination, boundingBox);
+
+		MapDatabase sourceDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = sourceDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		MapDatabase mapDatabase = new MapDatabase();
+		fileOpenResult = mapDatabase.openFile(destination);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		MapFileInfo sourceInfo = sourceDatabase.getMapFileInfo();
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+		Assert.assertEquals(boundingBox, mapFileInfo.boundingBox);
+		Assert.assertEquals(destination.length(), mapFileInfo.fileSize);
+		Assert.assertEquals(sourceInfo.numberOfSubFiles, mapFileInfo.numberOfSubFiles);
+		Assert.assertEquals(sourceInfo.mapDate, mapFileInfo.mapDate);
+		Assert.assertEquals(sourceInfo.debugFile, mapFileInfo.debugFile);
+
+		// the blocks inside the bounding box must contain the same data as before
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			MapReadResult sourceResult = sourceDatabase.readMapData(tile);
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			Assert.assertEquals(sourceResult.isWater, mapReadResult.isWater);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			Assert.assertEquals(new WayKey(sourceResult.ways.get(0)), new WayKey(mapReadResult.ways.get(0)));
+			Assert.assertEquals(sourceDatabase.queryTileStatus(tile), mapDatabase.queryTileStatus(tile));
+		}
+
+		sourceDatabase.closeFile();
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Tests that extracting the complete bounding box of a map file results in an identical copy.
+	 */
+	@Test
+	public void extractCompleteTest() throws IOException {
+		File destination = createDestination();
+		MapFile mapFile = MapFile.open(MAP_FILE);
+		BoundingBox boundingBox = mapFile.getMapFileInfo().boundingBox;
+		mapFile.close();
+
+		MapFileExtractor.extract(MAP_FILE, destination, boundingBox);
+		Assert.assertArrayEquals(readFile(MAP_FILE), readFile(destination));
+	}
+
+	/**
+	 * Tests that the start position is only kept if it lies inside of the extracted bounding box.
+	 */
+	@Test
+	public void extractStartPositionTest() throws IOException {
+		MapFileInfo mapFileInfo = extractFileHeader(new BoundingBox(100000, 200000, 200000, 300000));
+		Assert.assertEquals(new GeoPoint(0.15, 0.25), mapFileInfo.startPosition);
+
+		mapFileInfo = extractFileHeader(new BoundingBox(200000, 300000, 300000, 400000));
+		Assert.assertNull(mapFileInfo.startPosition);
+		Assert.assertEquals(Byte.valueOf((byte) 16), mapFileInfo.startZoomLevel);
+		Assert.assertEquals("en", mapFileInfo.languagePreference);
+		Assert.assertEquals("testcomment", mapFileInfo.comment);
+		Assert.assertEquals(3, mapFileInfo.numberOfSubFiles);
+	}
+
+	/**
+	 * Tests the {@link MapFileExtractor#extract(File, File, BoundingBox)} method with invalid arguments.
+	 */
+	@Test
+	public void invalidArgumentsTest() throws IOException {
+		File destination = createDestination();
+		try {
+			MapFileExtractor.extract(MAP_FILE, destination, new BoundingBox(-20000, -20000, -10000, -10000));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		try {
+			MapFileExtractor.extract(MAP_FILE, destination, null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		try {
+			MapFileExtractor.extract(new File(MAP_FILE.getParentFile(), "missing.map"), destination,
+					new BoundingBox(0, 0, 1, 1));
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * Creates modified copies of a map file for tests of optional file format features and compares them with the
+ * original map file.
+ */
+final class MapFileRewriter {
+	/**
+	 * Transforms the content of each block while a map file is rewritten.
+	 */
+	interface BlockTransform {
+		/**
+		 * @param data
+		 *            the content of the original map file.
+		 * @param offset
+		 *            the position of the block in the original map file.
+		 * @param length
+		 *            the size of the block in bytes, never zero.
+		 * @return the content of the block in the new map file.
+		 */
+		byte[] transform(byte[] data, int offset, int length);
+	}
+
+	/**
+	 * Bit mask for the header flag which marks blocks in Hilbert order with explicit block sizes.
+	 */
+	static final byte FLAG_HILBERT_BLOCK_ORDER = 0x01;
+
+	/**
+	 * A transform which copies each block unchanged.
+	 */
+	static final BlockTransform IDENTITY = new BlockTransform() {
+		@Override
+		public byte[] transform(byte[] data, int offset, int length) {
+			byte[] block = new byte[length];
+			System.arraycopy(data, offset, block, 0, length);
+			return block;
+		}
+	};
+
+	private static final long BITMASK_INDEX_OFFSET = 0x7FFFFFFFFFL;
+	private static final int FILE_SIZE_POSITION = 28;
+	private static final int FILE_VERSION_EXTENDED = 4;
+	private static final int FILE_VERSION_POSITION = 24;
+	private static final int HEADER_SIZE_POSITION = 20;
+	private static final int PROJECTION_POSITION = 62;
+	private static final int SUB_FILE_PARAMETER_SIZE = 19;
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	/**
+	 * Reads the same tiles from both map files and checks that they return the same map data.
+	 * 
+	 * @param sourceFile
+	 *            the original map file.
+	 * @param mapFile
+	 *            the rewritten map file.
+	 * @param memoryMapped
+	 *            true if the rewritten map file should be memory-mapped, false otherwise.
+	 */
+	static void compareQueries(File sourceFile, File mapFile, boolean memoryMapped) {
+		MapDatabase sourceDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = sourceDatabase.openFile(sourceFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		MapDatabase mapDatabase = new MapDatabase();
+		fileOpenResult = mapDatabase.openFile(mapFile, memoryMapped);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+			tiles.add(tile);
+
+			MapReadResult sourceResult = sourceDatabase.readMapData(tile);
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			Assert.assertEquals(sourceResult.isWater, mapReadResult.isWater);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(sourceResult.pointOfInterests.get(0).tags, mapReadResult.pointOfInterests.get(0).tags);
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			Assert.assertEquals(new WayKey(sourceResult.ways.get(0)), new WayKey(mapReadResult.ways.get(0)));
+			Assert.assertEquals(sourceDatabase.queryTileStatus(tile), mapDatabase.queryTileStatus(tile));
+
+			// a neighbouring tile lies in a different block
+			Tile neighbour = new Tile(tileX + 1, tileY + 1, zoomLevel);
+			Assert.assertEquals(sourceDatabase.queryTileStatus(neighbour), mapDatabase.queryTileStatus(neighbour));
+		}
+
+		Map<Tile, MapReadResult> mapReadResults = mapDatabase.readMapData(tiles);
+		for (Tile tile : tiles) {
+			Assert.assertEquals(1, mapReadResults.get(tile).ways.size());
+		}
+
+		sourceDatabase.closeFile();
+		mapDatabase.closeFile();
+	}
+
+	/**
+	 * Verifies both map files and checks that the rewritten one is valid and contains the same elements.
+	 * 
+	 * @param sourceFile
+	 *            the original map file.
+	 * @param mapFile
+	 *            the rewritten map file.
+	 * @throws IOException
+	 *             if a map file cannot be read.
+	 */
+	static void compareStatistics(File sourceFile, File mapFile) throws IOException {
+		MapFileStatistics sourceStatistics = MapFileVerifier.verify(sourceFile, 1);
+		MapFileStatistics mapFileStatistics = MapFileVerifier.verify(mapFile, 1);
+		Assert.assertEquals(mapFileStatistics.getErrorMessages().toString(), 0, mapFileStatistics.getNumberOfErrors());
+		Assert.assertEquals(sourceStatistics.getNumberOfBlocks(), mapFileStatistics.getNumberOfBlocks());
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			Assert.assertEquals(sourceStatistics.getNumberOfPointsOfInterest(zoomLevel),
+					mapFileStatistics.getNumberOfPointsOfInterest(zoomLevel));
+			Assert.assertEquals(sourceStatistics.getNumberOfWays(zoomLevel),
+					mapFileStatistics.getNumberOfWays(zoomLevel));
+		}
+	}
+
+	/**
+	 * Creates a copy of the given map file in which each block is replaced by its transformed content. If the
+	 * {@link #FLAG_HILBERT_BLOCK_ORDER} is set, the blocks of each sub-file are stored in reverse order and the index
+	 * entries contain the block sizes. If any flag is set, the new map file gets the extended file version.
+	 * 
+	 * @param source
+	 *            the map file without optional block features.
+	 * @param headerFlags
+	 *            the flags which are added to the header of the new map file.
+	 * @param blockTransform
+	 *            the transform which is applied to each non-empty block.
+	 * @return the new map file, which is deleted when the virtual machine terminates.
+	 * @throws IOException
+	 *             if the map file cannot be read or written.
+	 */
+	static File rewrite(File source, byte headerFlags, BlockTransform blockTransform) throws IOException {
+		byte[] data = readFile(source);
+		MapFile mapFile = MapFile.open(source);
+		List<SubFileParameter> subFileParameters = mapFile.getSubFileParameters();
+		mapFile.close();
+
+		int headerSize = HEADER_SIZE_POSITION + 4 + Deserializer.getInt(data, HEADER_SIZE_POSITION);
+		ByteBuffer header = ByteBuffer.wrap(data, 0, headerSize).slice();
+		int subFileParametersPosition = headerSize - subFileParameters.size() * SUB_FILE_PARAMETER_SIZE;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(data, 0, headerSize);
+
+		boolean hilbertBlockOrder = (headerFlags & FLAG_HILBERT_BLOCK_ORDER) != 0;
+		int indexEntrySize = SubFileParameter.BYTES_PER_INDEX_ENTRY;
+		if (hilbertBlockOrder) {
+			indexEntrySize += SubFileParameter.BYTES_PER_BLOCK_SIZE;
+		}
+		for (SubFileParameter subFileParameter : subFileParameters) {
+			int startAddress = (int) subFileParameter.startAddress;
+			int indexStart = (int) subFileParameter.indexStartAddress;
+			int numberOfBlocks = (int) subFileParameter.numberOfBlocks;
+			int indexSignatureLength = indexStart - startAddress;
+			ByteBuffer subFile = ByteBuffer.allocate(indexSignatureLength + numberOfBlocks * indexEntrySize);
+			subFile.put(data, startAddress, indexSignatureLength);
+
+			// transform the blocks and store their new pointers
+			ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+			for (int i = 0; i < numberOfBlocks; ++i) {
+				int block = hilbertBlockOrder ? numberOfBlocks - 1 - i : i;
+				int indexEntryPosition = indexStart + block * SubFileParameter.BYTES_PER_INDEX_ENTRY;
+				long indexEntry = Deserializer.getFiveBytesLong(data, indexEntryPosition);
+				long blockPointer = indexEntry & BITMASK_INDEX_OFFSET;
+				long nextBlockPointer = subFileParameter.subFileSize;
+				if (block + 1 < numberOfBlocks) {
+					nextBlockPointer = Deserializer.getFiveBytesLong(data, indexEntryPosition
+							+ SubFileParameter.BYTES_PER_INDEX_ENTRY)
+							& BITMASK_INDEX_OFFSET;
+				}
+
+				long newIndexEntry = (indexEntry & ~BITMASK_INDEX_OFFSET) | (subFile.capacity() + blocks.size());
+				subFile.position(indexSignatureLength + block * indexEntrySize);
+				for (int j = 0; j < SubFileParameter.BYTES_PER_INDEX_ENTRY; ++j) {
+					subFile.put((byte) (newIndexEntry >>> (32 - j * 8)));
+				}
+
+				byte[] newBlock = new byte[0];
+				if (nextBlockPointer > blockPointer) {
+					newBlock = blockTransform.transform(data, startAddress + (int) blockPointer,
+							(int) (nextBlockPointer - blockPointer));
+				}
+				if (hilbertBlockOrder) {
+					subFile.putInt(newBlock.length);
+				}
+				blocks.write(newBlock);
+			}
+
+			// update the position and the size of the sub-file in the file header
+			for (int i = subFileParametersPosition; i < headerSize; i += SUB_FILE_PARAMETER_SIZE) {
+				if (header.getLong(i + 3) == startAddress) {
+					header.putLong(i + 3, output.size());
+					header.putLong(i + 11, subFile.capacity() + blocks.size());
+				}
+			}
+			output.write(subFile.array());
+			blocks.writeTo(output);
+		}
+
+		byte[] newData = output.toByteArray();
+		System.arraycopy(data, 0, newData, 0, headerSize);
+		ByteBuffer.wrap(newData).putLong(FILE_SIZE_POSITION, newData.length);
+		newData[PROJECTION_POSITION + 1 + data[PROJECTION_POSITION]] |= headerFlags;
+		if (headerFlags != 0) {
+			// the optional block features require the extended file version
+			ByteBuffer.wrap(newData).putInt(FILE_VERSION_POSITION, FILE_VERSION_EXTENDED);
+		}
+
+		File destination = File.createTempFile("rewritten", ".map");
+		destination.deleteOnExit();
+		FileOutputStream fileOutputStream = new FileOutputStream(destination);
+		try {
+			fileOutputStream.write(newData);
+		} finally {
+			fileOutputStream.close();
+		}
+		return destination;
+	}
+
+	/**
+	 * Overwrites the file version in the header of the given map file.
+	 * 
+	 * @param mapFile
+	 *            the map file which should be changed.
+	 * @param fileVersion
+	 *            the new file version.
+	 * @throws IOException
+	 *             if the map file cannot be written.
+	 */
+	static void setFileVersion(File mapFile, int fileVersion) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(mapFile, "rw");
+		try {
+			randomAccessFile.seek(FILE_VERSION_POSITION);
+			randomAccessFile.writeInt(fileVersion);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			byte[] data = new byte[(int) randomAccessFile.length()];
+			randomAccessFile.readFully(data);
+			return data;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private MapFileRewriter() {
+		throw new IllegalStateException();
+	}
+}
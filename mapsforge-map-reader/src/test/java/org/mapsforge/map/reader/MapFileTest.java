@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Tests the {@link MapFile} class.
+ */
+public class MapFileTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final int NUMBER_OF_QUERIES = 200;
+	private static final int NUMBER_OF_THREADS = 4;
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static class QueryThread extends Thread {
+		private final MapFile mapFile;
+		volatile Throwable throwable;
+
+		QueryThread(MapFile mapFile) {
+			this.mapFile = mapFile;
+		}
+
+		@Override
+		public void run() {
+			try {
+				MapDatabase mapDatabase = new MapDatabase();
+				FileOpenResult fileOpenResult = mapDatabase.openFile(this.mapFile);
+				Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+				for (int i = 0; i < NUMBER_OF_QUERIES; ++i) {
+					byte zoomLevel = (byte) (ZOOM_LEVEL_MIN + i % (ZOOM_LEVEL_MAX - ZOOM_LEVEL_MIN + 1));
+					long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+					long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+
+					MapReadResult mapReadResult = mapDatabase.readMapData(new Tile(tileX, tileY, zoomLevel));
+					Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+					Assert.assertEquals(1, mapReadResult.ways.size());
+				}
+
+				mapDatabase.closeFile();
+			} catch (Throwable t) {
+				this.throwable = t;
+			}
+		}
+	}
+
+	private static MapFileOptions createMapFileOptions(boolean memoryMapped, int indexCacheSize, int pinnedIndexSize) {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setMemoryMapped(memoryMapped);
+		mapFileOptions.setIndexCacheSize(indexCacheSize);
+		mapFileOptions.setPinnedIndexSize(pinnedIndexSize);
+		return mapFileOptions;
+	}
+
+	private static void executeSharedQueries(MapFileOptions mapFileOptions) throws IOException, InterruptedException {
+		MapFile mapFile = MapFile.open(MAP_FILE, mapFileOptions);
+		Assert.assertTrue(mapFile.getMapFileInfo().debugFile);
+
+		List<QueryThread> queryThreads = new ArrayList<QueryThread>();
+		for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+			QueryThread queryThread = new QueryThread(mapFile);
+			queryThreads.add(queryThread);
+			queryThread.start();
+		}
+
+		for (QueryThread queryThread : queryThreads) {
+			queryThread.join();
+			if (queryThread.throwable != null) {
+				throw new AssertionError(queryThread.throwable);
+			}
+		}
+
+		// detaching all instances must not close the shared map file
+		Assert.assertFalse(mapFile.isClosed());
+		mapFile.close();
+		Assert.assertTrue(mapFile.isClosed());
+
+		MapDatabase mapDatabase = new MapDatabase();
+		Assert.assertFalse(mapDatabase.openFile(mapFile).isSuccess());
+		Assert.assertFalse(mapDatabase.hasOpenFile());
+	}
+
+	/**
+	 * Tests concurrent queries of multiple {@link MapDatabase} instances which share one {@link MapFile}.
+	 * 
+	 * @throws Exception
+	 *             if an error occurs while executing the queries.
+	 */
+	@Test
+	public void sharedQueriesTest() throws Exception {
+		executeSharedQueries(createMapFileOptions(false, MapFileOptions.DEFAULT_INDEX_CACHE_SIZE, 0));
+	}
+
+	/**
+	 * Tests concurrent queries on a shared {@link MapFile} without any cached index blocks.
+	 * 
+	 * @throws Exception
+	 *             if an error occurs while executing the queries.
+	 */
+	@Test
+	public void sharedQueriesNoIndexCacheTest() throws Exception {
+		executeSharedQueries(createMapFileOptions(false, 0, 0));
+	}
+
+	/**
+	 * Tests concurrent queries on a shared {@link MapFile} whose complete index is pinned in memory.
+	 * 
+	 * @throws Exception
+	 *             if an error occurs while executing the queries.
+	 */
+	@Test
+	public void sharedQueriesPinnedIndexTest() throws Exception {
+		executeSharedQueries(createMapFileOptions(false, 0, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Tests concurrent queries of multiple {@link MapDatabase} instances which share one memory-mapped {@link MapFile}.
+	 * 
+	 * @throws Exception
+	 *             if an error occurs while executing the queries.
+	 */
+	@Test
+	public void sharedQueriesMemoryMappedTest() throws Exception {
+		executeSharedQueries(createMapFileOptions(true, MapFileOptions.DEFAULT_INDEX_CACHE_SIZE, 0));
+	}
+
+	/**
+	 * Tests that negative cache sizes are rejected.
+	 */
+	@Test
+	public void invalidOptionsTest() {
+		try {
+			new MapFileOptions().setIndexCacheSize(-1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests that invalid map files cannot be opened.
+	 */
+	@Test
+	public void invalidFileTest() {
+		try {
+			MapFile.open(new File("src/test/resources/empty/does_not_exist.map"));
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Tests the {@link MapFileVerifier} class.
+ */
+public class MapFileVerifierTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+
+	private static void verifyInvalidArguments(MapFile mapFile, int numberOfThreads) throws IOException {
+		try {
+			MapFileVerifier.verify(mapFile, numberOfThreads);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests the {@link MapFileVerifier#verify(MapFile, int)} method with invalid arguments.
+	 */
+	@Test
+	public void invalidArgumentsTest() throws IOException {
+		verifyInvalidArguments(null, 1);
+
+		MapFile mapFile = MapFile.open(MAP_FILE);
+		try {
+			verifyInvalidArguments(mapFile, 0);
+		} finally {
+			mapFile.close();
+		}
+		verifyInvalidArguments(mapFile, 1);
+	}
+
+	/**
+	 * Tests that the {@link MapFileVerifier#verify(File, int)} method reports reads beyond the end of truncated blocks
+	 * as errors and still scans all blocks.
+	 */
+	@Test
+	public void truncatedBlocksTest() throws IOException {
+		File truncatedFile = MapFileRewriter.rewrite(MAP_FILE, (byte) 0, new MapFileRewriter.BlockTransform() {
+			@Override
+			public byte[] transform(byte[] data, int offset, int length) {
+				// the last quarter of each block is missing
+				return MapFileRewriter.IDENTITY.transform(data, offset, length - length / 4);
+			}
+		});
+
+		MapFileStatistics sourceStatistics = MapFileVerifier.verify(MAP_FILE, 1);
+		MapFileStatistics mapFileStatistics = MapFileVerifier.verify(truncatedFile, 1);
+		Assert.assertFalse(mapFileStatistics.isValid());
+		Assert.assertEquals(sourceStatistics.getNumberOfBlocks(), mapFileStatistics.getNumberOfBlocks());
+		Assert.assertTrue(mapFileStatistics.getErrorMessages().toString().contains("block data out of bounds"));
+	}
+
+	/**
+	 * Tests the {@link MapFileVerifier#verify(File, int)} method.
+	 */
+	@Test
+	public void verifyTest() throws IOException {
+		MapFileStatistics mapFileStatistics = MapFileVerifier.verify(MAP_FILE, 1);
+		Assert.assertTrue(mapFileStatistics.getErrorMessages().toString(), mapFileStatistics.isValid());
+		Assert.assertEquals(0, mapFileStatistics.getNumberOfErrors());
+		Assert.assertTrue(mapFileStatistics.getNumberOfBlocks() > 0);
+		Assert.assertTrue(mapFileStatistics.getTotalBlockSize() > 0);
+		Assert.assertTrue(mapFileStatistics.getMaximumBlockSize() <= mapFileStatistics.getTotalBlockSize());
+
+		long numberOfPointsOfInterest = 0;
+		long numberOfWays = 0;
+		for (byte zoomLevel = 0; zoomLevel <= MapFileStatistics.ZOOM_LEVEL_MAX; ++zoomLevel) {
+			numberOfPointsOfInterest += mapFileStatistics.getNumberOfPointsOfInterest(zoomLevel);
+			numberOfWays += mapFileStatistics.getNumberOfWays(zoomLevel);
+		}
+		Assert.assertTrue(numberOfPointsOfInterest > 0);
+		Assert.assertTrue(numberOfWays > 0);
+
+		Assert.assertTrue(mapFileStatistics.getPoiTagHistogram().containsKey(new Tag("place=country")));
+		Assert.assertTrue(mapFileStatistics.getWayTagHistogram().containsKey(new Tag("highway=motorway")));
+
+		// the aggregated result must not depend on the number of threads
+		MapFileStatistics parallelStatistics = MapFileVerifier.verify(MAP_FILE, 4);
+		Assert.assertEquals(mapFileStatistics.toString(), parallelStatistics.toString());
+		Assert.assertEquals(mapFileStatistics.getPoiTagHistogram(), parallelStatistics.getPoiTagHistogram());
+		Assert.assertEquals(mapFileStatistics.getWayTagHistogram(), parallelStatistics.getWayTagHistogram());
+		for (byte zoomLevel = 0; zoomLevel <= MapFileStatistics.ZOOM_LEVEL_MAX; ++zoomLevel) {
+			Assert.assertEquals(mapFileStatistics.getNumberOfPointsOfInterest(zoomLevel),
+					parallelStatistics.getNumberOfPointsOfInterest(zoomLevel));
+			Assert.assertEquals(mapFileStatistics.getNumberOfWays(zoomLevel),
+					parallelStatistics.getNumberOfWays(zoomLevel));
+		}
+	}
+}
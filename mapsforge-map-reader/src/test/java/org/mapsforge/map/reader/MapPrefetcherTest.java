@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+/**
+ * Tests the {@link MapPrefetcher} class.
+ */
+public class MapPrefetcherTest {
+	private static final int BYTES_PER_SECOND = 1000000;
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final int QUEUE_CAPACITY = 16;
+	private static final byte ZOOM_LEVEL = 8;
+
+	private static Tile createTile(byte zoomLevel) {
+		long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+		long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+		return new Tile(tileX, tileY, zoomLevel);
+	}
+
+	private static MapFile openMapFile(int blockCacheSize) throws IOException {
+		MapFileOptions mapFileOptions = new MapFileOptions();
+		mapFileOptions.setBlockCacheSize(blockCacheSize);
+		return MapFile.open(MAP_FILE, mapFileOptions);
+	}
+
+	/**
+	 * Tests that invalid limits and closed map files are rejected.
+	 */
+	@Test
+	public void invalidArgumentsTest() throws IOException {
+		MapFile mapFile = openMapFile(0);
+		try {
+			new MapPrefetcher(mapFile, 0, BYTES_PER_SECOND);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		try {
+			new MapPrefetcher(mapFile, QUEUE_CAPACITY, 0);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		mapFile.close();
+		try {
+			new MapPrefetcher(mapFile, QUEUE_CAPACITY, BYTES_PER_SECOND);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests that prefetched blocks are stored in the block cache.
+	 */
+	@Test
+	public void prefetchBlocksTest() throws IOException {
+		MapFile mapFile = openMapFile(16);
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// the block is read once and then found in the block cache
+		Tile tile = createTile(ZOOM_LEVEL);
+		Assert.assertTrue(mapDatabase.prefetchBlocks(tile) > 0);
+		Assert.assertEquals(0, mapDatabase.prefetchBlocks(tile));
+
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+		Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+		Assert.assertEquals(1, mapReadResult.ways.size());
+
+		mapDatabase.closeFile();
+		mapFile.close();
+	}
+
+	/**
+	 * Tests that queries with an attached prefetcher return the same data and that the prefetcher can be stopped.
+	 */
+	@Test
+	public void prefetchTest() throws IOException {
+		MapFile mapFile = openMapFile(16);
+		MapPrefetcher mapPrefetcher = new MapPrefetcher(mapFile, QUEUE_CAPACITY, BYTES_PER_SECOND);
+		Assert.assertTrue(mapPrefetcher.isAlive());
+
+		MapDatabase mapDatabase = new MapDatabase();
+		mapDatabase.openFile(mapFile);
+		mapDatabase.setPrefetcher(mapPrefetcher);
+		for (byte zoomLevel = 6; zoomLevel <= 11; ++zoomLevel) {
+			Tile tile = createTile(zoomLevel);
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			mapPrefetcher.prefetch(tile, 1, -1);
+		}
+
+		mapPrefetcher.close();
+		Assert.assertFalse(mapPrefetcher.isAlive());
+		mapDatabase.closeFile();
+		mapFile.close();
+	}
+}
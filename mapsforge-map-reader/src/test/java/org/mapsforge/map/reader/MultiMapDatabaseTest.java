@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * Tests the {@link MultiMapDatabase} class.
+ */
+public class MultiMapDatabaseTest {
+	private static final File MAP_FILE_EMPTY = new File("src/test/resources/empty/empty.map");
+	private static final File MAP_FILE_WITH_DATA = new File("src/test/resources/with_data/with_data.map");
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static void copyFile(File source, File destination) throws IOException {
+		FileInputStream fileInputStream = null;
+		FileOutputStream fileOutputStream = null;
+		try {
+			fileInputStream = new FileInputStream(source);
+			fileOutputStream = new FileOutputStream(destination);
+			byte[] buffer = new byte[8192];
+			int bytesRead;
+			while ((bytesRead = fileInputStream.read(buffer)) > 0) {
+				fileOutputStream.write(buffer, 0, bytesRead);
+			}
+		} finally {
+			IOUtils.closeQuietly(fileInputStream);
+			IOUtils.closeQuietly(fileOutputStream);
+		}
+		destination.deleteOnExit();
+	}
+
+	private static File createDirectory() throws IOException {
+		File directory = File.createTempFile("maps", "");
+		Assert.assertTrue(directory.delete());
+		Assert.assertTrue(directory.mkdir());
+		directory.deleteOnExit();
+
+		// the same data in two files and a file which does not intersect the queried tiles at high zoom levels
+		copyFile(MAP_FILE_WITH_DATA, new File(directory, "a.map"));
+		copyFile(MAP_FILE_WITH_DATA, new File(directory, "b.map"));
+		copyFile(MAP_FILE_EMPTY, new File(directory, "c.map"));
+		copyFile(MAP_FILE_EMPTY, new File(directory, "d.txt"));
+		return directory;
+	}
+
+	/**
+	 * Tests the {@link MultiMapDatabase#open(File, int)} method with invalid arguments.
+	 */
+	@Test
+	public void invalidArgumentsTest() throws IOException {
+		try {
+			MultiMapDatabase.open(null, 1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		try {
+			MultiMapDatabase.open(MAP_FILE_WITH_DATA.getParentFile(), 0);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		try {
+			MultiMapDatabase.open(MAP_FILE_WITH_DATA, 1);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests that a map file which cannot be opened is skipped by all further queries.
+	 */
+	@Test
+	public void failedMapFileTest() throws IOException {
+		File directory = createDirectory();
+		MultiMapDatabase multiMapDatabase = MultiMapDatabase.open(directory, 3);
+		Tile tile = new Tile(MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL_MAX),
+				MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL_MAX), ZOOM_LEVEL_MAX);
+
+		// both map files with data cannot be opened for the first query
+		File mapFileA = new File(directory, "a.map");
+		File mapFileB = new File(directory, "b.map");
+		Assert.assertTrue(mapFileA.delete());
+		Assert.assertTrue(mapFileB.delete());
+		Assert.assertEquals(0, multiMapDatabase.readMapData(tile).ways.size());
+
+		// the failed map files are not opened again, even if they exist again
+		copyFile(MAP_FILE_WITH_DATA, mapFileA);
+		copyFile(MAP_FILE_WITH_DATA, mapFileB);
+		Assert.assertEquals(0, multiMapDatabase.readMapData(tile).ways.size());
+		Assert.assertEquals(0, multiMapDatabase.getNumberOfOpenFiles());
+		multiMapDatabase.close();
+	}
+
+	/**
+	 * Tests the {@link MultiMapDatabase#readMapData(Tile)} method.
+	 */
+	@Test
+	public void readMapDataTest() throws IOException {
+		MultiMapDatabase multiMapDatabase = MultiMapDatabase.open(createDirectory(), 1);
+		Assert.assertEquals(3, multiMapDatabase.getMapFileInfos().size());
+		Assert.assertEquals(0, multiMapDatabase.getNumberOfOpenFiles());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			// the elements of both files with data must only be returned once
+			MapReadResult mapReadResult = multiMapDatabase.readMapData(tile);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			Assert.assertEquals(1, multiMapDatabase.getNumberOfOpenFiles());
+		}
+
+		multiMapDatabase.close();
+		Assert.assertEquals(0, multiMapDatabase.getNumberOfOpenFiles());
+
+		// the map files are opened again after the directory has been closed
+		Tile tile = new Tile(MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL_MAX),
+				MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL_MAX), ZOOM_LEVEL_MAX);
+		Assert.assertEquals(1, multiMapDatabase.readMapData(tile).ways.size());
+		multiMapDatabase.close();
+	}
+}
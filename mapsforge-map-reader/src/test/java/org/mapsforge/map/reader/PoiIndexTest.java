@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.GeoPoint;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * Tests the {@link PoiIndex} and {@link PoiIndexWriter} classes.
+ */
+public class PoiIndexTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/with_data.map");
+	private static final GeoPoint POI_POSITION = new GeoPoint(40000, 80000);
+	private static final Tag POI_TAG = new Tag("place=country");
+
+	private static PoiIndex createPoiIndex() throws IOException {
+		File indexFile = File.createTempFile("with_data", PoiIndexWriter.FILE_EXTENSION);
+		indexFile.deleteOnExit();
+		Assert.assertEquals(1, PoiIndexWriter.write(MAP_FILE, indexFile));
+		return PoiIndex.open(indexFile);
+	}
+
+	/**
+	 * Tests the {@link PoiIndex#open(File)} method with a file which is not a POI index.
+	 */
+	@Test
+	public void invalidFileTest() throws IOException {
+		File indexFile = File.createTempFile("invalid", PoiIndexWriter.FILE_EXTENSION);
+		indexFile.deleteOnExit();
+		FileOutputStream fileOutputStream = new FileOutputStream(indexFile);
+		try {
+			fileOutputStream.write(new byte[64]);
+		} finally {
+			fileOutputStream.close();
+		}
+
+		try {
+			PoiIndex.open(indexFile);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests the {@link PoiIndex#getPointsOfInterest(String, BoundingBox)} method.
+	 */
+	@Test
+	public void namePrefixTest() throws IOException {
+		PoiIndex poiIndex = createPoiIndex();
+		BoundingBox boundingBox = poiIndex.getBoundingBox();
+
+		List<PointOfInterest> pointsOfInterest = poiIndex.getPointsOfInterest("абв", boundingBox);
+		Assert.assertEquals(1, pointsOfInterest.size());
+		PointOfInterest pointOfInterest = pointsOfInterest.get(0);
+		Assert.assertEquals(7, pointOfInterest.layer);
+		Assert.assertEquals(POI_POSITION, pointOfInterest.position);
+		Assert.assertEquals(4, pointOfInterest.tags.size());
+		Assert.assertTrue(pointOfInterest.tags.contains(POI_TAG));
+		Assert.assertTrue(pointOfInterest.tags.contains(new Tag("name=АБВГДЕЖЗ")));
+		Assert.assertTrue(pointOfInterest.tags.contains(new Tag("addr:housenumber=абвгдежз")));
+		Assert.assertTrue(pointOfInterest.tags.contains(new Tag("ele=25")));
+
+		Assert.assertEquals(1, poiIndex.getPointsOfInterest("", boundingBox).size());
+		Assert.assertEquals(1, poiIndex.getPointsOfInterest("АБВГДЕЖЗ", boundingBox).size());
+		Assert.assertTrue(poiIndex.getPointsOfInterest("АБВГДЕЖЗИ", boundingBox).isEmpty());
+		Assert.assertTrue(poiIndex.getPointsOfInterest("x", boundingBox).isEmpty());
+		Assert.assertTrue(poiIndex.getPointsOfInterest("абв", new BoundingBox(0, 0, 30000, 30000)).isEmpty());
+	}
+
+	/**
+	 * Tests the {@link PoiIndex#getPointsOfInterest(Tag, GeoPoint, int)} method.
+	 */
+	@Test
+	public void tagNearPointTest() throws IOException {
+		PoiIndex poiIndex = createPoiIndex();
+		MapFile mapFile = MapFile.open(MAP_FILE);
+		try {
+			MapFileInfo mapFileInfo = mapFile.getMapFileInfo();
+			Assert.assertEquals(mapFileInfo.boundingBox, poiIndex.getBoundingBox());
+			Assert.assertEquals(mapFileInfo.mapDate, poiIndex.getMapDate());
+			Assert.assertEquals(mapFileInfo.fileSize, poiIndex.getMapFileSize());
+		} finally {
+			mapFile.close();
+		}
+		Assert.assertEquals(1, poiIndex.getNumberOfPointsOfInterest());
+
+		List<PointOfInterest> pointsOfInterest = poiIndex.getPointsOfInterest(POI_TAG, new GeoPoint(40100, 80100), 100);
+		Assert.assertEquals(1, pointsOfInterest.size());
+		Assert.assertEquals(POI_POSITION, pointsOfInterest.get(0).position);
+
+		// the distance between both points is about 16 meters
+		Assert.assertTrue(poiIndex.getPointsOfInterest(POI_TAG, new GeoPoint(40100, 80100), 10).isEmpty());
+		Assert.assertTrue(poiIndex.getPointsOfInterest(POI_TAG, new GeoPoint(10000, 10000), 1000).isEmpty());
+		Assert.assertTrue(poiIndex.getPointsOfInterest(new Tag("place=city"), POI_POSITION, 1000).isEmpty());
+		Assert.assertEquals(1, poiIndex.getPointsOfInterest(POI_TAG, new GeoPoint(1000000, 1000000), 200000)
+				.size());
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ReadBuffer} and {@link MappedReadBuffer} classes.
+ */
+public class ReadBufferTest {
+	private static final byte[] BIT_PACKED = new byte[] { 1, (byte) 0x88, 0x66, -1, -1, -1, -1, -2, -1, -1, -1, 2 };
+
+	private static void verifyBitPacked(ReadBuffer readBuffer) throws IOException {
+		Assert.assertTrue(readBuffer.readFromFile(0, BIT_PACKED.length));
+		Assert.assertEquals(1, readBuffer.readByte());
+
+		int[] values = new int[10];
+		readBuffer.readBitPacked(values, 1, 2, 5, 3);
+		Assert.assertArrayEquals(new int[] { 0, 0, 0, -1, 0, 1, 0, -2, 0, 3 }, values);
+
+		values = new int[2];
+		readBuffer.readBitPacked(values, 0, 1, 2, 32);
+		Assert.assertArrayEquals(new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE }, values);
+
+		// a bit width of zero does not consume any bytes
+		values = new int[] { 5, 5 };
+		readBuffer.readBitPacked(values, 0, 1, 2, 0);
+		Assert.assertArrayEquals(new int[] { 0, 0 }, values);
+		Assert.assertEquals(2, readBuffer.readByte());
+	}
+
+	/**
+	 * Tests that the {@link MappedReadBuffer} does not read values which exceed the current window, even if the mapped
+	 * file contains more data.
+	 */
+	@Test
+	public void mappedWindowTest() {
+		MappedReadBuffer readBuffer = new MappedReadBuffer(ByteBuffer.wrap(BIT_PACKED));
+
+		// the variable byte encoded value continues behind the window
+		Assert.assertTrue(readBuffer.readFromFile(1, 1));
+		try {
+			readBuffer.readUnsignedInt();
+			Assert.fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			Assert.assertEquals(0, readBuffer.getBufferPosition());
+		}
+
+		// the bit-packed values need two bytes
+		Assert.assertTrue(readBuffer.readFromFile(1, 1));
+		try {
+			readBuffer.readBitPacked(new int[5], 0, 1, 5, 3);
+			Assert.fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			Assert.assertEquals(0, readBuffer.getBufferPosition());
+		}
+
+		Assert.assertTrue(readBuffer.readFromFile(0, 1));
+		Assert.assertEquals(1, readBuffer.readByte());
+		try {
+			readBuffer.readByte();
+			Assert.fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			Assert.assertEquals(1, readBuffer.getBufferPosition());
+		}
+	}
+
+	/**
+	 * Tests the {@link ReadBuffer#readBitPacked(int[], int, int, int, int)} method.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while reading the buffer.
+	 */
+	@Test
+	public void readBitPackedTest() throws IOException {
+		verifyBitPacked(new ReadBuffer(new ByteBufferDataSource(ByteBuffer.wrap(BIT_PACKED))));
+		verifyBitPacked(new MappedReadBuffer(ByteBuffer.wrap(BIT_PACKED)));
+	}
+}
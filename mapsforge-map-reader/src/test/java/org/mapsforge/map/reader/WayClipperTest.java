@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link WayClipper} class.
+ */
+public class WayClipperTest {
+	private static WayNodeBuffer clip(int... coordinates) {
+		WayNodeBuffer source = new WayNodeBuffer();
+		int offset = source.addCoordinateBlock(coordinates.length / 2);
+		System.arraycopy(coordinates, 0, source.getCoordinates(), offset, coordinates.length);
+
+		WayClipper wayClipper = new WayClipper();
+		wayClipper.setClipRectangle(0, 0, 10, 10);
+		WayNodeBuffer destination = new WayNodeBuffer();
+		wayClipper.clip(source, 0, destination);
+		return destination;
+	}
+
+	private static int[] getCoordinateBlock(WayNodeBuffer wayNodeBuffer, int coordinateBlock) {
+		int[] coordinates = new int[wayNodeBuffer.getNumberOfWayNodes(coordinateBlock) * 2];
+		System.arraycopy(wayNodeBuffer.getCoordinates(), wayNodeBuffer.getCoordinateBlockOffset(coordinateBlock),
+				coordinates, 0, coordinates.length);
+		return coordinates;
+	}
+
+	/**
+	 * Tests the {@link WayClipper#clip(WayNodeBuffer, int, WayNodeBuffer)} method with open ways.
+	 */
+	@Test
+	public void clipLineTest() {
+		WayNodeBuffer wayNodeBuffer = clip(5, 5, 8, 8);
+		Assert.assertEquals(1, wayNodeBuffer.getNumberOfCoordinateBlocks());
+		Assert.assertArrayEquals(new int[] { 5, 5, 8, 8 }, getCoordinateBlock(wayNodeBuffer, 0));
+
+		wayNodeBuffer = clip(20, 5, 30, 5);
+		Assert.assertEquals(0, wayNodeBuffer.getNumberOfCoordinateBlocks());
+
+		// the parts outside of the rectangle at both ends are removed
+		wayNodeBuffer = clip(-10, 5, -5, 5, 5, 5, 15, 5, 20, 5);
+		Assert.assertEquals(1, wayNodeBuffer.getNumberOfCoordinateBlocks());
+		Assert.assertArrayEquals(new int[] { 0, 5, 5, 5, 10, 5 }, getCoordinateBlock(wayNodeBuffer, 0));
+
+		// a single segment which crosses the rectangle
+		wayNodeBuffer = clip(-10, 5, 20, 5);
+		Assert.assertEquals(1, wayNodeBuffer.getNumberOfCoordinateBlocks());
+		Assert.assertArrayEquals(new int[] { 0, 5, 10, 5 }, getCoordinateBlock(wayNodeBuffer, 0));
+
+		// the line leaves the rectangle and enters it again, it is not split into several coordinate blocks
+		wayNodeBuffer = clip(5, 5, 15, 5, 15, 8, 5, 8);
+		Assert.assertEquals(1, wayNodeBuffer.getNumberOfCoordinateBlocks());
+		Assert.assertArrayEquals(new int[] { 5, 5, 15, 5, 15, 8, 5, 8 }, getCoordinateBlock(wayNodeBuffer, 0));
+
+		wayNodeBuffer = clip(-5, 5, 5, 5, 15, 5, 15, 8, 5, 8, -5, 8);
+		Assert.assertEquals(1, wayNodeBuffer.getNumberOfCoordinateBlocks());
+		Assert.assertArrayEquals(new int[] { 0, 5, 5, 5, 15, 5, 15, 8, 5, 8, 0, 8 },
+				getCoordinateBlock(wayNodeBuffer, 0));
+	}
+
+	/**
+	 * Tests the {@link WayClipper#clip(WayNodeBuffer, int, WayNodeBuffer)} method with closed ways.
+	 */
+	@Test
+	public void clipPolygonTest() {
+		WayNodeBuffer wayNodeBuffer = clip(-5, -5, 15, -5, 15, 15, -5, 15, -5, -5);
+		Assert.assertEquals(1, wayNodeBuffer.getNumberOfCoordinateBlocks());
+		Assert.assertArrayEquals(new int[] { 0, 10, 0, 0, 10, 0, 10, 10, 0, 10 }, getCoordinateBlock(wayNodeBuffer, 0));
+
+		wayNodeBuffer = clip(20, 20, 30, 20, 30, 30, 20, 20);
+		Assert.assertEquals(0, wayNodeBuffer.getNumberOfCoordinateBlocks());
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link WaySimplifier} class.
+ */
+public class WaySimplifierTest {
+	private static int[] simplify(int... coordinates) {
+		WayNodeBuffer source = new WayNodeBuffer();
+		int offset = source.addCoordinateBlock(coordinates.length / 2);
+		System.arraycopy(coordinates, 0, source.getCoordinates(), offset, coordinates.length);
+
+		WaySimplifier waySimplifier = new WaySimplifier();
+		waySimplifier.setTolerance(10, 10);
+		WayNodeBuffer destination = new WayNodeBuffer();
+		waySimplifier.simplify(source, 0, destination);
+		Assert.assertEquals(1, destination.getNumberOfCoordinateBlocks());
+
+		int[] simplifiedCoordinates = new int[destination.getNumberOfWayNodes(0) * 2];
+		System.arraycopy(destination.getCoordinates(), destination.getCoordinateBlockOffset(0), simplifiedCoordinates,
+				0, simplifiedCoordinates.length);
+		return simplifiedCoordinates;
+	}
+
+	/**
+	 * Tests the {@link WaySimplifier#simplify(WayNodeBuffer, int, WayNodeBuffer)} method.
+	 */
+	@Test
+	public void simplifyTest() {
+		// the second way node is too close to the first one
+		Assert.assertArrayEquals(new int[] { 0, 0, 20, 0, 20, 5 }, simplify(0, 0, 5, 5, 20, 0, 20, 5));
+
+		// the first and the last way node are always kept
+		Assert.assertArrayEquals(new int[] { 0, 0, 5, 0 }, simplify(0, 0, 2, 0, 5, 0));
+	}
+
+	/**
+	 * Tests the {@link WaySimplifier#simplify(WayNodeBuffer, int, WayNodeBuffer)} method with coordinate blocks which
+	 * have less than three way nodes.
+	 */
+	@Test
+	public void simplifyShortTest() {
+		Assert.assertArrayEquals(new int[] { 1, 2 }, simplify(1, 2));
+		Assert.assertArrayEquals(new int[] { 1, 2, 3, 4 }, simplify(1, 2, 3, 4));
+	}
+}
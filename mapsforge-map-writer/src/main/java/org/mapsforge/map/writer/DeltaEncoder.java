@@ -93,6 +93,9 @@ public final class DeltaEncoder {
 				return deltaEncode(list);
 			case DOUBLE_DELTA:
 				return doubleDeltaEncode(list);
+			case BIT_PACKED:
+				// the single deltas are bit-packed during the serialization
+				return deltaEncode(list);
 			case NONE:
 				return list;
 		}
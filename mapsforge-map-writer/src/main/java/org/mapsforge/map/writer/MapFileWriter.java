@@ -29,11 +29,13 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 import org.mapsforge.core.model.Coordinates;
 import org.mapsforge.core.model.GeoPoint;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.writer.model.Encoding;
+import org.mapsforge.map.writer.model.EncodingChoice;
 import org.mapsforge.map.writer.model.MapWriterConfiguration;
 import org.mapsforge.map.writer.model.OSMTag;
 import org.mapsforge.map.writer.model.TDNode;
@@ -46,6 +48,7 @@ import org.mapsforge.map.writer.model.WayDataBlock;
 import org.mapsforge.map.writer.model.ZoomIntervalConfiguration;
 import org.mapsforge.map.writer.util.Constants;
 import org.mapsforge.map.writer.util.GeoUtils;
+import org.mapsforge.map.writer.util.HilbertCurve;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -86,6 +89,13 @@ public final class MapFileWriter {
 
 	private static final int BYTE_AMOUNT_SUBFILE_INDEX_PER_TILE = 5;
 
+	// the index entries of a sub file with Hilbert block order also contain the block size
+	private static final int BYTE_AMOUNT_BLOCK_SIZE = 4;
+
+	// options which change the layout of the index or the blocks require this file version,
+	// so that older readers reject the map file instead of reading garbage
+	private static final int FILE_VERSION_EXTENDED = 4;
+
 	private static final String MAGIC_BYTE = "mapsforge binary OSM";
 
 	private static final int OFFSET_FILE_SIZE = 28;
@@ -113,6 +123,7 @@ public final class MapFileWriter {
 	private static final short BITMAP_LABEL = 16; // NOPMD by bross on 25.12.11 13:52
 	private static final short BITMAP_MULTIPLE_WAY_BLOCKS = 8;
 	private static final short BITMAP_ENCODING = 4;
+	private static final short BITMAP_BIT_PACKED_ENCODING = 2;
 
 	// bitmap flags for file features
 	private static final short BITMAP_DEBUG = 128; // NOPMD by bross on 25.12.11 13:53
@@ -121,9 +132,14 @@ public final class MapFileWriter {
 	private static final short BITMAP_PREFERRED_LANGUAGE = 16; // NOPMD by bross on 25.12.11 13:53
 	private static final short BITMAP_COMMENT = 8; // NOPMD by bross on 25.12.11 13:53
 	private static final short BITMAP_CREATED_WITH = 4; // NOPMD by bross on 25.12.11 13:53
+	private static final short BITMAP_COMPRESSED_BLOCKS = 2;
+	private static final short BITMAP_HILBERT_BLOCK_ORDER = 1;
 
 	private static final int BITMAP_INDEX_ENTRY_WATER = 0x80;
 
+	// maximum number of way node deltas which are bit-packed with the same bit width
+	private static final int BIT_PACKING_GROUP_SIZE = 128;
+
 	static final Logger LOGGER = Logger.getLogger(MapFileWriter.class.getName());
 
 	private static final String PROJECTION = "Mercator";
@@ -227,7 +243,7 @@ public final class MapFileWriter {
 		containerHeaderBuffer.putInt(DUMMY_INT);
 
 		// FILE VERSION
-		containerHeaderBuffer.putInt(configuration.getFileSpecificationVersion());
+		containerHeaderBuffer.putInt(fileVersion(configuration));
 
 		// FILE SIZE: Write dummy pattern as file size. It will be replaced
 		// later in time
@@ -351,9 +367,13 @@ public final class MapFileWriter {
 
 		final byte baseZoomCurrentInterval = dataStore.getZoomIntervalConfiguration().getBaseZoom(zoomIntervalIndex);
 
-		final int tileAmountInBytes = lengthX * lengthY * BYTE_AMOUNT_SUBFILE_INDEX_PER_TILE;
-		final int indexBufferSize = tileAmountInBytes
-				+ (configuration.isDebugStrings() ? DEBUG_INDEX_START_STRING.getBytes(UTF8_CHARSET).length : 0);
+		final boolean hilbertBlockOrder = configuration.isHilbertBlockOrder();
+		final int indexEntrySize = hilbertBlockOrder ? BYTE_AMOUNT_SUBFILE_INDEX_PER_TILE + BYTE_AMOUNT_BLOCK_SIZE
+				: BYTE_AMOUNT_SUBFILE_INDEX_PER_TILE;
+		final int tileAmountInBytes = lengthX * lengthY * indexEntrySize;
+		final int indexStart = configuration.isDebugStrings() ? DEBUG_INDEX_START_STRING.getBytes(UTF8_CHARSET).length
+				: 0;
+		final int indexBufferSize = tileAmountInBytes + indexStart;
 
 		final ByteBuffer indexBuffer = ByteBuffer.allocate(indexBufferSize);
 		final ByteBuffer tileBuffer = ByteBuffer.allocate(TILE_BUFFER_SIZE);
@@ -363,6 +383,11 @@ public final class MapFileWriter {
 
 		final ByteBuffer multipleTilesBuffer = ByteBuffer.allocate(TILES_BUFFER_SIZE);
 
+		// raw deflate data without zlib header and checksum, the block size is stored in the index anyway
+		final Deflater deflater = configuration.isBlockCompression() ? new Deflater(Deflater.BEST_COMPRESSION, true)
+				: null;
+		final byte[] compressedTile = deflater != null ? new byte[maxCompressedLength(TILE_BUFFER_SIZE)] : null;
+
 		// write debug strings for tile index segment if necessary
 		if (configuration.isDebugStrings()) {
 			indexBuffer.put(DEBUG_INDEX_START_STRING.getBytes(UTF8_CHARSET));
@@ -371,30 +396,40 @@ public final class MapFileWriter {
 		long currentSubfileOffset = indexBufferSize;
 		randomAccessFile.seek(startPositionSubfile + indexBufferSize);
 
-		for (int tileY = upperLeft.getY(); tileY < upperLeft.getY() + lengthY; tileY++) {
-			for (int tileX = upperLeft.getX(); tileX < upperLeft.getX() + lengthX; tileX++) {
-				TileCoordinate tileCoordinate = new TileCoordinate(tileX, tileY, baseZoomCurrentInterval);
-
-				processIndexEntry(tileCoordinate, indexBuffer, currentSubfileOffset);
-				processTile(configuration, tileCoordinate, dataStore, jtsGeometryCache, zoomIntervalIndex, tileBuffer,
-						poiDataBuffer, wayDataBuffer, wayBuffer);
-				currentSubfileOffset += tileBuffer.position();
-
-				writeTile(multipleTilesBuffer, tileBuffer, randomAccessFile);
+		// the index is always ordered row by row, only the order of the tiles in the sub file changes
+		final int[] tileOrder = hilbertBlockOrder ? HilbertCurve.getOrder(lengthX, lengthY) : null;
+		for (int tileIndex = 0; tileIndex < amountTiles; tileIndex++) {
+			int blockNumber = tileOrder == null ? tileIndex : tileOrder[tileIndex];
+			int tileX = upperLeft.getX() + blockNumber % lengthX;
+			int tileY = upperLeft.getY() + blockNumber / lengthX;
+			TileCoordinate tileCoordinate = new TileCoordinate(tileX, tileY, baseZoomCurrentInterval);
+
+			processTile(configuration, tileCoordinate, dataStore, jtsGeometryCache, zoomIntervalIndex, tileBuffer,
+					poiDataBuffer, wayDataBuffer, wayBuffer);
+			if (deflater != null && tileBuffer.position() > 0) {
+				compressTile(tileBuffer, deflater, compressedTile);
+			}
+			indexBuffer.position(indexStart + blockNumber * indexEntrySize);
+			processIndexEntry(tileCoordinate, indexBuffer, currentSubfileOffset);
+			if (hilbertBlockOrder) {
+				indexBuffer.putInt(tileBuffer.position());
+			}
+			currentSubfileOffset += tileBuffer.position();
 
-				if (++processedTiles % amountOfTilesInPercentStep == 0) {
-					if (processedTiles == amountTiles) {
-						LOGGER.info("written 100% of sub file for zoom interval index " + zoomIntervalIndex);
-					} else {
-						LOGGER.info("written " + (processedTiles / amountOfTilesInPercentStep) * PROGRESS_PERCENT_STEP
-								+ "% of sub file for zoom interval index " + zoomIntervalIndex);
-					}
+			writeTile(multipleTilesBuffer, tileBuffer, randomAccessFile);
 
+			if (++processedTiles % amountOfTilesInPercentStep == 0) {
+				if (processedTiles == amountTiles) {
+					LOGGER.info("written 100% of sub file for zoom interval index " + zoomIntervalIndex);
+				} else {
+					LOGGER.info("written " + (processedTiles / amountOfTilesInPercentStep) * PROGRESS_PERCENT_STEP
+							+ "% of sub file for zoom interval index " + zoomIntervalIndex);
 				}
 
-				// TODO accounting for progress information
-			} // end for loop over tile columns
-		} // /end for loop over tile rows
+			}
+
+			// TODO accounting for progress information
+		} // end for loop over tiles
 
 		// write remaining tiles
 		if (multipleTilesBuffer.position() > 0) {
@@ -402,6 +437,10 @@ public final class MapFileWriter {
 			randomAccessFile.write(multipleTilesBuffer.array(), 0, multipleTilesBuffer.position());
 		}
 
+		if (deflater != null) {
+			deflater.end();
+		}
+
 		writeIndex(indexBuffer, startPositionSubfile, currentSubfileOffset, randomAccessFile);
 
 		// return size of sub file in bytes
@@ -409,6 +448,42 @@ public final class MapFileWriter {
 
 	}
 
+	/**
+	 * Returns the maximum size of the raw deflate data for the given number of input bytes. Deflate stores
+	 * incompressible data in blocks with a small header, so the output may be larger than the input.
+	 */
+	static int maxCompressedLength(int length) {
+		return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+	}
+
+	/**
+	 * Replaces the content of the tile buffer with its uncompressed size and the deflate compressed data. The array
+	 * for the compressed data must have at least {@link #maxCompressedLength(int)} bytes, otherwise the deflater could
+	 * never finish.
+	 */
+	static void compressTile(ByteBuffer tileBuffer, Deflater deflater, byte[] compressedTile) {
+		if (compressedTile.length < maxCompressedLength(tileBuffer.position())) {
+			throw new IllegalArgumentException("compressedTile is too small for the tile: " + compressedTile.length);
+		}
+
+		deflater.reset();
+		deflater.setInput(tileBuffer.array(), 0, tileBuffer.position());
+		deflater.finish();
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			compressedLength += deflater.deflate(compressedTile, compressedLength, compressedTile.length
+					- compressedLength);
+		}
+
+		byte[] uncompressedSize = Serializer.getVariableByteUnsigned(tileBuffer.position());
+		if (uncompressedSize.length + compressedLength > tileBuffer.capacity()) {
+			throw new IllegalStateException("compressed tile does not fit into the tile buffer: " + compressedLength);
+		}
+		tileBuffer.clear();
+		tileBuffer.put(uncompressedSize);
+		tileBuffer.put(compressedTile, 0, compressedLength);
+	}
+
 	private static void writeTile(ByteBuffer multipleTilesBuffer, ByteBuffer tileBuffer,
 			RandomAccessFile randomAccessFile) throws IOException {
 		// add tile to tiles buffer
@@ -684,18 +759,20 @@ public final class MapFileWriter {
 			}
 
 			// write block for (outer/simple) way
-			writeWay(wayDataBlock.getOuterWay(), currentTileLat, currentTileLon, wayBuffer);
+			writeWay(wayDataBlock.getOuterWay(), wayDataBlock.getEncoding(), currentTileLat, currentTileLon, wayBuffer);
 
 			// write blocks for inner ways
 			if (wayDataBlock.getInnerWays() != null && !wayDataBlock.getInnerWays().isEmpty()) {
 				for (List<Integer> innerWayCoordinates : wayDataBlock.getInnerWays()) {
-					writeWay(innerWayCoordinates, currentTileLat, currentTileLon, wayBuffer);
+					writeWay(innerWayCoordinates, wayDataBlock.getEncoding(), currentTileLat, currentTileLon,
+							wayBuffer);
 				}
 			}
 		}
 	}
 
-	private static void writeWay(List<Integer> wayNodes, int currentTileLat, int currentTileLon, ByteBuffer buffer) {
+	private static void writeWay(List<Integer> wayNodes, Encoding encoding, int currentTileLat, int currentTileLon,
+			ByteBuffer buffer) {
 		// write the amount of way nodes to the file
 		// wayBuffer
 		buffer.put(Serializer.getVariableByteUnsigned(wayNodes.size() / 2));
@@ -704,7 +781,11 @@ public final class MapFileWriter {
 		// the first node is always stored with four bytes
 		// the remaining way node differences are stored according to the
 		// compression type
-		writeWayNodes(wayNodes, currentTileLat, currentTileLon, buffer);
+		if (encoding == Encoding.BIT_PACKED) {
+			writeWayNodesBitPacked(wayNodes, currentTileLat, currentTileLon, buffer);
+		} else {
+			writeWayNodes(wayNodes, currentTileLat, currentTileLon, buffer);
+		}
 	}
 
 	static void writeWayNodes(List<Integer> waynodes, int currentTileLat, int currentTileLon, ByteBuffer buffer) {
@@ -719,6 +800,28 @@ public final class MapFileWriter {
 		}
 	}
 
+	static void writeWayNodesBitPacked(List<Integer> waynodes, int currentTileLat, int currentTileLon,
+			ByteBuffer buffer) {
+		if (!waynodes.isEmpty() && waynodes.size() % 2 == 0) {
+			buffer.put(Serializer.getVariableByteSigned(waynodes.get(0).intValue() - currentTileLat));
+			buffer.put(Serializer.getVariableByteSigned(waynodes.get(1).intValue() - currentTileLon));
+
+			// the latitude and longitude deltas of each group are packed separately
+			int numberOfDeltas = waynodes.size() / 2 - 1;
+			int[] latitudeDeltas = new int[BIT_PACKING_GROUP_SIZE];
+			int[] longitudeDeltas = new int[BIT_PACKING_GROUP_SIZE];
+			for (int groupStart = 0; groupStart < numberOfDeltas; groupStart += BIT_PACKING_GROUP_SIZE) {
+				int groupSize = Math.min(BIT_PACKING_GROUP_SIZE, numberOfDeltas - groupStart);
+				for (int i = 0; i < groupSize; ++i) {
+					latitudeDeltas[i] = waynodes.get(2 + (groupStart + i) * 2).intValue();
+					longitudeDeltas[i] = waynodes.get(3 + (groupStart + i) * 2).intValue();
+				}
+				buffer.put(Serializer.getBitPacked(latitudeDeltas, 0, groupSize));
+				buffer.put(Serializer.getBitPacked(longitudeDeltas, 0, groupSize));
+			}
+		}
+	}
+
 	private static void appendWhitespace(int amount, ByteBuffer buffer) {
 		for (int i = 0; i < amount; i++) {
 			buffer.put((byte) ' ');
@@ -800,6 +903,9 @@ public final class MapFileWriter {
 			case DOUBLE:
 				blocks = DeltaEncoder.encode(blocks, Encoding.DOUBLE_DELTA);
 				break;
+			case PACKED:
+				blocks = DeltaEncoder.encode(blocks, Encoding.BIT_PACKED);
+				break;
 			case AUTO:
 				List<WayDataBlock> blocksDelta = DeltaEncoder.encode(blocks, Encoding.DELTA);
 				List<WayDataBlock> blocksDoubleDelta = DeltaEncoder.encode(blocks, Encoding.DOUBLE_DELTA);
@@ -838,6 +944,14 @@ public final class MapFileWriter {
 		return (byte) (layer << BYTES_INT | tagAmount);
 	}
 
+	static int fileVersion(MapWriterConfiguration configuration) {
+		if (configuration.isBlockCompression() || configuration.isHilbertBlockOrder()
+				|| configuration.getEncodingChoice() == EncodingChoice.PACKED) {
+			return Math.max(configuration.getFileSpecificationVersion(), FILE_VERSION_EXTENDED);
+		}
+		return configuration.getFileSpecificationVersion();
+	}
+
 	static byte infoByteOptmizationParams(MapWriterConfiguration configuration) {
 		byte infoByte = 0;
 
@@ -859,6 +973,13 @@ public final class MapFileWriter {
 
 		infoByte |= BITMAP_CREATED_WITH;
 
+		if (configuration.isBlockCompression()) {
+			infoByte |= BITMAP_COMPRESSED_BLOCKS;
+		}
+		if (configuration.isHilbertBlockOrder()) {
+			infoByte |= BITMAP_HILBERT_BLOCK_ORDER;
+		}
+
 		return infoByte;
 	}
 
@@ -900,6 +1021,8 @@ public final class MapFileWriter {
 			WayDataBlock wayDataBlock = wpr.getWayDataBlocks().get(0);
 			if (wayDataBlock.getEncoding() == Encoding.DOUBLE_DELTA) {
 				infoByte |= BITMAP_ENCODING;
+			} else if (wayDataBlock.getEncoding() == Encoding.BIT_PACKED) {
+				infoByte |= BITMAP_BIT_PACKED_ENCODING;
 			}
 		}
 
@@ -1072,6 +1195,9 @@ public final class MapFileWriter {
 				case DOUBLE:
 					blocks = DeltaEncoder.encode(blocks, Encoding.DOUBLE_DELTA);
 					break;
+				case PACKED:
+					blocks = DeltaEncoder.encode(blocks, Encoding.BIT_PACKED);
+					break;
 				case AUTO:
 					List<WayDataBlock> blocksDelta = DeltaEncoder.encode(blocks, Encoding.DELTA);
 					List<WayDataBlock> blocksDoubleDelta = DeltaEncoder.encode(blocks, Encoding.DOUBLE_DELTA);
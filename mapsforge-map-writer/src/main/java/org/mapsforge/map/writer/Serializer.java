@@ -20,6 +20,48 @@ import java.security.InvalidParameterException;
  * This class converts numbers to byte arrays.
  */
 public final class Serializer {
+	/**
+	 * Converts signed ints to a bit-packed byte array.
+	 * <p>
+	 * The values are zig-zag encoded and stored with the smallest bit width which fits all of them. The first byte
+	 * contains the bit width, the packed values follow with the least significant bit first.
+	 * 
+	 * @param values
+	 *            the int values.
+	 * @param offset
+	 *            the index of the first value.
+	 * @param length
+	 *            the number of values.
+	 * @return an array with the bit width and the packed values.
+	 */
+	public static byte[] getBitPacked(int[] values, int offset, int length) {
+		int allBits = 0;
+		for (int i = offset; i < offset + length; ++i) {
+			allBits |= (values[i] << 1) ^ (values[i] >> 31);
+		}
+		int bitWidth = 32 - Integer.numberOfLeadingZeros(allBits);
+
+		byte[] bytes = new byte[1 + (length * bitWidth + 7) / 8];
+		bytes[0] = (byte) bitWidth;
+		long bits = 0;
+		int availableBits = 0;
+		int index = 1;
+		for (int i = offset; i < offset + length; ++i) {
+			long zigZag = ((values[i] << 1) ^ (values[i] >> 31)) & 0xffffffffL;
+			bits |= zigZag << availableBits;
+			availableBits += bitWidth;
+			while (availableBits >= 8) {
+				bytes[index++] = (byte) bits;
+				bits >>>= 8;
+				availableBits -= 8;
+			}
+		}
+		if (availableBits > 0) {
+			bytes[index] = (byte) bits;
+		}
+		return bytes;
+	}
+
 	/**
 	 * Converts a signed int to a byte array.
 	 * <p>
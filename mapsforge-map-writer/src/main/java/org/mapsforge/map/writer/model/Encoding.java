@@ -32,5 +32,9 @@ public enum Encoding {
 	/**
 	 * Double delta encoding.
 	 */
-	DOUBLE_DELTA
+	DOUBLE_DELTA,
+	/**
+	 * Single delta encoding, the deltas are zig-zag encoded and bit-packed in groups of way nodes.
+	 */
+	BIT_PACKED
 }
@@ -31,7 +31,12 @@ public enum EncodingChoice {
 	/**
 	 * DOUBLE.
 	 */
-	DOUBLE;
+	DOUBLE,
+	/**
+	 * PACKED, never chosen by AUTO as older readers do not support it. Map files with this encoding are written with
+	 * file version 4, which older readers reject.
+	 */
+	PACKED;
 
 	/**
 	 * Reads preferred encoding from a String.
@@ -53,6 +58,10 @@ public enum EncodingChoice {
 			return DOUBLE;
 		}
 
+		if ("packed".equalsIgnoreCase(encoding)) {
+			return PACKED;
+		}
+
 		return AUTO;
 	}
 }
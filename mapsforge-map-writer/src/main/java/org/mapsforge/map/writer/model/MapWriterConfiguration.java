@@ -40,6 +40,8 @@ public class MapWriterConfiguration {
 	private String writerVersion;
 
 	private boolean debugStrings;
+	private boolean blockCompression;
+	private boolean hilbertBlockOrder;
 	private boolean polygonClipping;
 	private boolean wayClipping;
 	private boolean labelPosition;
@@ -198,6 +200,38 @@ public class MapWriterConfiguration {
 		this.debugStrings = debugStrings;
 	}
 
+	/**
+	 * @return true if the blocks of the map file should be compressed with the deflate algorithm
+	 */
+	public boolean isBlockCompression() {
+		return this.blockCompression;
+	}
+
+	/**
+	 * @param blockCompression
+	 *            true if the blocks of the map file should be compressed with the deflate algorithm, the map file is
+	 *            then written with file version 4
+	 */
+	public void setBlockCompression(boolean blockCompression) {
+		this.blockCompression = blockCompression;
+	}
+
+	/**
+	 * @return true if the blocks of each sub file should be stored in the order of a Hilbert curve
+	 */
+	public boolean isHilbertBlockOrder() {
+		return this.hilbertBlockOrder;
+	}
+
+	/**
+	 * @param hilbertBlockOrder
+	 *            true if the blocks of each sub file should be stored in the order of a Hilbert curve, the map file
+	 *            is then written with file version 4
+	 */
+	public void setHilbertBlockOrder(boolean hilbertBlockOrder) {
+		this.hilbertBlockOrder = hilbertBlockOrder;
+	}
+
 	/**
 	 * @return the polygonClipping
 	 */
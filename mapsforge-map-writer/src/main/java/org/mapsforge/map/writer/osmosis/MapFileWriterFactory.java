@@ -35,6 +35,8 @@ class MapFileWriterFactory extends TaskManagerFactory {
 	private static final String PARAM_MAP_START_POSITION = "map-start-position";
 	private static final String PARAM_MAP_START_ZOOM = "map-start-zoom";
 	private static final String PARAM_DEBUG_INFO = "debug-file";
+	private static final String PARAM_BLOCK_COMPRESSION = "block-compression";
+	private static final String PARAM_HILBERT_BLOCK_ORDER = "hilbert-block-order";
 	// private static final String PARAM_WAYNODE_COMPRESSION = "waynode-compression";
 	private static final String PARAM_SIMPLIFICATION_FACTOR = "simplification-factor";
 	private static final String PARAM_POLYGON_CLIPPING = "polygon-clipping";
@@ -63,6 +65,8 @@ class MapFileWriterFactory extends TaskManagerFactory {
 
 		configuration.setComment(getStringArgument(taskConfig, PARAM_COMMENT, null));
 		configuration.setDebugStrings(getBooleanArgument(taskConfig, PARAM_DEBUG_INFO, false));
+		configuration.setBlockCompression(getBooleanArgument(taskConfig, PARAM_BLOCK_COMPRESSION, false));
+		configuration.setHilbertBlockOrder(getBooleanArgument(taskConfig, PARAM_HILBERT_BLOCK_ORDER, false));
 		configuration.setPolygonClipping(getBooleanArgument(taskConfig, PARAM_POLYGON_CLIPPING, true));
 		configuration.setWayClipping(getBooleanArgument(taskConfig, PARAM_WAY_CLIPPING, true));
 		configuration.setLabelPosition(getBooleanArgument(taskConfig, PARAM_LABEL_POSITION, false));
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer.util;
+
+/**
+ * Orders the cells of a grid along a Hilbert curve, so that cells which are close to each other in the grid are mostly
+ * close to each other in the order as well.
+ */
+public final class HilbertCurve {
+	/**
+	 * Returns the numbers of all cells of a grid in the order of a Hilbert curve. The curve runs through the smallest
+	 * enclosing square whose side length is a power of two, cells outside of the grid are skipped.
+	 * 
+	 * @param width
+	 *            the number of columns of the grid.
+	 * @param height
+	 *            the number of rows of the grid.
+	 * @return the cell numbers in curve order, the number of a cell is row * width + column.
+	 */
+	public static int[] getOrder(int width, int height) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("invalid grid size: " + width + ", " + height);
+		}
+
+		int side = 1;
+		while (side < width || side < height) {
+			side <<= 1;
+		}
+
+		int[] cellNumbers = new int[width * height];
+		int index = 0;
+		for (long distance = 0; index < cellNumbers.length; ++distance) {
+			// convert the distance along the curve into the column and row of the cell
+			int column = 0;
+			int row = 0;
+			long remainingDistance = distance;
+			for (int subSide = 1; subSide < side; subSide <<= 1) {
+				int quadrantX = (int) (1 & (remainingDistance >>> 1));
+				int quadrantY = (int) (1 & (remainingDistance ^ quadrantX));
+				if (quadrantY == 0) {
+					// rotate the sub-square
+					if (quadrantX == 1) {
+						column = subSide - 1 - column;
+						row = subSide - 1 - row;
+					}
+					int swap = column;
+					column = row;
+					row = swap;
+				}
+				column += subSide * quadrantX;
+				row += subSide * quadrantY;
+				remainingDistance >>>= 2;
+			}
+
+			if (column < width && row < height) {
+				cellNumbers[index++] = row * width + column;
+			}
+		}
+		return cellNumbers;
+	}
+
+	private HilbertCurve() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.mapsforge.map.writer.model.EncodingChoice;
+import org.mapsforge.map.writer.model.MapWriterConfiguration;
+
+/**
+ * Tests the block compression of the {@link MapFileWriter} class.
+ */
+public class MapFileWriterCompressionTest {
+	private static byte[] compressTile(byte[] tile, int tileBufferSize) {
+		ByteBuffer tileBuffer = ByteBuffer.allocate(tileBufferSize);
+		tileBuffer.put(tile);
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		MapFileWriter.compressTile(tileBuffer, deflater, new byte[MapFileWriter.maxCompressedLength(tile.length)]);
+		deflater.end();
+		return Arrays.copyOf(tileBuffer.array(), tileBuffer.position());
+	}
+
+	private static void verifyCompressedTile(byte[] tile, byte[] compressedTile) throws DataFormatException {
+		// the uncompressed size is stored in front of the deflate data
+		byte[] uncompressedSize = Serializer.getVariableByteUnsigned(tile.length);
+		Assert.assertTrue(Arrays.equals(uncompressedSize, Arrays.copyOf(compressedTile, uncompressedSize.length)));
+
+		Inflater inflater = new Inflater(true);
+		inflater.setInput(compressedTile, uncompressedSize.length, compressedTile.length - uncompressedSize.length);
+		byte[] inflatedTile = new byte[tile.length];
+		Assert.assertEquals(tile.length, inflater.inflate(inflatedTile));
+		inflater.end();
+		Assert.assertTrue(Arrays.equals(tile, inflatedTile));
+	}
+
+	/**
+	 * Tests the {@link MapFileWriter#compressTile(ByteBuffer, Deflater, byte[])} method.
+	 * 
+	 * @throws DataFormatException
+	 *             if the compressed data is invalid.
+	 */
+	@Test
+	public void testCompressTile() throws DataFormatException {
+		byte[] tile = new byte[1000];
+		for (int i = 0; i < tile.length; ++i) {
+			tile[i] = (byte) (i % 10);
+		}
+
+		byte[] compressedTile = compressTile(tile, 2000);
+		Assert.assertTrue(compressedTile.length < tile.length);
+		verifyCompressedTile(tile, compressedTile);
+	}
+
+	/**
+	 * Tests the {@link MapFileWriter#compressTile(ByteBuffer, Deflater, byte[])} method with incompressible data.
+	 * 
+	 * @throws DataFormatException
+	 *             if the compressed data is invalid.
+	 */
+	@Test
+	public void testCompressTileIncompressible() throws DataFormatException {
+		byte[] tile = new byte[100000];
+		new Random(1).nextBytes(tile);
+
+		// the deflate data are larger than the random input
+		byte[] compressedTile = compressTile(tile, 2 * tile.length);
+		Assert.assertTrue(compressedTile.length > tile.length);
+		Assert.assertTrue(compressedTile.length <= MapFileWriter.maxCompressedLength(tile.length) + 5);
+		verifyCompressedTile(tile, compressedTile);
+
+		// the compressed tile does not fit into a tile buffer of the uncompressed size
+		try {
+			compressTile(tile, tile.length);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+
+		// an output array without room for the deflate overhead is rejected instead of never finishing
+		ByteBuffer tileBuffer = ByteBuffer.allocate(2 * tile.length);
+		tileBuffer.put(tile);
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			MapFileWriter.compressTile(tileBuffer, deflater, new byte[tile.length]);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Tests the {@link MapFileWriter#fileVersion(MapWriterConfiguration)} method.
+	 */
+	@Test
+	public void testFileVersion() {
+		MapWriterConfiguration configuration = new MapWriterConfiguration();
+		configuration.setFileSpecificationVersion(3);
+		Assert.assertEquals(3, MapFileWriter.fileVersion(configuration));
+
+		configuration.setHilbertBlockOrder(true);
+		Assert.assertEquals(4, MapFileWriter.fileVersion(configuration));
+
+		configuration.setHilbertBlockOrder(false);
+		configuration.setBlockCompression(true);
+		Assert.assertEquals(4, MapFileWriter.fileVersion(configuration));
+
+		configuration.setBlockCompression(false);
+		configuration.setEncodingChoice(EncodingChoice.PACKED);
+		Assert.assertEquals(4, MapFileWriter.fileVersion(configuration));
+	}
+
+	/**
+	 * Tests the {@link MapFileWriter#infoByteOptmizationParams(MapWriterConfiguration)} method.
+	 */
+	@Test
+	public void testInfoByteOptmizationParams() {
+		MapWriterConfiguration configuration = new MapWriterConfiguration();
+		Assert.assertEquals(0, MapFileWriter.infoByteOptmizationParams(configuration) & 0x02);
+		configuration.setBlockCompression(true);
+		Assert.assertEquals(0x02, MapFileWriter.infoByteOptmizationParams(configuration) & 0x02);
+
+		Assert.assertEquals(0, MapFileWriter.infoByteOptmizationParams(configuration) & 0x01);
+		configuration.setHilbertBlockOrder(true);
+		Assert.assertEquals(0x01, MapFileWriter.infoByteOptmizationParams(configuration) & 0x01);
+	}
+}
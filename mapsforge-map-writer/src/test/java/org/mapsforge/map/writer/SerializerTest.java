@@ -21,6 +21,21 @@ import org.junit.Test;
  * Tests the {@link Serializer} class.
  */
 public class SerializerTest {
+	/**
+	 * Tests the {@link Serializer#getBitPacked(int[], int, int)} method.
+	 */
+	@Test
+	public void getBitPackedTest() {
+		byte[] bitPacked = Serializer.getBitPacked(new int[] { 0, 0, 0 }, 0, 3);
+		Assert.assertArrayEquals(new byte[] { 0 }, bitPacked);
+
+		bitPacked = Serializer.getBitPacked(new int[] { 7, 0, -1, 1, -2, 3 }, 1, 5);
+		Assert.assertArrayEquals(new byte[] { 3, (byte) 0x88, 0x66 }, bitPacked);
+
+		bitPacked = Serializer.getBitPacked(new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE }, 0, 2);
+		Assert.assertArrayEquals(new byte[] { 32, -1, -1, -1, -1, -2, -1, -1, -1 }, bitPacked);
+	}
+
 	/**
 	 * Tests the {@link Serializer#getFiveBytes(long)} method.
 	 */
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010, 2011, 2012 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.writer.util;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link HilbertCurve} class.
+ */
+public class HilbertCurveTest {
+	private static void verifyOrder(int width, int height) {
+		int[] order = HilbertCurve.getOrder(width, height);
+		Assert.assertEquals(width * height, order.length);
+
+		// each cell must occur exactly once
+		int[] sortedOrder = order.clone();
+		Arrays.sort(sortedOrder);
+		for (int i = 0; i < sortedOrder.length; ++i) {
+			Assert.assertEquals(i, sortedOrder[i]);
+		}
+	}
+
+	/**
+	 * Tests the {@link HilbertCurve#getOrder(int, int)} method.
+	 */
+	@Test
+	public void getOrderTest() {
+		Assert.assertArrayEquals(new int[] { 0 }, HilbertCurve.getOrder(1, 1));
+		Assert.assertArrayEquals(new int[] { 0, 2, 3, 1 }, HilbertCurve.getOrder(2, 2));
+		Assert.assertArrayEquals(new int[] { 0, 1, 5, 4, 8, 12, 13, 9, 10, 14, 15, 11, 7, 6, 2, 3 },
+				HilbertCurve.getOrder(4, 4));
+
+		// consecutive cells of a complete square are always neighbours
+		int[] order = HilbertCurve.getOrder(8, 8);
+		for (int i = 1; i < order.length; ++i) {
+			int distance = Math.abs(order[i] % 8 - order[i - 1] % 8) + Math.abs(order[i] / 8 - order[i - 1] / 8);
+			Assert.assertEquals(1, distance);
+		}
+
+		verifyOrder(3, 5);
+		verifyOrder(7, 1);
+		verifyOrder(10, 10);
+
+		try {
+			HilbertCurve.getOrder(0, 1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertNotNull(e.getMessage());
+		}
+	}
+}
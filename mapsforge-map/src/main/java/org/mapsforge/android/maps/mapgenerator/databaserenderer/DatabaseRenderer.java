@@ -32,10 +32,14 @@ import org.mapsforge.core.model.GeoPoint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.MapDataSink;
 import org.mapsforge.map.reader.MapDatabase;
 import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.PoiRecord;
 import org.mapsforge.map.reader.PointOfInterest;
 import org.mapsforge.map.reader.Way;
+import org.mapsforge.map.reader.WayNodeBuffer;
+import org.mapsforge.map.reader.WayRecord;
 import org.mapsforge.map.reader.header.MapFileInfo;
 import org.xml.sax.SAXException;
 
@@ -45,8 +49,12 @@ import android.graphics.Paint;
 
 /**
  * A DatabaseRenderer renders map tiles by reading from a {@link MapDatabase}.
+ * <p>
+ * Without a block cache, the map data are streamed directly from the read buffer and the way nodes are projected from
+ * their integer microdegree coordinates without creating way objects. If the map database caches decoded blocks, the
+ * cached ways are read instead and copied while projecting them, as they are shared with other queries.
  */
-public class DatabaseRenderer implements MapGenerator, RenderCallback {
+public class DatabaseRenderer implements MapDataSink, MapGenerator, RenderCallback {
 	private static final Byte DEFAULT_START_ZOOM_LEVEL = Byte.valueOf((byte) 12);
 	private static final byte LAYERS = 11;
 	private static final Logger LOGGER = Logger.getLogger(DatabaseRenderer.class.getName());
@@ -99,6 +107,7 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 	private ShapeContainer shapeContainer;
 	private final List<Tag> tagList;
 	private final List<WayTextContainer> wayNames;
+	private final WayNodeBuffer wayNodeBuffer;
 	private final List<List<List<ShapePaintContainer>>> ways;
 	private final List<SymbolContainer> waySymbols;
 
@@ -116,6 +125,7 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 		this.waySymbols = new ArrayList<SymbolContainer>(64);
 		this.pointSymbols = new ArrayList<SymbolContainer>(64);
 		this.tagList = new ArrayList<Tag>(2);
+		this.wayNodeBuffer = new WayNodeBuffer();
 
 		PAINT_WATER_TILE_HIGHTLIGHT.setStyle(Paint.Style.FILL);
 		PAINT_WATER_TILE_HIGHTLIGHT.setColor(Color.CYAN);
@@ -157,8 +167,11 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 		}
 
 		if (this.mapDatabase != null) {
-			MapReadResult mapReadResult = this.mapDatabase.readMapData(this.currentTile);
-			processReadMapData(mapReadResult);
+			if (this.mapDatabase.hasBlockCache()) {
+				processReadMapData(this.mapDatabase.readMapData(this.currentTile));
+			} else {
+				this.mapDatabase.readMapData(this.currentTile, this);
+			}
 		}
 
 		this.nodes = this.labelPlacement.placeLabels(this.nodes, this.pointSymbols, this.areaLabels, this.currentTile);
@@ -216,6 +229,21 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 		return ZOOM_MAX;
 	}
 
+	@Override
+	public void pointOfInterest(PoiRecord poiRecord) {
+		this.drawingLayer = this.ways.get(getValidLayer(poiRecord.getLayer()));
+		this.poiX = scaleLongitude(poiRecord.getLongitude());
+		this.poiY = scaleLatitude(poiRecord.getLatitude());
+		this.renderTheme.matchNode(this, poiRecord.getTags(), this.currentTile.zoomLevel);
+	}
+
+	@Override
+	public void queryCompleted(boolean isWater) {
+		if (isWater) {
+			renderWaterBackground();
+		}
+	}
+
 	@Override
 	public void renderArea(Paint paint, int level) {
 		this.drawingLayer.get(level).add(new ShapePaintContainer(this.shapeContainer, paint));
@@ -279,6 +307,27 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 		this.mapDatabase = mapDatabase;
 	}
 
+	@Override
+	public void way(WayRecord wayRecord) {
+		this.wayNodeBuffer.clear();
+		if (wayRecord.decodeWayNodes(this.wayNodeBuffer) < 0) {
+			return;
+		}
+
+		// the arrays are kept by the shape containers until the tile is drawn, so they cannot be reused
+		int[] wayNodes = this.wayNodeBuffer.getCoordinates();
+		float[][] wayCoordinates = new float[this.wayNodeBuffer.getNumberOfCoordinateBlocks()][];
+		for (int i = 0; i < wayCoordinates.length; ++i) {
+			int offset = this.wayNodeBuffer.getCoordinateBlockOffset(i);
+			wayCoordinates[i] = new float[this.wayNodeBuffer.getNumberOfWayNodes(i) * 2];
+			for (int j = 0; j < wayCoordinates[i].length; j += 2) {
+				wayCoordinates[i][j] = scaleLongitude(wayNodes[offset + j]);
+				wayCoordinates[i][j + 1] = scaleLatitude(wayNodes[offset + j + 1]);
+			}
+		}
+		renderWay(wayRecord.getLayer(), wayRecord.getTags(), wayCoordinates);
+	}
+
 	private void clearLists() {
 		for (int i = this.ways.size() - 1; i >= 0; --i) {
 			List<List<ShapePaintContainer>> innerWayList = this.ways.get(i);
@@ -339,34 +388,46 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 		this.renderTheme.matchClosedWay(this, this.tagList, this.currentTile.zoomLevel);
 	}
 
-	private void renderWay(Way way) {
-		this.drawingLayer = this.ways.get(getValidLayer(way.layer));
+	/**
+	 * Renders a way whose coordinates have already been converted to the current tile. This method is shared by the
+	 * cached and the streaming query path.
+	 */
+	private void renderWay(byte layer, List<Tag> tags, float[][] wayCoordinates) {
+		this.drawingLayer = this.ways.get(getValidLayer(layer));
 		// TODO what about the label position?
 
-		this.coordinates = way.wayNodes;
-		for (int i = 0; i < this.coordinates.length; ++i) {
-			for (int j = 0; j < this.coordinates[i].length; j += 2) {
-				this.coordinates[i][j] = scaleLongitude(this.coordinates[i][j]);
-				this.coordinates[i][j + 1] = scaleLatitude(this.coordinates[i][j + 1]);
-			}
-		}
+		this.coordinates = wayCoordinates;
 		this.shapeContainer = new WayContainer(this.coordinates);
 
 		if (GeometryUtils.isClosedWay(this.coordinates[0])) {
-			this.renderTheme.matchClosedWay(this, way.tags, this.currentTile.zoomLevel);
+			this.renderTheme.matchClosedWay(this, tags, this.currentTile.zoomLevel);
 		} else {
-			this.renderTheme.matchLinearWay(this, way.tags, this.currentTile.zoomLevel);
+			this.renderTheme.matchLinearWay(this, tags, this.currentTile.zoomLevel);
+		}
+	}
+
+	private void renderWay(Way way) {
+		// the way nodes must not be modified as the way may be cached by the map database
+		float[][] wayNodes = way.wayNodes;
+		float[][] wayCoordinates = new float[wayNodes.length][];
+		for (int i = 0; i < wayNodes.length; ++i) {
+			wayCoordinates[i] = new float[wayNodes[i].length];
+			for (int j = 0; j < wayNodes[i].length; j += 2) {
+				wayCoordinates[i][j] = scaleLongitude(wayNodes[i][j]);
+				wayCoordinates[i][j + 1] = scaleLatitude(wayNodes[i][j + 1]);
+			}
 		}
+		renderWay(way.layer, way.tags, wayCoordinates);
 	}
 
 	/**
 	 * Converts a latitude value into an Y coordinate on the current tile.
 	 * 
 	 * @param latitude
-	 *            the latitude value.
+	 *            the latitude value in microdegrees.
 	 * @return the Y coordinate on the current tile.
 	 */
-	private float scaleLatitude(float latitude) {
+	private float scaleLatitude(double latitude) {
 		return (float) (MercatorProjection.latitudeToPixelY(latitude / (double) 1000000, this.currentTile.zoomLevel) - this.currentTile
 				.getPixelY());
 	}
@@ -375,10 +436,10 @@ public class DatabaseRenderer implements MapGenerator, RenderCallback {
 	 * Converts a longitude value into an X coordinate on the current tile.
 	 * 
 	 * @param longitude
-	 *            the longitude value.
+	 *            the longitude value in microdegrees.
 	 * @return the X coordinate on the current tile.
 	 */
-	private float scaleLongitude(float longitude) {
+	private float scaleLongitude(double longitude) {
 		return (float) (MercatorProjection.longitudeToPixelX(longitude / (double) 1000000, this.currentTile.zoomLevel) - this.currentTile
 				.getPixelX());
 	}